@@ -308,20 +308,22 @@ void chambersSecondTick() {
 }
 
 uint32_t prevMillisChamberControl = CHAMBER_ITERATION_TIME_MILLIS;  // rather than 0, so we do an initial control interation immediately after startup.
-void controlChambers() {
+void controlChambers(void (*whileBusy)()) {
   if (TIME_UP(prevMillisChamberControl, uptimeMillis, CHAMBER_ITERATION_TIME_MILLIS)) {
     prevMillisChamberControl = uptimeMillis;
 
     uint32_t t = millis();
-    readTemperatures();  // Seems to take about 120ms per sensor (~720ms for 6 sensors)
+    readTemperatures(whileBusy);  // Seems to take about 120ms per sensor (~720ms for 6 sensors)
     logMsg(LOG_DEBUG, "CC", 'j', 1, ((uint32_t)millis() - t) /* uint32_t */);
     readTExternal();
     readTProjectBox();
+    whileBusy();
     for (byte i = 0; i < CHAMBER_COUNT; i++) {
       ChamberData& cd = chamberDataArray[i];
       readTBeer(cd);
       readTChamber(cd);
       controlChamber(cd);
+      whileBusy();
     }
     logMsg(LOG_DEBUG, "CC", 'k', 1, ((uint32_t)millis() - t) /* uint32_t */);  // ~1100ms for 6 sensors
   }
@@ -42,6 +42,7 @@ void controlChamber(ChamberData& cd);
 void chambersMinuteTick();
 void chambersSecondTick();
 
-void controlChambers();
+// `whileBusy` is called periodically during the (lengthy) control iteration.
+void controlChambers(void (*whileBusy)());
 
 #endif  // CHAMBER_CONTROL_H
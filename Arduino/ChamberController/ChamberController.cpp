@@ -50,5 +50,7 @@ void ChamberControllerLoop() {
   }
   maybeFlipLed();
   // Note: Even in the face of bad sensors we (conservatively) control chambers.
-  controlChambers();
+  // The serial port's receive buffer is only 64 bytes, so keep draining it while we're busy lest a
+  // longer command (e.g. `cyc:`) arrives meanwhile.
+  controlChambers(bufferMessages);
 }
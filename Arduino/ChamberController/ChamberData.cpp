@@ -70,10 +70,6 @@ void setChamberParams(
     uint8_t fridgeMinOnTimeMins, uint8_t fridgeMinOffTimeMins, uint8_t fridgeSwitchOnLagMins, float Kp, float Ki, float Kd, char mode) {
   logMsg(LOG_DEBUG, "CD", '0', cd.chamberId, tTarget /* int16_t */, mode /* char */);
 
-  cd.mParams.tTarget = tTarget;
-  cd.mParams.tTargetNext = tTargetNext;
-  cd.mParams.gyleAgeHours = gyleAgeHours;
-
   cd.params.mode = mode;
   cd.params.tMin = tMin;
   cd.params.tMax = tMax;
@@ -86,6 +82,14 @@ void setChamberParams(
   cd.params.Kd = Kd;
   putEepromChamberParams(cd.chamberId, cd.params);
 
+  setMovingChamberParams(cd, gyleAgeHours, tTarget, tTargetNext);
+}
+
+void setMovingChamberParams(ChamberData& cd, int16_t gyleAgeHours, int16_t tTarget, int16_t tTargetNext) {
+  cd.mParams.tTarget = tTarget;
+  cd.mParams.tTargetNext = tTargetNext;
+  cd.mParams.gyleAgeHours = gyleAgeHours;
+
   if (!movingChamberParamsSaved[cd.chamberId - 1]) {
     saveMovingChamberParams(cd.chamberId, cd.mParams);
     movingChamberParamsSaved[cd.chamberId - 1] = true;
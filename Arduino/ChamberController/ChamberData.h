@@ -84,6 +84,10 @@ typedef struct {
   // These are updated frequently (by the RPi or, in the case of `integral`, by us)
   MovingChamberParams mParams;
 
+  // Sent by the RPi with each full set of params and echoed back in `cyc:` responses. Not saved to EEPROM,
+  // so zero after a restart, telling the RPi to resend the full set rather than just the moving params.
+  uint16_t paramsSyncToken;
+
   /*
    * Working data and readings
    */
@@ -150,6 +154,7 @@ extern uint32_t prevMillisTTargetSave[CHAMBER_COUNT];
 void saveMovingChamberParamsOnceInAWhile(uint8_t chamberId, MovingChamberParams& mParams);
 
 extern boolean movingChamberParamsSaved[CHAMBER_COUNT];
+void setMovingChamberParams(ChamberData& cd, int16_t gyleAgeHours, int16_t tTarget, int16_t tTargetNext);
 void setChamberParams(
     ChamberData& cd, int16_t gyleAgeHours, int16_t tTarget, int16_t tTargetNext, int16_t tMin, int16_t tMax, boolean hasHeater,
     uint8_t fridgeMinOnTimeMins, uint8_t fridgeMinOffTimeMins, uint8_t fridgeSwitchOnLagMins, float Kp, float Ki, float Kd, char mode);
@@ -8,12 +8,26 @@ static const char CMD_STATUS[] PROGMEM = "status";
 static const char CMD_SET_CHAMBER_PARAMS[] PROGMEM = "setChParams:";
 static const char CMD_GET_CHAMBER_READINGS[] PROGMEM = "getChRds:";
 static const char CMD_GET_LOG_MESSAGES[] PROGMEM = "getLogMsgs";
+static const char CMD_VERSION[] PROGMEM = "version";
+static const char CMD_CYCLE[] PROGMEM = "cyc:";
 
-void handleSetChamberParams(char* cmd) {
-  int i = strlen(strFromProgMem(CMD_SET_CHAMBER_PARAMS));
+/**
+ * Parses chamber params from `cmd` (as per the `setChParams:` command minus its prefix) and applies them.
+ * `cmd` may instead hold just the moving params (chamberId,gyleAgeHours,tTarget,tTargetNext), in which case the
+ * others are left as they are. A full set of params may be followed by a sync token (see `paramsSyncToken`).
+ * Returns false (having responded with an error) if the chamber isn't recognised.
+ */
+boolean setChamberParamsFromCsv(char* cmd) {
+  int i = 0;
   int j = nullNextComma(cmd, i);
   byte chamberId = atoi(&cmd[i]);
 
+  ChamberData* cdPtr = findChamber(chamberId);
+  if (cdPtr == NULL) {
+    respondWithError("chamberId,", itoa(chamberId));
+    return false;
+  }
+
   i = j;
   j = nullNextComma(cmd, i);
   int16_t gyleAgeHours = atoi(&cmd[i]);
@@ -26,6 +40,11 @@ void handleSetChamberParams(char* cmd) {
   j = nullNextComma(cmd, i);
   int16_t tTargetNext = atoi(&cmd[i]);
 
+  if (j == -1) {
+    setMovingChamberParams(*cdPtr, gyleAgeHours, tTarget, tTargetNext);
+    return true;
+  }
+
   i = j;
   j = nullNextComma(cmd, i);
   int16_t tMin = atoi(&cmd[i]);
@@ -66,25 +85,21 @@ void handleSetChamberParams(char* cmd) {
   j = nullNextComma(cmd, i);
   char mode = cmd[i];
 
-  ChamberData* cdPtr = findChamber(chamberId);
-  if (cdPtr == NULL) {
-    return respondWithError("chamberId,", itoa(chamberId));
-  }
+  cdPtr->paramsSyncToken = j != -1 ? atoi(&cmd[j]) : 0;
   setChamberParams(*cdPtr, gyleAgeHours, tTarget, tTargetNext, tMin, tMax, hasHeater,
                    fridgeMinOnTimeMins, fridgeMinOffTimeMins, fridgeSwitchOnLagMins, Kp, Ki, Kd, mode);
-  sendAck();
+  return true;
 }
 
-void handleGetChamberReadings(const char* cmd) {
-  int i = strlen(strFromProgMem(CMD_GET_CHAMBER_READINGS));
-  // The remainder of the request is the chamber ID
-  byte chamberId = atoi(&cmd[i]);
-  const ChamberData* cdPtr = findChamber(chamberId);
-  if (cdPtr == NULL) {
-    return respondWithError("chamberId,", itoa(chamberId));
+void handleSetChamberParams(char* cmd) {
+  int i = strlen(strFromProgMem(CMD_SET_CHAMBER_PARAMS));
+  if (setChamberParamsFromCsv(&cmd[i])) {
+    sendAck();
   }
-  sendToMasterStart();
-  Serial.print(F("chRds:"));
+}
+
+/** Prints the payload of a `chRds:` response. */
+void printChamberReadings(const ChamberData* cdPtr) {
   Serial.print(cdPtr->mParams.gyleAgeHours);
   printComma();
   Serial.print(cdPtr->mParams.tTarget);
@@ -122,6 +137,19 @@ void handleGetChamberReadings(const char* cmd) {
   Serial.print(cdPtr->heaterOutput);
   printComma();
   Serial.print(cdPtr->fridgeOn);
+}
+
+void handleGetChamberReadings(const char* cmd) {
+  int i = strlen(strFromProgMem(CMD_GET_CHAMBER_READINGS));
+  // The remainder of the request is the chamber ID
+  byte chamberId = atoi(&cmd[i]);
+  const ChamberData* cdPtr = findChamber(chamberId);
+  if (cdPtr == NULL) {
+    return respondWithError("chamberId,", itoa(chamberId));
+  }
+  sendToMasterStart();
+  Serial.print(F("chRds:"));
+  printChamberReadings(cdPtr);
   sendToMasterEnd();
 }
 
@@ -135,6 +163,58 @@ void handleGetLogMessages() {
   sendAck();
 }
 
+void handleVersion() {
+  sendToMasterStart();
+  Serial.print(F("version:"));
+  Serial.print(PROTOCOL_VERSION);
+  sendToMasterEnd();
+}
+
+/**
+ * Protocol v2's batched collection cycle, replacing a `setChParams:` per chamber, a `getChRds:` per chamber and
+ * several `getLogMsgs`.
+ *
+ * Request: `cyc:` followed by the `setChParams:` payload (or just the moving params, see
+ * `setChamberParamsFromCsv()`) for zero or more chambers, separated by ';'. Chambers whose params haven't changed
+ * are omitted.
+ * Response: `cyc:` followed by the chamber count, then for each chamber ';' + chamberId + ',' + the `chRds:`
+ * payload + ',' + paramsSyncToken, then for each pending log message ';' + the `logMsg:` payload.
+ */
+void handleCycle(char* cmd) {
+  int i = strlen(strFromProgMem(CMD_CYCLE));
+  while (cmd[i] != '\0') {
+    int j = i;
+    while (cmd[j] != '\0' && cmd[j] != ';')
+      j++;
+    boolean last = cmd[j] == '\0';
+    cmd[j] = '\0';
+    if (!setChamberParamsFromCsv(&cmd[i])) {
+      return;
+    }
+    if (last)
+      break;
+    i = j + 1;
+  }
+
+  sendToMasterStart();
+  Serial.print(F("cyc:"));
+  Serial.print(CHAMBER_COUNT);
+  for (byte c = 0; c < CHAMBER_COUNT; c++) {
+    const ChamberData& cd = chamberDataArray[c];
+    Serial.print(';');
+    Serial.print(cd.chamberId);
+    printComma();
+    printChamberReadings(&cd);
+    printComma();
+    Serial.print(cd.paramsSyncToken);
+  }
+  while (LogRecord* lrPtr = findOldestLogMessage()) {
+    Serial.print(';');
+    slurpLogMessage(lrPtr);
+  }
+  sendToMasterEnd();
+}
+
 void handleStatus() {
   sendToMasterStart();
   Serial.print(F("status:"));
@@ -164,16 +244,21 @@ void dispatchCmd(char* cmd) {
     handleGetChamberReadings(cmd);
   } else if (strcmp_P(cmd, CMD_GET_LOG_MESSAGES) == 0) {
     handleGetLogMessages();
+  } else if (prefix(strFromProgMem(CMD_CYCLE), cmd)) {
+    handleCycle(cmd);
+  } else if (strcmp_P(cmd, CMD_VERSION) == 0) {
+    handleVersion();
   } else {
     sendToMaster("UnrecCmd:", cmd);
   }
 }
 
 byte iIpBuf = 0;
+// 0: awaiting start of command; 1: receiving command; 2: command received, awaiting dispatch
 byte ipBuffState = 0;
-char ipBuf[128];
-void handleMessages() {
-  while (Serial.available()) {
+char ipBuf[160];  // Big enough for a `cyc:` command with params for CHAMBER_COUNT chambers. Keep in step with ArduinoMessenger.MAX_REQUEST_LENGTH
+void bufferMessages() {
+  while (ipBuffState != 2 && Serial.available()) {
     byte b = Serial.read();
     switch (b) {
       case 0x5E:  // '^'
@@ -185,8 +270,7 @@ void handleMessages() {
       case 0x24:  // '$'
         if (ipBuffState == 1) {
           ipBuf[iIpBuf] = 0;
-          ipBuffState = 0;
-          dispatchCmd(ipBuf);
+          ipBuffState = 2;
         }
         break;
       default:
@@ -203,3 +287,13 @@ void handleMessages() {
     }
   }
 }
+
+void handleMessages() {
+  while (true) {
+    bufferMessages();
+    if (ipBuffState != 2)
+      break;
+    ipBuffState = 0;
+    dispatchCmd(ipBuf);
+  }
+}
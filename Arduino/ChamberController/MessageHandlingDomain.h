@@ -10,6 +10,15 @@
 #include "MessageHandlingGen.h"
 #include "Temperature.h"
 
+#define PROTOCOL_VERSION 3
+
+/**
+ * Moves any bytes available on the serial port into the command buffer, stopping once a complete command
+ * has been received. Doesn't dispatch the command, so safe to call while busy with something else.
+ */
+void bufferMessages();
+
+/** Buffers and dispatches any commands received. */
 void handleMessages();
 
 #endif  // MESSAGE_HANDLING_DOMAIN_H
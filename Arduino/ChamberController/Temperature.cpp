@@ -32,7 +32,20 @@ Sensor* findSensorByAddress(const DeviceAddress& fullAddress) {
 }
 
 boolean readTemperatures() {
-  dallas.requestTemperatures();
+  return readTemperatures(NULL);
+}
+
+boolean readTemperatures(void (*whileConverting)()) {
+  if (whileConverting == NULL) {
+    dallas.requestTemperatures();
+  } else {
+    dallas.setWaitForConversion(false);
+    dallas.requestTemperatures();
+    dallas.setWaitForConversion(true);
+    while (!dallas.isConversionComplete()) {
+      whileConverting();
+    }
+  }
   uint8_t sensorCount = dallas.getDS18Count();
   if (sensorCount != SENSOR_COUNT) {
     badSensorCount = SENSOR_COUNT - sensorCount;
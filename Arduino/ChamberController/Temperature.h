@@ -56,6 +56,9 @@ extern uint8_t badSensorCount;
 // This must be called once each period before reading the individual temperatures (using getTemperature()).
 // Retuns true if all ok.
 boolean readTemperatures();
+// As above but, rather than block for the duration of the conversion, repeatedly calls `whileConverting`
+// until it's complete.
+boolean readTemperatures(void (*whileConverting)());
 
 void initTemperatureSensors();
 
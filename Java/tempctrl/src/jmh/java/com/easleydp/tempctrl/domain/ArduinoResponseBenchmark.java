@@ -0,0 +1,96 @@
+package com.easleydp.tempctrl.domain;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.easleydp.tempctrl.domain.ArduinoChamberManager.ChRdsResponse;
+
+/**
+ * Parsing of the Arduino's `chRds` and `status` responses (the payload, i.e.
+ * minus framing and prefix), as received once per chamber per collection
+ * cycle. The `chRds` responses are built from realistic readings. The
+ * original split-based parsing is included as a baseline.
+ *
+ * Also the framing itself, with the serial port replaced by a source that
+ * supplies the framed responses in port-sized chunks.
+ */
+@State(Scope.Thread)
+public class ArduinoResponseBenchmark {
+    private static final int responsesCount = 256; // Power of 2 for cheap wrap-around
+
+    private String[] chRdsResponses;
+    private ByteBuffer[] chRdsFrames;
+    private String statusResponse;
+    private ByteBuffer statusFrame;
+    private int next;
+
+    private final ResponseCursor cursor = new ResponseCursor();
+    private final ChRdsResponse chRds = new ChRdsResponse();
+
+    private SerialFrameReader frameReader;
+
+    @Setup
+    public void setup() {
+        List<ChamberReadings> readings = BenchmarkData.generateReadings(responsesCount);
+        chRdsResponses = new String[responsesCount];
+        for (int i = 0; i < responsesCount; i++) {
+            ChamberReadings cr = readings.get(i);
+            // gyleAgeHours,tTarget,tTargetNext,tMin,tMax,hasHeater,fridgeMinOnTimeMins,fridgeMinOffTimeMins,fridgeSwitchOnLagMins,Kp,Ki,Kd,mode,tBeer,tChamber,tExternal,tPi,heaterOutput,fridgeOn
+            chRdsResponses[i] = String.join(",", "" + (i / 60), "" + cr.gettTarget(), "" + cr.gettTarget(), "-10",
+                    "400", "1", "10", "10", "5", "2.1", "0.01", "20.5", "" + cr.getMode(), "" + cr.gettBeer(),
+                    "" + cr.gettChamber(), "" + cr.gettExternal(), "" + cr.gettPi(), "" + cr.getHeaterOutput(),
+                    cr.getFridgeOn() ? "1" : "0");
+        }
+        // uptimeMins,tExternal,tProjectBox,minFreeRam,minFreeRamLocation,badSensorCount,logBufferCannibalised
+        statusResponse = "12345,123,245,1024,3,0,0";
+        chRdsFrames = new ByteBuffer[responsesCount];
+        for (int i = 0; i < responsesCount; i++)
+            chRdsFrames[i] = ByteBuffer.wrap(chRdsResponses[i].getBytes(StandardCharsets.US_ASCII));
+        statusFrame = ByteBuffer.wrap(statusResponse.getBytes(StandardCharsets.US_ASCII));
+
+        StringBuilder sb = new StringBuilder();
+        for (String response : chRdsResponses)
+            sb.append("^chRds:").append(response).append("$\r\n");
+        byte[] stream = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        int[] streamPos = { 0 };
+        frameReader = new SerialFrameReader((buffer, offset, length) -> {
+            // Mimic the port returning whatever has arrived, up to a USB packet's worth
+            int n = Math.min(Math.min(length, 64), stream.length - streamPos[0]);
+            System.arraycopy(stream, streamPos[0], buffer, offset, n);
+            streamPos[0] = (streamPos[0] + n) % stream.length;
+            return n;
+        });
+    }
+
+    @Benchmark
+    public ChRdsResponse parseChRds() throws IOException {
+        return ArduinoChamberManager.parseChRds(chRdsFrames[next++ & (responsesCount - 1)], cursor, chRds);
+    }
+
+    @Benchmark
+    public ChRdsResponse parseChRdsLegacy() throws IOException {
+        return LegacyResponseParser.parseChRds(chRdsResponses[next++ & (responsesCount - 1)]);
+    }
+
+    @Benchmark
+    public ByteBuffer readFrame() throws IOException {
+        return frameReader.readFrame();
+    }
+
+    @Benchmark
+    public ChamberManagerStatus parseStatus() throws IOException {
+        return ArduinoChamberManager.parseStatus(statusFrame, cursor);
+    }
+
+    @Benchmark
+    public ChamberManagerStatus parseStatusLegacy() throws IOException {
+        return LegacyResponseParser.parseStatus(statusResponse);
+    }
+}
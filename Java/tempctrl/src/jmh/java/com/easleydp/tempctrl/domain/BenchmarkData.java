@@ -0,0 +1,80 @@
+package com.easleydp.tempctrl.domain;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Realistic benchmark inputs, generated from the test fixtures.
+ *
+ * The forked benchmark JVM is told the project dir via the
+ * `tempctrl.projectDir` system property (see build.gradle).
+ */
+public final class BenchmarkData {
+    public static final Path projectDir = Paths.get(System.getProperty("tempctrl.projectDir", "."));
+    public static final Path testDataDir = projectDir.resolve("src/test/resources/testData");
+
+    /** Fixed so that the generated data is the same from run to run. */
+    public static final Date startTime = new Date(1_600_000_000_000L);
+
+    private BenchmarkData() {
+    }
+
+    /** Installs default properties, as the tests do. */
+    public static MockEnvironment initProperties() {
+        MockEnvironment env = new MockEnvironment();
+        PropertyUtils.setEnv(env);
+        return env;
+    }
+
+    /** Chamber 2's gyle 1, whose profile includes a cold crash. */
+    public static Gyle getTestGyle(ChamberRepository chambers) {
+        return chambers.getChamberById(2).getGyleById(1);
+    }
+
+    /**
+     * @return `count` readings (one per minute from `startTime`) as they would
+     *         arrive fresh from chamber 2 running its gyle 1 profile, as
+     *         simulated by SimulatedChamberManager.
+     */
+    public static List<ChamberReadings> generateReadings(int count) {
+        initProperties();
+        ChamberRepository chambers = new ChamberRepository(testDataDir);
+        Gyle gyle = getTestGyle(chambers);
+        gyle.setDtStarted(startTime.getTime());
+        SimulatedChamberManager chamberManager = SimulatedChamberManager.forChambers(chambers, 1);
+        List<ChamberReadings> readings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Date timeNow = minutesAfterStart(i);
+            chamberManager.setParameters(2, gyle.getChamberParameters(timeNow));
+            readings.add(chamberManager.collectReadings(2, timeNow));
+        }
+        return readings;
+    }
+
+    public static Date minutesAfterStart(int minutes) {
+        return new Date(startTime.getTime() + minutes * 60_000L);
+    }
+
+    /** @return deep copy, since the log buffer optimises readings in place. */
+    public static List<ChamberReadings> copy(List<ChamberReadings> readings) {
+        List<ChamberReadings> copy = new ArrayList<>(readings.size());
+        for (ChamberReadings cr : readings)
+            copy.add(new ChamberReadings(cr));
+        return copy;
+    }
+
+    /** @return a scratch copy of the test data dir, which the caller should delete. */
+    public static Path copyTestData() throws IOException {
+        Path dir = Files.createTempDirectory("tempctrl-jmh");
+        FileSystemUtils.copyRecursively(testDataDir, dir);
+        return dir;
+    }
+}
@@ -0,0 +1,90 @@
+package com.easleydp.tempctrl.domain;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * How the per-chamber work of a collection cycle scales with the number of
+ * shard workers, for a club-sized deployment: `chamberCount` copies of the test
+ * chamber, each with an active gyle, fed simulated readings. An invocation is
+ * one cycle for every chamber (params, glitch filtering, logging including any
+ * flush), so the score is chamber-cycles per second. On an N core machine it
+ * should rise near-linearly with `workers` up to N.
+ */
+@State(Scope.Thread)
+public class ChamberShardsBenchmark {
+    private static final int chamberCount = 64;
+
+    @Param({ "1", "2", "4", "8" })
+    public int workers;
+
+    private Path dataDir;
+    private ChamberShards shards;
+    private List<Chamber> chambers;
+    private List<ChamberReadings> readings;
+    private int minutes;
+
+    @Setup
+    public void setup() throws IOException {
+        readings = BenchmarkData.generateReadings(24 * 60);
+
+        MockEnvironment env = BenchmarkData.initProperties();
+        env.setProperty("readings.staggerFirstReadings", "false");
+        dataDir = BenchmarkData.copyTestData();
+        Path chambersDir = dataDir.resolve("chambers");
+        Path templateDir = chambersDir.resolve("2");
+        FileSystemUtils.deleteRecursively(chambersDir.resolve("1"));
+        for (int id = 1; id <= chamberCount; id++)
+            if (id != 2)
+                FileSystemUtils.copyRecursively(templateDir, chambersDir.resolve("" + id));
+
+        chambers = new ArrayList<>(new ChamberRepository(dataDir).getChambers());
+        for (Chamber chamber : chambers)
+            chamber.getGyleById(1).setDtStarted(BenchmarkData.startTime.getTime());
+        shards = new ChamberShards(workers);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        shards.close();
+        FileSystemUtils.deleteRecursively(dataDir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(chamberCount)
+    public int collectionCycle() {
+        Date timeNow = BenchmarkData.minutesAfterStart(minutes);
+        ChamberReadings template = readings.get(minutes % readings.size());
+        minutes++;
+        List<CompletableFuture<ChamberParameters>> futures = new ArrayList<>(chamberCount);
+        for (Chamber chamber : chambers) {
+            futures.add(shards.submit(chamber.getId(), () -> {
+                Gyle gyle = chamber.getLatestGyle();
+                ChamberParameters params = gyle.getChamberParameters(timeNow);
+                ChamberReadings cr = new ChamberReadings(template);
+                cr.setDt(Utils.reduceUtcMillisPrecision(timeNow));
+                chamber.filterSensorGlitches(cr);
+                gyle.logLatestReadings(cr, timeNow);
+                return params;
+            }));
+        }
+        int targets = 0;
+        for (CompletableFuture<ChamberParameters> future : futures)
+            targets += future.join().tTarget;
+        return targets;
+    }
+}
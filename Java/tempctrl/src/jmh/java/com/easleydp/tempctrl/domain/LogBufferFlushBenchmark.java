@@ -0,0 +1,60 @@
+package com.easleydp.tempctrl.domain;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * End-to-end cost of logging readings via `Gyle.logLatestReadings()`, per
+ * reading. Each invocation logs a whole buffer's worth, so it includes one log
+ * buffer flush (optimise, encode, write) plus any log file consolidation that
+ * falls due, against a scratch copy of the test data.
+ */
+@State(Scope.Thread)
+public class LogBufferFlushBenchmark {
+    private static final int bufferSize = 30;
+
+    private Path dataDir;
+    private Gyle gyle;
+    private List<ChamberReadings> readings;
+    private int minutes;
+
+    @Setup
+    public void setup() throws IOException {
+        readings = BenchmarkData.generateReadings(24 * 60);
+
+        MockEnvironment env = BenchmarkData.initProperties();
+        env.setProperty("readings.gen1.readingsCount", "" + bufferSize);
+        env.setProperty("readings.staggerFirstReadings", "false");
+        dataDir = BenchmarkData.copyTestData();
+        gyle = BenchmarkData.getTestGyle(new ChamberRepository(dataDir));
+        gyle.setDtStarted(BenchmarkData.startTime.getTime());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(dataDir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(bufferSize)
+    public Gyle logBufferOfReadings() throws IOException {
+        for (int i = 0; i < bufferSize; i++) {
+            ChamberReadings cr = new ChamberReadings(readings.get(minutes % readings.size()));
+            Date timeNow = BenchmarkData.minutesAfterStart(minutes++);
+            cr.setDt(Utils.reduceUtcMillisPrecision(timeNow));
+            gyle.logLatestReadings(cr, timeNow);
+        }
+        return gyle;
+    }
+}
@@ -0,0 +1,86 @@
+package com.easleydp.tempctrl.domain;
+
+import static com.easleydp.tempctrl.domain.optimise.RedundantValues.nullOutRedundantValues;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+/**
+ * Serialising and parsing a gen1 log file's worth of (optimised) readings,
+ * ChamberReadingsCodec vs the Jackson approach it replaced.
+ */
+@State(Scope.Thread)
+public class NdjsonBenchmark {
+    private List<ChamberReadings> readings;
+    private byte[] ndjson;
+    private ByteBuffer encodeBuffer;
+
+    private final ObjectWriter jacksonWriter = new ObjectMapper().writerFor(ChamberReadings.class)
+            .withRootValueSeparator("\n");
+    private final ObjectReader jacksonReader = new ObjectMapper().readerFor(ChamberReadings.class);
+
+    @Setup
+    public void setup() throws IOException {
+        // A buffer's worth, optimised as it would be before being flushed
+        readings = BenchmarkData.generateReadings(30);
+        for (String propertyName : ChamberReadings.getNullablePropertyNames())
+            nullOutRedundantValues(readings, propertyName);
+
+        encodeBuffer = ByteBuffer.allocate(8 * 1024);
+        for (ChamberReadings cr : readings)
+            ChamberReadingsCodec.encode(cr, encodeBuffer);
+        ndjson = new byte[encodeBuffer.position()];
+        encodeBuffer.flip();
+        encodeBuffer.get(ndjson);
+    }
+
+    @Benchmark
+    public ByteBuffer serialiseCodec() {
+        encodeBuffer.clear();
+        for (ChamberReadings cr : readings)
+            ChamberReadingsCodec.encode(cr, encodeBuffer);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public byte[] serialiseJackson() throws IOException {
+        Writer writer = new StringWriter();
+        try (SequenceWriter sw = jacksonWriter.writeValues(writer)) {
+            sw.writeAll(readings);
+        }
+        return (writer.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<ChamberReadings> parseCodec() {
+        List<ChamberReadings> list = new ArrayList<>();
+        ChamberReadingsCodec.parse(ByteBuffer.wrap(ndjson), list::add);
+        return list;
+    }
+
+    @Benchmark
+    public List<ChamberReadings> parseJackson() throws IOException {
+        try (MappingIterator<ChamberReadings> it = jacksonReader.readValues(ndjson)) {
+            List<ChamberReadings> list = new ArrayList<>();
+            while (it.hasNext())
+                list.add(it.next());
+            return list;
+        }
+    }
+}
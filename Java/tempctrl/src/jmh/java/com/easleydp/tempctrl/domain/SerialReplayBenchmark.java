@@ -0,0 +1,84 @@
+package com.easleydp.tempctrl.domain;
+
+import static com.easleydp.tempctrl.domain.TestChamberParameters.params;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The whole comms stack (`ArduinoChamberManager`, `ArduinoMessenger`,
+ * `SerialFrameReader`, parsing), per collection cycle, fed a serial capture as
+ * fast as possible.
+ *
+ * The capture is that named by the `tempctrl.serialCapture` system property
+ * (e.g. one made on the Pi, see `arduino.captureDir`) otherwise one recorded at
+ * setup from a VirtualArduino. Either way it should hold at least 60 cycles.
+ * Requests that differ from those captured (e.g. the params below differ from
+ * those on the Pi) don't stop the replay.
+ */
+@State(Scope.Thread)
+public class SerialReplayBenchmark {
+    private static final int cycles = 60;
+
+    private static final Set<Integer> readingsChamberIds = new HashSet<>(Arrays.asList(1, 2));
+
+    private ChamberRepository chamberRepository;
+    private Map<Integer, ChamberParameters> params;
+    private SerialReplayTransport transport;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkData.initProperties();
+        chamberRepository = new ChamberRepository(BenchmarkData.testDataDir);
+        params = params();
+
+        String capture = System.getProperty("tempctrl.serialCapture");
+        if (capture != null) {
+            transport = new SerialReplayTransport(Paths.get(capture), Double.POSITIVE_INFINITY);
+        } else {
+            Path captureFile = Files.createTempFile("serial", ".cap");
+            VirtualArduino arduino = new VirtualArduino(ArduinoChamberManager.PROTOCOL_VERSION_DELTA_PARAMS, 2, 0) {
+                @Override
+                public void setReadTimeout(int millis) {
+                    super.setReadTimeout(0); // Don't wait out the purges while recording
+                }
+            }.setLogFloodMessagesPerRequest(2);
+            try (SerialRecorder recorder = new SerialRecorder(captureFile)) {
+                replay(() -> new ArduinoMessenger(arduino, recorder));
+            }
+            transport = new SerialReplayTransport(captureFile, Double.POSITIVE_INFINITY);
+            Files.delete(captureFile);
+        }
+    }
+
+    private Map<Integer, ChamberReadings> replay(ArduinoChamberManager.MessengerFactory messengerFactory)
+            throws IOException {
+        Map<Integer, ChamberReadings> readings = null;
+        try (ArduinoChamberManager chamberManager = new ArduinoChamberManager(chamberRepository, null,
+                messengerFactory)) {
+            for (int i = 0; i < cycles; i++)
+                readings = chamberManager.runCollectionCycle(params, readingsChamberIds,
+                        BenchmarkData.minutesAfterStart(i));
+        }
+        return readings;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(cycles)
+    public Map<Integer, ChamberReadings> replayCycles() throws IOException {
+        transport.rewind();
+        return replay(() -> new ArduinoMessenger(transport));
+    }
+}
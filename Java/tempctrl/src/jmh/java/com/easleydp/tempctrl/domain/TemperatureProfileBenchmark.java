@@ -0,0 +1,58 @@
+package com.easleydp.tempctrl.domain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Target temperature lookup over the test gyle's profile, at times spread
+ * across (and beyond) the profile. The `Rebuilt` variant is what
+ * `Gyle.getChamberParameters()` used to do on every call.
+ */
+@State(Scope.Thread)
+public class TemperatureProfileBenchmark {
+    private static final int timesCount = 1024; // Power of 2 for cheap wrap-around
+
+    private Gyle gyle;
+    private TemperatureProfile profile;
+    private CompiledTemperatureProfile compiledProfile;
+    private long[] times;
+    private int next;
+
+    @Setup
+    public void setup() {
+        BenchmarkData.initProperties();
+        gyle = BenchmarkData.getTestGyle(new ChamberRepository(BenchmarkData.testDataDir));
+        profile = gyle.getTemperatureProfileDomain();
+        compiledProfile = gyle.getCompiledTemperatureProfile();
+        long endMillis = compiledProfile.getEndMillis() * 5 / 4;
+        times = new long[timesCount];
+        for (int i = 0; i < timesCount; i++)
+            times[i] = endMillis * i / timesCount;
+    }
+
+    private long nextTime() {
+        return times[next++ & (timesCount - 1)];
+    }
+
+    @Benchmark
+    public int getTargetTempAt() {
+        return profile.getTargetTempAt(nextTime());
+    }
+
+    @Benchmark
+    public int getTargetTempAtRebuilt() {
+        return gyle.getTemperatureProfileDomain().getTargetTempAt(nextTime());
+    }
+
+    @Benchmark
+    public int getTargetTempAtCompiled() {
+        return compiledProfile.getTargetTempAt(nextTime());
+    }
+
+    @Benchmark
+    public int getTargetTempAtViaGyleCache() {
+        return gyle.getCompiledTemperatureProfile().getTargetTempAt(nextTime());
+    }
+}
@@ -0,0 +1,60 @@
+package com.easleydp.tempctrl.domain;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.easleydp.tempctrl.domain.Gyle.Trend;
+import com.easleydp.tempctrl.domain.Gyle.TrendBuffer;
+
+/**
+ * The queries made of a (full) trend buffer by the 'left switched off' check,
+ * plus the cost of adding a reading to it.
+ */
+@State(Scope.Thread)
+public class TrendBufferBenchmark {
+    private TrendBuffer trendBuffer;
+    private List<ChamberReadings> readings;
+    private int minutes;
+
+    @Setup
+    public void setup() {
+        readings = BenchmarkData.generateReadings(24 * 60);
+        Chamber chamber = new ChamberRepository(BenchmarkData.testDataDir).getChamberById(2);
+        trendBuffer = new TrendBuffer(chamber, chamber.getEffectiveReadingsPeriodMillis());
+        while (!trendBuffer.isFull())
+            add();
+    }
+
+    /** Cycles through the readings, but with time moving on, so the buffer evicts as in real life. */
+    private void add() {
+        ChamberReadings cr = new ChamberReadings(readings.get(minutes % readings.size()));
+        cr.setDt(Utils.reduceUtcMillisPrecision(BenchmarkData.minutesAfterStart(minutes)));
+        minutes++;
+        trendBuffer.add(cr);
+    }
+
+    @Benchmark
+    public TrendBuffer addReading() {
+        add();
+        return trendBuffer;
+    }
+
+    @Benchmark
+    public int getFridgeOnTimeMins() {
+        return trendBuffer.getFridgeOnTimeMins();
+    }
+
+    @Benchmark
+    public int getTrulyHeatingTimeMins() {
+        return trendBuffer.getTrulyHeatingTimeMins();
+    }
+
+    @Benchmark
+    public Trend gettChamberTrend() {
+        return trendBuffer.gettChamberTrend(30);
+    }
+}
@@ -0,0 +1,69 @@
+package com.easleydp.tempctrl.domain.optimise;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.easleydp.tempctrl.domain.BenchmarkData;
+import com.easleydp.tempctrl.domain.ChamberReadings;
+import com.easleydp.tempctrl.domain.optimise.Smoother.IntPropertyAccessor;
+
+/**
+ * The optimisations applied to each gen1 log buffer before it's flushed, over
+ * buffers of 30 realistic readings (a day's worth in rotation). Each operation
+ * works on a fresh copy of a buffer since they optimise in place; the copy is
+ * included in the measurement.
+ */
+@State(Scope.Thread)
+public class OptimiseBenchmark {
+    private static final int bufferSize = 30;
+
+    private List<List<ChamberReadings>> buffers;
+    private int next;
+    private Smoother smoother;
+
+    @Setup
+    public void setup() {
+        List<ChamberReadings> readings = BenchmarkData.generateReadings(24 * 60);
+        buffers = new ArrayList<>();
+        for (int i = 0; i + bufferSize <= readings.size(); i += bufferSize)
+            buffers.add(readings.subList(i, i + bufferSize));
+        smoother = new Smoother(2); // As the Gyle default
+    }
+
+    private List<ChamberReadings> nextBuffer() {
+        List<ChamberReadings> buffer = buffers.get(next);
+        next = (next + 1) % buffers.size();
+        return BenchmarkData.copy(buffer);
+    }
+
+    @Benchmark
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public List<ChamberReadings> smoothOutSmallFluctuations() {
+        List<ChamberReadings> buffer = nextBuffer();
+        for (IntPropertyAccessor accessor : ChamberReadings.allTemperatureAccessors)
+            smoother.smoothOutSmallFluctuations((List) buffer, accessor);
+        return buffer;
+    }
+
+    @Benchmark
+    public List<ChamberReadings> nullOutRedundantValues() {
+        List<ChamberReadings> buffer = nextBuffer();
+        for (String propertyName : ChamberReadings.getNullablePropertyNames())
+            RedundantValues.nullOutRedundantValues(buffer, propertyName);
+        return buffer;
+    }
+
+    @Benchmark
+    public List<ChamberReadings> nullOutThenRemoveRedundantIntermediateBeans() {
+        List<ChamberReadings> buffer = nextBuffer();
+        for (String propertyName : ChamberReadings.getNullablePropertyNames())
+            RedundantValues.nullOutRedundantValues(buffer, propertyName);
+        RedundantValues.removeRedundantIntermediateBeans(buffer, ChamberReadings.getNullablePropertyNames());
+        return buffer;
+    }
+}
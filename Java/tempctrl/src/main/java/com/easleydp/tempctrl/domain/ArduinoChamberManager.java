@@ -1,14 +1,21 @@
 package com.easleydp.tempctrl.domain;
 
 import static java.nio.charset.StandardCharsets.*;
-import static java.lang.Double.*;
 
 import java.awt.event.KeyEvent;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.time.Clock;
 import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import com.fazecast.jSerialComm.SerialPortTimeoutException;
 import com.google.common.base.Joiner;
@@ -16,102 +23,230 @@ import com.google.common.base.Joiner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.easleydp.tempctrl.domain.SerialIoThread.Priority;
+
 /**
  * Interfaces to an Arduino microcontroller
+ *
+ * All communication with the Arduino happens on a single I/O thread; the
+ * synchronous methods simply wait for their asynchronous counterparts.
+ *
+ * On opening the port the protocol version is negotiated. Firmware speaking
+ * protocol v2 handles a whole collection cycle (params, readings and log
+ * messages for all chambers) in a single `cyc:` round trip. Older firmware
+ * replies `UnrecCmd:` to the `version` request, in which case the cycle falls
+ * back to the original per-chamber requests.
+ *
+ * The port is opened (and re-opened after errors) in the background by a
+ * SerialConnection; while there is no connection, requests fail fast.
  */
-public class ArduinoChamberManager implements ChamberManager {
+public class ArduinoChamberManager implements ChamberManager, AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(ArduinoChamberManager.class);
     private static final Logger arduinoLogger = LoggerFactory.getLogger("arduino");
 
     private static final char DELIM_CHAR = ',';
     private static final String DELIM = "" + DELIM_CHAR;
 
-    private ArduinoMessenger messenger = null; // Acquired lazily, so we can retry if initially not found
-
+    // Timeouts include time spent queued behind other commands. Each response read
+    // is itself subject to ArduinoMessenger's 10s read timeout.
+    private static final long COMMAND_TIMEOUT_MILLIS = 15 * 1000;
+    private static final long LOG_SLURP_TIMEOUT_MILLIS = 60 * 1000;
+    private static final long COLLECTION_CYCLE_TIMEOUT_MILLIS = 2 * 60 * 1000;
+
+    /** The first protocol version to support the batched `cyc:` request. */
+    static final int PROTOCOL_VERSION_BATCHED = 2;
+    /** The first protocol version to accept param deltas in the `cyc:` request. */
+    static final int PROTOCOL_VERSION_DELTA_PARAMS = 3;
+
+    /** Send the full params for every chamber at least this often, regardless. */
+    static final int FULL_PARAMS_SYNC_CYCLES = 60;
+    private static final int MAX_PARAMS_SYNC_TOKEN = Short.MAX_VALUE; // An Arduino int is 16 bits
+
+    private final SerialStats serialStats = new SerialStats();
+    private final SerialIoThread ioThread = new SerialIoThread("arduino-io", serialStats);
+    private final SerialConnection connection;
+
+    // Only accessed on the I/O thread
+    private ArduinoMessenger messenger = null; // The one protocolVersion was negotiated with
+    private int protocolVersion = 0; // 0 if not yet negotiated with the current messenger
+    private final ResponseCursor cursor = new ResponseCursor();
+    private final ChRdsResponse chRds = new ChRdsResponse();
+
+    // The params each chamber is believed to have. For protocol v3 and later, only
+    // the changes are sent (if any) while the sync token echoed back by the Arduino
+    // is as per the last full set of params sent.
     private Map<Integer, ChamberParameters> chamberParametersByChamberId = new HashMap<>();
+    private Map<Integer, Integer> paramsSyncTokenByChamberId = new HashMap<>();
+    private int lastParamsSyncToken = 0;
+    private int cyclesSinceFullParamsSync = 0;
     private ChamberRepository chamberRepository;
+    private final ArduinoLogStore logStore;
+    private final List<Integer> chamberIds; // Repository chamber IDs in device order; null if the same
+    private final Clock clock;
+
+    private static final byte[] NO_BYTES = new byte[0];
+
+    /** Opens the connection to the Arduino. */
+    @FunctionalInterface
+    public interface MessengerFactory {
+        ArduinoMessenger create() throws IOException;
+    }
 
     public ArduinoChamberManager(ChamberRepository chamberRepository) {
+        this(chamberRepository, null);
+    }
+
+    /**
+     * @param logStore
+     *                     where to keep the Arduino's log messages; null to just
+     *                     send them to the text log
+     */
+    public ArduinoChamberManager(ChamberRepository chamberRepository, ArduinoLogStore logStore) {
+        this(chamberRepository, logStore, ArduinoMessenger::new);
+    }
+
+    /**
+     * @param messengerFactory
+     *                             called whenever the connection needs to be
+     *                             (re)opened, e.g. to talk to a VirtualArduino
+     */
+    public ArduinoChamberManager(ChamberRepository chamberRepository, ArduinoLogStore logStore,
+            MessengerFactory messengerFactory) {
+        this(chamberRepository, logStore, messengerFactory, null);
+    }
+
+    /**
+     * @param chamberIds
+     *                       the repository IDs of the device's chambers 1, 2,
+     *                       etc., when not one and the same, e.g. for a second
+     *                       device in a ChamberManagerRegistry. Only used to
+     *                       look up chambers and to log; callers still address
+     *                       the device's chambers by the device's own IDs.
+     */
+    public ArduinoChamberManager(ChamberRepository chamberRepository, ArduinoLogStore logStore,
+            MessengerFactory messengerFactory, List<Integer> chamberIds) {
+        this(chamberRepository, logStore, messengerFactory, chamberIds, Clock.systemUTC());
+    }
+
+    /**
+     * @param clock
+     *                  the time the Arduino's log messages are stored with, e.g.
+     *                  a VirtualClock
+     */
+    public ArduinoChamberManager(ChamberRepository chamberRepository, ArduinoLogStore logStore,
+            MessengerFactory messengerFactory, List<Integer> chamberIds, Clock clock) {
         this.chamberRepository = chamberRepository;
+        this.logStore = logStore;
+        this.chamberIds = chamberIds;
+        this.clock = clock;
+        connection = new SerialConnection(messengerFactory, serialStats);
+    }
+
+    private int toRepositoryChamberId(int deviceChamberId) {
+        if (chamberIds == null || deviceChamberId < 1 || deviceChamberId > chamberIds.size())
+            return deviceChamberId;
+        return chamberIds.get(deviceChamberId - 1);
     }
 
     @Override
     public ChamberManagerStatus getChamberManagerStatus() throws IOException {
-        getMessenger().sendRequest("status");
-        String response = getMessenger().getResponse("status:");
-        String[] values = response.split(",");
+        return SerialIoThread.await(getChamberManagerStatusAsync());
+    }
+
+    @Override
+    public CompletableFuture<ChamberManagerStatus> getChamberManagerStatusAsync() {
+        return submit("status", Priority.HOUSEKEEPING, COMMAND_TIMEOUT_MILLIS, () -> {
+            getMessenger().sendRequest("status");
+            ByteBuffer response = getMessenger().getResponseFrame("status:");
+            return parseStatus(response, cursor);
+        });
+    }
+
+    static ChamberManagerStatus parseStatus(ByteBuffer response, ResponseCursor cursor) throws IOException {
+        cursor.reset("status", response);
         // Expecting:
         // uptimeMins,tExternal,tProjectBox,minFreeRam,minFreeRamLocation,badSensorCount,logBufferCannibalised
-        if (values.length != 7)
-            throw new IOException("Unexpected 'status' response: " + response);
-        int i = 0;
         // @formatter:off
-        return new ChamberManagerStatus(
-            parseInt(values[i++]),
-            parseInt(values[i++]),
-            parseInt(values[i++]),
-            parseInt(values[i++]),
-            parseInt(values[i++]),
-            parseInt(values[i++]),
-            parseBool(values[i++]));
+        ChamberManagerStatus status = new ChamberManagerStatus(
+            cursor.nextInt(),
+            cursor.nextInt(),
+            cursor.nextInt(),
+            cursor.nextInt(),
+            cursor.nextInt(),
+            cursor.nextInt(),
+            cursor.nextBool());
         // @formatter:on
+        cursor.expectEnd();
+        return status;
     }
 
     @Override
     public void setParameters(int chamberId, ChamberParameters params) throws IOException {
+        SerialIoThread.await(setParametersAsync(chamberId, params));
+    }
+
+    @Override
+    public CompletableFuture<Void> setParametersAsync(int chamberId, ChamberParameters params) {
+        return submit("setChParams", Priority.CONTROL, COMMAND_TIMEOUT_MILLIS, () -> {
+            sendParameters(chamberId, params);
+            return null;
+        });
+    }
+
+    private void sendParameters(int chamberId, ChamberParameters params) throws IOException {
         chamberParametersByChamberId.put(chamberId, params);
+        paramsSyncTokenByChamberId.remove(chamberId); // Sent without a token, so next cycle resends in full
 
-        getMessenger().sendRequest(
-                "setChParams:" + csv(chamberId, params.gyleAgeHours, params.tTarget, params.tTargetNext, params.tMin,
-                        params.tMax, params.hasHeater ? 1 : 0, params.fridgeMinOnTimeMins, params.fridgeMinOffTimeMins,
-                        params.fridgeSwitchOnLagMins, params.Kp, params.Ki, params.Kd, params.mode));
+        getMessenger().sendRequest("setChParams:" + paramsCsv(chamberId, params));
         // Examples for console test:
         // ^setChParams:1,12,171,172,-10,400,1,10,10,5,2.1,0.01,20.5,A$
         // ^setChParams:2,-1,100,100,-10,150,0,10,10,5,1.9,0.015,19.5,H$
         getMessenger().expectResponse("ack");
     }
 
+    private static String movingParamsCsv(int chamberId, ChamberParameters params) {
+        return csv(chamberId, params.gyleAgeHours, params.tTarget, params.tTargetNext);
+    }
+
+    private static String paramsCsv(int chamberId, ChamberParameters params) {
+        return csv(chamberId, params.gyleAgeHours, params.tTarget, params.tTargetNext, params.tMin, params.tMax,
+                params.hasHeater ? 1 : 0, params.fridgeMinOnTimeMins, params.fridgeMinOffTimeMins,
+                params.fridgeSwitchOnLagMins, formatGain(params.Kp), formatGain(params.Ki), formatGain(params.Kd),
+                params.mode);
+    }
+
+    /**
+     * Formats a PID gain to at most 4 decimal places (trailing zeros dropped).
+     * Double.toString() can run to 20-odd chars (e.g. 0.30000000000000004), which
+     * for 3 gains and 2 chambers could overflow the Arduino's input buffer (see
+     * `ArduinoMessenger.MAX_REQUEST_LENGTH`).
+     */
+    static String formatGain(double gain) {
+        return BigDecimal.valueOf(gain).setScale(4, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+    }
+
     @Override
     public ChamberReadings collectReadings(int chamberId, Date timeNow) throws IOException {
-        getMessenger().sendRequest("getChRds:" + chamberId);
-        String response = getMessenger().getResponse("chRds:");
-        logger.debug("Raw chRds:{}", response);
-        String[] values = response.split(",");
-        // Expecting:
-        // gyleAgeHours,tTarget,tTargetNext,tMin,tMax,hasHeater,fridgeMinOnTimeMins,fridgeMinOffTimeMins,fridgeSwitchOnLagMins,Kp,Ki,Kd,mode,tBeer,tChamber,tExternal,tPi,heaterOutput,fridgeOn
-        final int expectedValueCount = 19;
-        if (values.length != expectedValueCount) {
-            throw new IOException("Unexpected 'chRds' response (" + values.length + " values): " + response);
-        }
-        int i = 0;
-
-        // Params (for consistency check)
-        int gyleAgeHours = parseInt(values[i++]);
-        int tTarget = parseInt(values[i++]);
-        int tTargetNext = parseInt(values[i++]);
-        int tMin = parseInt(values[i++]);
-        int tMax = parseInt(values[i++]);
-        boolean hasHeater = parseBool(values[i++]);
-        int fridgeMinOnTimeMins = parseInt(values[i++]);
-        int fridgeMinOffTimeMins = parseInt(values[i++]);
-        int fridgeSwitchOnLagMins = parseInt(values[i++]);
-        double Kp = parseDouble(values[i++]);
-        double Ki = parseDouble(values[i++]);
-        double Kd = parseDouble(values[i++]);
-        Mode mode = Mode.get(values[i++]);
+        return SerialIoThread.await(collectReadingsAsync(chamberId, timeNow));
+    }
 
-        // Readings
-        int tBeer = parseInt(values[i++]);
-        int tChamber = parseInt(values[i++]);
-        int tExternal = parseInt(values[i++]);
-        int tPi = parseInt(values[i++]);
-        int heaterOutput = parseInt(values[i++]);
-        boolean fridgeOn = parseBool(values[i++]);
-
-        if (i != expectedValueCount) {
-            throw new IllegalStateException("Should have read " + expectedValueCount + " values, actually read " + i);
-        }
+    @Override
+    public CompletableFuture<ChamberReadings> collectReadingsAsync(int chamberId, Date timeNow) {
+        return submit("getChRds", Priority.READINGS, COMMAND_TIMEOUT_MILLIS,
+                () -> requestReadings(chamberId, timeNow));
+    }
 
+    private ChamberReadings requestReadings(int chamberId, Date timeNow) throws IOException {
+        getMessenger().sendRequest("getChRds:" + chamberId);
+        ByteBuffer response = getMessenger().getResponseFrame("chRds:");
+        if (logger.isDebugEnabled())
+            logger.debug("Raw chRds:{}", SerialFrameReader.asString(response));
+        return toChamberReadings(chamberId, parseChRds(response, cursor, chRds), timeNow);
+    }
+
+    /** Checks the params reported back by the Arduino then extracts the readings. */
+    private ChamberReadings toChamberReadings(int deviceChamberId, ChRdsResponse r, Date timeNow) {
+        int chamberId = toRepositoryChamberId(deviceChamberId);
         Gyle latestGyle = chamberRepository.getChamberById(chamberId).getLatestGyle();
         if (latestGyle != null && latestGyle.isActive()) {
             // Check consistency of params
@@ -119,47 +254,139 @@ public class ArduinoChamberManager implements ChamberManager {
 
             // We send `gyleAgeHours` as a regular param but RPi also maintains the value in
             // case it goes off-line. Hence, it can occasionally get ahead by one.
-            if (params.gyleAgeHours != gyleAgeHours && params.gyleAgeHours != gyleAgeHours - 1)
-                logChamberParamMismatchError(chamberId, "gyleAgeHours", params.gyleAgeHours, gyleAgeHours);
-            if (params.tTarget != tTarget)
-                logChamberParamMismatchError(chamberId, "tTarget", params.tTarget, tTarget);
-            if (params.tTargetNext != tTargetNext)
-                logChamberParamMismatchError(chamberId, "tTargetNext", params.tTargetNext, tTargetNext);
-            if (params.tMin != tMin)
-                logChamberParamMismatchError(chamberId, "tMin", params.tMin, tMin);
-            if (params.tMax != tMax)
-                logChamberParamMismatchError(chamberId, "tMax", params.tMax, tMax);
-            if (params.hasHeater != hasHeater)
-                logChamberParamMismatchError(chamberId, "hasHeater", params.hasHeater, hasHeater);
-            if (params.fridgeMinOnTimeMins != fridgeMinOnTimeMins)
+            if (params.gyleAgeHours != r.gyleAgeHours && params.gyleAgeHours != r.gyleAgeHours - 1)
+                logChamberParamMismatchError(chamberId, "gyleAgeHours", params.gyleAgeHours, r.gyleAgeHours);
+            if (params.tTarget != r.tTarget)
+                logChamberParamMismatchError(chamberId, "tTarget", params.tTarget, r.tTarget);
+            if (params.tTargetNext != r.tTargetNext)
+                logChamberParamMismatchError(chamberId, "tTargetNext", params.tTargetNext, r.tTargetNext);
+            if (params.tMin != r.tMin)
+                logChamberParamMismatchError(chamberId, "tMin", params.tMin, r.tMin);
+            if (params.tMax != r.tMax)
+                logChamberParamMismatchError(chamberId, "tMax", params.tMax, r.tMax);
+            if (params.hasHeater != r.hasHeater)
+                logChamberParamMismatchError(chamberId, "hasHeater", params.hasHeater, r.hasHeater);
+            if (params.fridgeMinOnTimeMins != r.fridgeMinOnTimeMins)
                 logChamberParamMismatchError(chamberId, "fridgeMinOnTimeMins", params.fridgeMinOnTimeMins,
-                        fridgeMinOnTimeMins);
-            if (params.fridgeMinOffTimeMins != fridgeMinOffTimeMins)
+                        r.fridgeMinOnTimeMins);
+            if (params.fridgeMinOffTimeMins != r.fridgeMinOffTimeMins)
                 logChamberParamMismatchError(chamberId, "fridgeMinOffTimeMins", params.fridgeMinOffTimeMins,
-                        fridgeMinOffTimeMins);
-            if (params.fridgeSwitchOnLagMins != fridgeSwitchOnLagMins)
+                        r.fridgeMinOffTimeMins);
+            if (params.fridgeSwitchOnLagMins != r.fridgeSwitchOnLagMins)
                 logChamberParamMismatchError(chamberId, "fridgeSwitchOnLagMins", params.fridgeSwitchOnLagMins,
-                        fridgeSwitchOnLagMins);
-            if (params.mode != mode)
-                logChamberParamMismatchError(chamberId, "mode", params.mode, mode);
+                        r.fridgeSwitchOnLagMins);
+            if (params.mode != r.mode)
+                logChamberParamMismatchError(chamberId, "mode", params.mode, r.mode);
             // Deliberately not consistency checking the floating point values due to
             // likelihood of rounding errors.
         }
 
-        return new ChamberReadings(timeNow, tTarget, tBeer, tExternal, tChamber, tPi, hasHeater ? heaterOutput : null,
-                fridgeOn, mode);
+        return new ChamberReadings(timeNow, r.tTarget, r.tBeer, r.tExternal, r.tChamber, r.tPi,
+                r.hasHeater ? r.heaterOutput : null, r.fridgeOn, r.mode);
+    }
+
+    /**
+     * Parsed `chRds` response: the chamber's params (for consistency check) and
+     * readings. Reused from one response to the next.
+     */
+    static final class ChRdsResponse {
+        // Params
+        int gyleAgeHours;
+        int tTarget;
+        int tTargetNext;
+        int tMin;
+        int tMax;
+        boolean hasHeater;
+        int fridgeMinOnTimeMins;
+        int fridgeMinOffTimeMins;
+        int fridgeSwitchOnLagMins;
+        double Kp;
+        double Ki;
+        double Kd;
+        Mode mode;
+        // Readings
+        int tBeer;
+        int tChamber;
+        int tExternal;
+        int tPi;
+        int heaterOutput;
+        boolean fridgeOn;
+    }
+
+    static final int CHRDS_VALUE_COUNT = 19;
+
+    /**
+     * @param response
+     *                     frame positioned after the prefix
+     * @param into
+     *                     populated with the parsed values (and returned)
+     */
+    static ChRdsResponse parseChRds(ByteBuffer response, ResponseCursor cursor, ChRdsResponse into)
+            throws IOException {
+        cursor.reset("chRds", response);
+        parseChRds(cursor, into);
+        cursor.expectEnd();
+        return into;
+    }
+
+    /** As above but reading the cursor's next CHRDS_VALUE_COUNT values. */
+    private static ChRdsResponse parseChRds(ResponseCursor cursor, ChRdsResponse into) throws IOException {
+        // Expecting:
+        // gyleAgeHours,tTarget,tTargetNext,tMin,tMax,hasHeater,fridgeMinOnTimeMins,fridgeMinOffTimeMins,fridgeSwitchOnLagMins,Kp,Ki,Kd,mode,tBeer,tChamber,tExternal,tPi,heaterOutput,fridgeOn
+        into.gyleAgeHours = cursor.nextInt();
+        into.tTarget = cursor.nextInt();
+        into.tTargetNext = cursor.nextInt();
+        into.tMin = cursor.nextInt();
+        into.tMax = cursor.nextInt();
+        into.hasHeater = cursor.nextBool();
+        into.fridgeMinOnTimeMins = cursor.nextInt();
+        into.fridgeMinOffTimeMins = cursor.nextInt();
+        into.fridgeSwitchOnLagMins = cursor.nextInt();
+        into.Kp = cursor.nextDouble();
+        into.Ki = cursor.nextDouble();
+        into.Kd = cursor.nextDouble();
+        into.mode = parseMode(cursor);
+
+        into.tBeer = cursor.nextInt();
+        into.tChamber = cursor.nextInt();
+        into.tExternal = cursor.nextInt();
+        into.tPi = cursor.nextInt();
+        into.heaterOutput = cursor.nextInt();
+        into.fridgeOn = cursor.nextBool();
+        return into;
+    }
+
+    private static Mode parseMode(ResponseCursor cursor) throws IOException {
+        char code = cursor.nextChar();
+        try {
+            return Mode.get(code);
+        } catch (IllegalArgumentException e) {
+            throw cursor.valueError(e.getMessage());
+        }
     }
 
     @Override
     public void slurpLogMessages() throws IOException {
+        SerialIoThread.await(slurpLogMessagesAsync());
+    }
+
+    @Override
+    public CompletableFuture<Void> slurpLogMessagesAsync() {
+        return submit("getLogMsgs", Priority.HOUSEKEEPING, LOG_SLURP_TIMEOUT_MILLIS, () -> {
+            requestLogMessages();
+            return null;
+        });
+    }
+
+    private void requestLogMessages() throws IOException {
         ArduinoMessenger messenger = getMessenger();
         try {
             messenger.sendRequest("getLogMsgs");
             while (true) {
-                String logMessage = messenger.getResponse("logMsg:", "ack");
+                ByteBuffer logMessage = messenger.getResponseFrame("logMsg:", "ack");
                 if (logMessage == null)
                     break;
-                logLogMessage(logMessage);
+                logLogMessage(logMessage, cursor);
             }
         } catch (Throwable t) {
             if (messenger.getRequestCount() == 1 && t instanceof SerialPortTimeoutException) {
@@ -175,42 +402,244 @@ public class ArduinoChamberManager implements ChamberManager {
     }
 
     @Override
-    public void handleIOException(IOException e) {
-        if (messenger != null) {
-            logger.info("Closing ArduinoMessenger after IOException");
-            messenger.close();
-            messenger = null;
+    public Map<Integer, ChamberReadings> runCollectionCycle(Map<Integer, ChamberParameters> paramsByChamberId,
+            Set<Integer> readingsChamberIds, Date timeNow) throws IOException {
+        return SerialIoThread.await(runCollectionCycleAsync(paramsByChamberId, readingsChamberIds, timeNow));
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, ChamberReadings>> runCollectionCycleAsync(
+            Map<Integer, ChamberParameters> paramsByChamberId, Set<Integer> readingsChamberIds, Date timeNow) {
+        return submit("collectionCycle", Priority.READINGS, COLLECTION_CYCLE_TIMEOUT_MILLIS, () -> {
+            try {
+                return getProtocolVersion() >= PROTOCOL_VERSION_BATCHED
+                        ? requestCycle(paramsByChamberId, readingsChamberIds, timeNow)
+                        : requestCycleV1(paramsByChamberId, readingsChamberIds, timeNow);
+            } catch (IOException | RuntimeException e) {
+                // Can't be sure which params got through (if the request was too long, none did)
+                paramsSyncTokenByChamberId.clear();
+                throw e;
+            }
+        });
+    }
+
+    /** The original protocol's cycle: several round trips per chamber. */
+    private Map<Integer, ChamberReadings> requestCycleV1(Map<Integer, ChamberParameters> paramsByChamberId,
+            Set<Integer> readingsChamberIds, Date timeNow) throws IOException {
+        Map<Integer, ChamberReadings> readingsByChamberId = new LinkedHashMap<>();
+        for (Map.Entry<Integer, ChamberParameters> entry : paramsByChamberId.entrySet()) {
+            int chamberId = entry.getKey();
+            requestLogMessages();
+            sendParameters(chamberId, entry.getValue());
+            requestLogMessages();
+            if (readingsChamberIds.contains(chamberId)) {
+                readingsByChamberId.put(chamberId, requestReadings(chamberId, timeNow));
+                requestLogMessages();
+            }
         }
+        return readingsByChamberId;
     }
 
-    private static void logLogMessage(String logMessage) throws IOException {
-        String[] values = logMessage.split(",");
+    /**
+     * Protocol v2's cycle: a single round trip. Request: `cyc:` followed by the
+     * `setChParams:` payload for each chamber, separated by ';'. Response: `cyc:`
+     * followed by the chamber count, then for each chamber ';' + chamberId + ',' +
+     * the `chRds:` payload, then for each pending log message ';' + the `logMsg:`
+     * payload.
+     *
+     * From v3, a chamber's params are omitted if unchanged or, if only the moving
+     * params have changed, reduced to chamberId,gyleAgeHours,tTarget,tTargetNext.
+     * A full set of params is followed by a new sync token, and the chamber's
+     * readings by the token the Arduino last received.
+     */
+    private Map<Integer, ChamberReadings> requestCycle(Map<Integer, ChamberParameters> paramsByChamberId,
+            Set<Integer> readingsChamberIds, Date timeNow) throws IOException {
+        boolean deltas = protocolVersion >= PROTOCOL_VERSION_DELTA_PARAMS;
+        boolean fullSync = ++cyclesSinceFullParamsSync >= FULL_PARAMS_SYNC_CYCLES;
+        if (fullSync)
+            cyclesSinceFullParamsSync = 0;
+
+        StringBuilder request = new StringBuilder("cyc:");
+        for (Map.Entry<Integer, ChamberParameters> entry : paramsByChamberId.entrySet()) {
+            int chamberId = entry.getKey();
+            ChamberParameters params = entry.getValue();
+            String paramsCsv;
+            ChamberParameters synced = chamberParametersByChamberId.get(chamberId);
+            if (deltas && !fullSync && synced != null && paramsSyncTokenByChamberId.containsKey(chamberId)
+                    && synced.hasSameNonMovingParams(params)) {
+                if (synced.equals(params))
+                    continue;
+                paramsCsv = movingParamsCsv(chamberId, params);
+            } else if (deltas) {
+                int token = nextParamsSyncToken();
+                paramsSyncTokenByChamberId.put(chamberId, token);
+                paramsCsv = paramsCsv(chamberId, params) + DELIM + token;
+            } else {
+                paramsCsv = paramsCsv(chamberId, params);
+            }
+            if (request.length() > "cyc:".length())
+                request.append(';');
+            request.append(paramsCsv);
+            chamberParametersByChamberId.put(chamberId, params);
+        }
+        // Examples for console test:
+        // ^cyc:1,12,171,172,-10,400,1,10,10,5,2.1,0.01,20.5,A,1;2,-1,100,100,-10,150,0,10,10,5,1.9,0.015,19.5,H,2$
+        // ^cyc:1,13,172,173$
+        getMessenger().sendRequest(request.toString());
+        ByteBuffer response = getMessenger().getResponseFrame("cyc:");
+        if (logger.isDebugEnabled())
+            logger.debug("Raw cyc:{}", SerialFrameReader.asString(response));
+
+        Map<Integer, ChamberReadings> readingsByChamberId = new LinkedHashMap<>();
+        ByteBuffer segment = response.duplicate();
+        int end = response.limit();
+        int chamberCount = 0;
+        int segmentIndex = 0;
+        for (int from = response.position(); from <= end; segmentIndex++) {
+            int to = from;
+            while (to < end && response.get(to) != ';')
+                to++;
+            segment.clear();
+            segment.position(from).limit(to);
+            from = to + 1;
+
+            if (segmentIndex == 0) {
+                cursor.reset("cyc", segment);
+                chamberCount = cursor.nextInt();
+                cursor.expectEnd();
+            } else if (segmentIndex <= chamberCount) {
+                cursor.reset("cyc", segment);
+                int chamberId = cursor.nextInt();
+                parseChRds(cursor, chRds);
+                if (deltas)
+                    checkParamsSyncToken(chamberId, cursor.nextInt());
+                cursor.expectEnd();
+                if (readingsChamberIds.contains(chamberId))
+                    readingsByChamberId.put(chamberId, toChamberReadings(chamberId, chRds, timeNow));
+            } else {
+                logLogMessage(segment, cursor);
+            }
+        }
+        if (segmentIndex <= chamberCount)
+            throw new IOException("Truncated 'cyc' response (readings for " + (segmentIndex - 1) + " of "
+                    + chamberCount + " chambers): " + SerialFrameReader.asString(response));
+        return readingsByChamberId;
+    }
+
+    /**
+     * A token other than that sent with the last full set of params means the
+     * Arduino has restarted (or missed a request) so may not have all the params
+     * we think it has. If so, they'll be sent in full next cycle.
+     */
+    private void checkParamsSyncToken(int chamberId, int token) {
+        Integer expected = paramsSyncTokenByChamberId.get(chamberId);
+        if (expected != null && expected != token) {
+            logger.warn("Chamber {} params sync token is {} rather than {}. Will resend params in full.", chamberId,
+                    token, expected);
+            paramsSyncTokenByChamberId.remove(chamberId);
+        }
+    }
+
+    private int nextParamsSyncToken() {
+        lastParamsSyncToken = lastParamsSyncToken % MAX_PARAMS_SYNC_TOKEN + 1; // Never 0
+        return lastParamsSyncToken;
+    }
+
+    /**
+     * Asks the Arduino which protocol version it speaks, if not already known for
+     * the current messenger.
+     */
+    private int getProtocolVersion() throws IOException {
+        if (protocolVersion == 0) {
+            ArduinoMessenger messenger = getMessenger();
+            messenger.sendRequest("version");
+            try {
+                while (protocolVersion == 0) {
+                    String response = messenger.getResponse();
+                    if (response.startsWith("version:")) {
+                        try {
+                            protocolVersion = Integer.parseInt(response.substring("version:".length()));
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Unexpected 'version' response: " + response);
+                        }
+                    } else if (response.startsWith("UnrecCmd:")) {
+                        protocolVersion = 1; // Predates the `version` request
+                    } else {
+                        logger.warn("Expected 'version' response but received [{}]", response);
+                    }
+                }
+                logger.info("Arduino speaks protocol version {}", protocolVersion);
+            } catch (SerialPortTimeoutException e) {
+                // As per requestLogMessages(), the first request after opening the port tends
+                // to time out (the MCU is restarting). Assume the original protocol for now and
+                // ask again next time.
+                logger.debug("'version' request timed out");
+                return 1;
+            }
+        }
+        return protocolVersion;
+    }
+
+    @Override
+    public SerialConnection.State getConnectionState() {
+        return connection.getState();
+    }
+
+    /** Stops the I/O thread (called by Spring on shutdown). */
+    @Override
+    public void close() {
+        ioThread.close();
+        // The messenger belongs to the I/O thread, so can only be closed once that has stopped
+        connection.close(ioThread.isStopped());
+    }
+
+    /**
+     * Records the log message in the log store (if any). Only warnings and errors
+     * also go to the text log, unless there is no log store.
+     */
+    private void logLogMessage(ByteBuffer logMessage, ResponseCursor cursor) throws IOException {
+        cursor.reset("logMsg", logMessage);
         // Expecting:
         // sequenceNum,logLevel,prefix,id,chamberId,buffLen,b64Buffer
         // though buffLen and b64Buffer will be absent if no binary data.
-        if (values.length != 5 && values.length != 7) {
-            throw new IOException("Unexpected 'logMsg' response: " + logMessage);
+        int sequenceNum = cursor.nextInt();
+        int logLevel = cursor.nextInt();
+        String prefix = cursor.nextString();
+        String idStr = cursor.nextString();
+        if (idStr.isEmpty())
+            throw cursor.valueError("empty id");
+        char id = idStr.charAt(0);
+        int chamberId = toRepositoryChamberId(cursor.nextInt());
+
+        byte[] buffer = null;
+        if (cursor.hasMoreValues()) {
+            int buffLen = cursor.nextInt();
+            String b64Buffer = cursor.nextString();
+            cursor.expectEnd();
+            buffer = Base64.getDecoder().decode(b64Buffer);
+            if (buffer.length != buffLen) {
+                throw new IOException("Bad 'logMsg' response: " + SerialFrameReader.asString(logMessage)
+                        + ". Actual buffer length was " + buffer.length + " rather than " + buffLen + ".");
+            }
+        }
+
+        if (logStore != null) {
+            try {
+                logStore.append(clock.millis(), sequenceNum, logLevel, prefix, id, chamberId,
+                        buffer != null ? buffer : NO_BYTES);
+            } catch (IOException e) {
+                // Not a comms problem, so mustn't propagate
+                logger.error("Failed to store Arduino log message", e);
+            }
+            if (logLevel < 2)
+                return;
         }
-        int i = 0;
-        int sequenceNum = parseInt(values[i++]);
-        int logLevel = parseInt(values[i++]);
-        String prefix = values[i++];
-        char id = values[i++].charAt(0);
-        int chamberId = parseInt(values[i++]);
 
         StringBuffer sb = new StringBuffer();
         sb.append("seqNum:" + sequenceNum + "; ");
         sb.append(prefix + ":" + id + "; ");
         sb.append("chamber:" + chamberId);
-
-        if (values.length == 7) {
-            int buffLen = parseInt(values[i++]);
-            String b64Buffer = values[i++];
-            byte[] buffer = Base64.getDecoder().decode(b64Buffer);
-            if (buffer.length != buffLen) {
-                throw new IOException("Bad 'logMsg' response: " + logMessage + ". Actual buffer length was "
-                        + buffer.length + " rather than " + buffLen + ".");
-            }
+        if (buffer != null) {
             sb.append("; buffer: ");
             sb.append(interpretBuffer(prefix, id, buffer));
         }
@@ -234,7 +663,7 @@ public class ArduinoChamberManager implements ChamberManager {
         }
     }
 
-    private static String interpretBuffer(String prefix, char id, byte[] buffer) {
+    static String interpretBuffer(String prefix, char id, byte[] buffer) {
         switch (prefix) {
         case "MN":
             switch (id) {
@@ -465,22 +894,46 @@ public class ArduinoChamberManager implements ChamberManager {
                 actual);
     }
 
+    /**
+     * @throws IOException
+     *                         straight away if not connected
+     */
     private ArduinoMessenger getMessenger() throws IOException {
-        if (messenger == null)
-            messenger = new ArduinoMessenger(); // can throw
+        ArduinoMessenger current = connection.getMessenger();
+        if (current != messenger) {
+            // Reconnected, so possibly to an MCU that has restarted or been re-flashed
+            messenger = current;
+            protocolVersion = 0;
+            paramsSyncTokenByChamberId.clear();
+        }
         return messenger;
     }
 
-    private static String csv(Object... values) {
-        return Joiner.on(DELIM).join(values);
+    /**
+     * Queues the command for the I/O thread, reporting its outcome to the
+     * connection.
+     */
+    private <T> CompletableFuture<T> submit(String name, Priority priority, long timeoutMillis,
+            SerialIoThread.Command<T> command) {
+        return ioThread.submit(name, priority, timeoutMillis, () -> {
+            try {
+                T result = command.execute();
+                connection.succeeded();
+                return result;
+            } catch (IOException e) {
+                connection.failed(e);
+                throw e;
+            }
+        });
     }
 
-    private static int parseInt(String str) {
-        return Integer.parseInt(str, 10);
+    @Override
+    public SerialStats.Snapshot getSerialStats() {
+        return serialStats.snapshot();
     }
 
-    private static boolean parseBool(String str) {
-        return "1".equals(str) || "T".equals(str);
+    private static String csv(Object... values) {
+        return Joiner.on(DELIM).join(values);
     }
 
 }
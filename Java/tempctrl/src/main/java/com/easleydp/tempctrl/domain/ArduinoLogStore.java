@@ -0,0 +1,251 @@
+package com.easleydp.tempctrl.domain;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Keeps the log records slurped from the Arduino, raw, in a fixed size binary
+ * ring file. Once full, each new record overwrites the oldest. Records are only
+ * decoded into something human readable when queried.
+ *
+ * File layout: a header (magic, format version, capacity, count of records ever
+ * appended) followed by `capacity` fixed size record slots:
+ *
+ * <pre>
+ *  0  timestamp (millis)  8 bytes
+ *  8  sequenceNum         1
+ *  9  logLevel            1
+ * 10  chamberId           1
+ * 11  id                  1 (ASCII char)
+ * 12  prefix              4 (ASCII, zero padded)
+ * 16  buffer length       1
+ * 17  buffer             15 (zero padded)
+ * </pre>
+ *
+ * Thread-safe: records are appended by the Arduino I/O thread and queried by
+ * HTTP threads.
+ */
+public class ArduinoLogStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ArduinoLogStore.class);
+
+    private static final int MAGIC = 0x5443414C; // "TCAL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int HEADER_COUNT_OFFSET = 12;
+
+    static final int RECORD_SIZE = 32;
+    private static final int PREFIX_LENGTH = 4;
+    static final int MAX_BUFFER_LENGTH = 15;
+
+    private static final int QUERY_BLOCK_RECORDS = 256;
+
+    private final Path file;
+    private final int capacity;
+    private final FileChannel channel;
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+    private final ByteBuffer countBuffer = ByteBuffer.allocate(Long.BYTES);
+    private long count; // Records ever appended
+
+    /**
+     * Opens the store, creating the file if necessary. An existing file with a
+     * different format or capacity is started afresh.
+     */
+    public ArduinoLogStore(Path file, int capacity) throws IOException {
+        Assert.isTrue(capacity > 0, "capacity should be positive");
+        this.file = file;
+        this.capacity = capacity;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (readFully(header, 0) && header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_VERSION
+                && header.getInt(8) == capacity) {
+            count = header.getLong(HEADER_COUNT_OFFSET);
+        } else {
+            if (channel.size() > 0)
+                logger.warn("Starting {} afresh (unrecognised format or different capacity)", file);
+            channel.truncate(0);
+            header.clear();
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(capacity).putLong(0);
+            header.clear();
+            writeFully(header, 0);
+            count = 0;
+        }
+    }
+
+    public synchronized void append(long timestamp, int sequenceNum, int logLevel, String prefix, char id,
+            int chamberId, byte[] buffer) throws IOException {
+        int buffLen = buffer.length;
+        if (buffLen > MAX_BUFFER_LENGTH) {
+            logger.warn("Truncating {} byte buffer of {}:{} log record", buffLen, prefix, id);
+            buffLen = MAX_BUFFER_LENGTH;
+        }
+        ByteBuffer r = recordBuffer;
+        r.clear();
+        r.putLong(timestamp);
+        r.put((byte) sequenceNum);
+        r.put((byte) logLevel);
+        r.put((byte) chamberId);
+        r.put((byte) id);
+        for (int i = 0; i < PREFIX_LENGTH; i++)
+            r.put(i < prefix.length() ? (byte) prefix.charAt(i) : 0);
+        r.put((byte) buffLen);
+        r.put(buffer, 0, buffLen);
+        while (r.hasRemaining())
+            r.put((byte) 0);
+        r.flip();
+        writeFully(r, slotPosition(count % capacity));
+
+        count++;
+        countBuffer.clear();
+        countBuffer.putLong(0, count);
+        writeFully(countBuffer, HEADER_COUNT_OFFSET);
+    }
+
+    /** Record returned by `query()`, decoded. */
+    public static final class Entry {
+        public final long timestamp;
+        public final int sequenceNum;
+        public final int logLevel;
+        public final String prefix;
+        public final char id;
+        public final int chamberId;
+        /** The raw buffer, as hex bytes */
+        public final String buffer;
+        /** The buffer interpreted as per the prefix and id */
+        public final String text;
+
+        Entry(long timestamp, int sequenceNum, int logLevel, String prefix, char id, int chamberId, byte[] buffer) {
+            this.timestamp = timestamp;
+            this.sequenceNum = sequenceNum;
+            this.logLevel = logLevel;
+            this.prefix = prefix;
+            this.id = id;
+            this.chamberId = chamberId;
+            this.buffer = ArduinoChamberManager.bytesToStringRepOfRawBytes(buffer);
+            this.text = buffer.length > 0 ? interpret(prefix, id, buffer) : "";
+        }
+
+        private static String interpret(String prefix, char id, byte[] buffer) {
+            try {
+                return ArduinoChamberManager.interpretBuffer(prefix, id, buffer);
+            } catch (RuntimeException e) {
+                // Mustn't spoil the whole query
+                return "{error: \"" + e + "\"}";
+            }
+        }
+    }
+
+    /**
+     * Returns the most recent records matching the criteria, oldest first.
+     *
+     * @param fromMillis
+     *                       inclusive
+     * @param toMillis
+     *                       inclusive
+     * @param prefix
+     *                       null for any
+     * @param id
+     *                       null for any
+     * @param chamberId
+     *                       null for any
+     * @param limit
+     *                       the maximum number of records to return
+     */
+    public synchronized List<Entry> query(long fromMillis, long toMillis, String prefix, Character id,
+            Integer chamberId, int limit) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        ByteBuffer block = ByteBuffer.allocate(QUERY_BLOCK_RECORDS * RECORD_SIZE);
+        int blockStartSlot = 0;
+        int blockSlotCount = 0;
+        long oldest = Math.max(0, count - capacity);
+        // Newest first, reading a block of slots at a time
+        for (long n = count - 1; n >= oldest && entries.size() < limit; n--) {
+            int slot = (int) (n % capacity);
+            if (slot < blockStartSlot || slot >= blockStartSlot + blockSlotCount) {
+                blockStartSlot = Math.max(0, slot - QUERY_BLOCK_RECORDS + 1);
+                blockSlotCount = slot - blockStartSlot + 1;
+                block.clear();
+                block.limit(blockSlotCount * RECORD_SIZE);
+                if (!readFully(block, slotPosition(blockStartSlot)))
+                    throw new IOException("Unexpected end of " + file);
+            }
+            int offset = (slot - blockStartSlot) * RECORD_SIZE;
+
+            // Not assuming timestamps are in order, since the clock may have been adjusted.
+            long timestamp = block.getLong(offset);
+            if (timestamp < fromMillis || timestamp > toMillis)
+                continue;
+            int recChamberId = block.get(offset + 10);
+            if (chamberId != null && chamberId != recChamberId)
+                continue;
+            char recId = (char) block.get(offset + 11);
+            if (id != null && id != recId)
+                continue;
+            String recPrefix = readPrefix(block, offset + 12);
+            if (prefix != null && !prefix.equals(recPrefix))
+                continue;
+
+            int buffLen = block.get(offset + 16);
+            byte[] buffer = new byte[buffLen];
+            for (int i = 0; i < buffLen; i++)
+                buffer[i] = block.get(offset + 17 + i);
+            entries.add(new Entry(timestamp, block.get(offset + 8) & 0xFF, block.get(offset + 9), recPrefix, recId,
+                    recChamberId, buffer));
+        }
+        Collections.reverse(entries);
+        return entries;
+    }
+
+    /** @return the number of records currently held. */
+    public synchronized int size() {
+        return (int) Math.min(count, capacity);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private static String readPrefix(ByteBuffer block, int offset) {
+        int len = 0;
+        while (len < PREFIX_LENGTH && block.get(offset + len) != 0)
+            len++;
+        byte[] bytes = new byte[len];
+        for (int i = 0; i < len; i++)
+            bytes[i] = block.get(offset + i);
+        return new String(bytes, US_ASCII);
+    }
+
+    private static long slotPosition(long slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    /** @return false if the end of the file was reached first. */
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0)
+                return false;
+            position += n;
+        }
+        return true;
+    }
+}
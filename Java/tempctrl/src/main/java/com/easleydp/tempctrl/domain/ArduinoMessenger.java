@@ -3,16 +3,16 @@ package com.easleydp.tempctrl.domain;
 import static java.nio.charset.StandardCharsets.*;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
 
 import com.fazecast.jSerialComm.SerialPort;
-import com.fazecast.jSerialComm.SerialPortTimeoutException;
 
 /**
  * NOTE: Although this class implements AutoCloseable this should not be taken
@@ -25,13 +25,24 @@ import com.fazecast.jSerialComm.SerialPortTimeoutException;
 public class ArduinoMessenger implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(ArduinoMessenger.class);
 
-    private SerialPort comPort;
+    private final SerialTransport transport;
+    private final SerialFrameReader frameReader;
     private int requestCount = 0;
 
-    private static final char CHAR_START = '^';
-    private static final char CHAR_END = '$';
-    private static final byte BYTE_START = ("" + CHAR_START).getBytes(US_ASCII)[0];
-    private static final byte BYTE_END = ("" + CHAR_END).getBytes(US_ASCII)[0];
+    private SerialStats stats = null;
+    private String pendingRequest = null; // Awaiting its first response frame, for stats
+    private long pendingRequestNanos;
+
+    private static final char CHAR_START = (char) SerialFrameReader.BYTE_START;
+    private static final char CHAR_END = (char) SerialFrameReader.BYTE_END;
+
+    /**
+     * The longest request (excluding `CHAR_START` and `CHAR_END`) the Arduino can
+     * receive. Its input buffer (`ipBuf` in MessageHandlingDomain.cpp) is 160
+     * chars including the terminating NUL; anything longer is discarded with an
+     * `ipBufOvr:` log message, so the request would only time out.
+     */
+    static final int MAX_REQUEST_LENGTH = 160 - 1;
 
     // We'll go for any of these common Arduino USB serial port names (first one we
     // find). Differs from board to board. (If find none of them, we'll fall back to
@@ -48,12 +59,76 @@ public class ArduinoMessenger implements AutoCloseable {
     }
 
     public ArduinoMessenger() throws IOException {
-        comPort = findUsbSerialPort();
+        this(openUsbSerialPort());
+    }
+
+    /**
+     * @param recorder
+     *                     to capture the traffic; null for none
+     */
+    public ArduinoMessenger(SerialRecorder recorder) throws IOException {
+        this(openUsbSerialPort(), recorder);
+    }
+
+    /**
+     * @param portName
+     *                     the system name of the port to open (e.g. "ttyACM1"),
+     *                     where there's more than one device so no guessing
+     * @param recorder
+     *                     to capture the traffic; null for none
+     */
+    public ArduinoMessenger(String portName, SerialRecorder recorder) throws IOException {
+        this(openSerialPort(portName), recorder);
+    }
+
+    public ArduinoMessenger(SerialTransport transport) {
+        this(transport, null);
+    }
+
+    /**
+     * @param recorder
+     *                     to capture the traffic; null for none
+     */
+    public ArduinoMessenger(SerialTransport transport, SerialRecorder recorder) {
+        this.transport = recorder != null ? recorder.wrap(transport) : transport;
+        frameReader = new SerialFrameReader(this::read);
+    }
+
+    /** @param stats where to record the traffic; null for nowhere */
+    public void setStats(SerialStats stats) {
+        this.stats = stats;
+    }
+
+    private int read(byte[] buffer, int offset, int length) throws IOException {
+        int n = transport.read(buffer, offset, length);
+        if (n > 0 && stats != null)
+            stats.addBytesIn(n);
+        return n;
+    }
+
+    private static SerialTransport openUsbSerialPort() throws IOException {
+        SerialPort comPort = findUsbSerialPort();
         if (comPort == null)
             throw new IOException("Failed to find USB serial port");
         logger.info("Found USB serial port {}", comPort.getSystemPortName());
-        comPort.openPort();
+        return open(comPort);
+    }
+
+    private static SerialTransport openSerialPort(String portName) throws IOException {
+        SerialPort comPort;
+        try {
+            comPort = SerialPort.getCommPort(portName);
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to find serial port " + portName, e);
+        }
+        return open(comPort);
+    }
+
+    private static SerialTransport open(SerialPort comPort) throws IOException {
+        if (!comPort.openPort())
+            throw new IOException("Failed to open serial port " + comPort.getSystemPortName());
         comPort.setBaudRate(57600);
+        return new JSerialCommTransport(comPort);
     }
 
     /** Returns the most likely looking USB serial port or null if none. */
@@ -102,8 +177,14 @@ public class ArduinoMessenger implements AutoCloseable {
     /**
      * Sends the specified request. Takes care of topping & tailing the request with
      * `CHAR_START` and `CHAR_END`.
+     *
+     * @throws IllegalArgumentException
+     *                                      if the request exceeds
+     *                                      `MAX_REQUEST_LENGTH`.
      */
     public void sendRequest(String request) throws IOException {
+        Assert.isTrue(request.length() <= MAX_REQUEST_LENGTH,
+                () -> "Request exceeds " + MAX_REQUEST_LENGTH + " chars: " + request);
         logger.debug("sendRequest(\"{}\")", request);
 
         // Before sending the request ensure there is no stray data waiting to be read,
@@ -113,52 +194,27 @@ public class ArduinoMessenger implements AutoCloseable {
         purgeReadBuffer();
 
         byte[] bytes = (CHAR_START + request + CHAR_END).getBytes(US_ASCII);
-        comPort.writeBytes(bytes, bytes.length);
+        transport.write(bytes);
 
         requestCount++;
+        if (stats != null) {
+            stats.addBytesOut(bytes.length);
+            pendingRequest = request;
+            pendingRequestNanos = System.nanoTime();
+        }
     }
 
     private void purgeReadBuffer() throws IOException {
-        comPort.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING, 100, 0);
-        List<Byte> stringBytesList = null;
-        byte[] byteBuffer = new byte[1];
-        int consecutiveZeroCount = 0;
-        while (true) {
-            int numRead = comPort.readBytes(byteBuffer, 1, 0);
-            if (numRead == 0)
-                break;
-            if (stringBytesList == null)
-                stringBytesList = new ArrayList<Byte>();
-            byte b = byteBuffer[0];
-            if (b != 10 && b != 13) // Anything other than CR and LF is interesting...
-            {
-                // Receiving a ton of zeros is symptomatic of the USB port being already in
-                // use. Worth detecting this and bailing.
-                if (b == 0) {
-                    if (++consecutiveZeroCount >= 1000)
-                        throw new IOException("USB port appears to be already in use.");
-                } else {
-                    consecutiveZeroCount = 0;
-                    if (isPrintable(b))
-                        stringBytesList.add(b);
-                    else
-                        logger.warn("Non-printable character received while purging: {}", b);
-                }
-            }
-        }
-
-        if (stringBytesList != null && !stringBytesList.isEmpty()) {
-            byte[] stringBytesArray = new byte[stringBytesList.size()];
-            int i = 0;
-            for (Byte b : stringBytesList)
-                stringBytesArray[i++] = b;
-            String purged = new String(stringBytesArray, US_ASCII);
+        transport.setReadTimeout(100);
+        String purged = frameReader.purge();
+        if (purged != null) {
             logger.warn("Found unread data before sending request: {}", purged);
+            if (stats != null)
+                stats.addPurgedBytes(purged.length());
         }
 
-        // Restore the usual blocking mode and timeouts.
-        // <https://github.com/Fazecast/jSerialComm/wiki/Blocking-and-Semiblocking-Reading-Usage-Example>
-        comPort.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING, 10 * 1000, 0);
+        // Restore the usual timeout.
+        transport.setReadTimeout(10 * 1000);
     }
 
     /**
@@ -168,53 +224,16 @@ public class ArduinoMessenger implements AutoCloseable {
      * @return String, never null (though possibly empty).
      */
     public String getResponse() throws IOException {
-        List<Byte> stringBytesList = null;
-        byte[] byteBuffer = new byte[1];
-        int consecutiveZeroCount = 0;
-        while (true) {
-            int numRead = comPort.readBytes(byteBuffer, 1, 0);
-            if (numRead == 0)
-                throw new SerialPortTimeoutException("The read operation timed out before any data was returned.");
-            byte b = byteBuffer[0];
-            if (stringBytesList == null) // not collecting
-            {
-                if (b == BYTE_START) {
-                    stringBytesList = new ArrayList<Byte>();
-                } else if (b != 10 && b != 13) // Anything other than CR and LF is interesting...
-                {
-                    // Receiving a ton of zeros is symptomatic of the USB port being already in
-                    // use. Worth detecting this and bailing.
-                    if (b == 0) {
-                        if (++consecutiveZeroCount >= 1000)
-                            throw new IOException("USB port appears to be already in use.");
-                    } else {
-                        consecutiveZeroCount = 0;
-                        if (isPrintable(b))
-                            logger.warn("Expected start byte but received {}} ('{}')", b, Character.toString((char) b));
-                        else
-                            logger.warn("Expected start byte but received {}", b);
-                    }
-                }
-            } else // collecting
-            {
-                if (b == BYTE_END)
-                    break;
-                if (isPrintable(b))
-                    stringBytesList.add(b);
-                else
-                    logger.warn("Non-printable character received while collecting: {}", b);
-            }
-        }
-
-        byte[] stringBytesArray = new byte[stringBytesList.size()];
-        int i = 0;
-        for (Byte b : stringBytesList)
-            stringBytesArray[i++] = b;
-        return new String(stringBytesArray, US_ASCII);
+        return SerialFrameReader.asString(readFrame());
     }
 
-    private static boolean isPrintable(byte b) {
-        return 32 <= b && b <= 126;
+    private ByteBuffer readFrame() throws IOException {
+        ByteBuffer frame = frameReader.readFrame();
+        if (pendingRequest != null) {
+            stats.recordRequest(pendingRequest, (System.nanoTime() - pendingRequestNanos) / 1000);
+            pendingRequest = null;
+        }
+        return frame;
     }
 
     /**
@@ -237,13 +256,7 @@ public class ArduinoMessenger implements AutoCloseable {
      * @throws IOException
      */
     public String getResponse(String expectedPrefix) throws IOException {
-        while (true) {
-            String response = getResponse(); // SerialPortTimeoutException may also end the loop
-            int i = response.indexOf(expectedPrefix);
-            if (i == 0)
-                return response.substring(expectedPrefix.length());
-            logger.warn("Expected prefix [{}...] but received [{}]", expectedPrefix, response);
-        }
+        return SerialFrameReader.asString(getResponseFrame(expectedPrefix));
     }
 
     /**
@@ -255,20 +268,57 @@ public class ArduinoMessenger implements AutoCloseable {
      * @throws IOException
      */
     public String getResponse(String expectedPrefix, String endResponse) throws IOException {
+        ByteBuffer frame = getResponseFrame(expectedPrefix, endResponse);
+        return frame != null ? SerialFrameReader.asString(frame) : null;
+    }
+
+    /**
+     * As `String getResponse(String expectedPrefix)` but without creating any
+     * Strings.
+     *
+     * @return the frame positioned after the prefix. Only valid until the next
+     *         response is read.
+     */
+    public ByteBuffer getResponseFrame(String expectedPrefix) throws IOException {
         while (true) {
-            String response = getResponse(); // SerialPortTimeoutException may also end the loop
-            if (endResponse.equals(response))
+            ByteBuffer frame = readFrame(); // SerialPortTimeoutException may also end the loop
+            if (startsWith(frame, expectedPrefix))
+                return frame.position(expectedPrefix.length());
+            logger.warn("Expected prefix [{}...] but received [{}]", expectedPrefix, SerialFrameReader.asString(frame));
+        }
+    }
+
+    /**
+     * As `String getResponse(String expectedPrefix, String endResponse)` but
+     * without creating any Strings.
+     *
+     * @return the frame positioned after the prefix, or null if the endResponse
+     *         was received. Only valid until the next response is read.
+     */
+    public ByteBuffer getResponseFrame(String expectedPrefix, String endResponse) throws IOException {
+        while (true) {
+            ByteBuffer frame = readFrame(); // SerialPortTimeoutException may also end the loop
+            if (frame.remaining() == endResponse.length() && startsWith(frame, endResponse))
                 return null;
-            int i = response.indexOf(expectedPrefix);
-            if (i == 0)
-                return response.substring(expectedPrefix.length());
-            logger.warn("Expected prefix [" + expectedPrefix + "...] but received [" + response + "]");
+            if (startsWith(frame, expectedPrefix))
+                return frame.position(expectedPrefix.length());
+            logger.warn("Expected prefix [{}...] but received [{}]", expectedPrefix, SerialFrameReader.asString(frame));
         }
     }
 
+    private static boolean startsWith(ByteBuffer frame, String prefix) {
+        int len = prefix.length();
+        if (frame.remaining() < len)
+            return false;
+        for (int i = 0; i < len; i++)
+            if (frame.get(i) != prefix.charAt(i))
+                return false;
+        return true;
+    }
+
     @Override
     public void close() {
-        comPort.closePort();
+        transport.close();
     }
 
     public int getRequestCount() {
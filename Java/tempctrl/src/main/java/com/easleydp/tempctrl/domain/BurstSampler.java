@@ -0,0 +1,103 @@
+package com.easleydp.tempctrl.domain;
+
+import static com.easleydp.tempctrl.domain.PropertyUtils.getBoolean;
+import static com.easleydp.tempctrl.domain.PropertyUtils.getInteger;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Adaptive sampling for a chamber: temporarily raises the readings rate when
+ * something interesting happens, namely the fridge switching on or off, the
+ * heater output swinging, or tBeer straying from tTarget. These are the times
+ * of most interest when tuning the PID params.
+ *
+ * On such a trigger the period drops to the burst period for the burst
+ * duration (extended by the chamber's fridge switch-on lag, so as to cover the
+ * effect of a switch-on). Thereafter it decays back to the base period,
+ * doubling with each reading that isn't itself a trigger.
+ *
+ * Not thread-safe; owned by a Chamber.
+ */
+public class BurstSampler {
+    private final int basePeriodMillis;
+    private final int burstPeriodMillis;
+    private final long burstMillis;
+    private final int heaterOutputDelta;
+    private final int tBeerDeviation;
+
+    private ChamberReadings previous = null;
+    private long burstUntilMillis = Long.MIN_VALUE;
+    private int periodMillis;
+
+    /**
+     * @param heaterOutputDelta
+     *                              the change in heater output (percent) that
+     *                              triggers a burst
+     * @param tBeerDeviation
+     *                              the deviation of tBeer from tTarget (degrees x
+     *                              10) beyond which readings are bursts
+     */
+    public BurstSampler(int basePeriodMillis, int burstPeriodMillis, long burstMillis, int heaterOutputDelta,
+            int tBeerDeviation) {
+        this.basePeriodMillis = basePeriodMillis;
+        this.burstPeriodMillis = Math.min(burstPeriodMillis, basePeriodMillis);
+        this.burstMillis = burstMillis;
+        this.heaterOutputDelta = heaterOutputDelta;
+        this.tBeerDeviation = tBeerDeviation;
+        periodMillis = basePeriodMillis;
+    }
+
+    /** @return the chamber's BurstSampler as per the properties, or null if disabled. */
+    public static BurstSampler forChamber(Chamber chamber) {
+        if (!getBoolean("readings.burst.enabled", false))
+            return null;
+        int resolutionMillis = PropertyUtils.getReadingsTimestampResolutionMillis();
+        int burstPeriodMillis = getInteger("readings.burst.periodMillis", resolutionMillis);
+        if (burstPeriodMillis <= 0 || burstPeriodMillis % resolutionMillis != 0)
+            burstPeriodMillis = resolutionMillis;
+        long burstMillis = (getInteger("readings.burst.minutes", 10) + chamber.getFridgeSwitchOnLagMins()) * 60_000L;
+        return new BurstSampler(chamber.getBaseReadingsPeriodMillis(), burstPeriodMillis, burstMillis,
+                getInteger("readings.burst.heaterOutputDelta", 10), getInteger("readings.burst.tBeerDeviation", 5));
+    }
+
+    public int getPeriodMillis() {
+        return periodMillis;
+    }
+
+    public boolean isBursting() {
+        return periodMillis < basePeriodMillis;
+    }
+
+    /**
+     * Adapts the period to the latest readings.
+     *
+     * @return the period until the next readings
+     */
+    public int update(ChamberReadings readings, Date timeNow) {
+        long now = timeNow.getTime();
+        if (isTrigger(readings)) {
+            burstUntilMillis = now + burstMillis;
+            periodMillis = burstPeriodMillis;
+        } else if (now >= burstUntilMillis && periodMillis < basePeriodMillis) {
+            periodMillis = Math.min(periodMillis * 2, basePeriodMillis);
+        }
+        previous = new ChamberReadings(readings); // Since fields may be nulled-out when logged
+        return periodMillis;
+    }
+
+    private boolean isTrigger(ChamberReadings readings) {
+        Integer tBeer = readings.gettBeer();
+        Integer tTarget = readings.gettTarget();
+        if (tBeer != null && tTarget != null && Math.abs(tBeer - tTarget) > tBeerDeviation)
+            return true;
+        if (previous == null)
+            return false;
+        if (!Objects.equals(readings.getFridgeOn(), previous.getFridgeOn()))
+            return true;
+        Integer heaterOutput = readings.getHeaterOutput();
+        Integer previousHeaterOutput = previous.getHeaterOutput();
+        return heaterOutput != null && previousHeaterOutput != null
+                && Math.abs(heaterOutput - previousHeaterOutput) >= heaterOutputDelta;
+    }
+}
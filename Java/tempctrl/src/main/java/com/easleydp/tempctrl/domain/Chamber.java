@@ -7,6 +7,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,6 +21,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.util.Assert;
 
+import com.easleydp.tempctrl.domain.ReadingsEventBus.GyleSuperseded;
 import com.easleydp.tempctrl.dto.ChamberDto;
 import com.easleydp.tempctrl.dto.GyleDto;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
@@ -40,10 +42,16 @@ public class Chamber extends ChamberDto {
     private Gyle latestGyle;
     private Path jsonFile;
     private Long jsonFileLastModified;
-    private ChamberReadings latestChamberReadings;
+    private SensorGlitchFilter sensorGlitchFilter; // null if disabled
+    private boolean sensorGlitchFilterResolved = false;
+    private boolean badReadingsPeriodLogged = false;
+    private BurstSampler burstSampler; // null if disabled
+    private boolean burstSamplerResolved = false;
+    private final ReadingsEventBus eventBus;
 
-    public Chamber(Path chamberDir) {
+    public Chamber(Path chamberDir, ReadingsEventBus eventBus) {
         this.chamberDir = chamberDir;
+        this.eventBus = eventBus;
         this.id = Integer.parseInt(chamberDir.getFileName().toString());
 
         this.jsonFile = chamberDir.resolve("chamber.json");
@@ -74,6 +82,9 @@ public class Chamber extends ChamberDto {
                 ObjectMapper mapper = new ObjectMapper();
                 BeanUtils.copyProperties(mapper.readValue(json, ChamberDto.class), this);
                 jsonFileLastModified = file.lastModified();
+                sensorGlitchFilterResolved = false; // Config may have changed
+                badReadingsPeriodLogged = false;
+                burstSamplerResolved = false;
             }
 
             checkForGyleUpdates();
@@ -92,11 +103,16 @@ public class Chamber extends ChamberDto {
         digestGyleDirs();
         Gyle _latestGyle = determineLatestGyleIfAny();
         if (_latestGyle == null || latestGyle == null) {
+            if (_latestGyle != latestGyle)
+                burstSamplerResolved = false; // The base period may have changed
             latestGyle = _latestGyle;
         } else if (_latestGyle.id != latestGyle.id) {
             logger.info("**** Chamber {}'s latest gyle ({}) superseded: now {}", id, latestGyle.id, _latestGyle.id);
+            int previousGyleId = latestGyle.id;
             latestGyle.close();
             latestGyle = _latestGyle;
+            burstSamplerResolved = false; // The base period may have changed
+            eventBus.publish(new GyleSuperseded(id, previousGyleId, latestGyle.id));
         } else if (_latestGyle.getFileLastModified() > latestGyle.getFileLastModified()) {
             logger.info("**** Chamber {}'s latest gyle ({}) updated.", id, latestGyle.id);
             latestGyle.refreshFromJson();
@@ -193,6 +209,15 @@ public class Chamber extends ChamberDto {
         return id;
     }
 
+    /**
+     * @return the bus on which this chamber's events are published. All chambers
+     *         share the one bus (that of the repository), which is where
+     *         subscribers subscribe.
+     */
+    public ReadingsEventBus getEventBus() {
+        return eventBus;
+    }
+
     public Path getChamberDir() {
         return chamberDir;
     }
@@ -201,12 +226,83 @@ public class Chamber extends ChamberDto {
         return latestGyle;
     }
 
-    public void setLatestChamberReadings(ChamberReadings readings) {
-        latestChamberReadings = readings;
+    /**
+     * Removes any sensor glitches from the supplied (fresh) readings, in place.
+     * Should be called before the readings are passed to the latest gyle.
+     *
+     * @return the number of values flagged as glitches.
+     */
+    public synchronized int filterSensorGlitches(ChamberReadings readings) {
+        if (!sensorGlitchFilterResolved) {
+            // Lazy init rather than ctor because PropertyUtils may not yet be initialised
+            // when chambers are first constructed.
+            sensorGlitchFilter = SensorGlitchFilter.forChamber(this);
+            sensorGlitchFilterResolved = true;
+        }
+        return sensorGlitchFilter != null ? sensorGlitchFilter.filter(readings) : 0;
     }
 
-    public ChamberReadings getLatestChamberReadings() {
-        return latestChamberReadings;
+    /**
+     * @return channel name to number of glitches flagged, for those channels with a
+     *         non-zero count. Counts restart whenever chamber.json is updated.
+     */
+    public synchronized Map<String, Long> getSensorGlitchCounts() {
+        return sensorGlitchFilter != null ? sensorGlitchFilter.getFlaggedCounts() : Collections.emptyMap();
+    }
+
+    /**
+     * @return how often this chamber's readings are collected: its own
+     *         `readingsPeriodMillis` if any (which must be a multiple of the
+     *         timestamp resolution), otherwise the global `readings.periodMillis`.
+     */
+    public synchronized int getEffectiveReadingsPeriodMillis() {
+        Integer periodMillis = getReadingsPeriodMillis();
+        if (periodMillis != null) {
+            if (periodMillis > 0 && periodMillis % PropertyUtils.getReadingsTimestampResolutionMillis() == 0)
+                return periodMillis;
+            if (!badReadingsPeriodLogged) {
+                logger.error("Chamber {} readingsPeriodMillis ({}) isn't a multiple of the timestamp resolution;"
+                        + " using readings.periodMillis", id, periodMillis);
+                badReadingsPeriodLogged = true;
+            }
+        }
+        return PropertyUtils.getReadingsPeriodMillis();
+    }
+
+    /**
+     * @return the period in force: the latest gyle's (see
+     *         Gyle.getReadingsPeriodMillis()), so that a change to
+     *         `readingsPeriodMillis` takes effect with the next gyle; or, if there's
+     *         no gyle, the effective period.
+     */
+    public synchronized int getBaseReadingsPeriodMillis() {
+        return latestGyle != null ? latestGyle.getReadingsPeriodMillis() : getEffectiveReadingsPeriodMillis();
+    }
+
+    /**
+     * @return how often this chamber's readings are collected right now: the base
+     *         period, unless a burst is in progress (see BurstSampler).
+     */
+    public synchronized int getCurrentReadingsPeriodMillis() {
+        return burstSampler != null ? burstSampler.getPeriodMillis() : getBaseReadingsPeriodMillis();
+    }
+
+    /**
+     * Adapts the readings period to the supplied (fresh, glitch filtered)
+     * readings, if burst sampling is enabled.
+     */
+    public synchronized void adaptReadingsPeriod(ChamberReadings readings, Date timeNow) {
+        if (!burstSamplerResolved) {
+            // Lazy init for the same reason as the sensor glitch filter
+            burstSampler = BurstSampler.forChamber(this);
+            burstSamplerResolved = true;
+        }
+        if (burstSampler != null) {
+            boolean wasBursting = burstSampler.isBursting();
+            burstSampler.update(readings, timeNow);
+            if (burstSampler.isBursting() != wasBursting)
+                logger.debug("Chamber {} readings burst {}", id, wasBursting ? "over" : "started");
+        }
     }
 
     /**
@@ -1,14 +1,22 @@
 package com.easleydp.tempctrl.domain;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Interface to the standalone chamber manager hardware device (e.g. Arduino).
  *
- * There is only a single such device in a tempctrl system. One device can
- * manage multiple chambers, e.g. a beer fridge and a fermentation chamber. The
- * device identifies these ordinally with an integer ID starting from 1.
+ * One device can manage multiple chambers, e.g. a beer fridge and a
+ * fermentation chamber. The device identifies these ordinally with an integer
+ * ID starting from 1. A tempctrl system with more chambers than one device can
+ * manage has several devices, fronted by a ChamberManagerRegistry, which maps
+ * the chamber IDs to the devices' own.
  */
 public interface ChamberManager {
     void setParameters(int chamberId, ChamberParameters params) throws IOException;
@@ -21,10 +29,95 @@ public interface ChamberManager {
 
     void slurpLogMessages() throws IOException;
 
+    /**
+     * One readings collection cycle: sends the params for each chamber in
+     * `paramsByChamberId` and collects readings for those also in
+     * `readingsChamberIds`, slurping log messages along the way.
+     *
+     * This default makes the individual calls in turn. An implementation that
+     * talks to a real device may do better, e.g. batch the lot into one exchange.
+     *
+     * @return the readings, keyed by chamber ID
+     */
+    default Map<Integer, ChamberReadings> runCollectionCycle(Map<Integer, ChamberParameters> paramsByChamberId,
+            Set<Integer> readingsChamberIds, Date timeNow) throws IOException {
+        Map<Integer, ChamberReadings> readingsByChamberId = new LinkedHashMap<>();
+        for (Map.Entry<Integer, ChamberParameters> entry : paramsByChamberId.entrySet()) {
+            int chamberId = entry.getKey();
+            slurpLogMessages();
+            setParameters(chamberId, entry.getValue());
+            slurpLogMessages();
+            if (readingsChamberIds.contains(chamberId)) {
+                readingsByChamberId.put(chamberId, collectReadings(chamberId, timeNow));
+                slurpLogMessages();
+            }
+        }
+        return readingsByChamberId;
+    }
+
+    // Asynchronous variants of the above. An implementation that talks to a real
+    // device should complete these on its own I/O thread, so the caller never
+    // blocks on the device. These defaults simply run the synchronous method on the
+    // caller's thread.
+
+    default CompletableFuture<Void> setParametersAsync(int chamberId, ChamberParameters params) {
+        return runNow(() -> {
+            setParameters(chamberId, params);
+            return null;
+        });
+    }
+
+    default CompletableFuture<ChamberReadings> collectReadingsAsync(int chamberId, Date timeNow) {
+        return runNow(() -> collectReadings(chamberId, timeNow));
+    }
+
+    default CompletableFuture<Map<Integer, ChamberReadings>> runCollectionCycleAsync(
+            Map<Integer, ChamberParameters> paramsByChamberId, Set<Integer> readingsChamberIds, Date timeNow) {
+        return runNow(() -> runCollectionCycle(paramsByChamberId, readingsChamberIds, timeNow));
+    }
+
+    default CompletableFuture<ChamberManagerStatus> getChamberManagerStatusAsync() {
+        return runNow(() -> getChamberManagerStatus());
+    }
+
+    default CompletableFuture<Void> slurpLogMessagesAsync() {
+        return runNow(() -> {
+            slurpLogMessages();
+            return null;
+        });
+    }
+
+    private static <T> CompletableFuture<T> runNow(Callable<T> callable) {
+        try {
+            return CompletableFuture.completedFuture(callable.call());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     /**
      * Perform any remedial action that may be necessary on one of the above method
      * throwing an IOException, e.g. reset comms port.
      */
     default void handleIOException(IOException e) {
     }
+
+    /** @return the state of the connection to the device, or null if there is none. */
+    default SerialConnection.State getConnectionState() {
+        return null;
+    }
+
+    /** @return stats on the traffic with the device, or null if there is none. */
+    default SerialStats.Snapshot getSerialStats() {
+        return null;
+    }
+
+    /**
+     * @return for a chamber manager fronting several devices, each device's own
+     *         chamber manager, by device name, so that their status etc. can be
+     *         reported individually; otherwise empty.
+     */
+    default Map<String, ChamberManager> getDevicesByName() {
+        return Collections.emptyMap();
+    }
 }
@@ -0,0 +1,224 @@
+package com.easleydp.tempctrl.domain;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Fronts several chamber manager devices (e.g. one Arduino per pair of
+ * chambers, each on its own port), mapping chamber IDs to the devices' own,
+ * which start from 1 on each device.
+ *
+ * A collection cycle is run on all the devices at once, each on its own I/O
+ * thread, and joined, so it takes as long as the slowest device rather than the
+ * sum. A device that fails doesn't stop the others' readings being returned;
+ * only if every device fails does the cycle fail.
+ *
+ * Device-wide queries (status, serial stats) are answered by the first device,
+ * except for the connection state, which is the worst of the devices'. Each
+ * device's own are available via getDevicesByName().
+ */
+public class ChamberManagerRegistry implements ChamberManager, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ChamberManagerRegistry.class);
+
+    public static class Device {
+        public final String name;
+        public final ChamberManager chamberManager;
+        /** The IDs of the device's chambers 1, 2, etc. */
+        public final List<Integer> chamberIds;
+
+        public Device(String name, ChamberManager chamberManager, List<Integer> chamberIds) {
+            Assert.isTrue(!chamberIds.isEmpty(), "Device " + name + " has no chambers");
+            this.name = name;
+            this.chamberManager = chamberManager;
+            this.chamberIds = Collections.unmodifiableList(new ArrayList<>(chamberIds));
+        }
+
+        int toDeviceChamberId(int chamberId) {
+            return chamberIds.indexOf(chamberId) + 1;
+        }
+
+        int toChamberId(int deviceChamberId) {
+            return chamberIds.get(deviceChamberId - 1);
+        }
+    }
+
+    private final List<Device> devices;
+    private final Map<Integer, Device> deviceByChamberId = new HashMap<>();
+
+    public ChamberManagerRegistry(List<Device> devices) {
+        Assert.isTrue(!devices.isEmpty(), "No chamber manager devices");
+        this.devices = Collections.unmodifiableList(new ArrayList<>(devices));
+        for (Device device : devices)
+            for (int chamberId : device.chamberIds) {
+                Device existing = deviceByChamberId.put(chamberId, device);
+                Assert.isTrue(existing == null, "Chamber " + chamberId + " is on more than one device");
+            }
+    }
+
+    public List<Device> getDevices() {
+        return devices;
+    }
+
+    /** @return the device managing the specified chamber, or null if none. */
+    public Device getDevice(int chamberId) {
+        return deviceByChamberId.get(chamberId);
+    }
+
+    private Device requireDevice(int chamberId) {
+        Device device = deviceByChamberId.get(chamberId);
+        Assert.notNull(device, "No chamber manager device for chamber " + chamberId);
+        return device;
+    }
+
+    @Override
+    public void setParameters(int chamberId, ChamberParameters params) throws IOException {
+        SerialIoThread.await(setParametersAsync(chamberId, params));
+    }
+
+    @Override
+    public CompletableFuture<Void> setParametersAsync(int chamberId, ChamberParameters params) {
+        Device device = requireDevice(chamberId);
+        return device.chamberManager.setParametersAsync(device.toDeviceChamberId(chamberId), params);
+    }
+
+    @Override
+    public ChamberReadings collectReadings(int chamberId, Date timeNow) throws IOException {
+        return SerialIoThread.await(collectReadingsAsync(chamberId, timeNow));
+    }
+
+    @Override
+    public CompletableFuture<ChamberReadings> collectReadingsAsync(int chamberId, Date timeNow) {
+        Device device = requireDevice(chamberId);
+        return device.chamberManager.collectReadingsAsync(device.toDeviceChamberId(chamberId), timeNow);
+    }
+
+    @Override
+    public ChamberManagerStatus getChamberManagerStatus() throws IOException {
+        return SerialIoThread.await(getChamberManagerStatusAsync());
+    }
+
+    @Override
+    public CompletableFuture<ChamberManagerStatus> getChamberManagerStatusAsync() {
+        return devices.get(0).chamberManager.getChamberManagerStatusAsync();
+    }
+
+    @Override
+    public void slurpLogMessages() throws IOException {
+        SerialIoThread.await(slurpLogMessagesAsync());
+    }
+
+    @Override
+    public CompletableFuture<Void> slurpLogMessagesAsync() {
+        return CompletableFuture.allOf(devices.stream().map(device -> device.chamberManager.slurpLogMessagesAsync())
+                .toArray(CompletableFuture[]::new));
+    }
+
+    @Override
+    public Map<Integer, ChamberReadings> runCollectionCycle(Map<Integer, ChamberParameters> paramsByChamberId,
+            Set<Integer> readingsChamberIds, Date timeNow) throws IOException {
+        return SerialIoThread.await(runCollectionCycleAsync(paramsByChamberId, readingsChamberIds, timeNow));
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, ChamberReadings>> runCollectionCycleAsync(
+            Map<Integer, ChamberParameters> paramsByChamberId, Set<Integer> readingsChamberIds, Date timeNow) {
+        // Split the cycle by device, in the device's own chamber IDs
+        Map<Device, Map<Integer, ChamberParameters>> paramsByDevice = new LinkedHashMap<>();
+        Map<Device, Set<Integer>> readingsChamberIdsByDevice = new HashMap<>();
+        for (Map.Entry<Integer, ChamberParameters> entry : paramsByChamberId.entrySet()) {
+            Device device = requireDevice(entry.getKey());
+            int deviceChamberId = device.toDeviceChamberId(entry.getKey());
+            paramsByDevice.computeIfAbsent(device, d -> new LinkedHashMap<>()).put(deviceChamberId, entry.getValue());
+            if (readingsChamberIds.contains(entry.getKey()))
+                readingsChamberIdsByDevice.computeIfAbsent(device, d -> new HashSet<>())
+                        .add(deviceChamberId);
+        }
+
+        List<Device> cycleDevices = new ArrayList<>(paramsByDevice.keySet());
+        List<CompletableFuture<Map<Integer, ChamberReadings>>> futures = new ArrayList<>();
+        for (Device device : cycleDevices)
+            futures.add(device.chamberManager.runCollectionCycleAsync(paramsByDevice.get(device),
+                    readingsChamberIdsByDevice.getOrDefault(device, Collections.emptySet()), timeNow));
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).handle((v, t) -> {
+            Map<Integer, ChamberReadings> readingsByChamberId = new LinkedHashMap<>();
+            Throwable firstFailure = null;
+            for (int i = 0; i < cycleDevices.size(); i++) {
+                Device device = cycleDevices.get(i);
+                CompletableFuture<Map<Integer, ChamberReadings>> future = futures.get(i);
+                if (!future.isCompletedExceptionally()) {
+                    future.join().forEach((deviceChamberId, readings) -> readingsByChamberId
+                            .put(device.toChamberId(deviceChamberId), readings));
+                    continue;
+                }
+                Throwable failure = cause(future);
+                if (firstFailure == null)
+                    firstFailure = failure;
+                if (failure instanceof IOException)
+                    device.chamberManager.handleIOException((IOException) failure);
+                if (cycleDevices.size() > 1)
+                    logger.error("Collection cycle failed for chamber manager device " + device.name, failure);
+            }
+            if (firstFailure != null && futures.stream().allMatch(CompletableFuture::isCompletedExceptionally))
+                throw new CompletionException(firstFailure);
+            return readingsByChamberId;
+        });
+    }
+
+    private static Throwable cause(CompletableFuture<?> future) {
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause() != null ? e.getCause() : e;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    /** @return the worst of the devices' connection states (see SerialConnection.State), or null if none has one. */
+    @Override
+    public SerialConnection.State getConnectionState() {
+        SerialConnection.State worst = null;
+        for (Device device : devices) {
+            SerialConnection.State state = device.chamberManager.getConnectionState();
+            if (state != null && (worst == null || state.compareTo(worst) > 0))
+                worst = state;
+        }
+        return worst;
+    }
+
+    @Override
+    public Map<String, ChamberManager> getDevicesByName() {
+        Map<String, ChamberManager> devicesByName = new LinkedHashMap<>();
+        for (Device device : devices)
+            devicesByName.put(device.name, device.chamberManager);
+        return devicesByName;
+    }
+
+    @Override
+    public SerialStats.Snapshot getSerialStats() {
+        return devices.get(0).chamberManager.getSerialStats();
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Device device : devices)
+            if (device.chamberManager instanceof AutoCloseable)
+                ((AutoCloseable) device.chamberManager).close();
+    }
+}
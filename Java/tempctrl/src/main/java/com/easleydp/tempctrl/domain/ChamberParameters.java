@@ -1,5 +1,7 @@
 package com.easleydp.tempctrl.domain;
 
+import java.util.Objects;
+
 public class ChamberParameters
 {
     /*
@@ -40,6 +42,38 @@ public class ChamberParameters
     public final double Kd;
     public final Mode mode;
 
+    /**
+     * @return true if `other` differs at most in the values that move regularly,
+     *         i.e. gyleAgeHours, tTarget and tTargetNext.
+     */
+    public boolean hasSameNonMovingParams(ChamberParameters other)
+    {
+        return tMin == other.tMin && tMax == other.tMax && hasHeater == other.hasHeater
+                && fridgeMinOnTimeMins == other.fridgeMinOnTimeMins && fridgeMinOffTimeMins == other.fridgeMinOffTimeMins
+                && fridgeSwitchOnLagMins == other.fridgeSwitchOnLagMins
+                && Double.compare(Kp, other.Kp) == 0 && Double.compare(Ki, other.Ki) == 0 && Double.compare(Kd, other.Kd) == 0
+                && mode == other.mode;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof ChamberParameters))
+            return false;
+        ChamberParameters other = (ChamberParameters) obj;
+        return gyleAgeHours == other.gyleAgeHours && tTarget == other.tTarget && tTargetNext == other.tTargetNext
+                && hasSameNonMovingParams(other);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(gyleAgeHours, tTarget, tTargetNext, tMin, tMax, hasHeater, fridgeMinOnTimeMins,
+                fridgeMinOffTimeMins, fridgeSwitchOnLagMins, Kp, Ki, Kd, mode);
+    }
+
     @Override
     public String toString()
     {
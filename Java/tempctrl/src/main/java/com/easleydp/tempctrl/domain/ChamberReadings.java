@@ -203,11 +203,12 @@ public class ChamberReadings {
      * Convenience accessor. Distinguishes heater being ON to actually raise the
      * beer temperature rather than just for 'maintenance heating'.
      * 
-     * @return whether heater is ON AND the beer is COLD
+     * @return whether heater is ON AND the beer is COLD (as far as can be told;
+     *         false if there's no beer temperature reading)
      */
     @JsonIgnore
     public boolean isTrulyHeating() {
-        return heaterOutput > 0 && tBeer < tTarget;
+        return heaterOutput > 0 && tBeer != null && tBeer < tTarget;
     }
 
     /*
@@ -225,6 +226,11 @@ public class ChamberReadings {
         public void setValue(Object record, int value) {
             ((ChamberReadings) record).tTarget = value;
         }
+
+        @Override
+        public boolean hasValue(Object record) {
+            return ((ChamberReadings) record).tTarget != null;
+        }
     };
 
     public static IntPropertyAccessor tBeerAccessor = new IntPropertyAccessor() {
@@ -237,6 +243,11 @@ public class ChamberReadings {
         public void setValue(Object record, int value) {
             ((ChamberReadings) record).tBeer = value;
         }
+
+        @Override
+        public boolean hasValue(Object record) {
+            return ((ChamberReadings) record).tBeer != null;
+        }
     };
 
     public static IntPropertyAccessor tExternalAccessor = new IntPropertyAccessor() {
@@ -249,6 +260,11 @@ public class ChamberReadings {
         public void setValue(Object record, int value) {
             ((ChamberReadings) record).tExternal = value;
         }
+
+        @Override
+        public boolean hasValue(Object record) {
+            return ((ChamberReadings) record).tExternal != null;
+        }
     };
     public static IntPropertyAccessor tChamberAccessor = new IntPropertyAccessor() {
         @Override
@@ -260,6 +276,11 @@ public class ChamberReadings {
         public void setValue(Object record, int value) {
             ((ChamberReadings) record).tChamber = value;
         }
+
+        @Override
+        public boolean hasValue(Object record) {
+            return ((ChamberReadings) record).tChamber != null;
+        }
     };
     public static IntPropertyAccessor tPiAccessor = new IntPropertyAccessor() {
         @Override
@@ -271,6 +292,11 @@ public class ChamberReadings {
         public void setValue(Object record, int value) {
             ((ChamberReadings) record).tPi = value;
         }
+
+        @Override
+        public boolean hasValue(Object record) {
+            return ((ChamberReadings) record).tPi != null;
+        }
     };
 
     public static IntPropertyAccessor[] allTemperatureAccessors = new IntPropertyAccessor[] { tTargetAccessor,
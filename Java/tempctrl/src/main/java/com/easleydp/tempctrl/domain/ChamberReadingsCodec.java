@@ -0,0 +1,369 @@
+package com.easleydp.tempctrl.domain;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.util.Assert;
+
+/**
+ * Hand-written NDJSON codec for ChamberReadings, i.e. the format of the gyle
+ * log files.
+ *
+ * The output is byte-for-byte what Jackson produces for a ChamberReadings (same
+ * property order, null properties omitted, mode as its single character code,
+ * each record followed by a newline) but is written straight into a reusable
+ * ByteBuffer which is drained to a FileChannel as it fills. So a flush neither
+ * builds the file content in memory nor goes through the reflective bean
+ * serializer.
+ *
+ * The parser works directly on the bytes in a ByteBuffer (no intermediate
+ * Strings or token objects). It accepts any property order and insignificant
+ * whitespace, but only the properties of ChamberReadings.
+ *
+ * An instance is not thread-safe (it owns the write buffer). The parse methods
+ * are static and stateless.
+ */
+public class ChamberReadingsCodec {
+
+    /**
+     * Comfortably more than the longest possible record, i.e. all properties
+     * present with 11 character values.
+     */
+    static final int MAX_RECORD_BYTES = 256;
+
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+    // Property keys, in the order Jackson writes them.
+    // @formatter:off
+    private static final byte[] KEY_DT            = key("dt");
+    private static final byte[] KEY_T_TARGET      = key("tTarget");
+    private static final byte[] KEY_T_BEER        = key("tBeer");
+    private static final byte[] KEY_T_EXTERNAL    = key("tExternal");
+    private static final byte[] KEY_T_CHAMBER     = key("tChamber");
+    private static final byte[] KEY_T_PI          = key("tPi");
+    private static final byte[] KEY_HEATER_OUTPUT = key("heaterOutput");
+    private static final byte[] KEY_FRIDGE_ON     = key("fridgeOn");
+    private static final byte[] KEY_MODE          = key("mode");
+    // @formatter:on
+    private static final byte[][] KEYS = { KEY_DT, KEY_T_TARGET, KEY_T_BEER, KEY_T_EXTERNAL, KEY_T_CHAMBER,
+            KEY_T_PI, KEY_HEATER_OUTPUT, KEY_FRIDGE_ON, KEY_MODE };
+
+    private static final byte[] TRUE = "true".getBytes(US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(US_ASCII);
+    private static final byte[] NULL = "null".getBytes(US_ASCII);
+
+    private static byte[] key(String name) {
+        return name.getBytes(US_ASCII);
+    }
+
+    private final ByteBuffer buffer;
+
+    public ChamberReadingsCodec() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public ChamberReadingsCodec(int bufferSize) {
+        Assert.isTrue(bufferSize >= MAX_RECORD_BYTES, "bufferSize should be at least " + MAX_RECORD_BYTES);
+        buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Writes the supplied readings to the specified (existing, typically empty)
+     * file.
+     */
+    public void write(List<ChamberReadings> readingsList, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(readingsList, channel);
+        }
+    }
+
+    /** Writes the supplied readings to the channel, one per line. */
+    public void write(List<ChamberReadings> readingsList, FileChannel channel) throws IOException {
+        buffer.clear();
+        for (ChamberReadings cr : readingsList) {
+            if (buffer.remaining() < MAX_RECORD_BYTES)
+                drain(channel);
+            encode(cr, buffer);
+        }
+        drain(channel);
+    }
+
+    private void drain(FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Appends the NDJSON representation of the supplied readings (including the
+     * trailing newline) to `dest`, which must have at least `MAX_RECORD_BYTES`
+     * remaining.
+     */
+    public static void encode(ChamberReadings cr, ByteBuffer dest) {
+        dest.put((byte) '{');
+        putKey(dest, KEY_DT, true);
+        putInt(dest, cr.getDt());
+        putIntProperty(dest, KEY_T_TARGET, cr.gettTarget());
+        putIntProperty(dest, KEY_T_BEER, cr.gettBeer());
+        putIntProperty(dest, KEY_T_EXTERNAL, cr.gettExternal());
+        putIntProperty(dest, KEY_T_CHAMBER, cr.gettChamber());
+        putIntProperty(dest, KEY_T_PI, cr.gettPi());
+        putIntProperty(dest, KEY_HEATER_OUTPUT, cr.getHeaterOutput());
+        Boolean fridgeOn = cr.getFridgeOn();
+        if (fridgeOn != null) {
+            putKey(dest, KEY_FRIDGE_ON, false);
+            dest.put(fridgeOn ? TRUE : FALSE);
+        }
+        Mode mode = cr.getMode();
+        if (mode != null) {
+            putKey(dest, KEY_MODE, false);
+            dest.put((byte) '"');
+            dest.put((byte) mode.getCode()); // All codes are printable ASCII needing no escaping
+            dest.put((byte) '"');
+        }
+        dest.put((byte) '}');
+        dest.put((byte) '\n');
+    }
+
+    private static void putIntProperty(ByteBuffer dest, byte[] key, Integer value) {
+        if (value != null) {
+            putKey(dest, key, false);
+            putInt(dest, value);
+        }
+    }
+
+    private static void putKey(ByteBuffer dest, byte[] key, boolean first) {
+        if (!first)
+            dest.put((byte) ',');
+        dest.put((byte) '"');
+        dest.put(key);
+        dest.put((byte) '"');
+        dest.put((byte) ':');
+    }
+
+    /** Writes the decimal digits of `value` without going via a String. */
+    static void putInt(ByteBuffer dest, int value) {
+        long v = value; // long so that negating Integer.MIN_VALUE is safe
+        if (v < 0) {
+            dest.put((byte) '-');
+            v = -v;
+        }
+        long divisor = 1;
+        while (divisor * 10 <= v)
+            divisor *= 10;
+        for (; divisor > 0; divisor /= 10)
+            dest.put((byte) ('0' + (v / divisor) % 10));
+    }
+
+    /**
+     * Reads all the readings in the specified NDJSON file. The file is mapped
+     * rather than copied onto the heap, so only the parsed readings are allocated.
+     */
+    public static List<ChamberReadings> readAll(Path file) throws IOException {
+        List<ChamberReadings> list = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            Assert.state(size <= Integer.MAX_VALUE, "File too large: " + file);
+            parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), list::add);
+        }
+        return list;
+    }
+
+    /**
+     * Parses all the NDJSON records from the current position to the limit of
+     * `src`, passing each to `consumer` in turn. On return, the buffer's position
+     * is at its limit.
+     *
+     * @throws IllegalArgumentException
+     *                                      if the content is malformed.
+     */
+    public static void parse(ByteBuffer src, Consumer<ChamberReadings> consumer) {
+        new Parser(src).parseAll(consumer);
+    }
+
+    private static final class Parser {
+        private final ByteBuffer src;
+        private int pos;
+        private final int limit;
+
+        Parser(ByteBuffer src) {
+            this.src = src;
+            this.pos = src.position();
+            this.limit = src.limit();
+        }
+
+        void parseAll(Consumer<ChamberReadings> consumer) {
+            while (true) {
+                skipWhitespace();
+                if (pos >= limit)
+                    break;
+                consumer.accept(parseRecord());
+            }
+            src.position(pos);
+        }
+
+        private ChamberReadings parseRecord() {
+            ChamberReadings cr = new ChamberReadings();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return cr;
+            }
+            while (true) {
+                skipWhitespace();
+                byte[] key = parseKey();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                parseValue(key, cr);
+                skipWhitespace();
+                byte b = next();
+                if (b == '}')
+                    return cr;
+                if (b != ',')
+                    throw error("Expected ',' or '}'", pos - 1);
+            }
+        }
+
+        private byte[] parseKey() {
+            expect('"');
+            int start = pos;
+            while (pos < limit && src.get(pos) != '"')
+                pos++;
+            int len = pos - start;
+            expect('"');
+            for (byte[] key : KEYS)
+                if (key.length == len && matches(key, start))
+                    return key;
+            throw error("Unrecognised property", start);
+        }
+
+        private void parseValue(byte[] key, ChamberReadings cr) {
+            if (matches(NULL, pos)) {
+                if (key == KEY_DT)
+                    throw error("dt should not be null", pos);
+                pos += NULL.length;
+                return; // Property is already null
+            }
+            if (key == KEY_DT)
+                cr.setDt(parseInt());
+            else if (key == KEY_T_TARGET)
+                cr.settTarget(parseInt());
+            else if (key == KEY_T_BEER)
+                cr.settBeer(parseInt());
+            else if (key == KEY_T_EXTERNAL)
+                cr.settExternal(parseInt());
+            else if (key == KEY_T_CHAMBER)
+                cr.settChamber(parseInt());
+            else if (key == KEY_T_PI)
+                cr.settPi(parseInt());
+            else if (key == KEY_HEATER_OUTPUT)
+                cr.setHeaterOutput(parseInt());
+            else if (key == KEY_FRIDGE_ON)
+                cr.setFridgeOn(parseBoolean());
+            else
+                cr.setMode(parseMode());
+        }
+
+        private int parseInt() {
+            int start = pos;
+            boolean negative = false;
+            if (peek() == '-') {
+                negative = true;
+                pos++;
+            }
+            long value = 0;
+            int digitsStart = pos;
+            while (pos < limit) {
+                byte b = src.get(pos);
+                if (b < '0' || b > '9')
+                    break;
+                value = value * 10 + (b - '0');
+                if (value > 1L + Integer.MAX_VALUE)
+                    throw error("Integer out of range", start);
+                pos++;
+            }
+            if (pos == digitsStart)
+                throw error("Expected integer", start);
+            if (negative)
+                value = -value;
+            if (value > Integer.MAX_VALUE)
+                throw error("Integer out of range", start);
+            return (int) value;
+        }
+
+        private boolean parseBoolean() {
+            if (matches(TRUE, pos)) {
+                pos += TRUE.length;
+                return true;
+            }
+            if (matches(FALSE, pos)) {
+                pos += FALSE.length;
+                return false;
+            }
+            throw error("Expected boolean", pos);
+        }
+
+        private Mode parseMode() {
+            int start = pos;
+            expect('"');
+            char code = (char) next();
+            expect('"');
+            try {
+                return Mode.get(code);
+            } catch (IllegalArgumentException e) {
+                throw error("Illegal mode", start);
+            }
+        }
+
+        private boolean matches(byte[] expected, int at) {
+            if (at + expected.length > limit)
+                return false;
+            for (int i = 0; i < expected.length; i++)
+                if (src.get(at + i) != expected[i])
+                    return false;
+            return true;
+        }
+
+        private void skipWhitespace() {
+            while (pos < limit) {
+                byte b = src.get(pos);
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t')
+                    break;
+                pos++;
+            }
+        }
+
+        private byte peek() {
+            if (pos >= limit)
+                throw error("Unexpected end of input", pos);
+            return src.get(pos);
+        }
+
+        private byte next() {
+            byte b = peek();
+            pos++;
+            return b;
+        }
+
+        private void expect(char c) {
+            if (next() != c)
+                throw error("Expected '" + c + "'", pos - 1);
+        }
+
+        private IllegalArgumentException error(String message, int at) {
+            return new IllegalArgumentException(message + " at offset " + at);
+        }
+    }
+}
@@ -26,14 +26,21 @@ public class ChamberRepository {
     // chambers a new without due consideration.
     private final Queue<Chamber> chambers = new ConcurrentLinkedQueue<>();
 
+    private final ReadingsEventBus eventBus;
+
     public ChamberRepository(Path dataDir) {
+        this(dataDir, new ReadingsEventBus());
+    }
+
+    public ChamberRepository(Path dataDir, ReadingsEventBus eventBus) {
+        this.eventBus = eventBus;
         Assert.state(Files.exists(dataDir), "data dir should exist");
         chambersDir = dataDir.resolve("chambers");
         Assert.state(Files.exists(chambersDir), "chambers dir should exist");
 
         // @formatter:off
         getChamberDirs().stream()
-            .map(cd -> new Chamber(cd))
+            .map(cd -> new Chamber(cd, eventBus))
             .forEach(c -> {
                 chambers.add(c);
             });
@@ -62,6 +69,10 @@ public class ChamberRepository {
         }
     }
 
+    public ReadingsEventBus getEventBus() {
+        return eventBus;
+    }
+
     public Collection<Chamber> getChambers() {
         return chambers;
     }
@@ -0,0 +1,105 @@
+package com.easleydp.tempctrl.domain;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.util.Assert;
+
+/**
+ * Gives each chamber a shard: a mailbox whose tasks run one at a time, in
+ * submission order. The shards are multiplexed over a small pool of worker
+ * threads, so different chambers are processed in parallel while any one
+ * chamber's state (latest gyle, log and trend buffers, switched-off detection)
+ * is only ever worked on by one thread at a time. Successive tasks of a shard
+ * may run on different workers; each sees the effects of those before it.
+ *
+ * A shard drains at most BATCH_SIZE tasks before giving up its worker, so a
+ * busy chamber can't starve the others.
+ */
+public class ChamberShards implements AutoCloseable {
+    private static final int BATCH_SIZE = 16;
+
+    private final int workerCount;
+    private final ExecutorService workers;
+    private final Map<Integer, Shard> shards = new ConcurrentHashMap<>();
+
+    public ChamberShards(int workerCount) {
+        Assert.isTrue(workerCount > 0, "workerCount should be positive");
+        this.workerCount = workerCount;
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "chamber-shard-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        workers = Executors.newFixedThreadPool(workerCount, threadFactory);
+    }
+
+    /** Sized by `chambers.shards.workers`, by default one worker per core. */
+    public static ChamberShards fromProperties() {
+        return new ChamberShards(PropertyUtils.getInteger("chambers.shards.workers",
+                Runtime.getRuntime().availableProcessors()));
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    private class Shard implements Runnable {
+        private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        void post(Runnable task) {
+            mailbox.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true))
+                workers.execute(this);
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+            for (int i = 0; i < BATCH_SIZE && (task = mailbox.poll()) != null; i++)
+                task.run();
+            scheduled.set(false);
+            // A task may have been posted after the last poll but before `scheduled` was
+            // cleared, in which case the poster won't have scheduled us.
+            if (!mailbox.isEmpty())
+                schedule();
+        }
+    }
+
+    /**
+     * Queues the task on the chamber's shard.
+     *
+     * @return completes (possibly exceptionally) once the task has run
+     */
+    public <T> CompletableFuture<T> submit(int chamberId, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        shards.computeIfAbsent(chamberId, id -> new Shard()).post(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+}
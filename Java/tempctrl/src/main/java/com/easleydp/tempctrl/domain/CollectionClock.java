@@ -0,0 +1,158 @@
+package com.easleydp.tempctrl.domain;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Decides when readings are collected and what time they are stamped with, so
+ * that each chamber's logged series keeps the fixed sampling frequency the
+ * Smoother assumes.
+ *
+ * Collection slots fall on multiples of the timestamp resolution. A chamber is
+ * due in those slots that are a multiple of its own readings period (itself a
+ * multiple of the resolution), and its readings are stamped with the slot's
+ * time rather than the time collection happened to start. A chamber's readings
+ * are OK if collected within `lateMillis` of the slot, LATE if within
+ * `deadlineMillis`, otherwise MISSED, i.e. not logged. A slot whose deadline
+ * passes before collection even starts (e.g. the previous cycle overran) is
+ * skipped and counted as MISSED for the chambers due in it, rather than run
+ * late, back-to-back with the next.
+ *
+ * Thread-safe.
+ */
+public class CollectionClock {
+    private static final Logger logger = LoggerFactory.getLogger(CollectionClock.class);
+
+    public enum SlotStatus {
+        OK, LATE, MISSED
+    }
+
+    private final long resolutionMillis;
+    private final long lateMillis;
+    private final long deadlineMillis;
+
+    private long lastSlotMillis = Long.MIN_VALUE;
+    private final Map<Integer, SlotCounts> countsByChamberId = new TreeMap<>();
+
+    /**
+     * @param deadlineMillis
+     *                           no more than the timestamp resolution, else
+     *                           readings could be stamped with a time they don't
+     *                           belong to
+     */
+    public CollectionClock(int resolutionMillis, int lateMillis, int deadlineMillis) {
+        Assert.isTrue(lateMillis <= deadlineMillis && deadlineMillis <= resolutionMillis,
+                "Expected lateMillis <= deadlineMillis <= timestamp resolution");
+        this.resolutionMillis = resolutionMillis;
+        this.lateMillis = lateMillis;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    public static CollectionClock fromProperties() {
+        int resolutionMillis = PropertyUtils.getReadingsTimestampResolutionMillis();
+        Assert.isTrue(PropertyUtils.getReadingsPeriodMillis() % resolutionMillis == 0,
+                "readings.periodMillis must be a multiple of the timestamp resolution");
+        return new CollectionClock(resolutionMillis,
+                PropertyUtils.getInteger("readings.clock.lateMillis", resolutionMillis / 3),
+                PropertyUtils.getInteger("readings.clock.deadlineMillis", resolutionMillis));
+    }
+
+    /** @return whether a chamber with the specified readings period is due in the specified slot */
+    public static boolean isDue(Date slot, int periodMillis) {
+        return slot.getTime() % periodMillis == 0;
+    }
+
+    /**
+     * @param periodMillisByChamberId
+     *                                    the chambers' readings periods, to charge
+     *                                    them with any slots missed
+     * @return the slot to collect now, or null if none is due. Marks it as
+     *         collected, so it won't be returned again. Which chambers are due
+     *         in it is as per `isDue()`.
+     */
+    public synchronized Date dueSlot(long nowMillis, Map<Integer, Integer> periodMillisByChamberId) {
+        long slotMillis = Math.floorDiv(nowMillis, resolutionMillis) * resolutionMillis;
+        if (slotMillis <= lastSlotMillis)
+            return null;
+        boolean overdue = nowMillis - slotMillis > deadlineMillis;
+        long firstMissedMillis = lastSlotMillis != Long.MIN_VALUE ? lastSlotMillis + resolutionMillis : slotMillis;
+        long lastMissedMillis = overdue ? slotMillis : slotMillis - resolutionMillis;
+        lastSlotMillis = slotMillis;
+        if (firstMissedMillis <= lastMissedMillis) {
+            periodMillisByChamberId.forEach((chamberId, periodMillis) -> {
+                // The number of multiples of the chamber's period in the missed range
+                long missed = Math.floorDiv(lastMissedMillis, periodMillis)
+                        - Math.floorDiv(firstMissedMillis - 1, periodMillis);
+                if (missed > 0) {
+                    logger.warn("Chamber {} missed {} readings collection slot(s)", chamberId, missed);
+                    counts(chamberId).add(SlotStatus.MISSED, missed);
+                }
+            });
+        }
+        return overdue ? null : new Date(slotMillis);
+    }
+
+    /**
+     * Records the outcome of collecting readings for the specified chamber.
+     *
+     * @param collectedMillis
+     *                            when the readings arrived; ignored if
+     *                            `collected` is false
+     * @return the status, i.e. whether the readings should be logged
+     */
+    public synchronized SlotStatus record(int chamberId, Date slot, long collectedMillis, boolean collected) {
+        long lateness = collectedMillis - slot.getTime();
+        SlotStatus status = !collected || lateness > deadlineMillis ? SlotStatus.MISSED
+                : lateness > lateMillis ? SlotStatus.LATE : SlotStatus.OK;
+        counts(chamberId).add(status, 1);
+        return status;
+    }
+
+    private SlotCounts counts(int chamberId) {
+        return countsByChamberId.computeIfAbsent(chamberId, k -> new SlotCounts());
+    }
+
+    @JsonPropertyOrder({ "ok", "late", "missed", "last" })
+    public static class SlotCounts {
+        public long ok, late, missed;
+        public SlotStatus last;
+
+        private void add(SlotStatus status, long n) {
+            switch (status) {
+            case OK:
+                ok += n;
+                break;
+            case LATE:
+                late += n;
+                break;
+            case MISSED:
+                missed += n;
+                break;
+            }
+            last = status;
+        }
+
+        private SlotCounts copy() {
+            SlotCounts copy = new SlotCounts();
+            copy.ok = ok;
+            copy.late = late;
+            copy.missed = missed;
+            copy.last = last;
+            return copy;
+        }
+    }
+
+    /** @return the slot counts so far, keyed by chamber ID */
+    public synchronized Map<Integer, SlotCounts> getSlotCounts() {
+        Map<Integer, SlotCounts> copy = new TreeMap<>();
+        countsByChamberId.forEach((chamberId, counts) -> copy.put(chamberId, counts.copy()));
+        return copy;
+    }
+}
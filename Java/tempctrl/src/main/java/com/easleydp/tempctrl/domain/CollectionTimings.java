@@ -0,0 +1,108 @@
+package com.easleydp.tempctrl.domain;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * How long readings collection cycles take: percentiles over the last hour and
+ * the last day, plus a timeline of the most recent cycles broken down by phase.
+ * A cycle is judged unusually slow against the last hour's distribution rather
+ * than an average since boot, so the judgement follows the system as it
+ * changes.
+ *
+ * Thread-safe.
+ */
+public class CollectionTimings {
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+
+    /**
+     * A cycle's duration and its phases, in millis. The per-chamber phases are
+     * summed over the chambers, which are processed in parallel (see
+     * ChamberShards), so the phases needn't add up to the total.
+     */
+    @JsonPropertyOrder({ "dt", "totalMillis", "updateCheckMillis", "paramsMillis", "cycleMillis", "logWriteMillis" })
+    public static class Cycle {
+        /** When the cycle was run (the slot time) */
+        public final long dt;
+        public final int totalMillis;
+        /** Checking chamber.json and gyle.json for updates */
+        public final int updateCheckMillis;
+        /** Working out each chamber's params */
+        public final int paramsMillis;
+        /** The exchange with the chamber manager: params out, readings and log messages back */
+        public final int cycleMillis;
+        /** Filtering, logging and publishing the readings */
+        public final int logWriteMillis;
+
+        public Cycle(long dt, int totalMillis, int updateCheckMillis, int paramsMillis, int cycleMillis,
+                int logWriteMillis) {
+            this.dt = dt;
+            this.totalMillis = totalMillis;
+            this.updateCheckMillis = updateCheckMillis;
+            this.paramsMillis = paramsMillis;
+            this.cycleMillis = cycleMillis;
+            this.logWriteMillis = logWriteMillis;
+        }
+    }
+
+    private final WindowedHistogram lastHour = new WindowedHistogram(HOUR_MILLIS, 12);
+    private final WindowedHistogram lastDay = new WindowedHistogram(24 * HOUR_MILLIS, 24);
+    private final Deque<Cycle> recent = new ArrayDeque<>();
+    private final int recentSize;
+    private final int alertMinCount;
+    private final int alertMinMillis;
+
+    /**
+     * @param recentSize
+     *                          how many of the most recent cycles to keep
+     * @param alertMinCount
+     *                          how many cycles the last hour must have before a
+     *                          cycle can be judged unusually slow
+     * @param alertMinMillis
+     *                          no cycle quicker than this is judged unusually slow
+     */
+    public CollectionTimings(int recentSize, int alertMinCount, int alertMinMillis) {
+        this.recentSize = recentSize;
+        this.alertMinCount = alertMinCount;
+        this.alertMinMillis = alertMinMillis;
+    }
+
+    public static CollectionTimings fromProperties() {
+        return new CollectionTimings(PropertyUtils.getInteger("readings.timing.recentCycles", 60),
+                PropertyUtils.getInteger("readings.timing.alertMinCount", 30),
+                PropertyUtils.getInteger("readings.timing.alertMinMillis", 100));
+    }
+
+    /**
+     * @return whether the cycle was unusually slow, i.e. took more than twice the
+     *         95th percentile of the last hour's cycles
+     */
+    public synchronized boolean record(long nowMillis, Cycle cycle) {
+        WindowedHistogram.Snapshot hour = lastHour.snapshot(nowMillis);
+        boolean slow = hour.count >= alertMinCount && cycle.totalMillis >= alertMinMillis
+                && cycle.totalMillis > 2 * hour.p95;
+        lastHour.record(nowMillis, cycle.totalMillis);
+        lastDay.record(nowMillis, cycle.totalMillis);
+        recent.addLast(cycle);
+        while (recent.size() > recentSize)
+            recent.removeFirst();
+        return slow;
+    }
+
+    public WindowedHistogram.Snapshot getLastHour(long nowMillis) {
+        return lastHour.snapshot(nowMillis);
+    }
+
+    public WindowedHistogram.Snapshot getLastDay(long nowMillis) {
+        return lastDay.snapshot(nowMillis);
+    }
+
+    /** @return the most recent cycles, oldest first */
+    public synchronized List<Cycle> getRecent() {
+        return new ArrayList<>(recent);
+    }
+}
@@ -0,0 +1,204 @@
+package com.easleydp.tempctrl.domain;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+import com.easleydp.tempctrl.dto.PointDto;
+import com.easleydp.tempctrl.dto.TemperatureProfileDto;
+
+/**
+ * Immutable, pre-processed form of a temperature profile for repeated
+ * evaluation. Built once per profile (see `Gyle.getCompiledTemperatureProfile()`)
+ * and safely shared between threads.
+ *
+ * The points are held as primitive arrays along with each segment's
+ * precomputed temperature and time deltas, so a lookup is a binary search plus
+ * a little integer arithmetic. Results are identical to
+ * `TemperatureProfile.getTargetTempAt()`, including its rounding (the
+ * interpolated fraction is truncated by integer division, hence deltas rather
+ * than a floating point slope). The crash start/end points are also located
+ * up-front.
+ */
+public final class CompiledTemperatureProfile {
+    private final TemperatureProfileDto source;
+
+    /** Each point's time, ascending (not necessarily strictly). */
+    private final long[] millis;
+    /** Each point's target temperature (degrees x 10). */
+    private final int[] temps;
+    /**
+     * Element `i` describes the segment ending at point `i` (element 0 is
+     * unused).
+     */
+    private final int[] deltaTemps;
+    private final long[] deltaMillis;
+
+    private final PointDto crashStartPoint;
+    private final PointDto crashEndPoint;
+
+    public CompiledTemperatureProfile(TemperatureProfileDto profile) {
+        List<PointDto> points = profile.getPoints();
+        if (points.isEmpty())
+            throw new IllegalStateException("Profile has no points");
+        int p0HoursSinceStart = points.get(0).getHoursSinceStart();
+        if (p0HoursSinceStart != 0)
+            throw new IllegalStateException("First profile point isn't at t0: " + p0HoursSinceStart);
+
+        source = profile;
+        int len = points.size();
+        millis = new long[len];
+        temps = new int[len];
+        deltaTemps = new int[len];
+        deltaMillis = new long[len];
+        for (int i = 0; i < len; i++) {
+            PointDto point = points.get(i);
+            millis[i] = point.getMillisSinceStart();
+            temps[i] = point.getTargetTemp();
+            if (i > 0) {
+                deltaTemps[i] = temps[i] - temps[i - 1];
+                deltaMillis[i] = millis[i] - millis[i - 1];
+            }
+        }
+
+        TemperatureProfile tp = new TemperatureProfile(profile);
+        crashStartPoint = copy(tp.getCrashStartPoint());
+        crashEndPoint = copy(tp.getCrashEndPoint());
+    }
+
+    private static PointDto copy(PointDto point) {
+        return point != null ? new PointDto(point.getHoursSinceStart(), point.getTargetTemp()) : null;
+    }
+
+    /** @return whether this was compiled from the specified profile instance. */
+    public boolean isCompiledFrom(TemperatureProfileDto profile) {
+        return source == profile;
+    }
+
+    /**
+     * @return the target temperature (degrees x 10) at any given time since the
+     *         profile started. As `TemperatureProfile.getTargetTempAt()`.
+     */
+    public int getTargetTempAt(final long millisSinceStart) {
+        if (millisSinceStart < 0)
+            return temps[0];
+
+        return getTargetTempAt(indexOfFirstPointNotBefore(millisSinceStart), millisSinceStart);
+    }
+
+    /**
+     * @param i
+     *              the index of the first point whose time is >= `x`, or the
+     *              number of points if none.
+     * @param x
+     *              millis since the profile started, >= 0.
+     */
+    private int getTargetTempAt(int i, long x) {
+        if (i == millis.length)
+            return temps[i - 1];
+        if (millis[i] == x)
+            return temps[i];
+        // Interpolate. Note that i > 0 because the first point is at t0.
+        return temps[i - 1] + (int) (deltaTemps[i] * (x - millis[i - 1]) / deltaMillis[i]);
+    }
+
+    /**
+     * Evaluates the profile at `count` evenly spaced times, i.e. `fromMillis`,
+     * `fromMillis + stepMillis`, etc. (all times being millis since the profile
+     * started). Equivalent to calling `getTargetTempAt()` for each but walks the
+     * segments rather than searching afresh for every time.
+     *
+     * @return the target temperatures (degrees x 10).
+     */
+    public int[] getTargetTemps(long fromMillis, long stepMillis, int count) {
+        Assert.isTrue(stepMillis > 0, "stepMillis should be > 0");
+        Assert.isTrue(count >= 0, "count should be >= 0");
+        final int[] result = new int[count];
+        final int last = millis.length - 1;
+        long x = fromMillis;
+        int n = 0;
+        for (; n < count && x < 0; n++, x += stepMillis)
+            result[n] = temps[0];
+        int i = n < count ? indexOfFirstPointNotBefore(x) : 0;
+        for (; n < count; n++, x += stepMillis) {
+            while (i <= last && millis[i] < x)
+                i++;
+            if (i > last) {
+                Arrays.fill(result, n, count, temps[last]);
+                break;
+            }
+            result[n] = millis[i] == x ? temps[i]
+                    : temps[i - 1] + (int) (deltaTemps[i] * (x - millis[i - 1]) / deltaMillis[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates the profile at each of the specified times (millis since the
+     * profile started). Equivalent to calling `getTargetTempAt()` for each. While
+     * the times ascend the segments are walked forward, as `getTargetTemps()`;
+     * a time earlier than its predecessor falls back to a search.
+     *
+     * @return the target temperatures (degrees x 10), one per time.
+     */
+    public int[] getTargetTempsAt(long[] millisSinceStart) {
+        final int[] result = new int[millisSinceStart.length];
+        final int last = millis.length - 1;
+        long prev = Long.MIN_VALUE;
+        int i = 0; // The index of the first point not before `prev`
+        for (int n = 0; n < result.length; n++) {
+            long x = millisSinceStart[n];
+            if (x < prev)
+                i = indexOfFirstPointNotBefore(x);
+            else
+                while (i <= last && millis[i] < x)
+                    i++;
+            prev = x;
+            result[n] = x < 0 ? temps[0] : getTargetTempAt(i, x);
+        }
+        return result;
+    }
+
+    /**
+     * @return the index of the first point whose time is >= `x`, or the number
+     *         of points if none.
+     */
+    private int indexOfFirstPointNotBefore(long x) {
+        int lo = 0;
+        int hi = millis.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (millis[mid] < x)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /** @return the number of points in the profile. */
+    public int getPointCount() {
+        return millis.length;
+    }
+
+    /** @return the time of the last point, after which the target is constant. */
+    public long getEndMillis() {
+        return millis[millis.length - 1];
+    }
+
+    /** As `TemperatureProfile.getCrashStartPoint()`. */
+    public PointDto getCrashStartPoint() {
+        return copy(crashStartPoint);
+    }
+
+    /** As `TemperatureProfile.getCrashEndPoint()`. */
+    public PointDto getCrashEndPoint() {
+        return copy(crashEndPoint);
+    }
+
+    @Override
+    public String toString() {
+        return "{millis=" + Arrays.toString(millis) + ", temps=" + Arrays.toString(temps) + "}";
+    }
+}
@@ -1,5 +1,6 @@
 package com.easleydp.tempctrl.domain;
 
+import java.time.Clock;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Random;
@@ -15,11 +16,17 @@ public class DummyChamberManager implements ChamberManager {
     /** startTime provides the reference for when temperatureProfile was started. */
     private final Date startTime;
 
+    private final Clock clock;
     private Random random;
 
     public DummyChamberManager(ChamberRepository chamberRepository) {
+        this(chamberRepository, Clock.systemUTC());
+    }
+
+    public DummyChamberManager(ChamberRepository chamberRepository, Clock clock) {
         this.chamberRepository = chamberRepository;
-        this.startTime = new Date();
+        this.clock = clock;
+        this.startTime = new Date(clock.millis());
     }
 
     @Override
@@ -30,11 +37,11 @@ public class DummyChamberManager implements ChamberManager {
     @Override
     public ChamberReadings collectReadings(int chamberId, Date timeNow) {
         Gyle gyle = chamberRepository.getChamberById(chamberId).getLatestGyle();
-        TemperatureProfile temperatureProfile = gyle.getTemperatureProfileDomain();
+        CompiledTemperatureProfile temperatureProfile = gyle.getCompiledTemperatureProfile();
 
         random = new Random(timeNow.hashCode() + chamberId * 3);
 
-        Date nowTime = new Date();
+        Date nowTime = new Date(clock.millis());
         long millisSinceStart = nowTime.getTime() - startTime.getTime();
 
         int tTarget, tTargetNext, tMin, tMax;
@@ -16,12 +16,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.StringWriter;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -41,6 +40,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.util.Assert;
 
+import com.easleydp.tempctrl.domain.ReadingsEventBus.LogFlushed;
 import com.easleydp.tempctrl.domain.optimise.Smoother;
 import com.easleydp.tempctrl.domain.optimise.Smoother.IntPropertyAccessor;
 import com.easleydp.tempctrl.dto.GyleDto;
@@ -49,7 +49,6 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
-import com.fasterxml.jackson.databind.SequenceWriter;
 
 /**
  * NOTE: This is a stateful entity since it contains buffered readings.
@@ -57,22 +56,19 @@ import com.fasterxml.jackson.databind.SequenceWriter;
 public class Gyle extends GyleDto {
     private static final Logger logger = LoggerFactory.getLogger(Gyle.class);
 
-    /**
-     * NDJSON is JSON (non-pretty printed) with a new line delimiter after each
-     * line.
-     */
-    private static final String NDJSON_NEWLINE_DELIM = "\n";
-
-    private static ObjectMapper ndjsonMapper = new ObjectMapper();
-    private static ObjectWriter ndjsonObjectWriter = ndjsonMapper.writerFor(ChamberReadings.class)
-            .withRootValueSeparator(NDJSON_NEWLINE_DELIM);
-
     private Smoother smoother;
     private LogBufferConfig logBufferConfig;
-    private LogBuffer logBuffer;
+    private volatile LogBuffer logBuffer; // Read by getRecentReadingsList() without the lock
     private TrendBuffer trendBuffer;
+    /**
+     * Writes log files as NDJSON, i.e. JSON (non-pretty printed) with a new line
+     * delimiter after each line. One per gyle, since it owns a reusable write
+     * buffer; only used under the gyle's lock.
+     */
+    private ChamberReadingsCodec ndjsonCodec;
     private boolean firstReadingsCollected = false;
     private ChamberReadings latestChamberReadings;
+    private volatile CompiledTemperatureProfile compiledTemperatureProfile;
 
     private long fileLastModified;
     @JsonIgnore
@@ -85,6 +81,7 @@ public class Gyle extends GyleDto {
     public final Path logsDir;
 
     private LogAnalysis logAnalysis;
+    private final int readingsPeriodMillis;
 
     // NOTE: Keep this ctor lightweight since it's called more regularly than you
     // might imagine, i.e. via `Chamber.checkForGyleUpdates()`.
@@ -94,12 +91,20 @@ public class Gyle extends GyleDto {
         this.id = Integer.parseInt(gyleDir.getFileName().toString());
         this.logsDir = gyleDir.resolve("logs");
 
+        // The smoothing widths and gen1 readings count are tuned for the global
+        // readings period, so are scaled to the chamber's own. The period is fixed for
+        // the life of the gyle (see getReadingsPeriodMillis()).
+        int periodMillis = chamber.getEffectiveReadingsPeriodMillis();
+        readingsPeriodMillis = periodMillis;
         int thresholdHeight = getInteger("readings.temp.smoothing.thresholdHeight", 2);
         int[] thresholdWidths = getIntArray("readings.temp.smoothing.thresholdWidths", null);
-        smoother = thresholdWidths == null ? new Smoother(thresholdHeight)
-                : new Smoother(thresholdHeight, thresholdWidths);
+        if (thresholdWidths == null)
+            thresholdWidths = Smoother.getDefaultWidths(thresholdHeight);
+        smoother = new Smoother(thresholdHeight, Arrays.stream(thresholdWidths)
+                .map(width -> scaleReadingsCount(width, periodMillis)).toArray());
 
-        logBufferConfig = new LogBufferConfig(getInteger("readings.gen1.readingsCount", 30),
+        logBufferConfig = new LogBufferConfig(
+                scaleReadingsCount(getInteger("readings.gen1.readingsCount", 30), periodMillis), periodMillis,
                 getBoolean("readings.optimise.smoothTemperatureReadings", true),
                 getBoolean("readings.optimise.nullOutRedundantValues", true),
                 getBoolean("readings.optimise.removeRedundantIntermediate", true));
@@ -107,6 +112,25 @@ public class Gyle extends GyleDto {
         refreshFromJson();
     }
 
+    /**
+     * @return the specified number of readings at the global readings period
+     *         converted to the same duration at the specified period (at least
+     *         1)
+     */
+    static int scaleReadingsCount(int count, int periodMillis) {
+        return Math.max(1, (int) Math.round((double) count * PropertyUtils.getReadingsPeriodMillis() / periodMillis));
+    }
+
+    /**
+     * @return the chamber's (base) readings period when this gyle was created,
+     *         which its storage (smoothing, log files, trend buffer) is scaled to.
+     *         A change to the chamber's period takes effect with the next gyle.
+     */
+    @JsonIgnore
+    public int getReadingsPeriodMillis() {
+        return readingsPeriodMillis;
+    }
+
     @JsonIgnore
     public long getFileLastModified() {
         return fileLastModified;
@@ -131,6 +155,22 @@ public class Gyle extends GyleDto {
         return new TemperatureProfile(dto);
     }
 
+    /**
+     * @return the compiled form of the current temperature profile. Compiled on
+     *         first use after the profile is (re)set, e.g. when gyle.json is
+     *         reloaded, then shared by all callers.
+     */
+    @JsonIgnore
+    public CompiledTemperatureProfile getCompiledTemperatureProfile() {
+        TemperatureProfileDto dto = getTemperatureProfile();
+        CompiledTemperatureProfile compiled = compiledTemperatureProfile;
+        if (compiled == null || !compiled.isCompiledFrom(dto)) {
+            compiled = new CompiledTemperatureProfile(dto);
+            compiledTemperatureProfile = compiled;
+        }
+        return compiled;
+    }
+
     @JsonIgnore
     public boolean isActive() {
         return getDtStarted() != null && getDtEnded() == null;
@@ -141,7 +181,7 @@ public class Gyle extends GyleDto {
         long timeNowMs = timeNow.getTime();
         long millisSinceStart = dtStarted == null ? 0 : timeNowMs - dtStarted;
         logger.debug("millisSinceStart: {} (timeNowMs={}, dtStarted={})", millisSinceStart, timeNowMs, dtStarted);
-        TemperatureProfile tp = getTemperatureProfileDomain();
+        CompiledTemperatureProfile tp = getCompiledTemperatureProfile();
         int gyleAgeHours = (int) (millisSinceStart / 1000L / 60 / 60);
         Mode mode = isActive() ? getMode() : Mode.MONITOR_ONLY;
         int tTarget = mode == Mode.HOLD && gettHold() != null ? gettHold()
@@ -169,7 +209,7 @@ public class Gyle extends GyleDto {
      *                are consolidated once in a while.
      * @throws IOException
      */
-    public void logLatestReadings(ChamberReadings chamberReadings, Date timeNow) throws IOException {
+    public synchronized void logLatestReadings(ChamberReadings chamberReadings, Date timeNow) throws IOException {
         final int chamberId = chamber.getId();
         logger.debug("logLatestReadings() for chamber {} gyle {}", chamberId, gyleDir.getFileName());
 
@@ -188,7 +228,7 @@ public class Gyle extends GyleDto {
         // log files as necessary.
         if (logBuffer != null) {
             if (logBuffer.isReadyToBeFlushed()) {
-                logBuffer.flush(logsDir, logAnalysis);
+                flushLogBuffer();
                 logBuffer = null;
                 logAnalysis.maybeConsolidateLogFiles();
             } else {
@@ -213,17 +253,28 @@ public class Gyle extends GyleDto {
         // Lazy init rather than use ctor because ctor is called frequently (to see
         // whether latest gyle has been superseded).
         if (trendBuffer == null)
-            trendBuffer = new TrendBuffer(chamber);
+            trendBuffer = new TrendBuffer(chamber, readingsPeriodMillis);
         trendBuffer.add(chamberReadings);
 
         firstReadingsCollected = true;
     }
 
     /** Forces flush and consolidation. */
-    public void close() {
+    private void flushLogBuffer() {
+        Path logFile;
+        // Lazy init for the same reason as the trend buffer
+        if (ndjsonCodec == null)
+            ndjsonCodec = new ChamberReadingsCodec();
+        try (OperationCosts.Measurement m = OperationCosts.measure("logFlush")) {
+            logFile = logBuffer.flush(logsDir, logAnalysis, ndjsonCodec);
+        }
+        chamber.getEventBus().publish(new LogFlushed(chamber.getId(), id, logFile));
+    }
+
+    public synchronized void close() {
         if (logBuffer != null && !logBuffer.readingsList.isEmpty()) {
             logger.debug("Force flushing {} readings", logBuffer.readingsList.size());
-            logBuffer.flush(logsDir, logAnalysis);
+            flushLogBuffer();
             logBuffer = null;
             logAnalysis.maybeConsolidateLogFiles();
             logAnalysis.performAnyPostConsolidationCleanup();
@@ -231,11 +282,20 @@ public class Gyle extends GyleDto {
     }
 
     /**
-     * Returns the recent (i.e. buffered) readings in chronological order.
+     * Returns the recent (i.e. buffered) readings in chronological order: a
+     * snapshot, since readings carry on being logged on the chamber's shard while
+     * the caller (e.g. an HTTP thread) iterates. The readings themselves aren't
+     * copied since they're never modified once buffered (the buffer is optimised
+     * on a copy when flushed), so mustn't be modified by the caller either.
      */
     @JsonIgnore // In case this DTO subclass is ever serialised
     public List<ChamberReadings> getRecentReadingsList() {
-        return logBuffer != null ? unmodifiableList(logBuffer.readingsList) : emptyList();
+        LogBuffer buffer = logBuffer;
+        if (buffer == null)
+            return emptyList();
+        synchronized (buffer.readingsList) {
+            return unmodifiableList(new ArrayList<>(buffer.readingsList));
+        }
     }
 
     /**
@@ -311,7 +371,7 @@ public class Gyle extends GyleDto {
      *         Note that while any given condition persists, this method returns
      *         null until that condition has changed.
      */
-    public LeftSwitchedOffDetectionAction checkLeftSwitchedOff(Date timeNow) {
+    public synchronized LeftSwitchedOffDetectionAction checkLeftSwitchedOff(Date timeNow) {
         Assert.state(isActive(), "checkLeftSwitchedOff() should only be called on active gyle");
         if (latestChamberReadings == null) {
             logger.info("checkLeftSwitchedOff() called but latestChamberReadings is still null");
@@ -471,6 +531,12 @@ public class Gyle extends GyleDto {
 
         private void consolidateLogFiles(List<LogFileDescriptor> genNDescriptors, int gen) {
             logger.debug("Consolidating {} log files for gen {}", genNDescriptors.size(), gen);
+            try (OperationCosts.Measurement m = OperationCosts.measure("logConsolidation")) {
+                writeConsolidatedLogFile(genNDescriptors, gen);
+            }
+        }
+
+        private void writeConsolidatedLogFile(List<LogFileDescriptor> genNDescriptors, int gen) {
             LogFileDescriptor first = genNDescriptors.get(0);
             LogFileDescriptor last = genNDescriptors.get(genNDescriptors.size() - 1);
             Path newLogFile = logsDir.resolve(buildLogFilename(gen, first.dtStart, last.dtEnd));
@@ -573,9 +639,15 @@ public class Gyle extends GyleDto {
             lastAddedAt = addedAt;
         }
 
+        /**
+         * Ready once the buffer spans as long as `gen1ReadingsCount` readings at the
+         * base readings period, however many readings that has actually taken (since
+         * readings may come more often for a while, see BurstSampler).
+         */
         @JsonIgnore
         public boolean isReadyToBeFlushed() {
-            return readingsList.size() >= config.gen1ReadingsCount;
+            return !readingsList.isEmpty() && lastAddedAt.getTime()
+                    - createdAt.getTime() >= (config.gen1ReadingsCount - 1) * (long) config.periodMillis;
         }
 
         /** For Jackson */
@@ -586,9 +658,11 @@ public class Gyle extends GyleDto {
         /**
          * Flush this buffer to disk file. Impl note: passing params rather than make
          * the class non-static because Jackson needs static class when deserialising.
+         *
+         * @return the log file written
          */
-        public void flush(Path logsDir, LogAnalysis logAnalysis) {
-            optimiseReadings();
+        public Path flush(Path logsDir, LogAnalysis logAnalysis, ChamberReadingsCodec ndjsonCodec) {
+            List<ChamberReadings> optimisedReadings = optimiseReadings();
 
             try {
                 String logFileName = buildLogFilename(1, createdAt, lastAddedAt);
@@ -596,28 +670,42 @@ public class Gyle extends GyleDto {
                 Files.createFile(logFile);
                 logAnalysis.addLogFileDescriptor(logFile);
 
-                Writer writer = new StringWriter();
-                try (SequenceWriter sw = ndjsonObjectWriter.writeValues(writer)) {
-                    sw.writeAll(readingsList);
-                }
-                String ndjson = writer.toString() + NDJSON_NEWLINE_DELIM;
-                Files.writeString(logFile, ndjson, StandardCharsets.UTF_8);
-                // Java 8: Files.write(logFile, Collections.singleton(ndjson),
-                // StandardCharsets.UTF_8);
+                ndjsonCodec.write(optimisedReadings, logFile);
 
                 // No need to clear `readings`; the caller will now release this buffer.
+                return logFile;
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         }
 
-        private void optimiseReadings() {
+        /**
+         * Optimises a copy of the readings, leaving the buffer's own (and the readings
+         * themselves) as they are, since they may be being read concurrently (see
+         * Gyle.getRecentReadingsList()). Non-private for tests.
+         *
+         * @return the optimised copy
+         */
+        List<ChamberReadings> optimiseReadings() {
+            List<ChamberReadings> readingsList;
+            synchronized (this.readingsList) {
+                readingsList = new ArrayList<>(this.readingsList.size());
+                for (ChamberReadings cr : this.readingsList)
+                    readingsList.add(new ChamberReadings(cr));
+            }
+
             // Removes insignificant fluctuations in the temperature readings.
             // Must smooth before removing redundant records since the smoothing algorithm
-            // assumes readings are taken with a fixed frequency.
-            if (config.smoothTemperatureReadings)
+            // judges a fluctuation by how long it lasts, working that out from the times
+            // between readings. (If there's been a burst, see BurstSampler, some of those
+            // times will be shorter than the base period.)
+            if (config.smoothTemperatureReadings) {
+                int unitWeight = 2 * config.periodMillis / PropertyUtils.getReadingsTimestampResolutionMillis();
+                int[] weights = getReadingWeights(readingsList, unitWeight);
                 for (IntPropertyAccessor temperatureAccessor : ChamberReadings.allTemperatureAccessors)
-                    smoother.smoothOutSmallFluctuations((List) readingsList, temperatureAccessor);
+                    smoother.smoothOutSmallFluctuations((List) readingsList, temperatureAccessor, weights,
+                            unitWeight);
+            }
 
             // For each ChamberReadings property:
             // If some contiguous readings have a property P with same value V then null-out
@@ -632,69 +720,95 @@ public class Gyle extends GyleDto {
                 if (config.removeRedundantIntermediateReadings)
                     removeRedundantIntermediateBeans(readingsList, ChamberReadings.getNullablePropertyNames());
             }
+            return readingsList;
         }
     }
 
+    /**
+     * @return for each reading, the time it stands for, i.e. (in timestamp
+     *         resolution units) the time between its neighbours, or twice the
+     *         time to its only neighbour; or null if the readings are all
+     *         `unitWeight / 2` apart, as is usual.
+     */
+    static int[] getReadingWeights(List<ChamberReadings> readings, int unitWeight) {
+        int size = readings.size();
+        int[] dts = new int[size];
+        boolean fixedPeriod = true;
+        for (int i = 0; i < size; i++) {
+            dts[i] = readings.get(i).getDt();
+            if (i > 0 && 2 * (dts[i] - dts[i - 1]) != unitWeight)
+                fixedPeriod = false;
+        }
+        if (fixedPeriod || size < 2)
+            return null;
+        int[] weights = new int[size];
+        for (int i = 0; i < size; i++)
+            weights[i] = i == 0 ? 2 * (dts[1] - dts[0])
+                    : i == size - 1 ? 2 * (dts[i] - dts[i - 1]) : dts[i + 1] - dts[i - 1];
+        return weights;
+    }
+
     static class LogBufferConfig {
         final int gen1ReadingsCount;
+        final int periodMillis; // The chamber's base readings period
         final boolean smoothTemperatureReadings;
         final boolean nullOutRedundantValues;
         final boolean removeRedundantIntermediateReadings;
 
-        public LogBufferConfig(int gen1ReadingsCount, boolean smoothTemperatureReadings, boolean nullOutRedundantValues,
-                boolean removeRedundantIntermediateReadings) {
+        public LogBufferConfig(int gen1ReadingsCount, int periodMillis, boolean smoothTemperatureReadings,
+                boolean nullOutRedundantValues, boolean removeRedundantIntermediateReadings) {
             this.gen1ReadingsCount = gen1ReadingsCount;
+            this.periodMillis = periodMillis;
             this.smoothTemperatureReadings = smoothTemperatureReadings;
             this.nullOutRedundantValues = nullOutRedundantValues;
             this.removeRedundantIntermediateReadings = removeRedundantIntermediateReadings;
         }
 
         public LogBufferConfig withInflatedReadingsCount(int extraReadingsCount) {
-            return new LogBufferConfig(gen1ReadingsCount + extraReadingsCount, smoothTemperatureReadings,
-                    nullOutRedundantValues, removeRedundantIntermediateReadings);
+            return new LogBufferConfig(gen1ReadingsCount + extraReadingsCount, periodMillis,
+                    smoothTemperatureReadings, nullOutRedundantValues, removeRedundantIntermediateReadings);
         }
 
     }
 
-    private enum Trend {
+    enum Trend {
         UPWARDS, STEADY, DOWNWARDS
     }
 
     // Saves the last several minutes worth of readings so we can (i) determine
     // how long the fridge or heater has been switched on and (ii) analyse the
     // temperature trend.
-    private static class TrendBuffer {
+    static class TrendBuffer {
         private List<ChamberReadings> fifo = new LinkedList<>();
-        private final int maxSize;
+        private final int maxSpanDt; // In reduced precision units, like ChamberReadings.dt
 
-        TrendBuffer(Chamber chamber) {
+        TrendBuffer(Chamber chamber, int periodMillis) {
             // The buffer is a FIFO deque of recent records. Must be big enough to support
             // `gettChamberTrend(periodMins)`, which would throw IllegalStateException if
             // `periodMins` were to exceed this buffer's size.
             int sizeInMinutes = Math.max(
                     Gyle.getSwitchedOffCheckFridgeOnTimeMins() + chamber.getFridgeSwitchOnLagMins(),
                     Gyle.getSwitchedOffCheckHeaterOnTimeMins()) * 2;
-            // Given our sample rate, transform that into a size in terms of number of
-            // records.
-            maxSize = sizeInMinutes * 60 * 1000 / PropertyUtils.getReadingsPeriodMillis();
-            logger.debug("TrendBuffer maxSize is {}", maxSize);
+            // Given our base sample rate, that's this many records. But the buffer is
+            // bounded by the time spanned rather than the number of records, since readings
+            // may come more often for a while (see BurstSampler).
+            int maxSize = sizeInMinutes * 60 * 1000 / periodMillis;
+            maxSpanDt = reduceUtcMillisPrecision((maxSize - 1) * (long) periodMillis);
+            logger.debug("TrendBuffer maxSize is {} at the base rate", maxSize);
         }
 
         public synchronized void add(ChamberReadings chamberReadings) {
-            if (isFull()) {
-                fifo.remove(0);
-                Assert.state(!isFull(), "Removing one record should be sufficient so no longer full");
-            }
             // Copy the record because of the potential for fields being nulled-out when
             // records are flushed to log file.
             fifo.add(new ChamberReadings(chamberReadings));
+            // Drop the oldest records while the rest would still fill the buffer
+            while (fifo.size() > 1 && chamberReadings.getDt() - fifo.get(1).getDt() >= maxSpanDt)
+                fifo.remove(0);
             logger.debug("TrendBuffer size is {} {}", fifo.size(), isFull() ? "(full)" : "");
         }
 
         public synchronized boolean isFull() {
-            final int currentSize = fifo.size();
-            Assert.state(currentSize <= maxSize, "Buffer should never be over full");
-            return currentSize == maxSize;
+            return !fifo.isEmpty() && fifo.get(fifo.size() - 1).getDt() - fifo.get(0).getDt() >= maxSpanDt;
         }
 
         /**
@@ -811,8 +925,9 @@ public class Gyle extends GyleDto {
          *                   record) over which to analyse the trend.
          *
          * @return The detected trend, or `STEADY` if none. If the buffer does not
-         *         yet contain enough records to cover the specified period then
-         *         `STEADY` is returned.
+         *         yet contain enough records to cover the specified period, or
+         *         there's no tChamber reading (see SensorGlitchFilter) at either end
+         *         of it, then `STEADY` is returned.
          * 
          * @throws IllegalStateException If the specified period exceeds this buffers
          *                               max capacity.
@@ -825,19 +940,25 @@ public class Gyle extends GyleDto {
                 long maxPeriodMs = Utils.restoreUtcMillisPrecision(lastRecord.getDt() - firstRecord.getDt());
                 int maxPeriodMins = (int) (maxPeriodMs / 1000L / 60);
                 if (maxPeriodMins > periodMins) {
+                    Integer tChamberNow = lastRecord.gettChamber();
+                    if (tChamberNow == null) {
+                        logger.debug("No latest tChamber reading");
+                        return Trend.STEADY;
+                    }
                     int soughtDt = lastRecord.getDt() - Utils.reduceUtcMillisPrecision(periodMins * 1000L * 60);
                     ListIterator<ChamberReadings> li = fifo.listIterator(size); // Start just after the last element.
                     while (li.hasPrevious()) {
                         ChamberReadings record = li.previous();
-                        if (record.getDt() <= soughtDt) {
-                            if (record.gettChamber() < lastRecord.gettChamber())
+                        // If there was no reading then, go back to the one before
+                        if (record.getDt() <= soughtDt && record.gettChamber() != null) {
+                            if (record.gettChamber() < tChamberNow)
                                 return Trend.UPWARDS;
-                            if (record.gettChamber() > lastRecord.gettChamber())
+                            if (record.gettChamber() > tChamberNow)
                                 return Trend.DOWNWARDS;
                             return Trend.STEADY;
                         }
                     }
-                    throw new IllegalStateException("Should never get here");
+                    logger.debug("No tChamber reading as far back as the requested period ({} mins)", periodMins);
                 } else if (isFull()) {
                     throw new IllegalStateException("Specified periodMins (" + periodMins + ") exceeds size of buffer ("
                             + size + ", or " + maxPeriodMins + " mins)");
@@ -0,0 +1,40 @@
+package com.easleydp.tempctrl.domain;
+
+import com.fazecast.jSerialComm.SerialPort;
+
+/** SerialTransport over an (already open) jSerialComm serial port. */
+public class JSerialCommTransport implements SerialTransport {
+    private final SerialPort comPort;
+
+    public JSerialCommTransport(SerialPort comPort) {
+        this.comPort = comPort;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        return comPort.readBytes(buffer, length, offset);
+    }
+
+    @Override
+    public void write(byte[] bytes) {
+        comPort.writeBytes(bytes, bytes.length);
+    }
+
+    @Override
+    public void setReadTimeout(int millis) {
+        // In semi-blocking mode a read returns as soon as any bytes are available, so the frame
+        // reader gets whatever has arrived in one call rather than a byte at a time.
+        // <https://github.com/Fazecast/jSerialComm/wiki/Blocking-and-Semiblocking-Reading-Usage-Example>
+        comPort.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING, millis, 0);
+    }
+
+    @Override
+    public String getName() {
+        return comPort.getSystemPortName();
+    }
+
+    @Override
+    public void close() {
+        comPort.closePort();
+    }
+}
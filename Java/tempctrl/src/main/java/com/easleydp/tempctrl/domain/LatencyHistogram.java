@@ -0,0 +1,98 @@
+package com.easleydp.tempctrl.domain;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Lock-free histogram of latencies in microseconds, with log-linear buckets:
+ * values below 16 have a bucket each, thereafter each power of 2 is split into
+ * 8 equal buckets, so a value is known to within 12.5%. Recording doesn't
+ * allocate, so can be done freely on the serial I/O thread.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS; // Values below this have a bucket each
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long micros) {
+        if (micros < 0)
+            micros = 0;
+        counts.incrementAndGet(bucketIndex(micros));
+        sum.add(micros);
+        max.accumulate(micros);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BUCKET_BITS + 1
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /** @return the largest value that falls in the specified bucket. */
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT)
+            return index;
+        int i = index - LINEAR_LIMIT;
+        int exponent = i / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        long subBucketWidth = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (i % SUB_BUCKETS + 1) * subBucketWidth - 1;
+    }
+
+    @JsonPropertyOrder({ "count", "meanMicros", "p50Micros", "p90Micros", "p99Micros", "maxMicros" })
+    public static class Snapshot {
+        public final long count;
+        public final long meanMicros;
+        public final long p50Micros;
+        public final long p90Micros;
+        public final long p99Micros;
+        public final long maxMicros;
+
+        Snapshot(long count, long meanMicros, long p50Micros, long p90Micros, long p99Micros, long maxMicros) {
+            this.count = count;
+            this.meanMicros = meanMicros;
+            this.p50Micros = p50Micros;
+            this.p90Micros = p90Micros;
+            this.p99Micros = p99Micros;
+            this.maxMicros = maxMicros;
+        }
+    }
+
+    /**
+     * @return the stats so far. The percentiles are bucket upper bounds (capped
+     *         at the max). Not atomic with respect to concurrent recording, so
+     *         may be very slightly inconsistent.
+     */
+    public Snapshot snapshot() {
+        long[] snapshotCounts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            total += snapshotCounts[i] = counts.get(i);
+        long maxValue = max.get();
+        return new Snapshot(total, total > 0 ? sum.sum() / total : 0,
+                percentile(snapshotCounts, total, 0.50, maxValue), percentile(snapshotCounts, total, 0.90, maxValue),
+                percentile(snapshotCounts, total, 0.99, maxValue), maxValue);
+    }
+
+    private static long percentile(long[] counts, long total, double fraction, long maxValue) {
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(total * fraction);
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank)
+                return Math.min(bucketUpperBound(i), maxValue);
+        }
+        return maxValue;
+    }
+}
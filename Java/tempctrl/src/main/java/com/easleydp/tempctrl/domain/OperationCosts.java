@@ -0,0 +1,155 @@
+package com.easleydp.tempctrl.domain;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * What the app's recurring operations (collection cycle, log flush, log
+ * consolidation, each HTTP endpoint) cost in thread CPU time and allocated
+ * bytes, aggregated per operation. With only 1GB of RAM on the Pi, the
+ * allocation rate of the once-a-minute work is what drives GC.
+ *
+ * Measurements are of the calling thread only, so work handed off to another
+ * thread (e.g. the serial I/O thread) isn't counted. Operations may nest, in
+ * which case the outer one's figures include the inner one's.
+ *
+ * Static, since the ThreadMXBean is JVM-wide. Thread-safe.
+ */
+public final class OperationCosts {
+    private static final Logger logger = LoggerFactory.getLogger(OperationCosts.class);
+
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private static final boolean cpuTimeSupported;
+    private static final boolean allocatedBytesSupported;
+    static {
+        cpuTimeSupported = threadMXBean.isThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+        allocatedBytesSupported = threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled();
+        if (!cpuTimeSupported || !allocatedBytesSupported)
+            logger.warn("This JVM doesn't measure thread CPU time ({}) and/or allocated bytes ({})",
+                    cpuTimeSupported, allocatedBytesSupported);
+    }
+
+    private static final Map<String, Accumulator> accumulators = new ConcurrentHashMap<>();
+
+    private OperationCosts() {
+    }
+
+    /** @return whether allocated bytes are measured, i.e. aren't reported as zero */
+    public static boolean isAllocatedBytesSupported() {
+        return allocatedBytesSupported;
+    }
+
+    /** Measures the calling thread from now until closed, which must be on the same thread. */
+    public static class Measurement implements AutoCloseable {
+        private final String operation;
+        private final long startCpuNanos;
+        private final long startAllocatedBytes;
+        private boolean closed;
+
+        Measurement(String operation) {
+            this.operation = operation;
+            startCpuNanos = cpuNanos();
+            startAllocatedBytes = allocatedBytes();
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+            closed = true;
+            long cpuMicros = (cpuNanos() - startCpuNanos) / 1000;
+            long bytes = allocatedBytes() - startAllocatedBytes;
+            Accumulator accumulator = accumulators.get(operation);
+            if (accumulator == null)
+                accumulator = accumulators.computeIfAbsent(operation, k -> new Accumulator());
+            accumulator.record(cpuMicros, bytes);
+        }
+    }
+
+    /**
+     * Usage: `try (Measurement m = OperationCosts.measure("logFlush")) { ... }`
+     */
+    public static Measurement measure(String operation) {
+        return new Measurement(operation);
+    }
+
+    private static long cpuNanos() {
+        return cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long allocatedBytes() {
+        // getCurrentThreadAllocatedBytes() is Java 14+
+        if (!allocatedBytesSupported)
+            return 0;
+        long threadId = Thread.currentThread().getId();
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(threadId);
+    }
+
+    private static class Accumulator {
+        private long count;
+        private long totalCpuMicros, maxCpuMicros, lastCpuMicros;
+        private long totalBytes, maxBytes, lastBytes;
+
+        synchronized void record(long cpuMicros, long bytes) {
+            count++;
+            totalCpuMicros += cpuMicros;
+            maxCpuMicros = Math.max(maxCpuMicros, cpuMicros);
+            lastCpuMicros = cpuMicros;
+            totalBytes += bytes;
+            maxBytes = Math.max(maxBytes, bytes);
+            lastBytes = bytes;
+        }
+
+        synchronized Snapshot snapshot() {
+            return new Snapshot(count, lastCpuMicros, totalCpuMicros / count, maxCpuMicros, lastBytes,
+                    totalBytes / count, maxBytes, totalBytes);
+        }
+    }
+
+    @JsonPropertyOrder({ "count", "lastCpuMicros", "meanCpuMicros", "maxCpuMicros", "lastAllocatedBytes",
+            "meanAllocatedBytes", "maxAllocatedBytes", "totalAllocatedBytes" })
+    public static class Snapshot {
+        public final long count;
+        public final long lastCpuMicros;
+        public final long meanCpuMicros;
+        public final long maxCpuMicros;
+        public final long lastAllocatedBytes;
+        public final long meanAllocatedBytes;
+        public final long maxAllocatedBytes;
+        public final long totalAllocatedBytes;
+
+        Snapshot(long count, long lastCpuMicros, long meanCpuMicros, long maxCpuMicros, long lastAllocatedBytes,
+                long meanAllocatedBytes, long maxAllocatedBytes, long totalAllocatedBytes) {
+            this.count = count;
+            this.lastCpuMicros = lastCpuMicros;
+            this.meanCpuMicros = meanCpuMicros;
+            this.maxCpuMicros = maxCpuMicros;
+            this.lastAllocatedBytes = lastAllocatedBytes;
+            this.meanAllocatedBytes = meanAllocatedBytes;
+            this.maxAllocatedBytes = maxAllocatedBytes;
+            this.totalAllocatedBytes = totalAllocatedBytes;
+        }
+    }
+
+    /** @return the costs so far, keyed by operation */
+    public static Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> snapshots = new TreeMap<>();
+        accumulators.forEach((operation, accumulator) -> snapshots.put(operation, accumulator.snapshot()));
+        return snapshots;
+    }
+
+    /** For tests. */
+    static void reset() {
+        accumulators.clear();
+    }
+}
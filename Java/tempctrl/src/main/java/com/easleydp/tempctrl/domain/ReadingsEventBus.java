@@ -0,0 +1,268 @@
+package com.easleydp.tempctrl.domain;
+
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * In-process bus for what happens to the chambers: readings collected, gyles
+ * superseded, log buffers flushed, parameters sent. Consumers subscribe to the
+ * events they're interested in rather than polling shared state on schedules of
+ * their own, so each event is handled exactly once, as soon as it happens.
+ *
+ * Events go into a bounded ring. Publishing is lock-free and never blocks;
+ * publishers can be any thread. Each subscription has its own cursor into the
+ * ring and its own daemon thread on which the handler is called, in publishing
+ * order, so a slow subscriber doesn't hold up the publisher or the other
+ * subscribers. A subscriber that falls a whole ring behind has events dropped
+ * as per its LagPolicy; drops and the current lag are in the stats.
+ */
+public class ReadingsEventBus implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReadingsEventBus.class);
+
+    private static final int DEFAULT_RING_SIZE = 1024;
+
+    /** How long an idle subscriber thread parks before checking anyway. */
+    private static final long PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    public abstract static class Event {
+        public final int chamberId;
+
+        protected Event(int chamberId) {
+            this.chamberId = chamberId;
+        }
+    }
+
+    /** Readings have been collected (and glitch filtered) for a chamber. */
+    public static class ReadingsCollected extends Event {
+        /** A copy, so safe to read whatever happens to the logged readings. */
+        public final ChamberReadings readings;
+        public final Date timeNow;
+        /** Whether the readings were logged in the chamber's latest gyle. */
+        public final boolean logged;
+
+        public ReadingsCollected(int chamberId, ChamberReadings readings, Date timeNow, boolean logged) {
+            super(chamberId);
+            this.readings = new ChamberReadings(readings);
+            this.timeNow = timeNow;
+            this.logged = logged;
+        }
+    }
+
+    /** A chamber's latest gyle has been superseded by a new one. */
+    public static class GyleSuperseded extends Event {
+        public final int previousGyleId;
+        public final int gyleId;
+
+        public GyleSuperseded(int chamberId, int previousGyleId, int gyleId) {
+            super(chamberId);
+            this.previousGyleId = previousGyleId;
+            this.gyleId = gyleId;
+        }
+    }
+
+    /** A gyle's log buffer has been flushed to a (gen1) log file. */
+    public static class LogFlushed extends Event {
+        public final int gyleId;
+        public final Path logFile;
+
+        public LogFlushed(int chamberId, int gyleId, Path logFile) {
+            super(chamberId);
+            this.gyleId = gyleId;
+            this.logFile = logFile;
+        }
+    }
+
+    /** Parameters have been sent to the chamber manager for a chamber. */
+    public static class ParametersSent extends Event {
+        public final ChamberParameters params;
+        public final Date timeNow;
+
+        public ParametersSent(int chamberId, ChamberParameters params, Date timeNow) {
+            super(chamberId);
+            this.params = params;
+            this.timeNow = timeNow;
+        }
+    }
+
+    /** What to do when a subscriber has fallen so far behind that events have been overwritten. */
+    public enum LagPolicy {
+        /** Carry on from the oldest event still in the ring, dropping only those overwritten. */
+        SKIP_TO_OLDEST,
+        /** Carry on from the latest event, dropping the backlog, e.g. if only the current state matters. */
+        SKIP_TO_LATEST
+    }
+
+    private static final class Slot {
+        final long seq;
+        final Event event;
+
+        Slot(long seq, Event event) {
+            this.seq = seq;
+            this.event = event;
+        }
+    }
+
+    private final AtomicReferenceArray<Slot> ring;
+    private final int mask;
+    private final AtomicLong nextSeq = new AtomicLong();
+    private final List<Subscription<?>> subscriptions = new CopyOnWriteArrayList<>();
+
+    public ReadingsEventBus() {
+        this(DEFAULT_RING_SIZE);
+    }
+
+    /**
+     * @param ringSize
+     *                     a power of 2
+     */
+    public ReadingsEventBus(int ringSize) {
+        Assert.isTrue(ringSize > 0 && Integer.bitCount(ringSize) == 1, "events.ringSize must be a power of 2");
+        ring = new AtomicReferenceArray<>(ringSize);
+        mask = ringSize - 1;
+    }
+
+    public static ReadingsEventBus fromProperties() {
+        return new ReadingsEventBus(PropertyUtils.getInteger("events.ringSize", DEFAULT_RING_SIZE));
+    }
+
+    public void publish(Event event) {
+        long seq = nextSeq.getAndIncrement();
+        ring.set((int) (seq & mask), new Slot(seq, event));
+        for (Subscription<?> subscription : subscriptions)
+            LockSupport.unpark(subscription.thread);
+    }
+
+    /**
+     * Subscribes to events of the specified type published from now on.
+     *
+     * @param name
+     *                    for the stats and the subscriber thread
+     * @param handler
+     *                    called on the subscription's own thread. Any exception
+     *                    thrown is logged and the event treated as handled.
+     */
+    public <E extends Event> Subscription<E> subscribe(String name, Class<E> eventType, Consumer<? super E> handler,
+            LagPolicy lagPolicy) {
+        Subscription<E> subscription = new Subscription<>(name, eventType, handler, lagPolicy);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    public class Subscription<E extends Event> implements AutoCloseable {
+        private final String name;
+        private final Class<E> eventType;
+        private final Consumer<? super E> handler;
+        private final LagPolicy lagPolicy;
+        private final Thread thread;
+        private final AtomicLong cursor;
+        private final AtomicLong handled = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile boolean closed = false;
+
+        private Subscription(String name, Class<E> eventType, Consumer<? super E> handler, LagPolicy lagPolicy) {
+            this.name = name;
+            this.eventType = eventType;
+            this.handler = handler;
+            this.lagPolicy = lagPolicy;
+            cursor = new AtomicLong(nextSeq.get());
+            thread = new Thread(this::run, "events-" + name);
+            thread.setDaemon(true);
+        }
+
+        private void run() {
+            while (!closed) {
+                if (!drain())
+                    LockSupport.parkNanos(this, PARK_NANOS);
+            }
+        }
+
+        /** @return whether any events were consumed */
+        private boolean drain() {
+            boolean consumed = false;
+            long seq = cursor.get();
+            while (!closed && seq < nextSeq.get()) {
+                Slot slot = ring.get((int) (seq & mask));
+                if (slot == null || slot.seq < seq)
+                    break; // Claimed but not yet written; the publisher will unpark us
+                if (slot.seq > seq) {
+                    // Overwritten before we got to it
+                    long published = nextSeq.get();
+                    long resumeSeq = lagPolicy == LagPolicy.SKIP_TO_LATEST ? published - 1
+                            : Math.max(seq + 1, published - mask);
+                    logger.warn("Event subscriber {} fell behind; dropping {} event(s)", name, resumeSeq - seq);
+                    dropped.addAndGet(resumeSeq - seq);
+                    seq = resumeSeq;
+                    cursor.set(seq);
+                    continue;
+                }
+                if (eventType.isInstance(slot.event)) {
+                    try {
+                        handler.accept(eventType.cast(slot.event));
+                    } catch (Throwable t) {
+                        logger.error("Event subscriber " + name + " failed", t);
+                    }
+                    handled.incrementAndGet();
+                }
+                cursor.set(++seq);
+                consumed = true;
+            }
+            return consumed;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+            LockSupport.unpark(thread);
+        }
+
+        public SubscriptionStats getStats() {
+            return new SubscriptionStats(handled.get(), dropped.get(), Math.max(0, nextSeq.get() - cursor.get()));
+        }
+    }
+
+    @JsonPropertyOrder({ "handled", "dropped", "lag" })
+    public static class SubscriptionStats {
+        public final long handled, dropped, lag;
+
+        SubscriptionStats(long handled, long dropped, long lag) {
+            this.handled = handled;
+            this.dropped = dropped;
+            this.lag = lag;
+        }
+    }
+
+    /** @return the stats of each current subscription, keyed by name */
+    public Map<String, SubscriptionStats> getStats() {
+        Map<String, SubscriptionStats> stats = new TreeMap<>();
+        for (Subscription<?> subscription : subscriptions)
+            stats.put(subscription.name, subscription.getStats());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        for (Subscription<?> subscription : subscriptions)
+            subscription.close();
+    }
+}
@@ -0,0 +1,217 @@
+package com.easleydp.tempctrl.domain;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the comma separated values of a response frame in place, i.e. without
+ * splitting it into Strings. Reusable: call `reset()` for each frame.
+ *
+ * Accepts exactly what `String.split(",")` plus `Integer.parseInt()`,
+ * `Double.parseDouble()` etc. would accept (so trailing empty values are
+ * ignored). Errors are reported as IOExceptions giving the position within the
+ * payload (i.e. after the prefix) at which the problem was found.
+ */
+final class ResponseCursor {
+    private static final byte DELIM = ',';
+
+    // Powers of ten exactly representable as doubles
+    private static final double[] POW10 = new double[23];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10;
+    }
+    // Decimals with no more significant digits than this have an exact long mantissa
+    // that is also exactly representable as a double.
+    private static final int MAX_FAST_PATH_DIGITS = 15;
+
+    private String responseName;
+    private ByteBuffer frame;
+    private int start;
+    private int limit;
+
+    private int pos;
+    private int valueStart;
+    private int valueEnd;
+    private int valueCount;
+    private boolean moreValues;
+
+    /**
+     * @param responseName
+     *                         for error messages, e.g. "chRds"
+     * @param frame
+     *                         positioned at the first value; not modified.
+     */
+    ResponseCursor reset(String responseName, ByteBuffer frame) {
+        this.responseName = responseName;
+        this.frame = frame;
+        this.start = frame.position();
+        int end = frame.limit();
+        while (end > start && frame.get(end - 1) == DELIM)
+            end--;
+        this.limit = end;
+        this.pos = start;
+        this.valueCount = 0;
+        // As per split(), an empty payload has one (empty) value but ",,," has none
+        this.moreValues = end > start || end == frame.limit();
+        return this;
+    }
+
+    int nextInt() throws IOException {
+        beginValue();
+        int i = valueStart;
+        boolean negative = false;
+        if (i < valueEnd) {
+            byte b = frame.get(i);
+            if (b == '-' || b == '+') {
+                negative = b == '-';
+                i++;
+            }
+        }
+        if (i == valueEnd)
+            throw error(valueStart == valueEnd ? "empty value" : "expected digit", i);
+        long acc = 0;
+        for (; i < valueEnd; i++) {
+            byte b = frame.get(i);
+            if (b < '0' || b > '9')
+                throw error("unexpected '" + (char) b + "' in integer", i);
+            acc = acc * 10 + (b - '0');
+            if (acc > -(long) Integer.MIN_VALUE)
+                throw error("integer out of range", valueStart);
+        }
+        if (!negative && acc > Integer.MAX_VALUE)
+            throw error("integer out of range", valueStart);
+        endValue();
+        return (int) (negative ? -acc : acc);
+    }
+
+    double nextDouble() throws IOException {
+        beginValue();
+        int i = valueStart;
+        boolean negative = false;
+        if (i < valueEnd) {
+            byte b = frame.get(i);
+            if (b == '-' || b == '+') {
+                negative = b == '-';
+                i++;
+            }
+        }
+        long mantissa = 0;
+        int digitCount = 0;
+        int fractionDigitCount = 0;
+        boolean point = false;
+        boolean simple = true;
+        for (; i < valueEnd; i++) {
+            byte b = frame.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0'); // Only used if few enough digits not to overflow
+                digitCount++;
+                if (point)
+                    fractionDigitCount++;
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                simple = false;
+                break;
+            }
+        }
+        double value;
+        if (simple && digitCount > 0 && digitCount <= MAX_FAST_PATH_DIGITS) {
+            // Both operands are exact so the (correctly rounded) quotient is exactly what
+            // Double.parseDouble() would return.
+            value = mantissa / POW10[fractionDigitCount];
+            if (negative)
+                value = -value;
+        } else {
+            // Leave anything unusual (exponent, "NaN", very many digits, ...) to the JDK.
+            try {
+                value = Double.parseDouble(valueAsString());
+            } catch (NumberFormatException e) {
+                throw error("not a number", valueStart);
+            }
+        }
+        endValue();
+        return value;
+    }
+
+    /** As per the protocol, "1" or "T" is true; anything else is false. */
+    boolean nextBool() throws IOException {
+        beginValue();
+        boolean value = valueEnd - valueStart == 1 && (frame.get(valueStart) == '1' || frame.get(valueStart) == 'T');
+        endValue();
+        return value;
+    }
+
+    /** For a value that should be a single character. */
+    char nextChar() throws IOException {
+        beginValue();
+        if (valueEnd - valueStart != 1)
+            throw error("expected a single character", valueStart);
+        char value = (char) frame.get(valueStart);
+        endValue();
+        return value;
+    }
+
+    String nextString() throws IOException {
+        beginValue();
+        String value = valueAsString();
+        endValue();
+        return value;
+    }
+
+    /** @return the number of values read so far. */
+    int getValueCount() {
+        return valueCount;
+    }
+
+    boolean hasMoreValues() {
+        return moreValues;
+    }
+
+    /** Call once the expected number of values has been read. */
+    void expectEnd() throws IOException {
+        if (moreValues)
+            throw error("expected " + valueCount + " values, found more", pos);
+    }
+
+    /**
+     * For errors found by the caller in the value just read, e.g. a value out of
+     * range.
+     */
+    IOException valueError(String problem) {
+        return error(problem, valueStart);
+    }
+
+    private void beginValue() throws IOException {
+        if (!moreValues)
+            throw error("expected more than " + valueCount + " values", pos);
+        valueStart = pos;
+        int i = pos;
+        while (i < limit && frame.get(i) != DELIM)
+            i++;
+        valueEnd = i;
+    }
+
+    private void endValue() {
+        valueCount++;
+        if (valueEnd < limit) {
+            pos = valueEnd + 1; // Skip delimiter
+        } else {
+            pos = valueEnd;
+            moreValues = false;
+        }
+    }
+
+    private String valueAsString() {
+        char[] chars = new char[valueEnd - valueStart];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = (char) frame.get(valueStart + i);
+        return new String(chars);
+    }
+
+    private IOException error(String problem, int at) {
+        return new IOException(String.format("Malformed '%s' response at position %d (%s): %s", responseName,
+                at - start, problem, SerialFrameReader.asString(frame)));
+    }
+}
@@ -0,0 +1,273 @@
+package com.easleydp.tempctrl.domain;
+
+import static com.easleydp.tempctrl.domain.PropertyUtils.getBoolean;
+import static com.easleydp.tempctrl.domain.PropertyUtils.getInteger;
+import static com.easleydp.tempctrl.domain.PropertyUtils.getString;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.easleydp.tempctrl.domain.optimise.Smoother.IntPropertyAccessor;
+import com.easleydp.tempctrl.dto.GlitchFilterDto;
+
+/**
+ * Streaming Hampel filter that removes sensor glitches from a chamber's
+ * readings as they arrive, i.e. before they reach the gyle's log buffer and
+ * trend buffer.
+ *
+ * DS18B20 sensors occasionally return a sentinel value (85.0 on power-on reset,
+ * -127 when disconnected) or a one-sample spike. Left alone, such a value
+ * defeats the Smoother, wastes bytes in the log files and can trigger a false
+ * 'left switched off' notification.
+ *
+ * Each temperature channel keeps a fixed-size window of its most recent raw
+ * values. A new value is flagged if it is a sentinel, or if it deviates from
+ * the window median by more than both `minDeviation` and `nSigmas` x the
+ * scaled median absolute deviation. A flagged value is replaced by the median.
+ * Because raw (unfiltered) values enter the window, a genuine step change is
+ * accepted once it has persisted for just over half the window.
+ *
+ * A sentinel that arrives before the channel has any history has no median to
+ * be replaced by, so the channel is nulled-out ('no reading'). And a sensor that
+ * keeps on returning sentinels is taken to be dead rather than glitching: after
+ * `maxSentinelRun` in a row the channel is nulled-out (and its history
+ * discarded), so that the fault shows as a gap rather than being flat-lined at
+ * the last good value, and the sentinel itself never reaches the gyle.
+ *
+ * Impl note: Called once per reading, so the filtering path works on
+ * preallocated primitive arrays and doesn't allocate.
+ */
+public class SensorGlitchFilter {
+    private static final Logger logger = LoggerFactory.getLogger(SensorGlitchFilter.class);
+
+    /** Scales MAD to be a consistent estimator of standard deviation. */
+    private static final double MAD_SCALE = 1.4826;
+
+    /** DS18B20 power-on reset value (degrees x 10). */
+    static final int SENTINEL_POWER_ON = 850;
+    /**
+     * Anything below this (degrees x 10) is regarded as the 'disconnected'
+     * sentinel. Mirrors the MCU's own check in `getTemperature()`.
+     */
+    static final int SENTINEL_DISCONNECTED_BELOW = -500;
+
+    private static final String[] channelNames = { "tBeer", "tChamber", "tExternal", "tPi" };
+    private static final IntPropertyAccessor[] channelAccessors = { ChamberReadings.tBeerAccessor,
+            ChamberReadings.tChamberAccessor, ChamberReadings.tExternalAccessor, ChamberReadings.tPiAccessor };
+
+    private final int windowSize;
+    private final double nSigmas;
+    private final int minDeviation;
+    private final int maxSentinelRun;
+    private final Channel[] channels;
+
+    public SensorGlitchFilter(int windowSize, double nSigmas, int minDeviation, int maxSentinelRun) {
+        Assert.isTrue(windowSize >= 3 && windowSize % 2 == 1, "windowSize should be an odd number >= 3");
+        Assert.isTrue(nSigmas > 0, "nSigmas should be > 0");
+        Assert.isTrue(minDeviation >= 0, "minDeviation should be >= 0");
+        Assert.isTrue(maxSentinelRun >= 1, "maxSentinelRun should be >= 1");
+        this.windowSize = windowSize;
+        this.nSigmas = nSigmas;
+        this.minDeviation = minDeviation;
+        this.maxSentinelRun = maxSentinelRun;
+        channels = new Channel[channelNames.length];
+        for (int i = 0; i < channels.length; i++)
+            channels[i] = new Channel();
+    }
+
+    /**
+     * Builds a filter for the supplied chamber, taking any settings from the
+     * chamber's `glitchFilter` config and defaulting the rest from the
+     * `readings.glitchFilter.*` properties.
+     *
+     * @return the filter, or null if disabled for this chamber.
+     */
+    public static SensorGlitchFilter forChamber(Chamber chamber) {
+        GlitchFilterDto config = chamber.getGlitchFilter();
+        if (config == null)
+            config = new GlitchFilterDto();
+        boolean enabled = config.getEnabled() != null ? config.getEnabled()
+                : getBoolean("readings.glitchFilter.enabled", true);
+        if (!enabled)
+            return null;
+        int windowSize = config.getWindowSize() != null ? config.getWindowSize()
+                : getInteger("readings.glitchFilter.windowSize", 5);
+        double nSigmas = config.getnSigmas() != null ? config.getnSigmas()
+                : Double.parseDouble(getString("readings.glitchFilter.nSigmas", "3"));
+        int minDeviation = config.getMinDeviation() != null ? config.getMinDeviation()
+                : getInteger("readings.glitchFilter.minDeviation", 50);
+        int maxSentinelRun = config.getMaxSentinelRun() != null ? config.getMaxSentinelRun()
+                : getInteger("readings.glitchFilter.maxSentinelRun", 5);
+        return new SensorGlitchFilter(windowSize, nSigmas, minDeviation, maxSentinelRun);
+    }
+
+    /**
+     * Filters the supplied readings in place. A channel for which there's no
+     * reading to be had is set to null.
+     *
+     * Only the first of a run of flagged values on a channel (e.g. a sensor
+     * reading 85.0 for a few samples after a reset) is logged as a warning, as is
+     * the point at which a sensor is taken to be dead; the rest are logged at
+     * debug level, and the end of the run at info level.
+     *
+     * @return the number of values flagged (i.e. replaced or nulled-out) in this
+     *         set of readings.
+     */
+    public synchronized int filter(ChamberReadings readings) {
+        int flagged = 0;
+        for (int i = 0; i < channels.length; i++) {
+            IntPropertyAccessor accessor = channelAccessors[i];
+            int value = accessor.getValue(readings);
+            Channel channel = channels[i];
+            int filtered = channel.accept(value);
+            if (filtered != value) {
+                Object replacement = filtered != NO_READING ? filtered : null;
+                if (filtered != NO_READING)
+                    accessor.setValue(readings, filtered);
+                else
+                    clearChannel(readings, i);
+                flagged++;
+                channel.flaggedCount++;
+                if (channel.runLength++ == 0)
+                    logger.warn("Sensor glitch: {} was {}, replaced with {} (dt={})", channelNames[i], value,
+                            replacement, readings.getDt());
+                else if (channel.sentinelRun == maxSentinelRun + 1)
+                    logger.warn("Sensor {} has returned {} sentinel values in a row; taking it to be dead and"
+                            + " nulling it out (dt={})", channelNames[i], channel.sentinelRun, readings.getDt());
+                else
+                    logger.debug("Sensor glitch: {} was {}, replaced with {} (dt={})", channelNames[i], value,
+                            replacement, readings.getDt());
+            } else {
+                if (channel.runLength > 0) {
+                    if (channel.runLength > 1)
+                        logger.info("Sensor glitches: {} values in a row of {} replaced (ended dt={})",
+                                channel.runLength, channelNames[i], readings.getDt());
+                    channel.runLength = 0;
+                }
+            }
+        }
+        return flagged;
+    }
+
+    private static void clearChannel(ChamberReadings readings, int channel) {
+        switch (channel) {
+        case 0:
+            readings.settBeer(null);
+            break;
+        case 1:
+            readings.settChamber(null);
+            break;
+        case 2:
+            readings.settExternal(null);
+            break;
+        default:
+            readings.settPi(null);
+        }
+    }
+
+    /** @return number of flagged values since this filter was created. */
+    public synchronized long getFlaggedCount() {
+        long total = 0;
+        for (Channel channel : channels)
+            total += channel.flaggedCount;
+        return total;
+    }
+
+    /** @return channel name to flagged count, for those channels with a non-zero count. */
+    public synchronized Map<String, Long> getFlaggedCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < channels.length; i++)
+            if (channels[i].flaggedCount > 0)
+                counts.put(channelNames[i], channels[i].flaggedCount);
+        return counts;
+    }
+
+    /**
+     * Returned by `Channel.accept()` when there's no reading to be had. Can't be
+     * mistaken for a raw value since it's well below the disconnected sentinel.
+     */
+    private static final int NO_READING = Integer.MIN_VALUE;
+
+    private static boolean isSentinel(int value) {
+        return value == SENTINEL_POWER_ON || value < SENTINEL_DISCONNECTED_BELOW;
+    }
+
+    /** Filter state for a single temperature channel. */
+    private class Channel {
+        /** Ring buffer of the most recent raw values. */
+        private final int[] window = new int[windowSize];
+        /** Scratch space for median calculations. */
+        private final int[] scratch = new int[windowSize];
+        private int count = 0;
+        private int next = 0;
+        private long flaggedCount = 0;
+        /** Number of values flagged in a row, up to the last */
+        private int runLength = 0;
+        /** Number of sentinels in a row, up to the last */
+        private int sentinelRun = 0;
+
+        /**
+         * @return the value to be used in place of the supplied raw value, or
+         *         NO_READING.
+         */
+        int accept(int value) {
+            if (isSentinel(value)) {
+                if (++sentinelRun > maxSentinelRun) {
+                    // Dead sensor. Forget the history, which will be stale by the time it
+                    // recovers.
+                    count = next = 0;
+                    return NO_READING;
+                }
+                // Don't let a sentinel into the window; it's a known-bad value rather than a
+                // level shift.
+                return count > 0 ? median() : NO_READING;
+            }
+            sentinelRun = 0;
+
+            window[next] = value;
+            next = (next + 1) % windowSize;
+            if (count < windowSize)
+                count++;
+            if (count < windowSize)
+                return value; // Not enough history to judge
+
+            int median = median();
+            int deviation = Math.abs(value - median);
+            if (deviation <= minDeviation)
+                return value;
+            double threshold = nSigmas * MAD_SCALE * medianAbsoluteDeviation(median);
+            if (deviation <= threshold)
+                return value;
+            return median;
+        }
+
+        private int median() {
+            System.arraycopy(window, 0, scratch, 0, count);
+            return sortedMedian(scratch, count);
+        }
+
+        private int medianAbsoluteDeviation(int median) {
+            for (int i = 0; i < count; i++)
+                scratch[i] = Math.abs(window[i] - median);
+            return sortedMedian(scratch, count);
+        }
+    }
+
+    /** Insertion sorts the first `len` values in place and returns the median. */
+    private static int sortedMedian(int[] values, int len) {
+        for (int i = 1; i < len; i++) {
+            int v = values[i];
+            int j = i - 1;
+            while (j >= 0 && values[j] > v) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = v;
+        }
+        return len % 2 == 1 ? values[len / 2] : (values[len / 2 - 1] + values[len / 2]) / 2;
+    }
+}
@@ -0,0 +1,223 @@
+package com.easleydp.tempctrl.domain;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.easleydp.tempctrl.domain.ArduinoChamberManager.MessengerFactory;
+import com.fazecast.jSerialComm.SerialPortTimeoutException;
+
+/**
+ * The connection to the chamber manager device, on behalf of the serial I/O
+ * thread. Port discovery and opening happen on a background thread, retried
+ * with exponential backoff, so that a dead USB link never stalls the I/O thread
+ * (and hence the collection cycle or web requests): while there's no
+ * connection, commands fail fast.
+ *
+ * <pre>
+ * RECONNECTING --open succeeds, claimed by I/O thread--&gt; CONNECTED --timeout--&gt; DEGRADED --success--&gt; CONNECTED
+ * RECONNECTING --open fails--&gt; ABSENT --backoff elapsed, open fails--&gt; ABSENT (backoff doubled)
+ * ABSENT --backoff elapsed, open succeeds, claimed by I/O thread--&gt; CONNECTED
+ * CONNECTED or DEGRADED --other IOException, or too many timeouts in a row--&gt; RECONNECTING
+ * </pre>
+ *
+ * A newly opened messenger is handed over to the I/O thread, which claims it
+ * when it next needs it. Only then is the state CONNECTED, so CONNECTED always
+ * means the I/O thread has a messenger to use.
+ *
+ * A read timeout alone doesn't drop the connection, since re-opening the port
+ * restarts the MCU, which is liable to cause another timeout.
+ *
+ * Other than `getState()` and `close()`, methods are for the I/O thread only.
+ * (`close()` is for once the I/O thread has stopped.)
+ */
+public class SerialConnection implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SerialConnection.class);
+
+    public enum State {
+        /** The last command succeeded. */
+        CONNECTED,
+        /** Connected but the last command timed out. */
+        DEGRADED,
+        /** Opening the port, or about to, or opened but not yet claimed by the I/O thread. */
+        RECONNECTING,
+        /** The last attempt to open the port failed; will retry after a backoff. */
+        ABSENT
+    }
+
+    static final int MAX_CONSECUTIVE_TIMEOUTS = 3;
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 5 * 60 * 1000;
+    /** How long the very first command waits for the very first attempt to open the port. */
+    private static final long FIRST_CONNECT_WAIT_MILLIS = 10 * 1000;
+
+    private final MessengerFactory messengerFactory;
+    private final SerialStats stats;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final ScheduledExecutorService connector;
+
+    private volatile State state = State.RECONNECTING;
+    private volatile boolean closed = false;
+    private final CountDownLatch firstAttempt = new CountDownLatch(1);
+    private final AtomicReference<ArduinoMessenger> opened = new AtomicReference<>(); // Awaiting hand over
+
+    // Only accessed on the connector thread
+    private long backoffMillis;
+    private boolean everConnected = false;
+
+    // Only accessed on the I/O thread
+    private ArduinoMessenger messenger = null;
+    private int consecutiveTimeouts = 0;
+
+    public SerialConnection(MessengerFactory messengerFactory, SerialStats stats) {
+        this(messengerFactory, stats, INITIAL_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+    }
+
+    SerialConnection(MessengerFactory messengerFactory, SerialStats stats, long initialBackoffMillis,
+            long maxBackoffMillis) {
+        this.messengerFactory = messengerFactory;
+        this.stats = stats;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        backoffMillis = initialBackoffMillis;
+        connector = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "arduino-connect");
+            thread.setDaemon(true);
+            return thread;
+        });
+        connector.execute(this::connect);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the messenger, if connected
+     * @throws IOException
+     *                         straight away if not connected (other than
+     *                         initially, when the first attempt to connect is
+     *                         awaited)
+     */
+    public ArduinoMessenger getMessenger() throws IOException {
+        if (messenger == null) {
+            try {
+                firstAttempt.await(FIRST_CONNECT_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting to connect to chamber manager", e);
+            }
+            messenger = opened.getAndSet(null);
+            if (messenger == null)
+                throw new IOException("Not connected to chamber manager (" + state + ")");
+            consecutiveTimeouts = 0;
+            state = State.CONNECTED;
+        }
+        return messenger;
+    }
+
+    /** Reports that a command using the messenger completed without an IOException. */
+    public void succeeded() {
+        if (messenger != null) {
+            consecutiveTimeouts = 0;
+            state = State.CONNECTED;
+        }
+    }
+
+    /** Reports that a command using the messenger threw an IOException. */
+    public void failed(IOException e) {
+        if (messenger == null)
+            return; // Failed fast, or failed to connect
+        if (e instanceof SerialPortTimeoutException && ++consecutiveTimeouts < MAX_CONSECUTIVE_TIMEOUTS) {
+            state = State.DEGRADED;
+            return;
+        }
+        logger.info("Closing ArduinoMessenger after {}", e.toString());
+        messenger.close();
+        messenger = null;
+        state = State.RECONNECTING;
+        connector.execute(this::connect);
+    }
+
+    private void connect() {
+        try {
+            ArduinoMessenger newMessenger = messengerFactory.create();
+            newMessenger.setStats(stats);
+            if (everConnected) {
+                stats.incrementReconnects();
+                logger.info("Reconnected to chamber manager");
+            }
+            everConnected = true;
+            backoffMillis = initialBackoffMillis;
+            // Hand over to the I/O thread, which will set the state to CONNECTED once it has claimed it
+            state = State.RECONNECTING;
+            opened.set(newMessenger);
+            if (closed)
+                closeUnclaimed(); // close() may have missed it
+        } catch (IOException | RuntimeException e) {
+            // Only a warning on the first of a run of failures, to avoid flooding the log
+            if (state != State.ABSENT)
+                logger.warn("Failed to connect to chamber manager (will retry): " + e.getMessage());
+            else
+                logger.debug("Failed to connect to chamber manager (will retry after {}ms): {}", backoffMillis,
+                        e.getMessage());
+            state = State.ABSENT;
+            try {
+                connector.schedule(this::connect, backoffMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ree) {
+                // Closing
+            }
+            backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+        } finally {
+            firstAttempt.countDown();
+        }
+    }
+
+    private void closeUnclaimed() {
+        ArduinoMessenger unclaimed = opened.getAndSet(null);
+        if (unclaimed != null)
+            unclaimed.close();
+    }
+
+    /** Call once the I/O thread has stopped. */
+    @Override
+    public void close() {
+        close(true);
+    }
+
+    /**
+     * Call once the I/O thread has been closed.
+     *
+     * @param ioThreadStopped
+     *                            whether the I/O thread has actually stopped
+     *                            (rather than timed out stopping). If not, the
+     *                            messenger it claimed is left alone since it may
+     *                            still be in use.
+     */
+    public void close(boolean ioThreadStopped) {
+        closed = true;
+        connector.shutdownNow();
+        try {
+            connector.awaitTermination(15, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeUnclaimed();
+        if (!ioThreadStopped) {
+            logger.warn("I/O thread still running, so leaving its ArduinoMessenger open");
+            return;
+        }
+        if (messenger != null) {
+            messenger.close();
+            messenger = null;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.easleydp.tempctrl.domain;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fazecast.jSerialComm.SerialPortTimeoutException;
+
+/**
+ * Extracts `^...$` framed messages from a serial byte stream.
+ *
+ * Rather than reading a byte at a time, each read asks the source for as many
+ * bytes as fit in a reusable read buffer (in semi-blocking mode the serial port
+ * returns whatever is available). A small state machine then scans the buffered
+ * bytes, copying a frame's content into a reusable frame buffer. Any bytes
+ * following a frame's end stay buffered for the next call.
+ *
+ * Behaviour is as per the original byte-at-a-time reader in ArduinoMessenger:
+ * - bytes before `^` are discarded (with a warning, unless CR or LF);
+ * - non-printable bytes within a frame are dropped (with a warning);
+ * - a flood of zero bytes outside a frame is taken to mean the USB port is
+ * already in use;
+ * - a read that returns nothing signifies a timeout.
+ *
+ * Not thread-safe.
+ */
+public class SerialFrameReader {
+    private static final Logger logger = LoggerFactory.getLogger(SerialFrameReader.class);
+
+    static final byte BYTE_START = '^';
+    static final byte BYTE_END = '$';
+    private static final byte CR = 13;
+    private static final byte LF = 10;
+
+    /** Receiving this many zeros in a row is symptomatic of the port being in use. */
+    private static final int ZERO_FLOOD_COUNT = 1000;
+
+    private static final int DEFAULT_READ_BUFFER_SIZE = 1024;
+    private static final int INITIAL_FRAME_BUFFER_SIZE = 256;
+
+    /** Abstraction of the serial port's read operation. */
+    @FunctionalInterface
+    public interface ByteSource {
+        /**
+         * Reads up to `length` bytes into `buffer` starting at `offset`, blocking
+         * until at least one byte is available or the source's read timeout
+         * elapses.
+         *
+         * @return the number of bytes read, 0 on timeout or -1 on error.
+         */
+        int read(byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    private final ByteSource source;
+
+    private final byte[] readBuffer;
+    private int readPos = 0;
+    private int readLimit = 0;
+
+    private byte[] frameBuffer = new byte[INITIAL_FRAME_BUFFER_SIZE];
+    private int frameLength = 0;
+    private ByteBuffer frameView = ByteBuffer.wrap(frameBuffer).asReadOnlyBuffer();
+
+    public SerialFrameReader(ByteSource source) {
+        this(source, DEFAULT_READ_BUFFER_SIZE);
+    }
+
+    SerialFrameReader(ByteSource source, int readBufferSize) {
+        this.source = source;
+        this.readBuffer = new byte[readBufferSize];
+    }
+
+    /**
+     * Reads the next frame.
+     *
+     * @return a read-only view of the frame's content (minus `^` and `$`),
+     *         positioned at its start. Only valid until the next call to this
+     *         reader.
+     * @throws SerialPortTimeoutException
+     *                                        if the source times out before a
+     *                                        complete frame has been received.
+     */
+    public ByteBuffer readFrame() throws IOException {
+        boolean collecting = false;
+        int consecutiveZeroCount = 0;
+        frameLength = 0;
+        while (true) {
+            if (readPos == readLimit)
+                fill();
+            final byte[] buf = readBuffer;
+            final int limit = readLimit;
+            int pos = readPos;
+            if (!collecting) {
+                for (; pos < limit; pos++) {
+                    byte b = buf[pos];
+                    if (b == BYTE_START) {
+                        collecting = true;
+                        pos++;
+                        break;
+                    }
+                    if (b == CR || b == LF)
+                        continue;
+                    if (b == 0) {
+                        if (++consecutiveZeroCount >= ZERO_FLOOD_COUNT)
+                            throw new IOException("USB port appears to be already in use.");
+                    } else {
+                        consecutiveZeroCount = 0;
+                        if (isPrintable(b))
+                            logger.warn("Expected start byte but received {} ('{}')", b, Character.toString((char) b));
+                        else
+                            logger.warn("Expected start byte but received {}", b);
+                    }
+                }
+            }
+            if (collecting) {
+                for (; pos < limit; pos++) {
+                    byte b = buf[pos];
+                    if (b == BYTE_END) {
+                        readPos = pos + 1;
+                        frameView.clear().limit(frameLength);
+                        return frameView;
+                    }
+                    if (isPrintable(b))
+                        appendToFrame(b);
+                    else
+                        logger.warn("Non-printable character received while collecting: {}", b);
+                }
+            }
+            readPos = pos;
+        }
+    }
+
+    /** Convenience wrapper of `readFrame()`. */
+    public String readFrameAsString() throws IOException {
+        readFrame();
+        return new String(frameBuffer, 0, frameLength, US_ASCII);
+    }
+
+    /**
+     * Discards anything already buffered and anything the source can supply
+     * before it times out (so the caller will typically have set a short
+     * timeout).
+     *
+     * @return the printable characters discarded (other than CR and LF), or null
+     *         if none.
+     */
+    public String purge() throws IOException {
+        StringBuilder purged = null;
+        int consecutiveZeroCount = 0;
+        while (true) {
+            if (readPos == readLimit) {
+                int numRead = source.read(readBuffer, 0, readBuffer.length);
+                if (numRead <= 0)
+                    break;
+                readPos = 0;
+                readLimit = numRead;
+            }
+            for (; readPos < readLimit; readPos++) {
+                byte b = readBuffer[readPos];
+                if (b == CR || b == LF) // Anything other than CR and LF is interesting...
+                    continue;
+                if (b == 0) {
+                    if (++consecutiveZeroCount >= ZERO_FLOOD_COUNT)
+                        throw new IOException("USB port appears to be already in use.");
+                } else {
+                    consecutiveZeroCount = 0;
+                    if (isPrintable(b)) {
+                        if (purged == null)
+                            purged = new StringBuilder();
+                        purged.append((char) b);
+                    } else {
+                        logger.warn("Non-printable character received while purging: {}", b);
+                    }
+                }
+            }
+        }
+        return purged != null && purged.length() > 0 ? purged.toString() : null;
+    }
+
+    /** @return the remaining content of the supplied frame (which is not modified). */
+    public static String asString(ByteBuffer frame) {
+        byte[] bytes = new byte[frame.remaining()];
+        frame.duplicate().get(bytes);
+        return new String(bytes, US_ASCII);
+    }
+
+    private void fill() throws IOException {
+        int numRead = source.read(readBuffer, 0, readBuffer.length);
+        if (numRead == 0)
+            throw new SerialPortTimeoutException("The read operation timed out before any data was returned.");
+        if (numRead < 0)
+            throw new IOException("Error reading from serial port");
+        readPos = 0;
+        readLimit = numRead;
+    }
+
+    private void appendToFrame(byte b) {
+        if (frameLength == frameBuffer.length) {
+            byte[] bigger = new byte[frameBuffer.length * 2];
+            System.arraycopy(frameBuffer, 0, bigger, 0, frameLength);
+            frameBuffer = bigger;
+            frameView = ByteBuffer.wrap(frameBuffer).asReadOnlyBuffer();
+        }
+        frameBuffer[frameLength++] = b;
+    }
+
+    private static boolean isPrintable(byte b) {
+        return 32 <= b && b <= 126;
+    }
+}
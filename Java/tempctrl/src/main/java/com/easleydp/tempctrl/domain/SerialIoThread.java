@@ -0,0 +1,195 @@
+package com.easleydp.tempctrl.domain;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fazecast.jSerialComm.SerialPortTimeoutException;
+
+/**
+ * The one thread allowed to talk to the chamber manager device. Commands are
+ * queued by priority (FIFO within a priority) and executed one at a time, so
+ * requests and responses of different callers can never interleave on the
+ * serial port.
+ *
+ * Each command has a timeout covering both its time in the queue and its
+ * execution. A command that times out while queued is skipped. One that times
+ * out while executing is left to finish (serial reads can't be interrupted) but
+ * its result is discarded.
+ */
+public class SerialIoThread implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SerialIoThread.class);
+
+    /** In order of precedence. */
+    public enum Priority {
+        /** Commands that change what the device is doing, e.g. setting params. */
+        CONTROL,
+        /** Collection of readings, which should happen at a predictable time. */
+        READINGS,
+        /** Anything that can wait, e.g. status requests and log slurps. */
+        HOUSEKEEPING
+    }
+
+    @FunctionalInterface
+    public interface Command<T> {
+        T execute() throws IOException;
+    }
+
+    private static final class QueuedCommand<T> implements Comparable<QueuedCommand<?>> {
+        final String name;
+        final Priority priority;
+        final long sequenceNum;
+        final Command<T> command;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        QueuedCommand(String name, Priority priority, long sequenceNum, Command<T> command) {
+            this.name = name;
+            this.priority = priority;
+            this.sequenceNum = sequenceNum;
+            this.command = command;
+        }
+
+        @Override
+        public int compareTo(QueuedCommand<?> other) {
+            int c = priority.compareTo(other.priority);
+            return c != 0 ? c : Long.compare(sequenceNum, other.sequenceNum);
+        }
+
+        void execute(SerialStats stats) {
+            if (future.isDone()) {
+                logger.warn("Skipping '{}' command, which timed out while queued", name);
+                return;
+            }
+            long start = System.nanoTime();
+            T result;
+            try {
+                result = command.execute();
+            } catch (Throwable t) {
+                if (stats != null && t instanceof SerialPortTimeoutException)
+                    stats.incrementTimeouts();
+                recordDuration(stats, start);
+                future.completeExceptionally(t);
+                return;
+            }
+            recordDuration(stats, start); // Before completing, so the caller sees the stats updated
+            future.complete(result);
+        }
+
+        private void recordDuration(SerialStats stats, long startNanos) {
+            if (stats != null)
+                stats.recordCommand(name, (System.nanoTime() - startNanos) / 1000);
+        }
+    }
+
+    private final PriorityBlockingQueue<QueuedCommand<?>> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Thread thread;
+    private final SerialStats stats;
+    private volatile boolean closed = false;
+
+    public SerialIoThread(String threadName) {
+        this(threadName, null);
+    }
+
+    /**
+     * @param stats
+     *                  where to record each command's execution time and any
+     *                  read timeouts; null for nowhere
+     */
+    public SerialIoThread(String threadName, SerialStats stats) {
+        this.stats = stats;
+        thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues the supplied command for execution on the I/O thread.
+     *
+     * @return a future completed with the command's result, or exceptionally with
+     *         whatever the command threw, or with a TimeoutException if the
+     *         command didn't complete within `timeoutMillis`.
+     */
+    public <T> CompletableFuture<T> submit(String name, Priority priority, long timeoutMillis, Command<T> command) {
+        QueuedCommand<T> qc = new QueuedCommand<>(name, priority, sequence.getAndIncrement(), command);
+        if (closed) {
+            qc.future.completeExceptionally(new IOException("Can't execute '" + name + "': I/O thread is closed"));
+            return qc.future;
+        }
+        qc.future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        queue.add(qc);
+        return qc.future;
+    }
+
+    /**
+     * Waits for the supplied future, for the benefit of synchronous callers.
+     * Unwraps any IOException the command threw; a timeout is reported as an
+     * IOException too, since it signifies the device isn't responding.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof TimeoutException)
+                throw new IOException("Timed out waiting for chamber manager", cause);
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw e;
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            QueuedCommand<?> qc;
+            try {
+                qc = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            qc.execute(stats);
+        }
+        failPending();
+    }
+
+    private void failPending() {
+        List<QueuedCommand<?>> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        for (QueuedCommand<?> qc : pending)
+            qc.future.completeExceptionally(new IOException("Can't execute '" + qc.name + "': I/O thread is closed"));
+    }
+
+    /**
+     * Stops the I/O thread once any command currently executing has finished.
+     * Commands still queued are completed exceptionally.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join(15 * 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failPending();
+    }
+
+    /** @return whether the thread has stopped, i.e. having been closed. */
+    public boolean isStopped() {
+        return !thread.isAlive();
+    }
+}
@@ -0,0 +1,170 @@
+package com.easleydp.tempctrl.domain;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Captures the serial traffic to and from the chamber manager device, i.e.
+ * every request written and every read (including reads that timed out), to a
+ * compact binary file. The capture can be fed back through the comms stack with
+ * `SerialReplayTransport`.
+ *
+ * File layout: a header (magic, format version, wall clock time of the first
+ * record in millis) followed by variable length records:
+ *
+ * <pre>
+ * type           1 byte: 'O' transport opened, 'W' written, 'R' read
+ * micros         varint: monotonic time since the previous record
+ * length         varint
+ * bytes          `length`
+ * </pre>
+ *
+ * Once the file reaches its maximum size it's rolled over: renamed with a
+ * ".1" suffix (replacing any previous one) and a new file started, so at most
+ * twice the maximum is kept. Each file is a capture in its own right, starting
+ * with a request.
+ *
+ * A failure to write the capture is logged and ends the capture; it doesn't
+ * disturb the comms. Thread-safe.
+ */
+public class SerialRecorder implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SerialRecorder.class);
+
+    static final int MAGIC = 0x54435343; // "TCSC"
+    static final int FORMAT_VERSION = 1;
+
+    static final byte TYPE_OPENED = 'O';
+    static final byte TYPE_WRITTEN = 'W';
+    static final byte TYPE_READ = 'R';
+
+    private final Path file;
+    private final long maxBytes;
+    private DataOutputStream out; // null once closed or failed
+    private long lastRecordNanos;
+
+    public SerialRecorder(Path file) throws IOException {
+        this(file, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxBytes
+     *                     the size at which the file is rolled over
+     */
+    public SerialRecorder(Path file, long maxBytes) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        open();
+        logger.info("Capturing serial traffic to {}", file);
+    }
+
+    private void open() throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(System.currentTimeMillis());
+        lastRecordNanos = System.nanoTime();
+    }
+
+    /** @return where the file is moved to when rolled over */
+    public Path getRolledOverFile() {
+        return file.resolveSibling(file.getFileName() + ".1");
+    }
+
+    private void rollOver() throws IOException {
+        out.close();
+        out = null;
+        Files.move(file, getRolledOverFile(), StandardCopyOption.REPLACE_EXISTING);
+        open();
+        logger.debug("Serial capture {} rolled over", file);
+    }
+
+    /** @return the transport, with its traffic captured. */
+    public SerialTransport wrap(SerialTransport transport) {
+        record(TYPE_OPENED, null, 0, 0, false);
+        return new SerialTransport() {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int n = transport.read(buffer, offset, length);
+                record(TYPE_READ, buffer, offset, Math.max(n, 0), false);
+                return n;
+            }
+
+            @Override
+            public void write(byte[] bytes) throws IOException {
+                transport.write(bytes);
+                // Flushing per request means a capture is complete up to the last request should the app die
+                record(TYPE_WRITTEN, bytes, 0, bytes.length, true);
+            }
+
+            @Override
+            public void setReadTimeout(int millis) {
+                transport.setReadTimeout(millis);
+            }
+
+            @Override
+            public String getName() {
+                return transport.getName();
+            }
+
+            @Override
+            public void close() {
+                transport.close();
+            }
+        };
+    }
+
+    private synchronized void record(byte type, byte[] bytes, int offset, int length, boolean flush) {
+        if (out == null)
+            return;
+        try {
+            // DataOutputStream.size() sticks at Integer.MAX_VALUE, which is plenty
+            if (type == TYPE_WRITTEN && out.size() >= maxBytes)
+                rollOver();
+            long now = System.nanoTime();
+            long micros = (now - lastRecordNanos) / 1000;
+            lastRecordNanos += micros * 1000; // Don't lose the remainders
+            out.writeByte(type);
+            writeVarint(out, micros);
+            writeVarint(out, length);
+            out.write(bytes == null ? new byte[0] : bytes, offset, length);
+            if (flush)
+                out.flush();
+        } catch (IOException e) {
+            logger.error("Failed to write serial capture " + file + ". Capture abandoned.", e);
+            closeQuietly();
+        }
+    }
+
+    static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            logger.debug("Ignoring failure to close " + file, e);
+        }
+        out = null;
+    }
+}
@@ -0,0 +1,203 @@
+package com.easleydp.tempctrl.domain;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Plays back a capture made by `SerialRecorder`, so it can be fed through
+ * `ArduinoMessenger` and `ArduinoChamberManager` again.
+ *
+ * Each read returns the next captured read (a captured timeout returning 0)
+ * once the same time has elapsed since the last request as did originally,
+ * divided by the speed factor. Requests written are matched against those
+ * captured; any differences are counted (and logged at debug level) but
+ * otherwise don't affect the playback. The same goes for any captured reads
+ * left unread when the next request is written. A read when the capture has
+ * the next request to come returns 0, i.e. times out.
+ *
+ * Each `ArduinoMessenger` opened over the transport simply carries on where
+ * the last left off. An IOException is thrown once the capture is exhausted.
+ */
+public class SerialReplayTransport implements SerialTransport {
+    private static final Logger logger = LoggerFactory.getLogger(SerialReplayTransport.class);
+
+    private final String name;
+    private final double speed;
+
+    private final byte[] types;
+    private final long[] micros; // Since the start of the capture
+    private final byte[][] data;
+
+    private int next = 0;
+    private int nextPos = 0;
+    private long lastRequestNanos;
+    private long lastRequestMicros;
+    private int mismatchCount = 0;
+
+    /**
+     * @param speed
+     *                  1 for the original speed, 10 for ten times as fast, etc.
+     *                  `Double.POSITIVE_INFINITY` for as fast as possible.
+     */
+    public SerialReplayTransport(Path file, double speed) throws IOException {
+        this.name = "replay:" + file.getFileName();
+        this.speed = speed;
+
+        List<Byte> typeList = new ArrayList<>();
+        List<Long> microsList = new ArrayList<>();
+        List<byte[]> dataList = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SerialRecorder.MAGIC || in.readInt() != SerialRecorder.FORMAT_VERSION)
+                throw new IOException(file + " isn't a serial capture (or is from an unsupported version)");
+            in.readLong(); // Wall clock time, not needed
+            long t = 0;
+            while (true) {
+                int type = in.read();
+                if (type < 0)
+                    break;
+                try {
+                    t += readVarint(in);
+                    byte[] bytes = new byte[(int) readVarint(in)];
+                    in.readFully(bytes);
+                    typeList.add((byte) type);
+                    microsList.add(t);
+                    dataList.add(bytes);
+                } catch (EOFException e) {
+                    logger.warn("{} ends with a partial record", file);
+                    break;
+                }
+            }
+        }
+        int count = typeList.size();
+        types = new byte[count];
+        micros = new long[count];
+        data = dataList.toArray(new byte[count][]);
+        for (int i = 0; i < count; i++) {
+            types[i] = typeList.get(i);
+            micros[i] = microsList.get(i);
+        }
+        lastRequestNanos = System.nanoTime();
+    }
+
+    static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = in.read();
+            if (b < 0)
+                throw new EOFException();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+    }
+
+    @Override
+    public synchronized int read(byte[] buffer, int offset, int length) throws IOException {
+        while (next < types.length && types[next] == SerialRecorder.TYPE_OPENED)
+            next++;
+        checkNotExhausted();
+        if (types[next] != SerialRecorder.TYPE_READ)
+            return 0;
+
+        awaitCaptureTime(micros[next]);
+        byte[] bytes = data[next];
+        int n = Math.min(length, bytes.length - nextPos);
+        System.arraycopy(bytes, nextPos, buffer, offset, n);
+        nextPos += n;
+        if (nextPos == bytes.length) {
+            next++;
+            nextPos = 0;
+        }
+        return n;
+    }
+
+    private void awaitCaptureTime(long captureMicros) throws IOException {
+        if (Double.isInfinite(speed))
+            return;
+        long dueNanos = lastRequestNanos + (long) ((captureMicros - lastRequestMicros) * 1000 / speed);
+        long waitNanos = dueNanos - System.nanoTime();
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted replaying " + name, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes) throws IOException {
+        while (next < types.length && types[next] != SerialRecorder.TYPE_WRITTEN) {
+            if (types[next] == SerialRecorder.TYPE_READ && data[next].length > nextPos)
+                mismatch("Skipping unread bytes", data[next]);
+            next++;
+            nextPos = 0;
+        }
+        checkNotExhausted();
+        if (!Arrays.equals(bytes, data[next]))
+            mismatch("Request differs from that captured", data[next]);
+        lastRequestNanos = System.nanoTime();
+        lastRequestMicros = micros[next];
+        next++;
+    }
+
+    private void mismatch(String what, byte[] captured) {
+        mismatchCount++;
+        if (logger.isDebugEnabled())
+            logger.debug("{} at record {}: {}", what, next, new String(captured, US_ASCII));
+    }
+
+    private void checkNotExhausted() throws IOException {
+        if (next >= types.length)
+            throw new IOException("End of capture " + name);
+    }
+
+    /** Starts the playback afresh. */
+    public synchronized void rewind() {
+        next = 0;
+        nextPos = 0;
+        mismatchCount = 0;
+        lastRequestNanos = System.nanoTime();
+        lastRequestMicros = 0;
+    }
+
+    /** @return whether every captured record has been played back. */
+    public synchronized boolean isFinished() {
+        return next >= types.length;
+    }
+
+    /** @return the number of requests and reads that didn't match the capture. */
+    public synchronized int getMismatchCount() {
+        return mismatchCount;
+    }
+
+    @Override
+    public void setReadTimeout(int millis) {
+        // Timeouts are as per the capture
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release; another messenger may carry on with the capture
+    }
+}
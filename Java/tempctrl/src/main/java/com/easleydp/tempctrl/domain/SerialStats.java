@@ -0,0 +1,100 @@
+package com.easleydp.tempctrl.domain;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Counters and latency histograms for the traffic with the chamber manager
+ * device, for tuning baud rate, timeouts and batching:
+ * <ul>
+ * <li>per I/O thread command (e.g. "collectionCycle"), the time to execute
+ * (excluding time queued);
+ * <li>per request type (e.g. "getChRds"), the time from sending the request to
+ * receiving the first response frame;
+ * <li>bytes in and out, bytes discarded by purges before requests, read
+ * timeouts and reconnects.
+ * </ul>
+ * Thread-safe; recording is lock-free.
+ */
+public class SerialStats {
+    private final Map<String, LatencyHistogram> commandHistograms = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> requestHistograms = new ConcurrentHashMap<>();
+
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder purgedBytes = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+
+    public void recordCommand(String command, long micros) {
+        histogram(commandHistograms, command).record(micros);
+    }
+
+    /** @param request the request, of which only the part before any ':' counts */
+    public void recordRequest(String request, long micros) {
+        int colon = request.indexOf(':');
+        histogram(requestHistograms, colon == -1 ? request : request.substring(0, colon)).record(micros);
+    }
+
+    private static LatencyHistogram histogram(Map<String, LatencyHistogram> histograms, String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        return histogram != null ? histogram : histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    public void addBytesIn(int n) {
+        bytesIn.add(n);
+    }
+
+    public void addBytesOut(int n) {
+        bytesOut.add(n);
+    }
+
+    public void addPurgedBytes(int n) {
+        purgedBytes.add(n);
+    }
+
+    public void incrementTimeouts() {
+        timeouts.increment();
+    }
+
+    public void incrementReconnects() {
+        reconnects.increment();
+    }
+
+    @JsonPropertyOrder({ "commands", "requests", "bytesIn", "bytesOut", "purgedBytes", "timeouts", "reconnects" })
+    public static class Snapshot {
+        public final Map<String, LatencyHistogram.Snapshot> commands;
+        public final Map<String, LatencyHistogram.Snapshot> requests;
+        public final long bytesIn;
+        public final long bytesOut;
+        public final long purgedBytes;
+        public final long timeouts;
+        public final long reconnects;
+
+        Snapshot(Map<String, LatencyHistogram.Snapshot> commands, Map<String, LatencyHistogram.Snapshot> requests,
+                long bytesIn, long bytesOut, long purgedBytes, long timeouts, long reconnects) {
+            this.commands = commands;
+            this.requests = requests;
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+            this.purgedBytes = purgedBytes;
+            this.timeouts = timeouts;
+            this.reconnects = reconnects;
+        }
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(snapshot(commandHistograms), snapshot(requestHistograms), bytesIn.sum(), bytesOut.sum(),
+                purgedBytes.sum(), timeouts.sum(), reconnects.sum());
+    }
+
+    private static Map<String, LatencyHistogram.Snapshot> snapshot(Map<String, LatencyHistogram> histograms) {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        histograms.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+        return snapshots;
+    }
+}
@@ -0,0 +1,22 @@
+package com.easleydp.tempctrl.domain;
+
+import java.io.IOException;
+
+/**
+ * The byte stream to and from the chamber manager device, e.g. a USB serial
+ * port. Reads behave as per a serial port in semi-blocking mode, i.e. return
+ * whatever has arrived, waiting (up to the read timeout) only if nothing has.
+ */
+public interface SerialTransport extends SerialFrameReader.ByteSource, AutoCloseable {
+
+    void write(byte[] bytes) throws IOException;
+
+    /** Sets how long a read waits for the first byte before returning 0. */
+    void setReadTimeout(int millis);
+
+    /** For logging, e.g. "ttyACM0". */
+    String getName();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,274 @@
+package com.easleydp.tempctrl.domain;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.springframework.util.Assert;
+
+/**
+ * A ChamberManager that simulates the chambers' physics rather than making up
+ * readings, so the data has the character of the real thing: long flat runs,
+ * slow ramps and the fridge's sawtooth, which is what the smoothing and
+ * redundancy optimisations are tuned for.
+ *
+ * Each chamber is modelled as two thermal masses, the beer and the chamber air
+ * (plus the fridge's interior), coupled to each other and, through the
+ * chamber's walls, to an ambient temperature that drifts daily, seasonally and
+ * at random. The beer gives off fermentation heat, peaking a day or two into
+ * the gyle. The firmware's control loop runs each minute on the sensors'
+ * readings, which are to the nearest 0.1°C, switching the fridge (subject to
+ * its minimum on/off times) and setting the heater's output.
+ *
+ * The model is stepped forward to each collection's `timeNow`, so it runs as
+ * fast as it's asked for readings. All randomness comes from a seeded `Random`
+ * per chamber, so a run can be repeated.
+ *
+ * Thread-safe.
+ */
+public class SimulatedChamberManager implements ChamberManager {
+    private static final int STEP_SECONDS = 10;
+    private static final int CONTROL_LOOP_SECONDS = 60;
+    /** Beyond this, a gap between collections is skipped rather than simulated. */
+    private static final long MAX_CATCH_UP_MILLIS = 24 * 60 * 60 * 1000L;
+    // As per the firmware's ChamberControl.h (degrees x 10, minutes)
+    private static final int COOLING_SAWTOOTH_MIDPOINT = 3;
+    private static final int T_EXTERNAL_BOOST_THRESHOLD = 20;
+    private static final int ANTI_SEESAW_MARGIN_MINS = 90;
+
+    /** The physical constants of a chamber. The defaults are for a fridge holding a 23L fermenter. */
+    public static class ThermalModel {
+        /** J/K, i.e. 23kg of water-ish */
+        public double beerHeatCapacity = 23 * 4186;
+        /** J/K, the air plus the fridge's interior and shelving */
+        public double airHeatCapacity = 15_000;
+        /** W/K, through the fermenter wall */
+        public double beerToAirConductance = 4;
+        /** W/K, through the chamber walls */
+        public double airToAmbientConductance = 1.5;
+        public double fridgeWatts = 70;
+        public double heaterWatts = 60;
+        /** W, at the peak of fermentation */
+        public double fermentationPeakWatts = 8;
+        public double fermentationPeakHours = 36;
+        /** °C, the year-round mean */
+        public double ambientMean = 12;
+        /** °C, either side of the mean, warmest late July */
+        public double ambientSeasonalSwing = 6;
+        /** °C, either side of the day's mean, warmest mid-afternoon */
+        public double ambientDailySwing = 4;
+        /** °C, the spread of each sensor reading before rounding */
+        public double sensorNoise = 0.03;
+        /** °C, the Pi's enclosure above ambient */
+        public double piAboveAmbient = 15;
+    }
+
+    private static class ChamberState {
+        final ThermalModel model;
+        final Random random;
+        ChamberParameters params;
+        long millis = Long.MIN_VALUE; // Until the first collection
+        double tBeer, tAir, ambientDrift;
+        int secondsToControl;
+        // The firmware's control state, in its units (degrees x 10, minutes)
+        float integral, priorError;
+        int tBeerLastDelta;
+        int fridgeLastToggleMins = 255, heaterLastToggleMins = 255;
+        boolean fridgeOn;
+        int heaterOutput;
+
+        ChamberState(ThermalModel model, long seed) {
+            this.model = model;
+            this.random = new Random(seed);
+        }
+    }
+
+    private final long seed;
+    private final Map<Integer, ThermalModel> modelsByChamberId = new HashMap<>();
+    private final Map<Integer, ChamberState> statesByChamberId = new HashMap<>();
+
+    public SimulatedChamberManager(long seed) {
+        this.seed = seed;
+    }
+
+    /** One with each chamber's heater power as per its chamber.json. */
+    public static SimulatedChamberManager forChambers(ChamberRepository chamberRepository, long seed) {
+        SimulatedChamberManager chamberManager = new SimulatedChamberManager(seed);
+        for (Chamber chamber : chamberRepository.getChambers()) {
+            ThermalModel model = new ThermalModel();
+            if (chamber.getHeaterPowerWatts() > 0)
+                model.heaterWatts = chamber.getHeaterPowerWatts();
+            chamberManager.setThermalModel(chamber.getId(), model);
+        }
+        return chamberManager;
+    }
+
+    /** Applies from the chamber's first collection, so should be set before then. */
+    public synchronized void setThermalModel(int chamberId, ThermalModel model) {
+        modelsByChamberId.put(chamberId, model);
+    }
+
+    private ChamberState getState(int chamberId) {
+        return statesByChamberId.computeIfAbsent(chamberId, id -> new ChamberState(
+                modelsByChamberId.getOrDefault(id, new ThermalModel()), seed * 31 + id));
+    }
+
+    @Override
+    public synchronized void setParameters(int chamberId, ChamberParameters params) {
+        getState(chamberId).params = params;
+    }
+
+    @Override
+    public synchronized ChamberReadings collectReadings(int chamberId, Date timeNow) {
+        ChamberState state = getState(chamberId);
+        Assert.state(state.params != null, "Chamber " + chamberId + " should have its params set first");
+        advance(state, timeNow.getTime());
+
+        ChamberParameters params = state.params;
+        ThermalModel model = state.model;
+        double tAmbient = ambient(state, state.millis);
+        return new ChamberReadings(timeNow, params.tTarget, sense(state, state.tBeer), sense(state, tAmbient),
+                sense(state, state.tAir), sense(state, tAmbient + model.piAboveAmbient),
+                params.hasHeater ? state.heaterOutput : null, state.fridgeOn, params.mode);
+    }
+
+    /** @return degrees x 10, as read by a sensor with 0.1°C resolution */
+    private static int sense(ChamberState state, double t) {
+        return (int) Math.round((t + state.random.nextGaussian() * state.model.sensorNoise) * 10);
+    }
+
+    private void advance(ChamberState state, long toMillis) {
+        if (state.millis == Long.MIN_VALUE || toMillis - state.millis > MAX_CATCH_UP_MILLIS) {
+            // Start (again) with the beer on target and the air at rest
+            state.millis = toMillis;
+            state.tBeer = state.tAir = state.params.tTarget / 10.0;
+            return;
+        }
+        while (state.millis + STEP_SECONDS * 1000L <= toMillis) {
+            if ((state.secondsToControl -= STEP_SECONDS) <= 0) {
+                control(state);
+                state.secondsToControl = CONTROL_LOOP_SECONDS;
+            }
+            step(state);
+            state.millis += STEP_SECONDS * 1000L;
+        }
+    }
+
+    /** One step of the physics. */
+    private static void step(ChamberState state) {
+        ThermalModel model = state.model;
+        double tAmbient = ambient(state, state.millis);
+        double beerToAir = model.beerToAirConductance * (state.tBeer - state.tAir);
+        double ambientToAir = model.airToAmbientConductance * (tAmbient - state.tAir);
+        double fridge = state.fridgeOn ? -model.fridgeWatts : 0;
+        double heater = model.heaterWatts * state.heaterOutput / 100;
+        double x = Math.max(state.params.gyleAgeHours, 0) / model.fermentationPeakHours;
+        double fermentation = model.fermentationPeakWatts * x * Math.exp(1 - x);
+
+        state.tAir += (beerToAir + ambientToAir + fridge + heater) * STEP_SECONDS / model.airHeatCapacity;
+        state.tBeer += (fermentation - beerToAir) * STEP_SECONDS / model.beerHeatCapacity;
+    }
+
+    private static double ambient(ChamberState state, long millis) {
+        ThermalModel model = state.model;
+        double days = millis / (24 * 60 * 60 * 1000.0);
+        double seasonal = model.ambientSeasonalSwing * Math.cos(2 * Math.PI * (days % 365.25 - 205) / 365.25);
+        double daily = model.ambientDailySwing * Math.cos(2 * Math.PI * (days % 1 - 15 / 24.0));
+        return model.ambientMean + seasonal + daily + state.ambientDrift;
+    }
+
+    /**
+     * The control loop, as per the firmware's controlChamber(): on the sensors'
+     * readings, decides whether the fridge should be on and, PID-wise, the heater
+     * output, then applies the anti-seesaw margins, mode vetoes and the fridge's
+     * minimum on/off times. (HOLD needs no special treatment since its tTarget is
+     * the hold temperature.)
+     */
+    private static void control(ChamberState state) {
+        ChamberParameters params = state.params;
+        // Weather doesn't quite follow the calendar
+        state.ambientDrift = state.ambientDrift * 0.999 + state.random.nextGaussian() * 0.05;
+        state.fridgeLastToggleMins = Math.min(state.fridgeLastToggleMins + 1, 255);
+        state.heaterLastToggleMins = Math.min(state.heaterLastToggleMins + 1, 255);
+
+        int tBeer = sense(state, state.tBeer);
+        int tChamber = sense(state, state.tAir);
+        int tExternal = sense(state, ambient(state, state.millis));
+        int tTarget = params.tTarget;
+        int tTargetNext = params.tTargetNext;
+        int tError = tTarget - tBeer;
+        boolean exothermic = 2 < params.gyleAgeHours && params.gyleAgeHours < 4 * 24;
+        int tExternalBoost = tExternal - tBeer;
+
+        boolean fridgeOn = false;
+        boolean heatPidWise = false;
+        int heaterOutput = 0;
+        if (tError == 0) {
+            if (state.fridgeOn) {
+                fridgeOn = tExternal > tTarget && state.tBeerLastDelta > 0 && tTargetNext <= tTarget;
+            } else if (tExternal < tTarget) {
+                heatPidWise = tExternal + T_EXTERNAL_BOOST_THRESHOLD < tTarget || !exothermic;
+            }
+        } else if (tError > 0) {
+            if (exothermic)
+                tExternalBoost += 20;
+            heatPidWise = tExternalBoost - T_EXTERNAL_BOOST_THRESHOLD <= tError;
+        } else {
+            int tErrorAdjustedForSawtooth = tError + COOLING_SAWTOOTH_MIDPOINT;
+            if (tErrorAdjustedForSawtooth < 0) {
+                fridgeOn = tExternalBoost + T_EXTERNAL_BOOST_THRESHOLD >= tErrorAdjustedForSawtooth || exothermic
+                        || tTargetNext < tTarget;
+                // Switch off early if the chamber has overshot and the beer is nearly there
+                if (state.fridgeOn && fridgeOn && tTarget - tChamber > 3 && tErrorAdjustedForSawtooth > -3)
+                    fridgeOn = false;
+            }
+        }
+
+        // Anti-windup: reject an adjustment that would make the integral's contribution too large
+        float latestIntegral = state.integral + tError;
+        if (Math.abs(params.Ki * latestIntegral) <= 50)
+            state.integral = latestIntegral;
+        if (heatPidWise) {
+            double pidOutput = params.Kp * tError + params.Ki * state.integral
+                    + params.Kd * (tError - state.priorError);
+            heaterOutput = (int) Math.round(Math.max(0, Math.min(100, pidOutput)));
+        }
+
+        // Anti-seesaw
+        if (heaterOutput > 0 && (state.fridgeOn || state.fridgeLastToggleMins < ANTI_SEESAW_MARGIN_MINS))
+            heaterOutput = 0;
+        if (fridgeOn && (state.heaterOutput > 0 || state.heaterLastToggleMins < ANTI_SEESAW_MARGIN_MINS))
+            fridgeOn = false;
+
+        if (state.priorError != tError)
+            state.tBeerLastDelta = (int) ((state.priorError - tError) * 10);
+        else
+            state.tBeerLastDelta -= Integer.signum(state.tBeerLastDelta);
+        state.priorError = tError;
+
+        // Vetoes
+        boolean force = false;
+        if (heaterOutput > 0 || params.mode == Mode.MONITOR_ONLY || params.mode == Mode.DISABLE_FRIDGE) {
+            force = true;
+            fridgeOn = false;
+        }
+        if (!params.hasHeater || params.mode == Mode.MONITOR_ONLY || params.mode == Mode.DISABLE_HEATER)
+            heaterOutput = 0;
+
+        int minMins = fridgeOn ? params.fridgeMinOffTimeMins
+                : params.fridgeMinOnTimeMins + params.fridgeSwitchOnLagMins;
+        if (fridgeOn != state.fridgeOn && (force || state.fridgeLastToggleMins >= minMins)) {
+            state.fridgeOn = fridgeOn;
+            state.fridgeLastToggleMins = 0;
+        }
+        if ((state.heaterOutput == 0) != (heaterOutput == 0))
+            state.heaterLastToggleMins = 0;
+        state.heaterOutput = heaterOutput;
+    }
+
+    @Override
+    public void slurpLogMessages() {
+        // There's no device, so no log messages
+    }
+}
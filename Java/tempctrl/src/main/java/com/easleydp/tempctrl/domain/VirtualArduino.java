@@ -0,0 +1,347 @@
+package com.easleydp.tempctrl.domain;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+
+/**
+ * An in-process stand-in for the Arduino at the other end of the serial port,
+ * speaking the same `^cmd$` protocol: either the original protocol (v1), v1
+ * plus the batched `cyc:` request (v2) or v2 plus param deltas and sync tokens
+ * (v3). Lets the real comms stack (`ArduinoMessenger`, `SerialFrameReader`,
+ * `ArduinoChamberManager`) be exercised without hardware.
+ *
+ * Each request is handled as soon as it is written. Its response frames become
+ * readable after the configured latency (plus up to the configured jitter), in
+ * order. Faults may be injected: response bytes corrupted, whole response
+ * frames dropped and log messages generated in bulk. All randomness comes from
+ * a seeded `Random`, so a run can be repeated.
+ *
+ * Reads behave as per a serial port in semi-blocking mode, waiting up to the
+ * read timeout for the first byte. A read timeout of 0 means don't wait (unlike
+ * jSerialComm, where 0 means wait forever).
+ *
+ * Thread-safe.
+ */
+public class VirtualArduino implements SerialTransport {
+    /** As per the Arduino, which cannibalises its log buffer when full. */
+    private static final int MAX_PENDING_LOG_MESSAGES = 50;
+
+    private static final String DELIM = ",";
+
+    private static final String DEFAULT_PARAMS_CSV = "-1,100,100,-10,150,0,10,10,5,1.9,0.015,19.5,M";
+
+    private final int protocolVersion;
+    private final int chamberCount;
+    private final Random random;
+
+    private int latencyMillis = 0;
+    private int jitterMillis = 0;
+    private double corruptByteProbability = 0;
+    private double dropFrameProbability = 0;
+    private int logFloodMessagesPerRequest = 0;
+
+    private final Map<Integer, String> paramsCsvByChamberId = new HashMap<>();
+    private final Map<Integer, Integer> paramsSyncTokenByChamberId = new HashMap<>();
+    private final Queue<String> pendingLogMessages = new ArrayDeque<>();
+    private int logSequenceNum = 0;
+    private boolean logBufferCannibalised = false;
+    private long startNanos;
+
+    private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    private final Queue<Chunk> toSend = new ArrayDeque<>();
+    private long lastDeliverAtNanos = 0;
+    private int readTimeoutMillis = 0;
+    private boolean open = true;
+    private int requestCount = 0;
+
+    /** Response bytes, readable once `deliverAtNanos` has passed. */
+    private static class Chunk {
+        final long deliverAtNanos;
+        final byte[] bytes;
+        int pos = 0;
+
+        Chunk(long deliverAtNanos, byte[] bytes) {
+            this.deliverAtNanos = deliverAtNanos;
+            this.bytes = bytes;
+        }
+    }
+
+    public VirtualArduino(int protocolVersion, int chamberCount, long seed) {
+        Assert.isTrue(protocolVersion >= 1 && protocolVersion <= ArduinoChamberManager.PROTOCOL_VERSION_DELTA_PARAMS,
+                "Unsupported protocolVersion " + protocolVersion);
+        Assert.isTrue(chamberCount > 0, "chamberCount should be positive");
+        this.protocolVersion = protocolVersion;
+        this.chamberCount = chamberCount;
+        this.random = new Random(seed);
+        for (int chamberId = 1; chamberId <= chamberCount; chamberId++)
+            paramsCsvByChamberId.put(chamberId, DEFAULT_PARAMS_CSV);
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * @param latencyMillis
+     *                          time from a request being written to its response
+     *                          being readable
+     * @param jitterMillis
+     *                          up to this much more, at random
+     */
+    public synchronized VirtualArduino setLatency(int latencyMillis, int jitterMillis) {
+        Assert.isTrue(latencyMillis >= 0 && jitterMillis >= 0, "Latency and jitter should not be negative");
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        return this;
+    }
+
+    /** The probability of each response byte being replaced with a random byte. */
+    public synchronized VirtualArduino setCorruptByteProbability(double probability) {
+        this.corruptByteProbability = probability;
+        return this;
+    }
+
+    /** The probability of each response frame never arriving. */
+    public synchronized VirtualArduino setDropFrameProbability(double probability) {
+        this.dropFrameProbability = probability;
+        return this;
+    }
+
+    /** Generates this many log messages (of level debug) for each request. */
+    public synchronized VirtualArduino setLogFloodMessagesPerRequest(int count) {
+        this.logFloodMessagesPerRequest = count;
+        return this;
+    }
+
+    /**
+     * As per re-opening the real serial port, which restarts the MCU: any bytes in
+     * flight are lost and the params sync tokens forgotten.
+     */
+    public synchronized VirtualArduino open() {
+        open = true;
+        restart();
+        received.reset();
+        toSend.clear();
+        return this;
+    }
+
+    /** As if the MCU had restarted, i.e. forgets the params sync tokens. */
+    public synchronized void restart() {
+        paramsSyncTokenByChamberId.clear();
+        startNanos = System.nanoTime();
+    }
+
+    /** Queues a log message, as per the `logMsg:` payload minus the sequence number. */
+    public synchronized void log(String logMsgCsv) {
+        if (pendingLogMessages.size() == MAX_PENDING_LOG_MESSAGES) {
+            pendingLogMessages.remove();
+            logBufferCannibalised = true;
+        }
+        pendingLogMessages.add((logSequenceNum++ & 0xFF) + DELIM + logMsgCsv);
+    }
+
+    public synchronized int getPendingLogMessageCount() {
+        return pendingLogMessages.size();
+    }
+
+    public synchronized int getRequestCount() {
+        return requestCount;
+    }
+
+    @Override
+    public synchronized int read(byte[] buffer, int offset, int length) throws IOException {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(readTimeoutMillis);
+        while (true) {
+            checkOpen();
+            long now = System.nanoTime();
+            int n = 0;
+            while (n < length && !toSend.isEmpty() && toSend.peek().deliverAtNanos - now <= 0) {
+                Chunk chunk = toSend.peek();
+                int len = Math.min(length - n, chunk.bytes.length - chunk.pos);
+                System.arraycopy(chunk.bytes, chunk.pos, buffer, offset + n, len);
+                chunk.pos += len;
+                n += len;
+                if (chunk.pos == chunk.bytes.length)
+                    toSend.remove();
+            }
+            if (n > 0)
+                return n;
+
+            long waitUntilNanos = deadlineNanos;
+            if (!toSend.isEmpty() && toSend.peek().deliverAtNanos - deadlineNanos < 0)
+                waitUntilNanos = toSend.peek().deliverAtNanos;
+            long waitNanos = waitUntilNanos - now;
+            if (waitNanos <= 0) {
+                if (deadlineNanos - now <= 0)
+                    return 0;
+                continue;
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted reading from " + getName(), e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes) throws IOException {
+        checkOpen();
+        for (byte b : bytes) {
+            if (b == SerialFrameReader.BYTE_START) {
+                received.reset();
+            } else if (b == SerialFrameReader.BYTE_END) {
+                String request = new String(received.toByteArray(), US_ASCII);
+                received.reset();
+                requestCount++;
+                requestReceived(request);
+                respond(handle(request));
+            } else {
+                received.write(b);
+            }
+        }
+    }
+
+    /** Hook for subclasses, e.g. to record the requests. Called with the lock held. */
+    protected void requestReceived(String request) {
+    }
+
+    private List<String> handle(String request) {
+        for (int i = 0; i < logFloodMessagesPerRequest; i++)
+            log(floodLogMsgCsv());
+
+        List<String> responses = new ArrayList<>();
+        if (request.equals("status")) {
+            long uptimeMins = TimeUnit.NANOSECONDS.toMinutes(System.nanoTime() - startNanos);
+            responses.add("status:" + uptimeMins + ",123,300,1024,3,0," + (logBufferCannibalised ? 1 : 0));
+            logBufferCannibalised = false;
+        } else if (request.startsWith("setChParams:")) {
+            setParams(request.substring("setChParams:".length()));
+            responses.add("ack");
+        } else if (request.startsWith("getChRds:")) {
+            int chamberId = Integer.parseInt(request.substring("getChRds:".length()));
+            responses.add("chRds:" + chRdsCsv(chamberId));
+        } else if (request.equals("getLogMsgs")) {
+            while (!pendingLogMessages.isEmpty())
+                responses.add("logMsg:" + pendingLogMessages.remove());
+            responses.add("ack");
+        } else if (request.equals("version") && protocolVersion >= ArduinoChamberManager.PROTOCOL_VERSION_BATCHED) {
+            responses.add("version:" + protocolVersion);
+        } else if (request.startsWith("cyc:") && protocolVersion >= ArduinoChamberManager.PROTOCOL_VERSION_BATCHED) {
+            String payload = request.substring("cyc:".length());
+            if (!payload.isEmpty())
+                for (String paramsCsv : payload.split(";"))
+                    setParams(paramsCsv);
+            StringBuilder sb = new StringBuilder("cyc:").append(chamberCount);
+            for (int chamberId = 1; chamberId <= chamberCount; chamberId++) {
+                sb.append(';').append(chamberId).append(DELIM).append(chRdsCsv(chamberId));
+                if (protocolVersion >= ArduinoChamberManager.PROTOCOL_VERSION_DELTA_PARAMS)
+                    sb.append(DELIM).append(paramsSyncTokenByChamberId.getOrDefault(chamberId, 0));
+            }
+            while (!pendingLogMessages.isEmpty())
+                sb.append(';').append(pendingLogMessages.remove());
+            responses.add(sb.toString());
+        } else {
+            responses.add("UnrecCmd:" + request);
+        }
+        return responses;
+    }
+
+    private void respond(List<String> responses) {
+        long deliverAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        if (jitterMillis > 0)
+            deliverAtNanos += TimeUnit.MILLISECONDS.toNanos(random.nextInt(jitterMillis + 1));
+        // Bytes can't overtake those already in flight
+        if (!toSend.isEmpty() && deliverAtNanos - lastDeliverAtNanos < 0)
+            deliverAtNanos = lastDeliverAtNanos;
+        lastDeliverAtNanos = deliverAtNanos;
+
+        for (String response : responses) {
+            if (dropFrameProbability > 0 && random.nextDouble() < dropFrameProbability)
+                continue;
+            byte[] bytes = ("^" + response + "$\r\n").getBytes(US_ASCII);
+            if (corruptByteProbability > 0)
+                for (int i = 0; i < bytes.length; i++)
+                    if (random.nextDouble() < corruptByteProbability)
+                        bytes[i] = (byte) random.nextInt(256);
+            toSend.add(new Chunk(deliverAtNanos, bytes));
+        }
+        notifyAll();
+    }
+
+    private void setParams(String paramsCsv) {
+        String[] values = paramsCsv.split(DELIM);
+        int chamberId = Integer.parseInt(values[0]);
+        if (values.length == 4) {
+            // Just the moving params
+            String[] current = paramsCsvByChamberId.get(chamberId).split(DELIM);
+            System.arraycopy(values, 1, current, 0, 3);
+            paramsCsvByChamberId.put(chamberId, String.join(DELIM, current));
+        } else {
+            paramsCsvByChamberId.put(chamberId, String.join(DELIM, Arrays.copyOfRange(values, 1, 14)));
+            paramsSyncTokenByChamberId.put(chamberId, values.length > 14 ? Integer.parseInt(values[14]) : 0);
+        }
+    }
+
+    /** The chamber's params followed by its readings. */
+    private String chRdsCsv(int chamberId) {
+        String paramsCsv = paramsCsvByChamberId.get(chamberId);
+        int tTarget = Integer.parseInt(paramsCsv.split(DELIM, 3)[1]);
+        return paramsCsv + DELIM + readingsCsv(chamberId, tTarget);
+    }
+
+    /**
+     * @return tBeer,tChamber,tExternal,tPi,heaterOutput,fridgeOn. By default,
+     *         tBeer is within a degree of the target while the fridge and heater
+     *         are idle.
+     */
+    protected String readingsCsv(int chamberId, int tTarget) {
+        int tBeer = tTarget + random.nextInt(21) - 10;
+        int tExternal = 123;
+        return tBeer + DELIM + (tBeer - 20) + DELIM + tExternal + DELIM + (tExternal + 60) + ",0,0";
+    }
+
+    /** A PID output log message, as logged each control loop. */
+    private String floodLogMsgCsv() {
+        int chamberId = 1 + random.nextInt(chamberCount);
+        byte[] pidOutput = ByteBuffer.allocate(Float.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putFloat(random.nextFloat() * 100).array();
+        return "0,PID,-," + chamberId + DELIM + pidOutput.length + DELIM
+                + Base64.getEncoder().encodeToString(pidOutput);
+    }
+
+    private void checkOpen() throws IOException {
+        if (!open)
+            throw new IOException(getName() + " is closed");
+    }
+
+    @Override
+    public synchronized void setReadTimeout(int millis) {
+        readTimeoutMillis = millis;
+    }
+
+    @Override
+    public String getName() {
+        return "virtual";
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        notifyAll();
+    }
+}
@@ -0,0 +1,84 @@
+package com.easleydp.tempctrl.domain;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.springframework.util.Assert;
+
+/**
+ * A clock that only moves when told to, e.g. by a VirtualTaskScheduler
+ * fast-forwarding to the next scheduled task. Lets months of simulated
+ * operation run as fast as the CPU allows.
+ *
+ * Thread-safe.
+ */
+public class VirtualClock extends Clock {
+    private volatile long millis;
+
+    public VirtualClock(long startMillis) {
+        this.millis = startMillis;
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    /** Time only moves forwards. */
+    public synchronized void setMillis(long millis) {
+        Assert.isTrue(millis >= this.millis, "A virtual clock can't go backwards");
+        this.millis = millis;
+    }
+
+    public synchronized void advance(long millis) {
+        setMillis(this.millis + millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC; // As is the app (see TempctrlApplication)
+    }
+
+    /** @return a view of this clock in the specified zone, i.e. still telling this clock's time */
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return zone.equals(getZone()) ? this : new ZonedView(this, zone);
+    }
+
+    private static final class ZonedView extends Clock {
+        private final VirtualClock clock;
+        private final ZoneId zone;
+
+        ZonedView(VirtualClock clock, ZoneId zone) {
+            this.clock = clock;
+            this.zone = zone;
+        }
+
+        @Override
+        public long millis() {
+            return clock.millis();
+        }
+
+        @Override
+        public Instant instant() {
+            return clock.instant();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return clock.withZone(zone);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.easleydp.tempctrl.domain;
+
+import java.time.Clock;
+import java.util.Date;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.support.SimpleTriggerContext;
+
+/**
+ * Runs scheduled tasks (including the app's `@Scheduled` methods, when this is
+ * the app's TaskScheduler) in virtual time: rather than waiting for a task to
+ * fall due, the VirtualClock is moved straight to it. Tasks run one at a time,
+ * in due order, on whichever thread is running the scheduler, and the clock
+ * stands still while a task runs.
+ *
+ * Either call `runUntil()`, e.g. from a test, or `start()` a background runner
+ * that carries on indefinitely.
+ */
+public class VirtualTaskScheduler implements TaskScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualTaskScheduler.class);
+
+    private final VirtualClock clock;
+    // Guarded by itself
+    private final PriorityQueue<VirtualTask> queue = new PriorityQueue<>();
+    private long nextSeq = 0;
+    private volatile Thread runner;
+
+    public VirtualTaskScheduler(VirtualClock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public Clock getClock() {
+        return clock;
+    }
+
+    private enum Kind {
+        ONCE, FIXED_RATE, FIXED_DELAY, TRIGGER
+    }
+
+    private class VirtualTask implements ScheduledFuture<Object> {
+        private final Runnable task;
+        private final Kind kind;
+        private final long periodMillis;
+        private final Trigger trigger;
+        private final SimpleTriggerContext triggerContext;
+        private final CompletableFuture<Object> completion = new CompletableFuture<>();
+        private long dueMillis;
+        private long seq; // Tie breaker, so tasks due at the same time run in scheduling order
+
+        VirtualTask(Runnable task, Kind kind, long dueMillis, long periodMillis, Trigger trigger) {
+            this.task = task;
+            this.kind = kind;
+            this.dueMillis = dueMillis;
+            this.periodMillis = periodMillis;
+            this.trigger = trigger;
+            this.triggerContext = trigger != null ? new SimpleTriggerContext(clock) : null;
+        }
+
+        /** @return whether to run again (the due time having been updated) */
+        boolean run() {
+            long startMillis = clock.millis();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.error("Scheduled task failed", t);
+                if (kind == Kind.ONCE) {
+                    completion.completeExceptionally(t);
+                    return false;
+                }
+            }
+            switch (kind) {
+            case FIXED_RATE:
+                dueMillis += periodMillis;
+                return true;
+            case FIXED_DELAY:
+                dueMillis = clock.millis() + periodMillis;
+                return true;
+            case TRIGGER:
+                triggerContext.update(new Date(dueMillis), new Date(startMillis), new Date(clock.millis()));
+                Date next = trigger.nextExecutionTime(triggerContext);
+                if (next != null) {
+                    dueMillis = next.getTime();
+                    return true;
+                }
+                break;
+            default:
+                break;
+            }
+            completion.complete(null);
+            return false;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueMillis - clock.millis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other instanceof VirtualTask) {
+                VirtualTask that = (VirtualTask) other;
+                int cmp = Long.compare(dueMillis, that.dueMillis);
+                return cmp != 0 ? cmp : Long.compare(seq, that.seq);
+            }
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (queue) {
+                queue.remove(this);
+            }
+            return completion.cancel(false);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return completion.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return completion.isDone();
+        }
+
+        /** Only returns once the scheduler has run the task (or it's cancelled). */
+        @Override
+        public Object get() throws InterruptedException, ExecutionException {
+            return completion.get();
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+                TimeoutException {
+            return completion.get(timeout, unit);
+        }
+    }
+
+    private VirtualTask enqueue(VirtualTask task) {
+        synchronized (queue) {
+            task.seq = nextSeq++;
+            queue.add(task);
+            queue.notifyAll();
+        }
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+        SimpleTriggerContext triggerContext = new SimpleTriggerContext(clock);
+        Date first = trigger.nextExecutionTime(triggerContext);
+        return first != null ? enqueue(new VirtualTask(task, Kind.TRIGGER, first.getTime(), 0, trigger)) : null;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Date startTime) {
+        return enqueue(new VirtualTask(task, Kind.ONCE, startTime.getTime(), 0, null));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Date startTime, long period) {
+        return enqueue(new VirtualTask(task, Kind.FIXED_RATE, startTime.getTime(), period, null));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period) {
+        return enqueue(new VirtualTask(task, Kind.FIXED_RATE, clock.millis(), period, null));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Date startTime, long delay) {
+        return enqueue(new VirtualTask(task, Kind.FIXED_DELAY, startTime.getTime(), delay, null));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+        return enqueue(new VirtualTask(task, Kind.FIXED_DELAY, clock.millis(), delay, null));
+    }
+
+    /**
+     * Runs the tasks due up to and including the specified time, in due order,
+     * moving the clock to each in turn, then moves the clock to that time.
+     *
+     * @return the number of task executions
+     */
+    public long runUntil(long endMillis) {
+        long executions = 0;
+        VirtualTask task;
+        while ((task = pollDue(endMillis)) != null) {
+            runTask(task);
+            executions++;
+        }
+        if (endMillis > clock.millis())
+            clock.setMillis(endMillis);
+        return executions;
+    }
+
+    private VirtualTask pollDue(long endMillis) {
+        synchronized (queue) {
+            VirtualTask task = queue.peek();
+            return task != null && task.dueMillis <= endMillis ? queue.poll() : null;
+        }
+    }
+
+    private void runTask(VirtualTask task) {
+        if (task.dueMillis > clock.millis())
+            clock.setMillis(task.dueMillis);
+        if (task.run() && !task.isCancelled())
+            enqueue(task);
+    }
+
+    /**
+     * Starts a daemon thread that runs the tasks indefinitely, as fast as they'll
+     * go, waiting for more to be scheduled whenever there are none.
+     */
+    public synchronized void start() {
+        if (runner != null)
+            return;
+        logger.info("Running scheduled tasks in virtual time from {}", clock.instant());
+        runner = new Thread(() -> {
+            while (runner == Thread.currentThread()) {
+                VirtualTask task;
+                synchronized (queue) {
+                    task = queue.poll();
+                    if (task == null) {
+                        try {
+                            queue.wait(1000);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        continue;
+                    }
+                }
+                runTask(task);
+            }
+        }, "virtual-scheduler");
+        runner.setDaemon(true);
+        runner.start();
+    }
+
+    public synchronized void stop() {
+        Thread thread = runner;
+        runner = null;
+        if (thread != null)
+            thread.interrupt();
+    }
+}
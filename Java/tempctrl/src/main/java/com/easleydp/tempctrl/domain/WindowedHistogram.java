@@ -0,0 +1,106 @@
+package com.easleydp.tempctrl.domain;
+
+import java.util.Arrays;
+
+import org.springframework.util.Assert;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Histogram of the values recorded over a sliding time window, e.g. the last
+ * hour, so an old spike ages out rather than pinning the max forever. The
+ * window is divided into intervals, each with its own counts (in
+ * LatencyHistogram's log-linear buckets, so a percentile is known to within
+ * 12.5%); an interval's counts are discarded as it falls out of the window. So
+ * the window actually covers the current (partial) interval plus the previous
+ * `intervals - 1` whole ones.
+ *
+ * Thread-safe.
+ */
+public class WindowedHistogram {
+    private static final int BUCKET_COUNT = LatencyHistogram.bucketIndex(Long.MAX_VALUE) + 1;
+
+    private final long intervalMillis;
+    private final long[][] countsByInterval;
+    private final long[] maxByInterval;
+    private final long[] epochByInterval; // The interval number, i.e. time / intervalMillis, if any
+
+    public WindowedHistogram(long windowMillis, int intervals) {
+        Assert.isTrue(intervals > 0 && windowMillis % intervals == 0, "Window must divide into whole intervals");
+        intervalMillis = windowMillis / intervals;
+        countsByInterval = new long[intervals][];
+        maxByInterval = new long[intervals];
+        epochByInterval = new long[intervals];
+        Arrays.fill(epochByInterval, Long.MIN_VALUE);
+    }
+
+    public synchronized void record(long nowMillis, long value) {
+        if (value < 0)
+            value = 0;
+        long epoch = Math.floorDiv(nowMillis, intervalMillis);
+        int i = (int) Math.floorMod(epoch, (long) epochByInterval.length);
+        if (epochByInterval[i] != epoch) {
+            // Recycle the interval that has fallen out of the window
+            if (countsByInterval[i] == null)
+                countsByInterval[i] = new long[BUCKET_COUNT];
+            else
+                Arrays.fill(countsByInterval[i], 0);
+            maxByInterval[i] = 0;
+            epochByInterval[i] = epoch;
+        }
+        countsByInterval[i][LatencyHistogram.bucketIndex(value)]++;
+        maxByInterval[i] = Math.max(maxByInterval[i], value);
+    }
+
+    @JsonPropertyOrder({ "count", "p50", "p95", "p99", "max" })
+    public static class Snapshot {
+        public final long count;
+        public final long p50;
+        public final long p95;
+        public final long p99;
+        public final long max;
+
+        Snapshot(long count, long p50, long p95, long p99, long max) {
+            this.count = count;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.max = max;
+        }
+    }
+
+    /**
+     * @return the stats for the window ending now. The percentiles are bucket
+     *         upper bounds (capped at the max).
+     */
+    public synchronized Snapshot snapshot(long nowMillis) {
+        long epoch = Math.floorDiv(nowMillis, intervalMillis);
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        long max = 0;
+        for (int i = 0; i < epochByInterval.length; i++) {
+            if (epochByInterval[i] <= epoch - epochByInterval.length || epochByInterval[i] > epoch)
+                continue;
+            for (int b = 0; b < BUCKET_COUNT; b++) {
+                counts[b] += countsByInterval[i][b];
+                total += countsByInterval[i][b];
+            }
+            max = Math.max(max, maxByInterval[i]);
+        }
+        return new Snapshot(total, percentile(counts, total, 0.50, max), percentile(counts, total, 0.95, max),
+                percentile(counts, total, 0.99, max), max);
+    }
+
+    private static long percentile(long[] counts, long total, double fraction, long max) {
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(total * fraction);
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank)
+                return Math.min(LatencyHistogram.bucketUpperBound(i), max);
+        }
+        return max;
+    }
+}
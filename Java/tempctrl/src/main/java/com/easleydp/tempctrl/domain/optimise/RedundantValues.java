@@ -15,6 +15,10 @@ public class RedundantValues {
      * For each bean property: If some contiguous beans have a property P with same
      * (non-null) value V then null-out all the subsequent values.
      *
+     * A value that's null to begin with (e.g. a sensor with no reading) ends any
+     * such run, and the value following it is kept, even if it's the same as the
+     * one before the null, since it can't be taken as unchanged.
+     *
      * Note, we used to just null out the intermediate values (i.e. avoiding the
      * last record in the contiguous list). But, assuming the consumer (FE) knows
      * the sampling period, there's no need to preserve the last record in full.
@@ -31,7 +35,9 @@ public class RedundantValues {
         while (currIndex < len) {
             BeanWrapper wrapper = new BeanWrapperImpl(beans.get(currIndex));
             Object value = wrapper.getPropertyValue(propertyName);
-            if (prevValue != null) {
+            if (prevValue == null) {
+                i = currIndex; // Start of a (potential) run
+            } else {
                 boolean valueHasChanged = !prevValue.equals(value);
                 if (!valueHasChanged) {
                     j = currIndex;
@@ -1,5 +1,6 @@
 package com.easleydp.tempctrl.domain.optimise;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -13,7 +14,8 @@ import org.springframework.util.Assert;
  *
  * Points have an index and a value. Assumes the index represents some fixed sampling frequency,
  * e.g. every 1 minute. This is important because the width of peaks/troughs is considered when
- * assessing their significance.
+ * assessing their significance. Where the frequency varies, each point may be given a weight:
+ * how long it stands for, in units of which `unitWeight` make one sampling period.
  *
  * Terminology:
  *   - NextMinLeft - If there are points descending to the left (possibly after a flat section),
@@ -28,7 +30,8 @@ import org.springframework.util.Assert;
  *   - Tip - a peak or a trough
  *   - Tip height: For a peak, peak value - Max(NextMinLeft, NextMinRight).
  *   - For a trough, Min(NextMaxLeft, NextMaxRight) - trough value
- *   - Tip width - the number of points that would be flattened (>= 1)
+ *   - Tip width - the number of points that would be flattened (>= 1). If the points are
+ *     weighted, the width is the sum of their weights divided by the unitWeight.
  *   - Tip significance - a tip is insignificant if its height and width are sufficiently low
  *     (according to the thresholdHeight and thresholdWidths supplied to the Smoother
  *     constructor) to be flattened. That is,
@@ -74,7 +77,7 @@ public class Smoother
     {
         this(thresholdHeight, getDefaultWidths(thresholdHeight));
     }
-    private static int[] getDefaultWidths(int height)
+    public static int[] getDefaultWidths(int height)
     {
         int len = height;
         int[] widths = new int[height];
@@ -103,17 +106,56 @@ public class Smoother
      * @param intAccessor - an IntPropertyAccessor impl to get & set the column of interest.
      */
     public void smoothOutSmallFluctuations(List<Object> records, final IntPropertyAccessor intAccessor)
+    {
+        smoothOutSmallFluctuations(records, intAccessor, null, 1);
+    }
+
+    /**
+     * As above, but for records not taken at a fixed frequency.
+     *
+     * A record with no value for the column (see IntPropertyAccessor.hasValue()) breaks the series,
+     * so each run of records either side of it is smoothed on its own.
+     *
+     * @param weights - for each record, how long it stands for (e.g. half the time between its
+     *      neighbours), or null if the records are taken at a fixed frequency.
+     * @param unitWeight - the weight of a record taken at the sampling frequency that the
+     *      thresholdWidths are in terms of.
+     */
+    public void smoothOutSmallFluctuations(List<Object> records, final IntPropertyAccessor intAccessor,
+            int[] weights, int unitWeight)
     {
         if (records == null  ||  records.size() == 0)
             return;
+        Assert.isTrue(weights == null  ||  weights.length == records.size(), "Should be a weight for each record");
 
+        final int len = records.size();
+        int start = 0;
+        while (start < len)
+        {
+            while (start < len  &&  !intAccessor.hasValue(records.get(start)))
+                start++;
+            int end = start;
+            while (end < len  &&  intAccessor.hasValue(records.get(end)))
+                end++;
+            if (start == 0  &&  end == len)  // Usual case, no gaps
+                smoothOutSmallFluctuationsInRun(records, intAccessor, weights, unitWeight);
+            else if (end > start)
+                smoothOutSmallFluctuationsInRun(records.subList(start, end), intAccessor,
+                        weights == null ? null : Arrays.copyOfRange(weights, start, end), unitWeight);
+            start = end;
+        }
+    }
+
+    private void smoothOutSmallFluctuationsInRun(List<Object> records, final IntPropertyAccessor intAccessor,
+            int[] weights, int unitWeight)
+    {
         // Extract the column as a nice simple array. If we remove any noise we'll write it back into the records.
         int[] values = new int[records.size()];
         int i = 0;
         for (Object rec : records)
             values[i++] = intAccessor.getValue(rec);
 
-        boolean noiseWasRemoved = smoothOutSmallFluctuations(values);
+        boolean noiseWasRemoved = smoothOutSmallFluctuations(values, weights, unitWeight);
         if (noiseWasRemoved)
         {
             i = 0;
@@ -125,6 +167,11 @@ public class Smoother
     {
         int getValue(Object record);
         void setValue(Object record, int value);
+        /** @return false if the record has no value to get, e.g. a null Integer property. */
+        default boolean hasValue(Object record)
+        {
+            return true;
+        }
     }
 
     /**
@@ -162,6 +209,11 @@ public class Smoother
      * @returns true if any noise was removed.
      */
     boolean smoothOutSmallFluctuations(int[] values)
+    {
+        return smoothOutSmallFluctuations(values, null, 1);
+    }
+
+    boolean smoothOutSmallFluctuations(int[] values, int[] weights, int unitWeight)
     {
         Assert.isTrue(values != null  &&  values.length > 0, "Non-empty values array should be supplied");
 
@@ -173,14 +225,14 @@ public class Smoother
         if (len < 4)
             return false;
 
-        Tip lastTip = findNextTip(len - 1, values, false);
+        Tip lastTip = findNextTip(len - 1, values, weights, unitWeight, false);
         if (lastTip == null)
             return false;
 
         boolean noiseWasRemoved = false;
-        for (Tip tip = findNextInsignificantTip(0, values, true);  // First insignificant tip
+        for (Tip tip = findNextInsignificantTip(0, values, weights, unitWeight, true);  // First insignificant tip
                 tip != null && !tip.isEffectivelyEqualTo(lastTip, values);  // Avoid removing the last tip
-                tip = findNextInsignificantTip(tip.index, values, true))  // Next insignificant tip
+                tip = findNextInsignificantTip(tip.index, values, weights, unitWeight, true))  // Next insignificant tip
         {
             flattenTip(tip, values);
             noiseWasRemoved = true;
@@ -269,6 +321,11 @@ public class Smoother
     }
 
     Tip findNextTip(int i, int[] values, boolean toRight)
+    {
+        return findNextTip(i, values, null, 1, toRight);
+    }
+
+    Tip findNextTip(int i, int[] values, int[] weights, int unitWeight, boolean toRight)
     {
         {
             Point nextLocalMax = findNextLocalMax(i, values, toRight);
@@ -276,7 +333,7 @@ public class Smoother
             {
                 // If there's a point to the right (or left) that's smaller then it's a peak
                 if (findNextLocalMin(nextLocalMax.index, values, toRight) != null)
-                    return new Tip(nextLocalMax.index, true, values);
+                    return new Tip(nextLocalMax.index, true, values, weights, unitWeight);
             }
         }
         {
@@ -285,17 +342,17 @@ public class Smoother
             {
                 // If there's a point to the right (or left) that's larger then it's a peak
                 if (findNextLocalMax(nextLocalMin.index, values, toRight) != null)
-                    return new Tip(nextLocalMin.index, false, values);
+                    return new Tip(nextLocalMin.index, false, values, weights, unitWeight);
             }
         }
 
         return null;
     }
 
-    private Tip findNextInsignificantTip(int i, int[] values, boolean toRight)
+    private Tip findNextInsignificantTip(int i, int[] values, int[] weights, int unitWeight, boolean toRight)
     {
         do {
-            Tip tip = findNextTip(i, values, toRight);
+            Tip tip = findNextTip(i, values, weights, unitWeight, toRight);
             if (tip == null)
                 return null;
             if (!tip.significant)
@@ -341,6 +398,8 @@ public class Smoother
         final int width;
         final int height;
         final boolean significant;
+        private final int[] weights;
+        private final int unitWeight;
 
         @Override
         public String toString() {
@@ -350,9 +409,18 @@ public class Smoother
 
         /** Note: `values` is only used on construction for calculating width & height; no reference is retained. */
         public Tip(int index, boolean peak, int[] values)
+        {
+            this(index, peak, values, null, 1);
+        }
+
+        /** Note: `weights` (which may be null) is retained for the sake of isEffectivelyEqualTo(). */
+        public Tip(int index, boolean peak, int[] values, int[] weights, int unitWeight)
         {
             super(index, values[index]);
             this.peak = peak;
+            this.weights = weights;
+            this.unitWeight = unitWeight;
+            long weightedWidth = 0;
 
             if (peak)
             {
@@ -366,7 +434,10 @@ public class Smoother
                 int w = 0;
                 for (int i = pLeft.index + 1; i < pRight.index; i++)
                     if (values[i] > floor)
+                    {
                         w++;
+                        weightedWidth += weights == null ? unitWeight : weights[i];
+                    }
                 width = w;
             }
             else  // trough
@@ -381,11 +452,15 @@ public class Smoother
                 int w = 0;
                 for (int i = pLeft.index + 1; i < pRight.index; i++)
                     if (values[i] < floor)
+                    {
                         w++;
+                        weightedWidth += weights == null ? unitWeight : weights[i];
+                    }
                 width = w;
             }
 
-            this.significant = height > thresholdHeight  ||  width > thresholdWidths[height - 1];
+            this.significant = height > thresholdHeight
+                    ||  weightedWidth > (long) thresholdWidths[height - 1] * unitWeight;
         }
 
         /**
@@ -410,8 +485,8 @@ public class Smoother
             Assert.state(peak == other.peak, "direction of tip should be same");
             // Likewise the width and height should be the same. Careful, though - these vital
             // stats might have changed due to smoothing that's happened to the immediate left.
-            Tip thisTipFresh = new Tip(index, peak, values);
-            Tip otherTipFresh = new Tip(other.index, other.peak, values);
+            Tip thisTipFresh = new Tip(index, peak, values, weights, unitWeight);
+            Tip otherTipFresh = new Tip(other.index, other.peak, values, weights, unitWeight);
             Assert.state(thisTipFresh.width == otherTipFresh.width, "width should be same");
             Assert.state(thisTipFresh.height == otherTipFresh.height, "height should be same");
 
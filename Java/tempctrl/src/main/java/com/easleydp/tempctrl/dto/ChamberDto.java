@@ -29,6 +29,8 @@ public class ChamberDto {
     private double kp;
     private double ki;
     private double kd;
+    private GlitchFilterDto glitchFilter;
+    private Integer readingsPeriodMillis; // null for the global readings.periodMillis
 
     public String getName() {
         return name;
@@ -118,4 +120,20 @@ public class ChamberDto {
         this.kd = kd;
     }
 
+    public GlitchFilterDto getGlitchFilter() {
+        return glitchFilter;
+    }
+
+    public void setGlitchFilter(GlitchFilterDto glitchFilter) {
+        this.glitchFilter = glitchFilter;
+    }
+
+    public Integer getReadingsPeriodMillis() {
+        return readingsPeriodMillis;
+    }
+
+    public void setReadingsPeriodMillis(Integer readingsPeriodMillis) {
+        this.readingsPeriodMillis = readingsPeriodMillis;
+    }
+
 }
@@ -0,0 +1,61 @@
+package com.easleydp.tempctrl.dto;
+
+/**
+ * Optional per-chamber tuning of the sensor glitch filter, marrying-up with the
+ * `glitchFilter` object in chamber.json. Any property not specified falls back
+ * to the corresponding `readings.glitchFilter.*` application property.
+ */
+public class GlitchFilterDto {
+    private Boolean enabled;
+    private Integer windowSize;
+    private Double nSigmas;
+    private Integer minDeviation;
+    private Integer maxSentinelRun;
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Integer getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(Integer windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    public Double getnSigmas() {
+        return nSigmas;
+    }
+
+    public void setnSigmas(Double nSigmas) {
+        this.nSigmas = nSigmas;
+    }
+
+    /** Degrees x 10, e.g. a value of 50 represents 5 degrees. */
+    public Integer getMinDeviation() {
+        return minDeviation;
+    }
+
+    public void setMinDeviation(Integer minDeviation) {
+        this.minDeviation = minDeviation;
+    }
+
+    public Integer getMaxSentinelRun() {
+        return maxSentinelRun;
+    }
+
+    public void setMaxSentinelRun(Integer maxSentinelRun) {
+        this.maxSentinelRun = maxSentinelRun;
+    }
+
+    @Override
+    public String toString() {
+        return "{enabled=" + enabled + ", windowSize=" + windowSize + ", nSigmas=" + nSigmas + ", minDeviation="
+                + minDeviation + ", maxSentinelRun=" + maxSentinelRun + "}";
+    }
+}
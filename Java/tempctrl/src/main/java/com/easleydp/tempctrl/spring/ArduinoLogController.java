@@ -0,0 +1,50 @@
+package com.easleydp.tempctrl.spring;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.easleydp.tempctrl.domain.ArduinoLogStore;
+import com.easleydp.tempctrl.domain.ArduinoLogStore.Entry;
+
+@RestController
+public class ArduinoLogController {
+    private static final int MAX_LIMIT = 10000;
+
+    @Autowired
+    private ArduinoLogStore arduinoLogStore;
+
+    /**
+     * Returns the most recent of the Arduino's log messages matching the criteria
+     * (all optional), oldest first, decoded.
+     *
+     * @param fromMs
+     *                      UTC millis, inclusive
+     * @param toMs
+     *                      UTC millis, inclusive
+     * @param prefix
+     *                      e.g. "PID"
+     * @param id
+     *                      e.g. "~"
+     * @param chamberId
+     * @param limit
+     *                      max records to return
+     */
+    @GetMapping("/admin/arduino-log")
+    public List<Entry> getArduinoLog(@RequestParam(value = "fromMs", defaultValue = "0") long fromMs,
+            @RequestParam(value = "toMs", defaultValue = "" + Long.MAX_VALUE) long toMs,
+            @RequestParam(value = "prefix", required = false) String prefix,
+            @RequestParam(value = "id", required = false) Character id,
+            @RequestParam(value = "chamberId", required = false) Integer chamberId,
+            @RequestParam(value = "limit", defaultValue = "500") int limit) throws IOException {
+        if (limit <= 0 || limit > MAX_LIMIT)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Require 0 < limit <= " + MAX_LIMIT);
+        return arduinoLogStore.query(fromMs, toMs, prefix, id, chamberId, limit);
+    }
+}
@@ -4,9 +4,12 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
 
@@ -30,6 +33,9 @@ import com.easleydp.tempctrl.domain.ChamberRepository;
 import com.easleydp.tempctrl.domain.Gyle;
 import com.easleydp.tempctrl.domain.Mode;
 import com.easleydp.tempctrl.domain.PropertyUtils;
+import com.easleydp.tempctrl.domain.ReadingsEventBus.LagPolicy;
+import com.easleydp.tempctrl.domain.ReadingsEventBus.ReadingsCollected;
+import com.easleydp.tempctrl.domain.ReadingsEventBus.Subscription;
 import com.easleydp.tempctrl.dto.GyleDto;
 import com.easleydp.tempctrl.dto.PointDto;
 import com.easleydp.tempctrl.dto.TemperatureProfileDto;
@@ -41,6 +47,23 @@ public class ChamberController {
     @Autowired
     private ChamberRepository chamberRepository;
 
+    /** Each chamber's latest readings, as published on the event bus. */
+    private final Map<Integer, ChamberReadings> latestReadingsByChamberId = new ConcurrentHashMap<>();
+    private Subscription<ReadingsCollected> latestReadingsSubscription;
+
+    @PostConstruct
+    public void subscribe() {
+        // Only the latest readings matter, so a backlog can be skipped
+        latestReadingsSubscription = chamberRepository.getEventBus().subscribe("latestReadings",
+                ReadingsCollected.class, e -> latestReadingsByChamberId.put(e.chamberId, e.readings),
+                LagPolicy.SKIP_TO_LATEST);
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        latestReadingsSubscription.close();
+    }
+
     /**
      * This is the initial end point used by the FE home page. The FE may be calling
      * this prospectively, not knowing whether the user is logged-in. Clearly, if
@@ -57,7 +80,7 @@ public class ChamberController {
                 // FE infers chamber is inactive if tTarget is null
                 Gyle lg = c.getLatestGyle();
                 boolean active = lg != null && lg.isActive();
-                ChamberReadings readings = active ? c.getLatestChamberReadings() : null;
+                ChamberReadings readings = active ? latestReadingsByChamberId.get(c.getId()) : null;
                 Integer tTarget = readings != null ? readings.gettTarget() : null;
 
                 return new ChamberSummary(c.getId(), c.getName(), tTarget);
@@ -103,7 +126,7 @@ public class ChamberController {
     @GetMapping("/guest/chamber/{chamberId}/beer-temp")
     public BeerTemp getSummaryStatus(@PathVariable("chamberId") int chamberId) {
         Chamber chamber = getChamberById(chamberId); // throws if not found
-        ChamberReadings latestReadings = chamber.getLatestChamberReadings();
+        ChamberReadings latestReadings = latestReadingsByChamberId.get(chamberId);
         if (latestReadings == null) { // Can happen if called shortly after start-up
             return new BeerTemp(null, null);
         }
@@ -116,7 +139,7 @@ public class ChamberController {
         return new BeerTemp(tTarget, latestReadings.gettBeer());
     }
 
-    private static final class BeerTemp {
+    static final class BeerTemp { // Non-private for tests
         @SuppressWarnings("unused")
         public final Integer tTarget; // null signifies temp control is inactive
         @SuppressWarnings("unused")
@@ -139,7 +162,7 @@ public class ChamberController {
         Assert.state(latestGyle != null, "No latest gyle for chamber " + chamberId);
         // @formatter:off
         return new LatestGyleDetails(PropertyUtils.getReadingsTimestampResolutionMillis(),
-                PropertyUtils.getReadingsPeriodMillis(), chamber.getName(), chamber.isHasHeater(), latestGyle.id,
+                latestGyle.getReadingsPeriodMillis(), chamber.getName(), chamber.isHasHeater(), latestGyle.id,
                 latestGyle.getName(), latestGyle.getTemperatureProfile(), latestGyle.getDtStarted(),
                 latestGyle.getDtEnded(), latestGyle.getRecentReadingsList(),
                 latestGyle.getReadingsLogFilePaths().stream()
@@ -235,6 +258,57 @@ public class ChamberController {
         return getLatestGyleForChamber(chamberId).getTemperatureProfile();
     }
 
+    /** Upper limit on the number of values returned by a single target-series request. */
+    private static final int MAX_TARGET_SERIES_LENGTH = 20_000;
+
+    /**
+     * Returns the specified chamber's latest gyle's target temperature, as
+     * evaluated by the server's own profile interpolation, at each of the times
+     * `fromMs`, `fromMs + stepMs`, ... up to and including `toMs` (UTC millis).
+     */
+    @GetMapping("/guest/chamber/{chamberId}/latest-gyle-target-series")
+    public TargetSeries getLatestGyleTargetSeries(@PathVariable("chamberId") int chamberId,
+            @RequestParam("fromMs") long fromMs, @RequestParam("toMs") long toMs,
+            @RequestParam("stepMs") long stepMs) {
+        Gyle latestGyle = getLatestGyleForChamber(chamberId);
+        Long dtStarted = latestGyle.getDtStarted();
+        if (dtStarted == null)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Gyle has not been started");
+        if (stepMs <= 0 || toMs < fromMs)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Require stepMs > 0 and toMs >= fromMs");
+        long spanMs, fromGyleMs;
+        try {
+            spanMs = Math.subtractExact(toMs, fromMs);
+            fromGyleMs = Math.subtractExact(fromMs, dtStarted);
+            Math.subtractExact(toMs, dtStarted); // So neither does the last time overflow
+        } catch (ArithmeticException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fromMs and/or toMs out of range");
+        }
+        if (spanMs / stepMs >= MAX_TARGET_SERIES_LENGTH)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Too many values requested (max " + MAX_TARGET_SERIES_LENGTH + ")");
+        int count = (int) (spanMs / stepMs) + 1;
+
+        int[] tTargets = latestGyle.getCompiledTemperatureProfile().getTargetTemps(fromGyleMs, stepMs, count);
+        return new TargetSeries(fromMs, stepMs, tTargets);
+    }
+
+    static final class TargetSeries { // Non-private for tests
+        @SuppressWarnings("unused")
+        public final long fromMs;
+        @SuppressWarnings("unused")
+        public final long stepMs;
+        /** Degrees x 10. The nth value is for time `fromMs + n * stepMs`. */
+        @SuppressWarnings("unused")
+        public final int[] tTargets;
+
+        public TargetSeries(long fromMs, long stepMs, int[] tTargets) {
+            this.fromMs = fromMs;
+            this.stepMs = stepMs;
+            this.tTargets = tTargets;
+        }
+    }
+
     @PostMapping("/admin/chamber/{chamberId}/latest-gyle-profile")
     public void updateLatestGyleProfile(@PathVariable("chamberId") int chamberId,
             @RequestBody TemperatureProfileDto profile) {
@@ -270,8 +344,7 @@ public class ChamberController {
                 // temp, we need to record (persistently in the JSON file in case of restart)
                 // the latest value of tBeer.
                 if (gyle.gettHold() == null) {
-                    Chamber chamber = getChamberById(chamberId);
-                    ChamberReadings latestReadings = chamber.getLatestChamberReadings();
+                    ChamberReadings latestReadings = latestReadingsByChamberId.get(chamberId);
                     gyle.settHold(latestReadings != null ? latestReadings.gettBeer() : null);
                 }
             } else {
@@ -1,8 +1,20 @@
 package com.easleydp.tempctrl.spring;
 
 import java.io.IOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.IntSummaryStatistics;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,12 +27,26 @@ import com.easleydp.tempctrl.domain.ChamberManager;
 import com.easleydp.tempctrl.domain.ChamberParameters;
 import com.easleydp.tempctrl.domain.ChamberReadings;
 import com.easleydp.tempctrl.domain.ChamberRepository;
+import com.easleydp.tempctrl.domain.ChamberShards;
+import com.easleydp.tempctrl.domain.CollectionClock;
+import com.easleydp.tempctrl.domain.CollectionClock.SlotCounts;
+import com.easleydp.tempctrl.domain.CollectionClock.SlotStatus;
+import com.easleydp.tempctrl.domain.CollectionTimings;
 import com.easleydp.tempctrl.domain.Gyle;
+import com.easleydp.tempctrl.domain.OperationCosts;
+import com.easleydp.tempctrl.domain.ReadingsEventBus.ParametersSent;
+import com.easleydp.tempctrl.domain.ReadingsEventBus.ReadingsCollected;
+import com.easleydp.tempctrl.domain.WindowedHistogram;
 
 /**
  * Note: Scheduling of taking readings is separated from the actual collecting
  * of readings for the sake of testability (collecting of readings being
  * something we want to unit test, without Spring).
+ *
+ * Ticks frequently, collecting whenever the CollectionClock says a slot is due,
+ * and stamps the readings with the slot's time. The exchange with the chamber
+ * manager is done here, for all the chambers due at once; the work either side
+ * of it is done on each chamber's shard (see ChamberShards), in parallel.
  */
 @Component
 public class CollectReadingsScheduler {
@@ -32,62 +58,154 @@ public class CollectReadingsScheduler {
     @Autowired
     private ChamberManager chamberManager;
 
+    @Autowired
+    private CollectionClock collectionClock;
+
+    @Autowired
+    private Clock clock;
+
+    @Autowired
+    private CollectionTimings collectionTimings;
+
+    @Autowired
+    private ChamberShards chamberShards;
+
     private IntSummaryStatistics durationStats = new IntSummaryStatistics();
     private boolean first = true;
 
-    @Scheduled(fixedRateString = "${readings.periodMillis}")
-    public void collectReadings() {
-        logger.debug("collectReadings called");
-
-        Date timeNow = new Date();
+    @Scheduled(fixedDelayString = "${readings.clock.tickMillis:1000}")
+    public void tick() {
+        Map<Integer, Integer> periodMillisByChamberId = new LinkedHashMap<>();
+        for (Chamber ch : chamberRepository.getChambers())
+            periodMillisByChamberId.put(ch.getId(), ch.getCurrentReadingsPeriodMillis());
+        Date slot = collectionClock.dueSlot(clock.millis(), periodMillisByChamberId);
+        if (slot == null)
+            return;
         // @formatter:off
-        chamberRepository.getChambers()
-            .forEach(ch -> {
-                ch.checkForUpdates();
-                collectReadingsForChamber(ch, timeNow);
-            });
+        List<Chamber> dueChambers = chamberRepository.getChambers().stream()
+                .filter(ch -> CollectionClock.isDue(slot, periodMillisByChamberId.get(ch.getId())))
+                .collect(Collectors.toList());
         // @formatter:on
-
-        logDuration((int) (System.currentTimeMillis() - timeNow.getTime()));
+        if (!dueChambers.isEmpty()) {
+            try (OperationCosts.Measurement m = OperationCosts.measure("collectionCycle")) {
+                collectReadings(dueChambers, slot);
+            }
+        }
     }
 
     /**
-     * For the supplied chamber: send chamber params and, if it has an active gyle,
-     * collect a set of readings.
+     * @param chambers
+     *                    those due in this slot, as per their readings period
+     * @param timeNow
+     *                    the slot, i.e. the time to stamp the readings with
      */
-    private void collectReadingsForChamber(Chamber ch, Date timeNow) {
-        final int chamberId = ch.getId();
-        Gyle lg = ch.getLatestGyle();
+    private void collectReadings(Collection<Chamber> chambers, Date timeNow) {
+        logger.debug("collectReadings called");
+        // Phases are timed in real time, even if the clock is virtual
+        long startNanos = System.nanoTime();
+        AtomicLong updateCheckNanos = new AtomicLong();
+        AtomicLong paramsNanos = new AtomicLong();
+        AtomicLong logWriteNanos = new AtomicLong();
 
-        try {
-            logger.debug("================ collectReadingsForChamber({}, {})", chamberId, timeNow);
-            logger.debug("Slurping log messages BEFORE SENDING parameters to chamber {}", chamberId);
-            chamberManager.slurpLogMessages();
-            ChamberParameters cp = lg != null ? lg.getChamberParameters(timeNow) : ch.getPartialChamberParameters();
-            chamberManager.setParameters(chamberId, cp);
-            logger.debug("Slurping log messages AFTER SENDING parameters to chamber {}", chamberId);
-            chamberManager.slurpLogMessages();
-
-            logger.debug("Taking readings for chamber {}", lg.chamber.getId());
-            ChamberReadings latestReadings = chamberManager.collectReadings(chamberId, timeNow);
-            if (logger.isDebugEnabled()) {
-                logger.debug("Chamber {} readings: {}", chamberId, latestReadings.toString());
-            }
-            ch.setLatestChamberReadings(latestReadings);
-            logger.debug("Slurping log messages AFTER COLLECTING readings for chamber {}", chamberId);
-            chamberManager.slurpLogMessages();
+        // Params are sent to every chamber due; readings are only collected for those
+        // with a gyle. Each chamber's params are worked out on its shard.
+        Map<Integer, CompletableFuture<ChamberParameters>> paramsFutures = new LinkedHashMap<>();
+        Set<Integer> readingsChamberIds = ConcurrentHashMap.newKeySet();
+        for (Chamber ch : chambers) {
+            paramsFutures.put(ch.getId(), chamberShards.submit(ch.getId(), () -> {
+                long nanos = System.nanoTime();
+                ch.checkForUpdates();
+                long updatedNanos = System.nanoTime();
+                updateCheckNanos.addAndGet(updatedNanos - nanos);
+                Gyle lg = ch.getLatestGyle();
+                ChamberParameters cp = lg != null ? lg.getChamberParameters(timeNow)
+                        : ch.getPartialChamberParameters();
+                if (lg != null)
+                    readingsChamberIds.add(ch.getId());
+                paramsNanos.addAndGet(System.nanoTime() - updatedNanos);
+                return cp;
+            }));
+        }
+        Map<Integer, ChamberParameters> paramsByChamberId = new LinkedHashMap<>();
+        paramsFutures.forEach((chamberId, future) -> paramsByChamberId.put(chamberId, future.join()));
+        long paramsEndNanos = System.nanoTime();
 
-            if (lg != null && lg.isActive()) {
-                lg.logLatestReadings(latestReadings, timeNow);
-            }
+        Map<Integer, ChamberReadings> readingsByChamberId = Collections.emptyMap();
+        try {
+            readingsByChamberId = chamberManager.runCollectionCycle(paramsByChamberId, readingsChamberIds, timeNow);
+            // Params were sent unless the chamber's device failed, in which case there are no readings either
+            for (Map.Entry<Integer, ChamberParameters> entry : paramsByChamberId.entrySet())
+                if (!readingsChamberIds.contains(entry.getKey()) || readingsByChamberId.containsKey(entry.getKey()))
+                    chamberRepository.getChamberById(entry.getKey()).getEventBus()
+                            .publish(new ParametersSent(entry.getKey(), entry.getValue(), timeNow));
         } catch (Throwable t) {
             logger.error(t.getMessage(), t);
             if (t instanceof IOException)
                 chamberManager.handleIOException((IOException) t);
         }
+        long cycleEndNanos = System.nanoTime();
+
+        // Slot bookkeeping here; the readings themselves are handled on each chamber's shard
+        long collectedMillis = clock.millis();
+        List<CompletableFuture<Void>> handled = new ArrayList<>();
+        for (Chamber ch : chambers) {
+            if (!readingsChamberIds.contains(ch.getId()))
+                continue;
+            ChamberReadings latestReadings = readingsByChamberId.get(ch.getId());
+            SlotStatus status = collectionClock.record(ch.getId(), timeNow, collectedMillis, latestReadings != null);
+            if (latestReadings != null) {
+                if (status == SlotStatus.MISSED)
+                    logger.warn("Chamber {} readings arrived {}ms after their slot so won't be logged", ch.getId(),
+                            collectedMillis - timeNow.getTime());
+                handled.add(chamberShards.submit(ch.getId(), () -> {
+                    long nanos = System.nanoTime();
+                    try {
+                        handleReadings(ch, latestReadings, timeNow, status != SlotStatus.MISSED);
+                    } catch (Throwable t) {
+                        logger.error(t.getMessage(), t);
+                    }
+                    logWriteNanos.addAndGet(System.nanoTime() - nanos);
+                    return null;
+                }));
+            }
+        }
+        CompletableFuture.allOf(handled.toArray(new CompletableFuture[0])).join();
+
+        long endNanos = System.nanoTime();
+
+        // @formatter:off
+        logDuration(new CollectionTimings.Cycle(timeNow.getTime(),
+                toMillis(endNanos - startNanos),
+                toMillis(updateCheckNanos.get()),
+                toMillis(paramsNanos.get()),
+                toMillis(cycleEndNanos - paramsEndNanos),
+                toMillis(logWriteNanos.get())));
+        // @formatter:on
     }
 
-    private void logDuration(int duration) {
+    private static int toMillis(long nanos) {
+        return (int) ((nanos + 500_000) / 1_000_000);
+    }
+
+    /** @param log whether to log the readings in the latest gyle (if active) */
+    private void handleReadings(Chamber ch, ChamberReadings latestReadings, Date timeNow, boolean log)
+            throws IOException {
+        ch.filterSensorGlitches(latestReadings);
+        ch.adaptReadingsPeriod(latestReadings, timeNow);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Chamber {} readings: {}", ch.getId(), latestReadings.toString());
+        }
+
+        Gyle lg = ch.getLatestGyle();
+        boolean logged = log && lg != null && lg.isActive();
+        if (logged) {
+            lg.logLatestReadings(latestReadings, timeNow);
+        }
+        ch.getEventBus().publish(new ReadingsCollected(ch.getId(), latestReadings, timeNow, logged));
+    }
+
+    private void logDuration(CollectionTimings.Cycle cycle) {
+        int duration = cycle.totalMillis;
         logger.debug("collectReadings took {}ms", duration);
 
         // First collection tends to be so slow as to significantly skew the stats, so
@@ -95,33 +213,53 @@ public class CollectReadingsScheduler {
         if (first) {
             first = false;
         } else {
-            // Log warning if duration is significantly longer than average.
-            int average = (int) (durationStats.getAverage() + 0.5);
-            if (durationStats.getCount() > 10 && duration >= average * 2) {
-                logger.warn("collectReadings took {}ms compared to average of {}ms and max of {}ms.", duration, average,
-                        durationStats.getMax());
+            // Log warning if duration is significantly longer than is usual lately.
+            long nowMillis = clock.millis();
+            if (collectionTimings.record(nowMillis, cycle)) {
+                WindowedHistogram.Snapshot lastHour = collectionTimings.getLastHour(nowMillis);
+                logger.warn(
+                        "collectReadings took {}ms (update check {}ms, params {}ms, cycle {}ms, log write {}ms)"
+                                + " compared to p95 of {}ms and max of {}ms over the last hour.",
+                        duration, cycle.updateCheckMillis, cycle.paramsMillis, cycle.cycleMillis,
+                        cycle.logWriteMillis, lastHour.p95, lastHour.max);
             }
             durationStats.accept(duration);
         }
     }
 
-    // Summary stats for external parties
+    // Summary stats for external parties. min, max & average are since boot; the
+    // windowed stats & the recent cycles (oldest first) are what to watch.
     public static class ReadingsCollectionDurationStats {
         public final int min, max, average;
+        public final WindowedHistogram.Snapshot lastHour;
+        public final WindowedHistogram.Snapshot lastDay;
+        public final List<CollectionTimings.Cycle> recent;
 
-        ReadingsCollectionDurationStats(int min, int max, int average) {
+        ReadingsCollectionDurationStats(int min, int max, int average, WindowedHistogram.Snapshot lastHour,
+                WindowedHistogram.Snapshot lastDay, List<CollectionTimings.Cycle> recent) {
             this.min = min;
             this.max = max;
             this.average = average;
+            this.lastHour = lastHour;
+            this.lastDay = lastDay;
+            this.recent = recent;
         }
     }
 
+    /** @return the collection slot counts so far, keyed by chamber ID */
+    public Map<Integer, SlotCounts> getSlotCounts() {
+        return collectionClock.getSlotCounts();
+    }
+
     public ReadingsCollectionDurationStats getReadingsCollectionDurationStats() {
         if (durationStats.getCount() == 0) {
             return null;
         }
         int average = (int) (durationStats.getAverage() + 0.5);
-        return new ReadingsCollectionDurationStats(durationStats.getMin(), durationStats.getMax(), average);
+        long nowMillis = clock.millis();
+        return new ReadingsCollectionDurationStats(durationStats.getMin(), durationStats.getMax(), average,
+                collectionTimings.getLastHour(nowMillis), collectionTimings.getLastDay(nowMillis),
+                collectionTimings.getRecent());
     }
 
 }
@@ -0,0 +1,22 @@
+package com.easleydp.tempctrl.spring;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.easleydp.tempctrl.spring.CollectReadingsScheduler.ReadingsCollectionDurationStats;
+
+/** Exposes how long readings collection takes as /actuator/collection. */
+@Component
+@Endpoint(id = "collection")
+public class CollectionStatsEndpoint {
+    @Autowired
+    private CollectReadingsScheduler collectReadingsScheduler;
+
+    /** @return null (hence 404) until a collection cycle has been timed. */
+    @ReadOperation
+    public ReadingsCollectionDurationStats collectionStats() {
+        return collectReadingsScheduler.getReadingsCollectionDurationStats();
+    }
+}
@@ -5,10 +5,14 @@ import static com.easleydp.tempctrl.domain.Utils.roundToNearestHour;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.time.Clock;
 import java.util.Date;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,9 +21,13 @@ import org.springframework.stereotype.Component;
 
 import com.easleydp.tempctrl.domain.Chamber;
 import com.easleydp.tempctrl.domain.ChamberRepository;
+import com.easleydp.tempctrl.domain.ChamberShards;
 import com.easleydp.tempctrl.domain.Gyle;
 import com.easleydp.tempctrl.domain.Gyle.LeftSwitchedOffDetectionAction;
 import com.easleydp.tempctrl.domain.PropertyUtils;
+import com.easleydp.tempctrl.domain.ReadingsEventBus.LagPolicy;
+import com.easleydp.tempctrl.domain.ReadingsEventBus.ReadingsCollected;
+import com.easleydp.tempctrl.domain.ReadingsEventBus.Subscription;
 import com.easleydp.tempctrl.dto.PointDto;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -38,9 +46,15 @@ public class EmailMessageScheduler {
     @Autowired
     private ChamberRepository chamberRepository;
 
+    @Autowired
+    private ChamberShards chamberShards;
+
     @Autowired
     private IpAddressUtils ipAddressUtils;
 
+    @Autowired
+    private Clock clock;
+
     @Scheduled(cron = "${stillAliveMessage.cronSchedule}")
     public void sendStillAliveMessage() throws IOException {
         logger.debug("sendStillAliveMessage called");
@@ -108,10 +122,12 @@ public class EmailMessageScheduler {
 
     // TODO: rename coldCrashCheck.periodMinutes to something like
     // checkSendGyleRelatedNotifications.periodMinutes
+    // Unlike the left-switched-off check, these notifications fall due at times set by the profile rather
+    // than on any event, so they stay on a schedule. (The profile is compiled once and cached by the gyle.)
     @Scheduled(fixedRateString = "${coldCrashCheck.periodMinutes}", timeUnit = TimeUnit.MINUTES)
     public void sendGyleRelatedNotifications() {
         logger.debug("sendGyleRelatedNotifications called");
-        testableSendGyleRelatedNotifications(new Date());
+        testableSendGyleRelatedNotifications(new Date(clock.millis()));
     }
 
     void testableSendGyleRelatedNotifications(Date timeNow) {
@@ -134,7 +150,7 @@ public class EmailMessageScheduler {
 
     private void maybeSendCrashStartNotification(long periodMillis, long timeNowMs, long millisSinceStart,
             Gyle latestGyle, Chamber chamber) {
-        PointDto crashStartPoint = latestGyle.getTemperatureProfileDomain().getCrashStartPoint();
+        PointDto crashStartPoint = latestGyle.getCompiledTemperatureProfile().getCrashStartPoint();
         if (crashStartPoint != null) {
             // Assuming the checking period is of the order of 30 minutes, we want to
             // trigger the email when the crash start time - priorNoticeHours is less than
@@ -153,7 +169,7 @@ public class EmailMessageScheduler {
 
     private void maybeSendCrashEndNotification(long periodMillis, long timeNowMs, long millisSinceStart,
             Gyle latestGyle, Chamber chamber) {
-        PointDto crashEndPoint = latestGyle.getTemperatureProfileDomain().getCrashEndPoint();
+        PointDto crashEndPoint = latestGyle.getCompiledTemperatureProfile().getCrashEndPoint();
         if (crashEndPoint != null) {
             // Assuming the checking period is of the order of 30 minutes, we want to
             // trigger the email when the crash end time + postCrashDwellHours is less than
@@ -173,7 +189,7 @@ public class EmailMessageScheduler {
 
     private void maybeSendMidFermentationNotification(long periodMillis, long timeNowMs, long millisSinceStart,
             Gyle latestGyle, Chamber chamber) {
-        PointDto crashStartPoint = latestGyle.getTemperatureProfileDomain().getCrashStartPoint();
+        PointDto crashStartPoint = latestGyle.getCompiledTemperatureProfile().getCrashStartPoint();
         if (crashStartPoint != null) {
             // We'll take it that 'mid-fermentation' is the mid-point between profile start
             // and crash start.
@@ -211,36 +227,50 @@ public class EmailMessageScheduler {
         return sdf.format(when);
     }
 
-    @Scheduled(fixedRateString = "${switchedOffCheck.periodMinutes}", timeUnit = TimeUnit.MINUTES)
-    public void checkSwitchedOff() {
-        logger.debug("checkSwitchedOff called");
-        testableCheckSwitchedOff(new Date());
+    private Subscription<ReadingsCollected> switchedOffCheckSubscription;
+
+    /**
+     * The left-switched-off check is made as each chamber's readings are logged,
+     * rather than on a schedule of its own.
+     */
+    @PostConstruct
+    public void subscribe() {
+        switchedOffCheckSubscription = chamberRepository.getEventBus().subscribe("switchedOffCheck",
+                ReadingsCollected.class, this::checkSwitchedOff, LagPolicy.SKIP_TO_OLDEST);
     }
 
-    public void testableCheckSwitchedOff(Date timeNow) {
-        for (Chamber chamber : chamberRepository.getChambers()) {
-            Gyle latestGyle = chamber.getLatestGyle();
-            if (latestGyle != null && latestGyle.isActive()) {
-                LeftSwitchedOffDetectionAction action = latestGyle.checkLeftSwitchedOff(timeNow);
-                if (action != null) {
-                    switch (action) {
-                        case SEND_FRIDGE_LEFT_OFF:
-                            emailService.sendSimpleMessage("Fridge left switched off? 😟",
-                                    chamber.getName() + ":\nIt looks like the fridge may have been left switched off!");
-                            break;
-                        case SEND_FRIDGE_NO_LONGER_LEFT_OFF:
-                            emailService.sendSimpleMessage("Fridge switched back on 😌",
-                                    chamber.getName() + ":\nIt looks like the fridge has now been switched back on.");
-                            break;
-                        case SEND_HEATER_LEFT_OFF:
-                            emailService.sendSimpleMessage("Heater left switched off? 😟",
-                                    chamber.getName() + ":\nIt looks like the heater may have been left switched off!");
-                            break;
-                        case SEND_HEATER_NO_LONGER_LEFT_OFF:
-                            emailService.sendSimpleMessage("Heater switched back on 😌",
-                                    chamber.getName() + ":\nIt looks like the heater has now been switched back on.");
-                            break;
-                    }
+    @PreDestroy
+    public void unsubscribe() {
+        switchedOffCheckSubscription.close();
+    }
+
+    void checkSwitchedOff(ReadingsCollected event) {
+        if (!event.logged)
+            return; // The gyle's trend buffer is as it was
+        Chamber chamber = chamberRepository.getChamberById(event.chamberId);
+        Gyle latestGyle = chamber.getLatestGyle();
+        if (latestGyle != null && latestGyle.isActive()) {
+            // The detection state is the chamber's, so is updated on its shard
+            LeftSwitchedOffDetectionAction action = chamberShards
+                    .submit(event.chamberId, () -> latestGyle.checkLeftSwitchedOff(event.timeNow)).join();
+            if (action != null) {
+                switch (action) {
+                    case SEND_FRIDGE_LEFT_OFF:
+                        emailService.sendSimpleMessage("Fridge left switched off? 😟",
+                                chamber.getName() + ":\nIt looks like the fridge may have been left switched off!");
+                        break;
+                    case SEND_FRIDGE_NO_LONGER_LEFT_OFF:
+                        emailService.sendSimpleMessage("Fridge switched back on 😌",
+                                chamber.getName() + ":\nIt looks like the fridge has now been switched back on.");
+                        break;
+                    case SEND_HEATER_LEFT_OFF:
+                        emailService.sendSimpleMessage("Heater left switched off? 😟",
+                                chamber.getName() + ":\nIt looks like the heater may have been left switched off!");
+                        break;
+                    case SEND_HEATER_NO_LONGER_LEFT_OFF:
+                        emailService.sendSimpleMessage("Heater switched back on 😌",
+                                chamber.getName() + ":\nIt looks like the heater has now been switched back on.");
+                        break;
                 }
             }
         }
@@ -2,6 +2,7 @@ package com.easleydp.tempctrl.spring;
 
 import static org.apache.commons.lang3.time.DateUtils.addHours;
 
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -9,6 +10,7 @@ import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -27,11 +29,14 @@ public class OfflineCheckScheduler {
     // purged from the front.
     private List<Date> buffer = new ArrayList<>();
 
+    @Autowired
+    private Clock clock;
+
     @Scheduled(cron = "${offlineCheck.cronSchedule}")
     public void checkOffline() {
         logger.debug("checkOffline called");
         if (!onlineDoubleCheck()) {
-            Date timeNow = new Date();
+            Date timeNow = new Date(clock.millis());
             purgeBuffer(timeNow);
             buffer.add(timeNow);
         }
@@ -0,0 +1,19 @@
+package com.easleydp.tempctrl.spring;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.easleydp.tempctrl.domain.OperationCosts;
+
+/** Exposes the per-operation CPU time and allocation as /actuator/costs. */
+@Component
+@Endpoint(id = "costs")
+public class OperationCostsEndpoint {
+    @ReadOperation
+    public Map<String, OperationCosts.Snapshot> operationCosts() {
+        return OperationCosts.snapshot();
+    }
+}
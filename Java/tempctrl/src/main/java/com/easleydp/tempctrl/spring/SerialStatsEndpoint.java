@@ -0,0 +1,39 @@
+package com.easleydp.tempctrl.spring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.easleydp.tempctrl.domain.ChamberManager;
+import com.easleydp.tempctrl.domain.SerialStats;
+
+/** Exposes the chamber manager's serial stats as /actuator/serial. */
+@Component
+@Endpoint(id = "serial")
+public class SerialStatsEndpoint {
+    @Autowired
+    private ChamberManager chamberManager;
+
+    /**
+     * @return the serial stats or, if there are several devices, each device's
+     *         by device name; null (hence 404) if the chamber manager has no
+     *         serial port, e.g. dummy.chambers=true.
+     */
+    @ReadOperation
+    public Object serialStats() {
+        Map<String, ChamberManager> devicesByName = chamberManager.getDevicesByName();
+        if (devicesByName.isEmpty())
+            return chamberManager.getSerialStats();
+        Map<String, SerialStats.Snapshot> statsByDeviceName = new LinkedHashMap<>();
+        devicesByName.forEach((name, device) -> {
+            SerialStats.Snapshot stats = device.getSerialStats();
+            if (stats != null)
+                statsByDeviceName.put(name, stats);
+        });
+        return statsByDeviceName.isEmpty() ? null : statsByDeviceName;
+    }
+}
@@ -12,11 +12,21 @@ import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -29,11 +39,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.easleydp.tempctrl.domain.Chamber;
 import com.easleydp.tempctrl.domain.ChamberManager;
 import com.easleydp.tempctrl.domain.ChamberManagerStatus;
+import com.easleydp.tempctrl.domain.ChamberRepository;
+import com.easleydp.tempctrl.domain.CollectionClock.SlotCounts;
 import com.easleydp.tempctrl.domain.JvmStatus;
 import com.easleydp.tempctrl.domain.MemoryStatsFileSystem;
 import com.easleydp.tempctrl.domain.MemoryStatsPi;
+import com.easleydp.tempctrl.domain.OperationCosts;
+import com.easleydp.tempctrl.domain.ReadingsEventBus.SubscriptionStats;
+import com.easleydp.tempctrl.domain.SerialConnection;
+import com.easleydp.tempctrl.domain.SerialStats;
 import com.easleydp.tempctrl.spring.CollectReadingsScheduler.ReadingsCollectionDurationStats;
 import com.easleydp.tempctrl.util.OsCommandExecuter;
 import com.easleydp.tempctrl.util.StringUtils;
@@ -52,12 +69,18 @@ public class StatusController {
     @Autowired
     private ChamberManager chamberManager;
 
+    @Autowired
+    private ChamberRepository chamberRepository;
+
     @Autowired
     private CollectReadingsScheduler collectReadingsScheduler;
 
     @Autowired
     private OfflineCheckScheduler offlineCheckScheduler;
 
+    @Autowired
+    private Clock clock;
+
     @Autowired
     private IpAddressUtils ipAddressUtils;
 
@@ -71,21 +94,86 @@ public class StatusController {
             "          Rx invalid nwid:0  Rx invalid crypt:0  Rx invalid frag:0",
             "          Tx excessive retries:202  Invalid misc:0   Missed beacon:0");
 
-    Supplier<ChamberManagerStatus> chamberManagerStatusSupplier;
+    /**
+     * The status is requested at most every 10s (from each device, if there are
+     * several). Rather than have the HTTP thread wait on the serial port, we report
+     * the latest status received (with when it was received), which will be the one
+     * just requested if the device responds promptly. Only if none has been
+     * received yet, e.g. on the first request after start-up, do we wait a little
+     * for the one just requested.
+     */
+    Supplier<CompletableFuture<Void>> chamberManagerStatusRequester;
+    /** Keyed by device name, or "" if there's just the one device */
+    private final Map<String, ReceivedStatus> latestChamberManagerStatuses = new ConcurrentHashMap<>();
+
+    private static final long FIRST_STATUS_WAIT_MILLIS = 2000;
+
+    private static final class ReceivedStatus {
+        final ChamberManagerStatus status;
+        final long receivedMillis;
+
+        ReceivedStatus(ChamberManagerStatus status, long receivedMillis) {
+            this.status = status;
+            this.receivedMillis = receivedMillis;
+        }
+    }
 
     public StatusController() {
-        chamberManagerStatusSupplier = Suppliers.memoizeWithExpiration(
-                new Supplier<ChamberManagerStatus>() {
-                    @Override
-                    public ChamberManagerStatus get() {
-                        try {
-                            return chamberManager.getChamberManagerStatus();
-                        } catch (IOException e) {
-                            logger.error(e.getMessage(), e);
-                            return null;
-                        }
-                    }
-                }, 10, TimeUnit.SECONDS);
+        chamberManagerStatusRequester = Suppliers.memoizeWithExpiration(new Supplier<CompletableFuture<Void>>() {
+            @Override
+            public CompletableFuture<Void> get() {
+                Map<String, ChamberManager> devicesByName = getDevicesByName();
+                return CompletableFuture.allOf(devicesByName.entrySet().stream()
+                        .map(entry -> entry.getValue().getChamberManagerStatusAsync().whenComplete((status, t) -> {
+                            if (t != null)
+                                logger.error(t.getMessage(), t);
+                            else
+                                latestChamberManagerStatuses.put(entry.getKey(),
+                                        new ReceivedStatus(status, clock.millis()));
+                        }))
+                        .toArray(CompletableFuture[]::new));
+            }
+        }, 10, TimeUnit.SECONDS);
+    }
+
+    /** @return the chamber manager's devices by name, or just the chamber manager as "" if it isn't several. */
+    private Map<String, ChamberManager> getDevicesByName() {
+        Map<String, ChamberManager> devicesByName = chamberManager.getDevicesByName();
+        return devicesByName.isEmpty() ? Collections.singletonMap("", chamberManager) : devicesByName;
+    }
+
+    /**
+     * @return the first device's latest status, being the one with the garage and
+     *         project box sensors, or null if none received.
+     */
+    private ReceivedStatus getChamberManagerStatus() {
+        CompletableFuture<Void> request = chamberManagerStatusRequester.get(); // Requests a fresh status if due
+        if (latestChamberManagerStatuses.isEmpty()) {
+            try {
+                request.get(FIRST_STATUS_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                // Already logged if failed; report the device as offline
+            }
+        }
+        return latestChamberManagerStatuses.get(getDevicesByName().keySet().iterator().next());
+    }
+
+    /** @return each device's status etc., by device name, if there are several devices. */
+    private Map<String, DeviceStatus> getDeviceStatuses() {
+        Map<String, DeviceStatus> statuses = new LinkedHashMap<>();
+        chamberManager.getDevicesByName()
+                .forEach((name, device) -> statuses.put(name, new DeviceStatus(latestChamberManagerStatuses.get(name),
+                        device.getConnectionState(), device.getSerialStats())));
+        return statuses;
+    }
+
+    /** @return when the status was received, to the second, in ISO format, or null if none. */
+    private static String receivedAt(ReceivedStatus status) {
+        return status != null
+                ? Instant.ofEpochMilli(status.receivedMillis).truncatedTo(ChronoUnit.SECONDS).toString()
+                : null;
     }
 
     private static final String VCGEN_CMD = "/opt/vc/bin/vcgencmd";
@@ -101,7 +189,7 @@ public class StatusController {
      * @param isAdmin If false, certain details are not leaked.
      */
     StatusReportResponse buildStatusReportResponse(boolean isAdmin) {
-        List<Date> recentlyOfflineDates = offlineCheckScheduler.getRecentlyOffline(new Date());
+        List<Date> recentlyOfflineDates = offlineCheckScheduler.getRecentlyOffline(new Date(clock.millis()));
         // @formatter:off
         List<String> recentlyOfflineIso = recentlyOfflineDates.stream()
             .map(d -> dateToIsoUtc(d))
@@ -110,11 +198,40 @@ public class StatusController {
 
         boolean mockPi = new File(VCGEN_CMD).exists() == false;
 
+        ReceivedStatus chamberManagerStatus = getChamberManagerStatus();
         return new StatusReportResponse(
                 new PiStats(isAdmin, mockPi, MOCK_IWCONFIG_STATS),
-                chamberManagerStatusSupplier.get(),
+                chamberManagerStatus != null ? chamberManagerStatus.status : null,
+                receivedAt(chamberManagerStatus),
+                chamberManager.getConnectionState(),
                 collectReadingsScheduler.getReadingsCollectionDurationStats(),
-                recentlyOfflineIso);
+                chamberManager.getSerialStats(),
+                recentlyOfflineIso,
+                getSensorGlitchCounts(),
+                getCollectionSlotCounts(),
+                chamberRepository.getEventBus().getStats(),
+                OperationCosts.snapshot(),
+                getDeviceStatuses());
+    }
+
+    /** @return chamber name to collection slot counts, for those chambers with any. */
+    private Map<String, SlotCounts> getCollectionSlotCounts() {
+        Map<String, SlotCounts> counts = new LinkedHashMap<>();
+        collectReadingsScheduler.getSlotCounts().forEach(
+                (chamberId, chamberCounts) -> counts.put(chamberRepository.getChamberById(chamberId).getName(),
+                        chamberCounts));
+        return counts;
+    }
+
+    /** @return chamber name to glitch counts, for those chambers with any glitches. */
+    private Map<String, Map<String, Long>> getSensorGlitchCounts() {
+        Map<String, Map<String, Long>> counts = new LinkedHashMap<>();
+        for (Chamber chamber : chamberRepository.getChambers()) {
+            Map<String, Long> chamberCounts = chamber.getSensorGlitchCounts();
+            if (!chamberCounts.isEmpty())
+                counts.put(chamber.getName(), chamberCounts);
+        }
+        return counts;
     }
 
     private static String dateToIsoUtc(Date date) {
@@ -124,8 +241,9 @@ public class StatusController {
         return df.format(date);
     }
 
-    @JsonPropertyOrder({ "garageTemperature", "projectBoxTemperature", "raspberryPi", "arduino",
-            "readingsCollectionDuration", "recentlyOffline" })
+    @JsonPropertyOrder({ "garageTemperature", "projectBoxTemperature", "raspberryPi", "arduino", "arduinoAsOf",
+            "arduinoConnection", "readingsCollectionDuration", "serial", "recentlyOffline", "sensorGlitches",
+            "collectionSlots", "eventBus", "operationCosts", "devices" })
     private static final class StatusReportResponse {
         public BigDecimal getGarageTemperature() {
             return arduino != null ? arduino.getGarageTemperature() : null;
@@ -138,18 +256,73 @@ public class StatusController {
         public final PiStats raspberryPi;
         @JsonInclude(Include.NON_NULL)
         public final ChamberManagerStatus arduino;
+        /** When `arduino` was received (the status is cached), UTC */
+        @JsonInclude(Include.NON_NULL)
+        public final String arduinoAsOf;
+        @JsonInclude(Include.NON_NULL)
+        public final SerialConnection.State arduinoConnection;
         @JsonInclude(Include.NON_NULL)
         @JsonProperty("readingsCollectionDuration")
         public final ReadingsCollectionDurationStats readingsCollectionDurationStats;
+        @JsonInclude(Include.NON_NULL)
+        public final SerialStats.Snapshot serial;
         @JsonInclude(Include.NON_EMPTY)
         public final List<String> recentlyOffline;
-
-        public StatusReportResponse(PiStats piStats, ChamberManagerStatus arduino,
-                ReadingsCollectionDurationStats readingsCollectionDurationStats, List<String> recentlyOffline) {
+        @JsonInclude(Include.NON_EMPTY)
+        public final Map<String, Map<String, Long>> sensorGlitches;
+        @JsonInclude(Include.NON_EMPTY)
+        public final Map<String, SlotCounts> collectionSlots;
+        @JsonInclude(Include.NON_EMPTY)
+        public final Map<String, SubscriptionStats> eventBus;
+        @JsonInclude(Include.NON_EMPTY)
+        public final Map<String, OperationCosts.Snapshot> operationCosts;
+        /** Only if there are several devices; otherwise see arduino, arduinoConnection and serial. */
+        @JsonInclude(Include.NON_EMPTY)
+        public final Map<String, DeviceStatus> devices;
+
+        public StatusReportResponse(PiStats piStats, ChamberManagerStatus arduino, String arduinoAsOf,
+                SerialConnection.State arduinoConnection,
+                ReadingsCollectionDurationStats readingsCollectionDurationStats, SerialStats.Snapshot serial,
+                List<String> recentlyOffline, Map<String, Map<String, Long>> sensorGlitches,
+                Map<String, SlotCounts> collectionSlots, Map<String, SubscriptionStats> eventBus,
+                Map<String, OperationCosts.Snapshot> operationCosts, Map<String, DeviceStatus> devices) {
             this.raspberryPi = piStats;
             this.arduino = arduino;
+            this.arduinoAsOf = arduinoAsOf;
+            this.arduinoConnection = arduinoConnection;
             this.readingsCollectionDurationStats = readingsCollectionDurationStats;
+            this.serial = serial;
             this.recentlyOffline = recentlyOffline;
+            this.sensorGlitches = sensorGlitches;
+            this.collectionSlots = collectionSlots;
+            this.eventBus = eventBus;
+            this.operationCosts = operationCosts;
+            this.devices = devices;
+        }
+
+        @JsonInclude(Include.NON_NULL)
+        public Boolean getArduinoIsOffline() {
+            return arduino == null ? true : null;
+        }
+    }
+
+    @JsonPropertyOrder({ "arduino", "arduinoAsOf", "arduinoConnection", "serial" })
+    private static final class DeviceStatus {
+        @JsonInclude(Include.NON_NULL)
+        public final ChamberManagerStatus arduino;
+        @JsonInclude(Include.NON_NULL)
+        public final String arduinoAsOf;
+        @JsonInclude(Include.NON_NULL)
+        public final SerialConnection.State arduinoConnection;
+        @JsonInclude(Include.NON_NULL)
+        public final SerialStats.Snapshot serial;
+
+        public DeviceStatus(ReceivedStatus arduino, SerialConnection.State arduinoConnection,
+                SerialStats.Snapshot serial) {
+            this.arduino = arduino != null ? arduino.status : null;
+            this.arduinoAsOf = receivedAt(arduino);
+            this.arduinoConnection = arduinoConnection;
+            this.serial = serial;
         }
 
         @JsonInclude(Include.NON_NULL)
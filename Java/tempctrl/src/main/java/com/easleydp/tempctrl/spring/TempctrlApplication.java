@@ -1,19 +1,32 @@
 package com.easleydp.tempctrl.spring;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.env.Environment;
 import org.springframework.retry.annotation.EnableRetry;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -21,10 +34,24 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.util.Assert;
 
 import com.easleydp.tempctrl.domain.ArduinoChamberManager;
+import com.easleydp.tempctrl.domain.ArduinoLogStore;
+import com.easleydp.tempctrl.domain.ArduinoMessenger;
+import com.easleydp.tempctrl.domain.Chamber;
 import com.easleydp.tempctrl.domain.ChamberManager;
+import com.easleydp.tempctrl.domain.ChamberManagerRegistry;
+import com.easleydp.tempctrl.domain.ChamberManagerRegistry.Device;
 import com.easleydp.tempctrl.domain.ChamberRepository;
+import com.easleydp.tempctrl.domain.ChamberShards;
+import com.easleydp.tempctrl.domain.CollectionClock;
+import com.easleydp.tempctrl.domain.CollectionTimings;
 import com.easleydp.tempctrl.domain.DummyChamberManager;
 import com.easleydp.tempctrl.domain.PropertyUtils;
+import com.easleydp.tempctrl.domain.ReadingsEventBus;
+import com.easleydp.tempctrl.domain.SerialRecorder;
+import com.easleydp.tempctrl.domain.SimulatedChamberManager;
+import com.easleydp.tempctrl.domain.VirtualArduino;
+import com.easleydp.tempctrl.domain.VirtualClock;
+import com.easleydp.tempctrl.domain.VirtualTaskScheduler;
 import com.easleydp.tempctrl.spring.config.AppProperties;
 
 @SpringBootApplication(
@@ -48,12 +75,57 @@ public class TempctrlApplication {
     @Autowired
     private Environment env;
 
+    /** Closed by this config rather than the messengers, since a recorder outlives its device's messengers. */
+    private final List<SerialRecorder> serialRecorders = new ArrayList<>();
+
     @PostConstruct
     public void init() {
         PropertyUtils.setEnv(env);
         logger.debug("Current working dir is {}", System.getProperty("user.dir"));
     }
 
+    /** Runs after the chamber manager bean is destroyed, since that depends on this config. */
+    @PreDestroy
+    public void closeSerialRecorders() {
+        for (SerialRecorder recorder : serialRecorders) {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close serial capture", e);
+            }
+        }
+        serialRecorders.clear();
+    }
+
+    /**
+     * The time as far as the app is concerned. If `virtual.clock.enabled`, a
+     * VirtualClock that the VirtualTaskScheduler fast-forwards from
+     * `virtual.clock.start` (default now).
+     */
+    @Bean
+    public Clock clock() {
+        if (!PropertyUtils.getBoolean("virtual.clock.enabled", false))
+            return Clock.systemUTC();
+        String start = PropertyUtils.getString("virtual.clock.start", null);
+        Instant startInstant = start != null && !start.isEmpty() ? Instant.parse(start) : Instant.now();
+        logger.info("Using VirtualClock starting {}", startInstant);
+        return new VirtualClock(startInstant.toEpochMilli());
+    }
+
+    /** Runs the `@Scheduled` tasks in virtual time, in place of Spring Boot's TaskScheduler. */
+    @Bean
+    @ConditionalOnProperty(name = "virtual.clock.enabled", havingValue = "true")
+    public VirtualTaskScheduler taskScheduler(Clock clock) {
+        return new VirtualTaskScheduler((VirtualClock) clock);
+    }
+
+    /** Virtual time only starts once all the `@Scheduled` tasks have been scheduled. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startVirtualTime(ApplicationReadyEvent event) {
+        event.getApplicationContext().getBeanProvider(VirtualTaskScheduler.class)
+                .ifAvailable(VirtualTaskScheduler::start);
+    }
+
     @Bean
     public Path dataDir() {
         String strPath = env.getRequiredProperty("dataDir");
@@ -63,16 +135,128 @@ public class TempctrlApplication {
     }
 
     @Bean
-    public ChamberRepository chamberRepository(Path dataDir) {
-        return new ChamberRepository(dataDir);
+    public ReadingsEventBus readingsEventBus() {
+        return ReadingsEventBus.fromProperties();
+    }
+
+    @Bean
+    public ChamberRepository chamberRepository(Path dataDir, ReadingsEventBus readingsEventBus) {
+        return new ChamberRepository(dataDir, readingsEventBus);
+    }
+
+    @Bean
+    public ChamberShards chamberShards() {
+        return ChamberShards.fromProperties();
+    }
+
+    @Bean
+    public ArduinoLogStore arduinoLogStore(Path dataDir) throws IOException {
+        return new ArduinoLogStore(dataDir.resolve("arduinoLog.bin"),
+                PropertyUtils.getInteger("arduinoLog.capacityRecords", 100000));
+    }
+
+    @Bean
+    public CollectionClock collectionClock() {
+        return CollectionClock.fromProperties();
     }
 
     @Bean
-    public ChamberManager chamberManager(ChamberRepository chamberRepository) {
+    public CollectionTimings collectionTimings() {
+        return CollectionTimings.fromProperties();
+    }
+
+    @Bean
+    public ChamberManager chamberManager(ChamberRepository chamberRepository, ArduinoLogStore arduinoLogStore,
+            Clock clock) throws IOException {
         boolean useDummyChamberManager = PropertyUtils.getBoolean("dummy.chambers", false);
-        logger.info("Using {}", useDummyChamberManager ? "DummyChamberManager" : "ArduinoChamberManager");
-        return useDummyChamberManager ? new DummyChamberManager(chamberRepository)
-                : new ArduinoChamberManager(chamberRepository);
+        if (useDummyChamberManager) {
+            if ("simulated".equals(PropertyUtils.getString("dummy.chambers.model", "random"))) {
+                logger.info("Using SimulatedChamberManager");
+                return SimulatedChamberManager.forChambers(chamberRepository,
+                        PropertyUtils.getInteger("dummy.chambers.seed", 1));
+            }
+            logger.info("Using DummyChamberManager");
+            return new DummyChamberManager(chamberRepository, clock);
+        }
+        String deviceNames = PropertyUtils.getString("chamberManager.devices", null);
+        if (deviceNames == null || deviceNames.isEmpty())
+            return arduinoChamberManager(chamberRepository, arduinoLogStore, clock, null, null, null);
+
+        List<Device> devices = new ArrayList<>();
+        for (String deviceName : deviceNames.split("\\s*,\\s*")) {
+            String prefix = "chamberManager.devices." + deviceName + ".";
+            List<Integer> chamberIds = Arrays.stream(PropertyUtils.getIntArray(prefix + "chamberIds")).boxed()
+                    .collect(Collectors.toList());
+            String port = PropertyUtils.getString(prefix + "port");
+            devices.add(new Device(deviceName,
+                    arduinoChamberManager(chamberRepository, arduinoLogStore, clock, deviceName, port, chamberIds),
+                    chamberIds));
+        }
+        ChamberManagerRegistry registry = new ChamberManagerRegistry(devices);
+        for (Chamber chamber : chamberRepository.getChambers())
+            Assert.state(registry.getDevice(chamber.getId()) != null,
+                    "Chamber " + chamber.getId() + " isn't on any of the chamberManager.devices");
+        return registry;
+    }
+
+    /**
+     * @param deviceName
+     *                       null if the only device
+     * @param port
+     *                       null to find the port
+     * @param chamberIds
+     *                       null if the only device
+     */
+    private ArduinoChamberManager arduinoChamberManager(ChamberRepository chamberRepository,
+            ArduinoLogStore arduinoLogStore, Clock clock, String deviceName, String port, List<Integer> chamberIds)
+            throws IOException {
+        SerialRecorder recorder = serialRecorder(deviceName);
+        if (PropertyUtils.getBoolean("virtual.arduino", false)) {
+            logger.info("Using ArduinoChamberManager with VirtualArduino{}", deviceName != null ? " " + deviceName : "");
+            VirtualArduino virtualArduino = virtualArduino(chamberIds != null ? chamberIds.size() : null);
+            return new ArduinoChamberManager(chamberRepository, arduinoLogStore,
+                    () -> new ArduinoMessenger(virtualArduino.open(), recorder), chamberIds, clock);
+        }
+        if (deviceName == null) {
+            logger.info("Using ArduinoChamberManager");
+            return new ArduinoChamberManager(chamberRepository, arduinoLogStore,
+                    () -> new ArduinoMessenger(recorder), null, clock);
+        }
+        logger.info("Using ArduinoChamberManager {} on {} for chambers {}", deviceName, port, chamberIds);
+        return new ArduinoChamberManager(chamberRepository, arduinoLogStore,
+                () -> new ArduinoMessenger(port, recorder), chamberIds, clock);
+    }
+
+    /**
+     * @param deviceName
+     *                       null if the only device
+     * @return null unless the serial traffic is to be captured.
+     */
+    private SerialRecorder serialRecorder(String deviceName) throws IOException {
+        String captureDir = PropertyUtils.getString("arduino.captureDir", null);
+        if (captureDir == null || captureDir.isEmpty())
+            return null;
+        String fileName = "serial-" + (deviceName != null ? deviceName + "-" : "")
+                + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".cap";
+        SerialRecorder recorder = new SerialRecorder(Paths.get(captureDir).resolve(fileName),
+                PropertyUtils.getInteger("arduino.captureMaxMegabytes", 100) * 1024L * 1024L);
+        serialRecorders.add(recorder);
+        return recorder;
+    }
+
+    /** @param chamberCount null for as per the properties */
+    private VirtualArduino virtualArduino(Integer chamberCount) {
+        String prefix = "virtual.arduino.";
+        VirtualArduino virtualArduino = new VirtualArduino(PropertyUtils.getInteger(prefix + "protocolVersion", 3),
+                chamberCount != null ? chamberCount : PropertyUtils.getInteger(prefix + "chamberCount", 2),
+                PropertyUtils.getInteger(prefix + "seed", 0));
+        virtualArduino.setLatency(PropertyUtils.getInteger(prefix + "latencyMillis", 0),
+                PropertyUtils.getInteger(prefix + "jitterMillis", 0));
+        virtualArduino.setCorruptByteProbability(env.getProperty(prefix + "corruptByteProbability", Double.class, 0.0));
+        virtualArduino.setDropFrameProbability(env.getProperty(prefix + "dropFrameProbability", Double.class, 0.0));
+        virtualArduino
+                .setLogFloodMessagesPerRequest(PropertyUtils.getInteger(prefix + "logFloodMessagesPerRequest", 0));
+        return virtualArduino;
     }
 
     @Bean
@@ -5,9 +5,11 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.easleydp.tempctrl.domain.OperationCosts;
 import com.easleydp.tempctrl.domain.Utils;
 
 @Configuration
@@ -23,6 +25,34 @@ public class WebMvcConfig implements WebMvcConfigurer {
                 return true;
             }
         });
+        registry.addInterceptor(new OperationCostsInterceptor());
+    }
+
+    /**
+     * Accounts each endpoint's CPU time and allocation, keyed by method and URL
+     * pattern (e.g. "GET /guest/chamber/{chamberId}/gyle/{gyleId}"), so path
+     * variables don't each get their own entry.
+     */
+    private static class OperationCostsInterceptor implements HandlerInterceptor {
+        private static final String MEASUREMENT_ATTRIBUTE = OperationCostsInterceptor.class.getName() + ".measurement";
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+                throws Exception {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String operation = request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+            request.setAttribute(MEASUREMENT_ATTRIBUTE, OperationCosts.measure(operation));
+            return true;
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                Exception ex) throws Exception {
+            OperationCosts.Measurement measurement = (OperationCosts.Measurement) request
+                    .getAttribute(MEASUREMENT_ATTRIBUTE);
+            if (measurement != null)
+                measurement.close();
+        }
     }
 
 }
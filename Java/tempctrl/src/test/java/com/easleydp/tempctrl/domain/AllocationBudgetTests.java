@@ -0,0 +1,129 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Allocation budgets for the once-a-minute work, measured with OperationCosts,
+ * so that a change that makes it much more garbage-heavy fails the build rather
+ * than only showing up in the benchmarks' GC profiler figures. The workloads
+ * mirror LogBufferFlushBenchmark and TemperatureProfileBenchmark (src/jmh).
+ *
+ * The budgets are a few times what's currently allocated, to allow for JVM
+ * differences; tighten them when an optimisation lands. They're net of the
+ * measuring's own cost, since reading a thread's allocated bytes allocates on
+ * some JVMs (e.g. JDK 11).
+ */
+public class AllocationBudgetTests {
+    private static final int bufferSize = 30;
+
+    private static final long logReadingBudgetBytes = 1024; // ~170 currently
+    private static final long logFlushBudgetBytes = 128 * 1024; // ~36K currently
+    // Lookups shouldn't allocate at all, though escape analysis may not be done yet; a 16-byte object per lookup
+    // would be 16K
+    private static final long temperatureLookupBudgetBytes = 256;
+
+    private Path dataDir;
+    private MockEnvironment env;
+    private ChamberRepository chambers;
+    private Gyle gyle;
+    private SimulatedChamberManager chamberManager;
+    private final Date startTime = new Date(1_600_000_000_000L);
+    private int minutes;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        env = new MockEnvironment();
+        env.setProperty("readings.gen1.readingsCount", "" + bufferSize);
+        env.setProperty("readings.staggerFirstReadings", "false");
+        PropertyUtils.setEnv(env);
+
+        // A scratch copy of the test data, since the logs are written
+        dataDir = Files.createTempDirectory("tempctrl-alloc");
+        FileSystemUtils.copyRecursively(Paths.get(".", "src/test/resources/testData"), dataDir);
+        chambers = new ChamberRepository(dataDir);
+        gyle = chambers.getChamberById(2).getGyleById(1);
+        gyle.setDtStarted(startTime.getTime());
+        chamberManager = SimulatedChamberManager.forChambers(chambers, 1);
+        OperationCosts.reset();
+    }
+
+    @AfterEach
+    public void afterEach() throws IOException {
+        FileSystemUtils.deleteRecursively(dataDir);
+    }
+
+    private void logReadings(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            Date timeNow = new Date(startTime.getTime() + ++minutes * 60_000L);
+            chamberManager.setParameters(2, gyle.getChamberParameters(timeNow));
+            ChamberReadings cr = chamberManager.collectReadings(2, timeNow);
+            try (OperationCosts.Measurement m = OperationCosts.measure("logReading")) {
+                gyle.logLatestReadings(cr, timeNow);
+            }
+        }
+    }
+
+    /** @return what an empty measurement allocates, i.e. the measuring's own cost */
+    private static long measurementOverheadBytes() {
+        for (int i = 0; i < 10; i++) {
+            try (OperationCosts.Measurement m = OperationCosts.measure("empty")) {
+                // Nothing
+            }
+        }
+        return OperationCosts.snapshot().get("empty").lastAllocatedBytes;
+    }
+
+    @Test
+    public void shouldLogReadingsWithinBudget() throws IOException {
+        if (!OperationCosts.isAllocatedBytesSupported())
+            return;
+        // Warm up, so one-off costs (class loading, lazy init) aren't counted
+        logReadings(bufferSize * 4 + 1);
+        OperationCosts.reset();
+
+        logReadings(bufferSize * 4);
+        long overheadBytes = measurementOverheadBytes();
+
+        OperationCosts.Snapshot flush = OperationCosts.snapshot().get("logFlush");
+        assertEquals(4, flush.count);
+        OperationCosts.Snapshot reading = OperationCosts.snapshot().get("logReading");
+        // Readings that don't flush the buffer
+        long otherReadingsBytes = (reading.totalAllocatedBytes - flush.totalAllocatedBytes) / (reading.count - 4)
+                - overheadBytes;
+        assertTrue(otherReadingsBytes <= logReadingBudgetBytes,
+                "Logging a reading allocated " + otherReadingsBytes + " bytes");
+        long flushBytes = flush.maxAllocatedBytes - overheadBytes;
+        assertTrue(flushBytes <= logFlushBudgetBytes, "Flushing the log buffer allocated " + flushBytes + " bytes");
+    }
+
+    @Test
+    public void shouldLookUpTargetTemperatureWithinBudget() {
+        if (!OperationCosts.isAllocatedBytesSupported())
+            return;
+        CompiledTemperatureProfile profile = gyle.getCompiledTemperatureProfile();
+        long endMillis = profile.getEndMillis() * 5 / 4;
+        for (int warmUp = 0; warmUp < 10; warmUp++) {
+            try (OperationCosts.Measurement m = OperationCosts.measure("temperatureLookup")) {
+                for (int i = 0; i < 1000; i++)
+                    profile.getTargetTempAt(endMillis * i / 1000);
+            }
+        }
+        OperationCosts.Snapshot lookup = OperationCosts.snapshot().get("temperatureLookup");
+        long lookupBytes = lookup.lastAllocatedBytes - measurementOverheadBytes();
+        assertTrue(lookupBytes <= temperatureLookupBudgetBytes,
+                "1000 target temperature lookups allocated " + lookupBytes + " bytes");
+    }
+}
@@ -0,0 +1,283 @@
+package com.easleydp.tempctrl.domain;
+
+import static com.easleydp.tempctrl.domain.TestChamberParameters.params;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+public class ArduinoChamberManagerProtocolTests {
+    private ChamberRepository chamberRepository;
+
+    private static final Date TIME_NOW = new Date(1_600_000_000_000L);
+
+    private static final Set<Integer> READINGS_CHAMBER_IDS = new HashSet<>(Arrays.asList(1, 2));
+
+    @BeforeEach
+    public void beforeEach() {
+        PropertyUtils.setEnv(new MockEnvironment());
+        chamberRepository = new ChamberRepository(Paths.get(".", "src/test/resources/testData"));
+    }
+
+    private Map<Integer, ChamberReadings> runCycle(ArduinoSimulator simulator) throws IOException {
+        try (ArduinoChamberManager chamberManager = new ArduinoChamberManager(chamberRepository, null,
+                () -> new ArduinoMessenger(simulator))) {
+            // Twice, to show the version is only negotiated once
+            chamberManager.runCollectionCycle(params(), READINGS_CHAMBER_IDS, TIME_NOW);
+            return chamberManager.runCollectionCycle(params(), READINGS_CHAMBER_IDS, TIME_NOW);
+        }
+    }
+
+    private static void assertReadings(Map<Integer, ChamberReadings> readingsByChamberId) {
+        assertEquals(2, readingsByChamberId.size());
+
+        ChamberReadings cr = readingsByChamberId.get(1);
+        assertEquals(171, cr.gettTarget());
+        assertEquals(151, cr.gettBeer());
+        assertEquals(131, cr.gettChamber());
+        assertEquals(123, cr.gettExternal());
+        assertEquals(201, cr.gettPi());
+        assertEquals(0, cr.getHeaterOutput());
+        assertEquals(Mode.AUTO, cr.getMode());
+
+        cr = readingsByChamberId.get(2);
+        assertEquals(100, cr.gettTarget());
+        assertEquals(152, cr.gettBeer());
+        assertEquals(null, cr.getHeaterOutput());
+        assertEquals(Mode.HOLD, cr.getMode());
+    }
+
+    @Test
+    public void v2ShouldCollectInSingleRoundTrip() throws IOException {
+        ArduinoSimulator simulator = new ArduinoSimulator(2, 2);
+        simulator.log("1,PID,~,1,");
+        simulator.log("2,CC,F,2,1,Aw==");
+
+        assertReadings(runCycle(simulator));
+
+        List<String> requests = simulator.getRequests();
+        assertEquals(Arrays.asList("version", "cyc:", "cyc:"),
+                Arrays.asList(requests.get(0), requests.get(1).substring(0, 4), requests.get(2).substring(0, 4)));
+        assertEquals("cyc:1,12,171,172,-10,400,1,10,10,5,2.1,0.01,20.5,A;2,-1,100,100,-10,150,0,10,10,5,1.9,0.015,19.5,H",
+                requests.get(2));
+        assertEquals(0, simulator.getPendingLogMessageCount());
+    }
+
+    @Test
+    public void v1ShouldFallBackToPerChamberRequests() throws IOException {
+        ArduinoSimulator simulator = new ArduinoSimulator(1, 2);
+        simulator.log("1,PID,~,1,");
+
+        assertReadings(runCycle(simulator));
+
+        // version, then per cycle and chamber: getLogMsgs, setChParams, getLogMsgs, getChRds, getLogMsgs
+        assertEquals(1 + 2 * 2 * 5, simulator.getRequests().size());
+        assertEquals(0, simulator.getPendingLogMessageCount());
+    }
+
+    @Test
+    public void shouldOnlyReturnRequestedReadings() throws IOException {
+        ArduinoSimulator simulator = new ArduinoSimulator(2, 2);
+        try (ArduinoChamberManager chamberManager = new ArduinoChamberManager(chamberRepository, null,
+                () -> new ArduinoMessenger(simulator))) {
+            Map<Integer, ChamberReadings> readings = chamberManager.runCollectionCycle(params(),
+                    new HashSet<>(Arrays.asList(2)), TIME_NOW);
+            assertEquals(new HashSet<>(Arrays.asList(2)), readings.keySet());
+        }
+    }
+
+    @Test
+    public void shouldRejectTruncatedCycleResponse() throws IOException {
+        // Claims 2 chambers but only has readings for 1
+        ArduinoSimulator lyingSimulator = new ArduinoSimulator(2, 1) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int n = super.read(buffer, offset, length);
+                for (int i = offset; i < offset + n - 5; i++)
+                    if (buffer[i] == 'c' && buffer[i + 1] == 'y' && buffer[i + 2] == 'c' && buffer[i + 3] == ':')
+                        buffer[i + 4] = '2';
+                return n;
+            }
+        };
+        try (ArduinoChamberManager chamberManager = new ArduinoChamberManager(chamberRepository, null,
+                () -> new ArduinoMessenger(lyingSimulator))) {
+            IOException e = assertThrows(IOException.class,
+                    () -> chamberManager.runCollectionCycle(params(), READINGS_CHAMBER_IDS, TIME_NOW));
+            assertTrue(e.getMessage().startsWith("Truncated 'cyc' response"), e.getMessage());
+        }
+    }
+
+    private static ChamberParameters withTarget(ChamberParameters p, int tTarget) {
+        return new ChamberParameters(p.gyleAgeHours, tTarget, p.tTargetNext, p.tMin, p.tMax, p.hasHeater,
+                p.fridgeMinOnTimeMins, p.fridgeMinOffTimeMins, p.fridgeSwitchOnLagMins, p.Kp, p.Ki, p.Kd, p.mode);
+    }
+
+    private static ChamberParameters withKp(ChamberParameters p, double Kp) {
+        return new ChamberParameters(p.gyleAgeHours, p.tTarget, p.tTargetNext, p.tMin, p.tMax, p.hasHeater,
+                p.fridgeMinOnTimeMins, p.fridgeMinOffTimeMins, p.fridgeSwitchOnLagMins, Kp, p.Ki, p.Kd, p.mode);
+    }
+
+    private static String lastRequest(ArduinoSimulator simulator) {
+        List<String> requests = simulator.getRequests();
+        return requests.get(requests.size() - 1);
+    }
+
+    @Test
+    public void v3ShouldOnlySendChangedParams() throws IOException {
+        ArduinoSimulator simulator = new ArduinoSimulator(3, 2);
+        try (ArduinoChamberManager chamberManager = new ArduinoChamberManager(chamberRepository, null,
+                () -> new ArduinoMessenger(simulator))) {
+            Map<Integer, ChamberParameters> params = params();
+            chamberManager.runCollectionCycle(params, READINGS_CHAMBER_IDS, TIME_NOW);
+            assertEquals("cyc:1,12,171,172,-10,400,1,10,10,5,2.1,0.01,20.5,A,1;"
+                    + "2,-1,100,100,-10,150,0,10,10,5,1.9,0.015,19.5,H,2", lastRequest(simulator));
+
+            assertReadings(chamberManager.runCollectionCycle(params, READINGS_CHAMBER_IDS, TIME_NOW));
+            assertEquals("cyc:", lastRequest(simulator));
+
+            params.put(1, withTarget(params.get(1), 175));
+            assertEquals(175, chamberManager.runCollectionCycle(params, READINGS_CHAMBER_IDS, TIME_NOW).get(1)
+                    .gettTarget());
+            assertEquals("cyc:1,12,175,172", lastRequest(simulator));
+
+            params.put(2, new ChamberParameters(-1, 100, 100, -10, 150, false, 10, 10, 5, 1.9, 0.015, 19.5,
+                    Mode.MONITOR_ONLY));
+            assertEquals(Mode.MONITOR_ONLY,
+                    chamberManager.runCollectionCycle(params, READINGS_CHAMBER_IDS, TIME_NOW).get(2).getMode());
+            assertEquals("cyc:2,-1,100,100,-10,150,0,10,10,5,1.9,0.015,19.5,M,3", lastRequest(simulator));
+        }
+    }
+
+    @Test
+    public void shouldFormatGainsWithBoundedPrecision() {
+        assertEquals("2", ArduinoChamberManager.formatGain(2.0));
+        assertEquals("20.5", ArduinoChamberManager.formatGain(20.5));
+        assertEquals("0.015", ArduinoChamberManager.formatGain(0.015));
+        assertEquals("0.3", ArduinoChamberManager.formatGain(0.1 + 0.2)); // Not 0.30000000000000004
+        assertEquals("-1.2346", ArduinoChamberManager.formatGain(-1.23456));
+        assertEquals("0", ArduinoChamberManager.formatGain(0.00001));
+    }
+
+    @Test
+    public void shouldNotSendRequestTooLongForArduino() throws IOException {
+        ArduinoSimulator simulator = new ArduinoSimulator(3, 2);
+        try (ArduinoChamberManager chamberManager = new ArduinoChamberManager(chamberRepository, null,
+                () -> new ArduinoMessenger(simulator))) {
+            Map<Integer, ChamberParameters> params = params();
+            chamberManager.runCollectionCycle(params, READINGS_CHAMBER_IDS, TIME_NOW);
+            int requestCount = simulator.getRequests().size();
+
+            Map<Integer, ChamberParameters> hugeParams = params();
+            hugeParams.put(1, withKp(params.get(1), 1e100));
+            assertThrows(IllegalArgumentException.class,
+                    () -> chamberManager.runCollectionCycle(hugeParams, READINGS_CHAMBER_IDS, TIME_NOW));
+            assertEquals(requestCount, simulator.getRequests().size());
+
+            // Since nothing got through, the params are resent in full
+            chamberManager.runCollectionCycle(params, READINGS_CHAMBER_IDS, TIME_NOW);
+            assertEquals("cyc:1,12,171,172,-10,400,1,10,10,5,2.1,0.01,20.5,A,4;"
+                    + "2,-1,100,100,-10,150,0,10,10,5,1.9,0.015,19.5,H,5", lastRequest(simulator));
+            assertTrue(lastRequest(simulator).length() <= ArduinoMessenger.MAX_REQUEST_LENGTH);
+        }
+    }
+
+    @Test
+    public void v3ShouldResendFullParamsAfterRestart() throws IOException {
+        ArduinoSimulator simulator = new ArduinoSimulator(3, 2);
+        try (ArduinoChamberManager chamberManager = new ArduinoChamberManager(chamberRepository, null,
+                () -> new ArduinoMessenger(simulator))) {
+            chamberManager.runCollectionCycle(params(), READINGS_CHAMBER_IDS, TIME_NOW);
+            simulator.restart();
+            chamberManager.runCollectionCycle(params(), READINGS_CHAMBER_IDS, TIME_NOW);
+            assertEquals("cyc:", lastRequest(simulator));
+            chamberManager.runCollectionCycle(params(), READINGS_CHAMBER_IDS, TIME_NOW);
+            assertEquals("cyc:1,12,171,172,-10,400,1,10,10,5,2.1,0.01,20.5,A,3;"
+                    + "2,-1,100,100,-10,150,0,10,10,5,1.9,0.015,19.5,H,4", lastRequest(simulator));
+        }
+    }
+
+    @Test
+    public void v3ShouldPeriodicallyResendFullParams() throws IOException {
+        ArduinoSimulator simulator = new ArduinoSimulator(3, 2);
+        try (ArduinoChamberManager chamberManager = new ArduinoChamberManager(chamberRepository, null,
+                () -> new ArduinoMessenger(simulator))) {
+            int fullCount = 0;
+            for (int i = 0; i < ArduinoChamberManager.FULL_PARAMS_SYNC_CYCLES * 2; i++) {
+                chamberManager.runCollectionCycle(params(), READINGS_CHAMBER_IDS, TIME_NOW);
+                if (!lastRequest(simulator).equals("cyc:"))
+                    fullCount++;
+            }
+            assertEquals(3, fullCount); // The first cycle then every FULL_PARAMS_SYNC_CYCLES
+        }
+    }
+
+    @Test
+    public void shouldKeepLogMessagesInLogStore() throws IOException {
+        Path tempFile = Files.createTempFile("arduinoLog", ".bin");
+        try (ArduinoLogStore logStore = new ArduinoLogStore(tempFile, 10)) {
+            ArduinoSimulator simulator = new ArduinoSimulator(3, 2);
+            simulator.log("0,PID,-,2,4,AABIQg==");
+            simulator.log("3,T,C,1,1,AQ==");
+            try (ArduinoChamberManager chamberManager = new ArduinoChamberManager(chamberRepository, logStore,
+                    () -> new ArduinoMessenger(simulator))) {
+                chamberManager.runCollectionCycle(params(), READINGS_CHAMBER_IDS, TIME_NOW);
+            }
+            List<ArduinoLogStore.Entry> entries = logStore.query(0, Long.MAX_VALUE, null, null, null, 10);
+            assertEquals(2, entries.size());
+            assertEquals("pidOutput {pidOutput: 50.000}", entries.get(0).text);
+            assertEquals(2, entries.get(0).chamberId);
+            assertEquals(3, entries.get(1).logLevel);
+        } finally {
+            Files.delete(tempFile);
+        }
+    }
+
+    @Test
+    public void shouldRecordSerialStats() throws IOException {
+        ArduinoSimulator simulator = new ArduinoSimulator(3, 2);
+        try (ArduinoChamberManager chamberManager = new ArduinoChamberManager(chamberRepository, null,
+                () -> new ArduinoMessenger(simulator.open()))) {
+            chamberManager.runCollectionCycle(params(), READINGS_CHAMBER_IDS, TIME_NOW);
+            simulator.close(); // As if unplugged
+            assertThrows(IOException.class,
+                    () -> chamberManager.runCollectionCycle(params(), READINGS_CHAMBER_IDS, TIME_NOW));
+            awaitConnected(chamberManager);
+            chamberManager.runCollectionCycle(params(), READINGS_CHAMBER_IDS, TIME_NOW);
+            simulator.log("1,PID,~,1,"); // Unsolicited, so purged before the next request
+            simulator.write("^getLogMsgs$".getBytes(US_ASCII));
+            chamberManager.runCollectionCycle(params(), READINGS_CHAMBER_IDS, TIME_NOW);
+
+            SerialStats.Snapshot stats = chamberManager.getSerialStats();
+            assertEquals(4, stats.commands.get("collectionCycle").count);
+            assertEquals(2, stats.requests.get("version").count);
+            assertEquals(3, stats.requests.get("cyc").count);
+            assertEquals("^logMsg:0,1,PID,~,1,$^ack$".length(), stats.purgedBytes);
+            assertEquals(1, stats.reconnects);
+            assertEquals(0, stats.timeouts);
+            assertTrue(stats.bytesIn > stats.bytesOut && stats.bytesOut > 0);
+        }
+    }
+
+    static void awaitConnected(ArduinoChamberManager chamberManager) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (chamberManager.getConnectionState() != SerialConnection.State.CONNECTED) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out awaiting connection");
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.easleydp.tempctrl.domain.ArduinoLogStore.Entry;
+
+public class ArduinoLogStoreTests {
+    private Path tempFile;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        tempFile = Files.createTempFile("arduinoLog", ".bin");
+    }
+
+    @AfterEach
+    public void afterEach() throws IOException {
+        Files.deleteIfExists(tempFile);
+    }
+
+    private static final byte[] PID_OUTPUT = { 0x00, 0x00, 0x48, 0x42 }; // 50.0f
+
+    @Test
+    public void shouldStoreAndDecodeRecords() throws IOException {
+        try (ArduinoLogStore store = new ArduinoLogStore(tempFile, 10)) {
+            store.append(1000, 7, 0, "PID", '-', 2, PID_OUTPUT);
+            store.append(2000, 8, 2, "CC", 'H', 1, new byte[] { 42 });
+            store.append(3000, 9, 1, "CD", 'p', 1, new byte[0]);
+
+            List<Entry> entries = store.query(0, Long.MAX_VALUE, null, null, null, 100);
+            assertEquals(3, entries.size());
+            Entry e = entries.get(0);
+            assertEquals(1000, e.timestamp);
+            assertEquals(7, e.sequenceNum);
+            assertEquals(0, e.logLevel);
+            assertEquals("PID", e.prefix);
+            assertEquals('-', e.id);
+            assertEquals(2, e.chamberId);
+            assertEquals("[00, 00, 48, 42]", e.buffer);
+            assertEquals("pidOutput {pidOutput: 50.000}", e.text);
+
+            assertEquals("{heater output: 42}", entries.get(1).text);
+            assertEquals("", entries.get(2).text);
+        }
+    }
+
+    @Test
+    public void shouldFilter() throws IOException {
+        try (ArduinoLogStore store = new ArduinoLogStore(tempFile, 100)) {
+            for (int i = 0; i < 50; i++)
+                store.append(i * 1000, i, 0, i % 2 == 0 ? "PID" : "CC", i % 3 == 0 ? 'C' : 'H', 1 + i % 2,
+                        new byte[] { (byte) i });
+
+            assertEquals(11, store.query(10_000, 20_000, null, null, null, 100).size());
+            assertEquals(25, store.query(0, Long.MAX_VALUE, "PID", null, null, 100).size());
+            assertEquals(25, store.query(0, Long.MAX_VALUE, null, null, 2, 100).size());
+            List<Entry> entries = store.query(0, Long.MAX_VALUE, "CC", 'C', null, 100);
+            assertEquals(8, entries.size()); // Odd multiples of 3
+            assertEquals(3, entries.get(0).sequenceNum);
+
+            // Most recent, oldest first
+            entries = store.query(0, Long.MAX_VALUE, null, null, null, 3);
+            assertEquals(47, entries.get(0).sequenceNum);
+            assertEquals(49, entries.get(2).sequenceNum);
+        }
+    }
+
+    @Test
+    public void shouldOverwriteOldestWhenFullAndSurviveReopening() throws IOException {
+        try (ArduinoLogStore store = new ArduinoLogStore(tempFile, 300)) {
+            for (int i = 0; i < 1000; i++)
+                store.append(i, i, 0, "LG", 'a', 1, new byte[] { 'x' });
+            assertEquals(300, store.size());
+        }
+        assertEquals(32 + 300 * ArduinoLogStore.RECORD_SIZE, Files.size(tempFile));
+
+        try (ArduinoLogStore store = new ArduinoLogStore(tempFile, 300)) {
+            List<Entry> entries = store.query(0, Long.MAX_VALUE, null, null, null, 1000);
+            assertEquals(300, entries.size());
+            for (int i = 0; i < 300; i++)
+                assertEquals(700 + i, entries.get(i).timestamp);
+            assertEquals((700 + 299) & 0xFF, entries.get(299).sequenceNum);
+
+            store.append(5000, 0, 3, "T", 'C', 1, new byte[] { 1 });
+            entries = store.query(0, Long.MAX_VALUE, null, null, null, 2);
+            assertEquals(999, entries.get(0).timestamp);
+            assertEquals("badSensorCount {1}", entries.get(1).text);
+        }
+    }
+
+    @Test
+    public void shouldStartAfreshIfCapacityChanged() throws IOException {
+        try (ArduinoLogStore store = new ArduinoLogStore(tempFile, 10)) {
+            store.append(1000, 1, 0, "PID", '-', 1, PID_OUTPUT);
+        }
+        try (ArduinoLogStore store = new ArduinoLogStore(tempFile, 20)) {
+            assertEquals(0, store.size());
+            assertTrue(store.query(0, Long.MAX_VALUE, null, null, null, 10).isEmpty());
+        }
+    }
+
+    @Test
+    public void shouldTruncateOversizedBuffer() throws IOException {
+        try (ArduinoLogStore store = new ArduinoLogStore(tempFile, 10)) {
+            store.append(1000, 1, 0, "XX", '?', 1, new byte[20]);
+            Entry e = store.query(0, Long.MAX_VALUE, null, null, null, 10).get(0);
+            assertEquals("[" + String.join(", ", Collections.nCopies(ArduinoLogStore.MAX_BUFFER_LENGTH, "00")) + "]",
+                    e.buffer);
+        }
+    }
+}
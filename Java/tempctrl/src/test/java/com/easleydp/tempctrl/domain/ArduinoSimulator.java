@@ -0,0 +1,38 @@
+package com.easleydp.tempctrl.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A VirtualArduino with no latency whose readings are derived from the chamber
+ * ID, and which records the requests received. A read with nothing queued
+ * returns 0, i.e. times out immediately.
+ */
+public class ArduinoSimulator extends VirtualArduino {
+    private final List<String> requests = new ArrayList<>();
+
+    public ArduinoSimulator(int protocolVersion, int chamberCount) {
+        super(protocolVersion, chamberCount, 0);
+    }
+
+    /** The requests received so far, minus the framing. */
+    public List<String> getRequests() {
+        return requests;
+    }
+
+    @Override
+    protected void requestReceived(String request) {
+        requests.add(request);
+    }
+
+    @Override
+    protected String readingsCsv(int chamberId, int tTarget) {
+        int tBeer = 150 + chamberId;
+        return tBeer + "," + (tBeer - 20) + ",123," + (200 + chamberId) + ",0," + (chamberId % 2);
+    }
+
+    @Override
+    public void setReadTimeout(int millis) {
+        super.setReadTimeout(0);
+    }
+}
@@ -0,0 +1,81 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+public class BurstSamplerTests {
+    private static final int BASE = 240000;
+    private static final int BURST = 30000;
+    private static final long BURST_MILLIS = 5 * 60_000L;
+
+    private static final long START = 1_600_000_000_000L;
+
+    @BeforeEach
+    public void beforeEach() {
+        PropertyUtils.setEnv(new MockEnvironment());
+    }
+
+    private static ChamberReadings readings(long timeMillis, int tBeer, Integer heaterOutput, boolean fridgeOn) {
+        return new ChamberReadings(new Date(timeMillis), 100, tBeer, 150, 100, 250, heaterOutput, fridgeOn,
+                Mode.AUTO);
+    }
+
+    private static BurstSampler sampler() {
+        return new BurstSampler(BASE, BURST, BURST_MILLIS, 10, 5);
+    }
+
+    @Test
+    public void shouldStayAtBasePeriodWhileNothingHappens() {
+        BurstSampler sampler = sampler();
+        for (int i = 0; i < 10; i++)
+            assertEquals(BASE, sampler.update(readings(START + i * BASE, 102, 20, false), new Date(START + i * BASE)));
+        assertFalse(sampler.isBursting());
+    }
+
+    @Test
+    public void shouldBurstWhenFridgeSwitchesThenDecayToBasePeriod() {
+        BurstSampler sampler = sampler();
+        long t = START;
+        sampler.update(readings(t, 100, 0, false), new Date(t));
+
+        t += BASE;
+        assertEquals(BURST, sampler.update(readings(t, 100, 0, true), new Date(t)));
+        assertTrue(sampler.isBursting());
+
+        // The burst lasts for the burst duration
+        long burstUntil = t + BURST_MILLIS;
+        while (t + BURST < burstUntil) {
+            t += BURST;
+            assertEquals(BURST, sampler.update(readings(t, 100, 0, true), new Date(t)));
+        }
+
+        // ... then the period doubles with each reading
+        int[] expected = { 60000, 120000, 240000, 240000 };
+        for (int periodMillis : expected) {
+            t += sampler.getPeriodMillis();
+            assertEquals(periodMillis, sampler.update(readings(t, 100, 0, true), new Date(t)));
+        }
+        assertFalse(sampler.isBursting());
+    }
+
+    @Test
+    public void shouldBurstOnHeaterSwingOrBeerDeviation() {
+        BurstSampler sampler = sampler();
+        sampler.update(readings(START, 100, 20, false), new Date(START));
+        // A small change in heater output is no trigger
+        assertEquals(BASE, sampler.update(readings(START + BASE, 100, 25, false), new Date(START + BASE)));
+        assertEquals(BURST,
+                sampler.update(readings(START + 2 * BASE, 100, 35, false), new Date(START + 2 * BASE)));
+
+        sampler = sampler();
+        assertEquals(BASE, sampler.update(readings(START, 105, null, false), new Date(START)));
+        assertEquals(BURST, sampler.update(readings(START + BASE, 94, null, false), new Date(START + BASE)));
+    }
+}
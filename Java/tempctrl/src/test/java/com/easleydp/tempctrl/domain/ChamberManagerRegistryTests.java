@@ -0,0 +1,161 @@
+package com.easleydp.tempctrl.domain;
+
+import static com.easleydp.tempctrl.domain.TestChamberParameters.CHAMBER_1;
+import static com.easleydp.tempctrl.domain.TestChamberParameters.params;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.easleydp.tempctrl.domain.ChamberManagerRegistry.Device;
+
+public class ChamberManagerRegistryTests {
+    private ChamberRepository chamberRepository;
+
+    private static final Date TIME_NOW = new Date(1_600_000_000_000L);
+
+    private static final Set<Integer> READINGS_CHAMBER_IDS = new HashSet<>(Arrays.asList(1, 2));
+
+    @BeforeEach
+    public void beforeEach() {
+        PropertyUtils.setEnv(new MockEnvironment());
+        chamberRepository = new ChamberRepository(Paths.get(".", "src/test/resources/testData"));
+    }
+
+    /**
+     * A device whose collection cycle runs on a thread of its own, and doesn't
+     * complete until all the devices sharing the `allStarted` latch have started
+     * theirs.
+     */
+    private static class SlowChamberManager extends DummyChamberManager {
+        private final CountDownLatch allStarted;
+        private final boolean fail;
+        private SerialConnection.State connectionState;
+
+        SlowChamberManager(ChamberRepository chamberRepository, CountDownLatch allStarted, boolean fail) {
+            super(chamberRepository);
+            this.allStarted = allStarted;
+            this.fail = fail;
+        }
+
+        @Override
+        public SerialConnection.State getConnectionState() {
+            return connectionState;
+        }
+
+        @Override
+        public CompletableFuture<Map<Integer, ChamberReadings>> runCollectionCycleAsync(
+                Map<Integer, ChamberParameters> paramsByChamberId, Set<Integer> readingsChamberIds, Date timeNow) {
+            CompletableFuture<Map<Integer, ChamberReadings>> future = new CompletableFuture<>();
+            new Thread(() -> {
+                try {
+                    allStarted.countDown();
+                    if (!allStarted.await(10, TimeUnit.SECONDS))
+                        throw new IOException("The other devices' cycles didn't start meanwhile");
+                    if (fail)
+                        throw new IOException("Device unplugged");
+                    future.complete(runCollectionCycle(paramsByChamberId, readingsChamberIds, timeNow));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }).start();
+            return future;
+        }
+    }
+
+    @Test
+    public void shouldMapChamberIdsToEachDevicesOwn() throws Exception {
+        ArduinoSimulator simulatorA = new ArduinoSimulator(3, 1);
+        ArduinoSimulator simulatorB = new ArduinoSimulator(3, 1);
+        try (ChamberManagerRegistry registry = new ChamberManagerRegistry(Arrays.asList(
+                new Device("a",
+                        new ArduinoChamberManager(chamberRepository, null, () -> new ArduinoMessenger(simulatorA),
+                                Arrays.asList(2)),
+                        Arrays.asList(2)),
+                new Device("b", new ArduinoChamberManager(chamberRepository, null,
+                        () -> new ArduinoMessenger(simulatorB), Arrays.asList(1)), Arrays.asList(1))))) {
+            Map<Integer, ChamberReadings> readingsByChamberId = registry.runCollectionCycle(params(),
+                    READINGS_CHAMBER_IDS, TIME_NOW);
+
+            assertEquals(2, readingsByChamberId.size());
+            // Each is its device's chamber 1
+            assertEquals(100, readingsByChamberId.get(2).gettTarget());
+            assertEquals(151, readingsByChamberId.get(2).gettBeer());
+            assertEquals(171, readingsByChamberId.get(1).gettTarget());
+            assertEquals(151, readingsByChamberId.get(1).gettBeer());
+
+            assertTrue(simulatorA.getRequests().stream().anyMatch(r -> r.startsWith("cyc:1,-1,100,100,")),
+                    simulatorA.getRequests().toString());
+            assertTrue(simulatorB.getRequests().stream().anyMatch(r -> r.startsWith("cyc:1,12,171,172,")),
+                    simulatorB.getRequests().toString());
+        }
+    }
+
+    @Test
+    public void shouldCollectFromAllDevicesAtOnce() throws Exception {
+        // Each device's cycle waits for the other's to start, so would fail were they run in turn
+        CountDownLatch allStarted = new CountDownLatch(2);
+        try (ChamberManagerRegistry registry = new ChamberManagerRegistry(Arrays.asList(
+                new Device("a", new SlowChamberManager(chamberRepository, allStarted, false), Arrays.asList(1)),
+                new Device("b", new SlowChamberManager(chamberRepository, allStarted, false), Arrays.asList(2))))) {
+            Map<Integer, ChamberReadings> readingsByChamberId = registry.runCollectionCycle(params(),
+                    READINGS_CHAMBER_IDS, TIME_NOW);
+            assertEquals(2, readingsByChamberId.size());
+        }
+    }
+
+    @Test
+    public void shouldReportEachDevice() throws Exception {
+        CountDownLatch allStarted = new CountDownLatch(0);
+        SlowChamberManager deviceA = new SlowChamberManager(chamberRepository, allStarted, false);
+        SlowChamberManager deviceB = new SlowChamberManager(chamberRepository, allStarted, false);
+        try (ChamberManagerRegistry registry = new ChamberManagerRegistry(Arrays.asList(
+                new Device("a", deviceA, Arrays.asList(1)), new Device("b", deviceB, Arrays.asList(2))))) {
+            assertEquals(Arrays.asList("a", "b"), new ArrayList<>(registry.getDevicesByName().keySet()));
+            assertSame(deviceB, registry.getDevicesByName().get("b"));
+            assertNull(registry.getConnectionState());
+
+            // The worst of the devices' states, so a dead second device isn't hidden by a healthy first
+            deviceA.connectionState = SerialConnection.State.CONNECTED;
+            assertEquals(SerialConnection.State.CONNECTED, registry.getConnectionState());
+            deviceB.connectionState = SerialConnection.State.ABSENT;
+            assertEquals(SerialConnection.State.ABSENT, registry.getConnectionState());
+        }
+    }
+
+    @Test
+    public void shouldReturnOtherDevicesReadingsWhenOneFails() throws Exception {
+        CountDownLatch allStarted = new CountDownLatch(2);
+        try (ChamberManagerRegistry registry = new ChamberManagerRegistry(Arrays.asList(
+                new Device("a", new SlowChamberManager(chamberRepository, allStarted, true), Arrays.asList(1)),
+                new Device("b", new SlowChamberManager(chamberRepository, allStarted, false), Arrays.asList(2))))) {
+            Map<Integer, ChamberReadings> readingsByChamberId = registry.runCollectionCycle(params(),
+                    READINGS_CHAMBER_IDS, TIME_NOW);
+            assertEquals(Collections.singleton(2), readingsByChamberId.keySet());
+
+            // Only if all fail does the cycle fail
+            IOException e = assertThrows(IOException.class,
+                    () -> registry.runCollectionCycle(Collections.singletonMap(1, CHAMBER_1), READINGS_CHAMBER_IDS,
+                            TIME_NOW));
+            assertEquals("Device unplugged", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+public class ChamberReadingsCodecTests {
+    private static final Path replayDir = Paths.get(".", "src/test/resources/replay");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private Path tempFile;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        tempFile = Files.createTempFile("codec", ".ndjson");
+    }
+
+    @AfterEach
+    public void afterEach() throws IOException {
+        Files.deleteIfExists(tempFile);
+    }
+
+    /**
+     * The replay fixture was written by the Jackson based log buffer, so reading
+     * and re-writing it should reproduce the file exactly.
+     */
+    @Test
+    public void shouldRoundTripGoldenFile() throws Exception {
+        Path golden = replayDir.resolve("chamber2-readings.ndjson");
+        List<ChamberReadings> readings = ChamberReadingsCodec.readAll(golden);
+        assertEquals(180, readings.size());
+        List<ChamberReadings> expected = readWithJackson(Files.readString(golden, StandardCharsets.UTF_8));
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.get(i).toString(), readings.get(i).toString());
+
+        new ChamberReadingsCodec().write(readings, tempFile);
+
+        assertArrayEquals(Files.readAllBytes(golden), Files.readAllBytes(tempFile));
+    }
+
+    @Test
+    public void shouldWriteSameBytesAsJackson() throws Exception {
+        List<ChamberReadings> readings = buildAssortedReadings(500);
+        // Small buffer so that it's drained several times during the write
+        new ChamberReadingsCodec(ChamberReadingsCodec.MAX_RECORD_BYTES).write(readings, tempFile);
+
+        assertEquals(writeWithJackson(readings), Files.readString(tempFile, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldParseSameAsJackson() throws Exception {
+        List<ChamberReadings> readings = buildAssortedReadings(500);
+        String ndjson = writeWithJackson(readings);
+
+        List<ChamberReadings> expected = readWithJackson(ndjson);
+        List<ChamberReadings> actual = new ArrayList<>();
+        ChamberReadingsCodec.parse(ByteBuffer.wrap(ndjson.getBytes(StandardCharsets.UTF_8)), actual::add);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+    }
+
+    @Test
+    public void shouldTolerateWhitespaceAndAnyPropertyOrder() {
+        String ndjson = " { \"mode\" : \"H\", \"tBeer\":-5 ,\"dt\":7, \"fridgeOn\":false, \"tPi\":null }\r\n\n{\"dt\":8}";
+        List<ChamberReadings> actual = parse(ndjson);
+
+        assertEquals(2, actual.size());
+        assertEquals("[dt=7, tTarget=null, tBeer=-5, tExternal=null, tChamber=null, tPi=null, heaterOutput=null, "
+                + "fridgeOn=false, mode=H]", actual.get(0).toString());
+        assertEquals(8, actual.get(1).getDt());
+    }
+
+    @Test
+    public void shouldRejectMalformedInput() {
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"dt\":1,\"tFoo\":2}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"dt\":1,\"tBeer\":}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"dt\":1,\"tBeer\":1"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"dt\":1,\"mode\":\"X\"}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"dt\":1,\"fridgeOn\":yes}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"dt\":3000000000}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"dt\":null}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"dt\":1.5}"));
+    }
+
+    @Test
+    public void shouldWriteIntsAtExtremes() {
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        for (int value : new int[] { 0, 9, 10, -1, -10, 99999, Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+            buf.clear();
+            ChamberReadingsCodec.putInt(buf, value);
+            assertEquals(Integer.toString(value), new String(buf.array(), 0, buf.position(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static List<ChamberReadings> parse(String ndjson) {
+        List<ChamberReadings> list = new ArrayList<>();
+        ChamberReadingsCodec.parse(ByteBuffer.wrap(ndjson.getBytes(StandardCharsets.UTF_8)), list::add);
+        return list;
+    }
+
+    /**
+     * Readings covering negative values, every mode and the nulled-out properties
+     * seen in optimised log files.
+     */
+    private static List<ChamberReadings> buildAssortedReadings(int count) {
+        Random random = new Random(42);
+        Mode[] modes = Mode.values();
+        List<ChamberReadings> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ChamberReadings cr = new ChamberReadings();
+            cr.setDt(i * 2);
+            cr.settTarget(maybeNull(random, random.nextInt(400) - 100));
+            cr.settBeer(maybeNull(random, random.nextInt(400) - 100));
+            cr.settExternal(maybeNull(random, random.nextInt(600) - 300));
+            cr.settChamber(maybeNull(random, random.nextInt(400) - 100));
+            cr.settPi(maybeNull(random, random.nextInt(800)));
+            cr.setHeaterOutput(maybeNull(random, random.nextInt(101)));
+            cr.setFridgeOn(maybeNull(random, random.nextBoolean()));
+            cr.setMode(maybeNull(random, modes[random.nextInt(modes.length)]));
+            list.add(cr);
+        }
+        return list;
+    }
+
+    private static <T> T maybeNull(Random random, T value) {
+        return random.nextInt(3) == 0 ? null : value;
+    }
+
+    /** As the log buffer used to write log files. */
+    private String writeWithJackson(List<ChamberReadings> readings) throws IOException {
+        Writer writer = new StringWriter();
+        try (SequenceWriter sw = mapper.writerFor(ChamberReadings.class).withRootValueSeparator("\n")
+                .writeValues(writer)) {
+            sw.writeAll(readings);
+        }
+        return writer.toString() + "\n";
+    }
+
+    private List<ChamberReadings> readWithJackson(String ndjson) throws IOException {
+        try (MappingIterator<ChamberReadings> it = mapper.readerFor(ChamberReadings.class).readValues(ndjson)) {
+            return it.readAll();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class ChamberShardsTests {
+
+    @Test
+    public void shouldRunAChambersTasksOneAtATimeInOrder() {
+        try (ChamberShards shards = new ChamberShards(4)) {
+            int chamberCount = 8;
+            int taskCount = 1000;
+            // Deliberately unsynchronized: only ever touched by the chamber's shard
+            List<List<Integer>> seenByChamber = new ArrayList<>();
+            int[] running = new int[chamberCount];
+            AtomicInteger overlaps = new AtomicInteger();
+            for (int c = 0; c < chamberCount; c++)
+                seenByChamber.add(new ArrayList<>());
+
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < taskCount; i++) {
+                for (int c = 0; c < chamberCount; c++) {
+                    int chamberId = c;
+                    int seq = i;
+                    futures.add(shards.submit(chamberId, () -> {
+                        if (running[chamberId]++ != 0)
+                            overlaps.incrementAndGet();
+                        seenByChamber.get(chamberId).add(seq);
+                        running[chamberId]--;
+                        return null;
+                    }));
+                }
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+            assertEquals(0, overlaps.get());
+            for (List<Integer> seen : seenByChamber) {
+                assertEquals(taskCount, seen.size());
+                for (int i = 0; i < taskCount; i++)
+                    assertEquals(i, seen.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void shouldRunDifferentChambersInParallel() throws Exception {
+        try (ChamberShards shards = new ChamberShards(2)) {
+            // Each chamber's task waits for the other's, so this only completes if they run
+            // at the same time
+            CountDownLatch bothRunning = new CountDownLatch(2);
+            CompletableFuture<Boolean> one = shards.submit(1, () -> {
+                bothRunning.countDown();
+                return bothRunning.await(5, TimeUnit.SECONDS);
+            });
+            CompletableFuture<Boolean> two = shards.submit(2, () -> {
+                bothRunning.countDown();
+                return bothRunning.await(5, TimeUnit.SECONDS);
+            });
+            assertTrue(one.get(10, TimeUnit.SECONDS));
+            assertTrue(two.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void shouldCarryOnAfterATaskFails() {
+        try (ChamberShards shards = new ChamberShards(1)) {
+            CompletableFuture<Object> failed = shards.submit(1, () -> {
+                throw new IllegalStateException("boom");
+            });
+            CompletableFuture<String> next = shards.submit(1, () -> "ok");
+            CompletionException e = assertThrows(CompletionException.class, failed::join);
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("ok", next.join());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.easleydp.tempctrl.domain.CollectionClock.SlotCounts;
+import com.easleydp.tempctrl.domain.CollectionClock.SlotStatus;
+
+public class CollectionClockTests {
+    private static final int RESOLUTION = 30000;
+    private static final long T0 = 1_600_000_020_000L / 60000 * 60000; // On a slot for both chambers
+
+    private static final Map<Integer, Integer> PERIODS = new LinkedHashMap<>();
+    static {
+        PERIODS.put(1, 60000);
+        PERIODS.put(2, 30000);
+    }
+
+    private final CollectionClock clock = new CollectionClock(RESOLUTION, 10000, 20000);
+
+    @Test
+    public void shouldAlignSlotsToResolutionBoundaries() {
+        Date slot = clock.dueSlot(T0 + 1234, PERIODS);
+        assertEquals(new Date(T0), slot);
+        assertTrue(CollectionClock.isDue(slot, 60000));
+        // Not again until the next slot
+        assertNull(clock.dueSlot(T0 + 2000, PERIODS));
+        assertNull(clock.dueSlot(T0 + RESOLUTION - 1, PERIODS));
+
+        slot = clock.dueSlot(T0 + RESOLUTION + 5, PERIODS);
+        assertEquals(new Date(T0 + RESOLUTION), slot);
+        assertFalse(CollectionClock.isDue(slot, 60000));
+        assertTrue(CollectionClock.isDue(slot, 30000));
+
+        assertEquals(new Date(T0 + 60000), clock.dueSlot(T0 + 60999, PERIODS));
+        assertEquals(0, clock.getSlotCounts().size());
+    }
+
+    @Test
+    public void shouldClassifyReadingsByLateness() {
+        Date slot = clock.dueSlot(T0 + 1000, PERIODS);
+        assertEquals(SlotStatus.OK, clock.record(1, slot, T0 + 10000, true));
+        assertEquals(SlotStatus.LATE, clock.record(2, slot, T0 + 10001, true));
+        clock.record(2, clock.dueSlot(T0 + RESOLUTION, PERIODS), T0 + RESOLUTION + 100, true);
+
+        slot = clock.dueSlot(T0 + 60000, PERIODS);
+        assertEquals(SlotStatus.MISSED, clock.record(1, slot, T0 + 60000 + 20001, true));
+        assertEquals(SlotStatus.MISSED, clock.record(2, slot, T0 + 60000 + 500, false));
+
+        Map<Integer, SlotCounts> counts = clock.getSlotCounts();
+        assertEquals(1, counts.get(1).ok);
+        assertEquals(1, counts.get(1).missed);
+        assertEquals(SlotStatus.MISSED, counts.get(1).last);
+        assertEquals(1, counts.get(2).late);
+        assertEquals(1, counts.get(2).missed);
+    }
+
+    @Test
+    public void shouldSkipRatherThanBunchUpMissedSlots() {
+        clock.dueSlot(T0, PERIODS);
+        // A cycle overruns by two minutes and a bit: the slot in progress is past its
+        // deadline and those before it were skipped altogether
+        assertNull(clock.dueSlot(T0 + 120000 + 25000, PERIODS));
+        assertEquals(2, clock.getSlotCounts().get(1).missed); // +60s, +120s
+        assertEquals(4, clock.getSlotCounts().get(2).missed); // +30s, +60s, +90s, +120s
+
+        // Back on schedule
+        assertNull(clock.dueSlot(T0 + 120000 + 29000, PERIODS));
+        assertEquals(new Date(T0 + 150000), clock.dueSlot(T0 + 150000 + 5, PERIODS));
+        assertEquals(2, clock.getSlotCounts().get(1).missed);
+        assertEquals(4, clock.getSlotCounts().get(2).missed);
+    }
+}
@@ -0,0 +1,133 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.easleydp.tempctrl.dto.PointDto;
+import com.easleydp.tempctrl.dto.TemperatureProfileDto;
+
+public class CompiledTemperatureProfileTests {
+    private static final long hourMillis = 1000L * 60 * 60;
+
+    @Test
+    public void testBasicInterpolation() {
+        CompiledTemperatureProfile profile = compile(new PointDto(0, 150), new PointDto(1, 200));
+
+        assertEquals(150, profile.getTargetTempAt(-1));
+        assertEquals(150, profile.getTargetTempAt(0));
+        assertEquals(175, profile.getTargetTempAt(hourMillis / 2));
+        assertEquals(200, profile.getTargetTempAt(hourMillis));
+        assertEquals(200, profile.getTargetTempAt(hourMillis + 1));
+        assertEquals(200, profile.getTargetTempAt(hourMillis * 2));
+    }
+
+    /**
+     * Compare with the reference implementation over random profiles (including
+     * repeated points, falling ramps and negative temperatures), sampling both
+     * arbitrary times and the times at and either side of each point.
+     */
+    @Test
+    public void shouldMatchTemperatureProfile() {
+        Random random = new Random(1);
+        for (int p = 0; p < 200; p++) {
+            List<PointDto> points = new ArrayList<>();
+            int hours = 0;
+            int pointCount = 1 + random.nextInt(10);
+            for (int i = 0; i < pointCount; i++) {
+                points.add(new PointDto(hours, random.nextInt(700) - 200));
+                hours += random.nextInt(5) == 0 ? 0 : 1 + random.nextInt(72);
+            }
+            TemperatureProfileDto dto = new TemperatureProfileDto(points);
+            TemperatureProfile expected = new TemperatureProfile(dto);
+            CompiledTemperatureProfile actual = new CompiledTemperatureProfile(dto);
+
+            for (PointDto point : points)
+                for (long offset = -1; offset <= 1; offset++) {
+                    long t = point.getMillisSinceStart() + offset;
+                    assertEquals(expected.getTargetTempAt(t), actual.getTargetTempAt(t), dto + " at " + t);
+                }
+            long endMillis = (hours + 24) * hourMillis;
+            for (int i = 0; i < 200; i++) {
+                long t = (long) (random.nextDouble() * endMillis);
+                assertEquals(expected.getTargetTempAt(t), actual.getTargetTempAt(t), dto + " at " + t);
+            }
+            assertEquals(expected.getCrashStartPoint(), actual.getCrashStartPoint());
+            assertEquals(expected.getCrashEndPoint(), actual.getCrashEndPoint());
+        }
+    }
+
+    @Test
+    public void seriesShouldMatchPointwiseEvaluation() {
+        CompiledTemperatureProfile profile = compile(new PointDto(0, 180), new PointDto(48, 180),
+                new PointDto(48, 200), new PointDto(120, 210), new PointDto(144, 20));
+        long[][] ranges = { // fromMillis, stepMillis, count
+                { -7 * hourMillis, hourMillis, 200 }, { 0, 60_000, 10_000 }, { 13, 7 * hourMillis + 1, 30 },
+                { 47 * hourMillis, 1, 1000 }, { 200 * hourMillis, hourMillis, 5 }, { 0, 1, 0 } };
+        for (long[] range : ranges) {
+            int count = (int) range[2];
+            int[] series = profile.getTargetTemps(range[0], range[1], count);
+
+            assertEquals(count, series.length);
+            for (int n = 0; n < count; n++) {
+                long time = range[0] + n * range[1];
+                assertEquals(profile.getTargetTempAt(time), series[n], "series at " + time);
+            }
+        }
+    }
+
+    /**
+     * Ascending times (including repeats) take the forward walk; any that go
+     * backwards take the search.
+     */
+    @Test
+    public void batchShouldMatchPointwiseEvaluation() {
+        CompiledTemperatureProfile profile = compile(new PointDto(0, 180), new PointDto(48, 180),
+                new PointDto(48, 200), new PointDto(120, 210), new PointDto(144, 20));
+        Random random = new Random(1);
+        long endMillis = 160 * hourMillis;
+        long[] ascending = new long[1000];
+        long[] unsorted = new long[1000];
+        for (int n = 0; n < ascending.length; n++) {
+            unsorted[n] = (long) (random.nextDouble() * (endMillis + 10 * hourMillis)) - 10 * hourMillis;
+            ascending[n] = n == 0 ? -hourMillis
+                    : ascending[n - 1] + (random.nextInt(4) == 0 ? 0 : random.nextInt((int) hourMillis));
+        }
+        long[][] batches = { ascending, unsorted, { 48 * hourMillis, 48 * hourMillis, 0, 144 * hourMillis, -1 },
+                {} };
+        for (long[] times : batches) {
+            int[] batch = profile.getTargetTempsAt(times);
+
+            assertEquals(times.length, batch.length);
+            for (int n = 0; n < times.length; n++)
+                assertEquals(profile.getTargetTempAt(times[n]), batch[n], "batch at " + times[n]);
+        }
+    }
+
+    @Test
+    public void shouldLocateCrashPoints() {
+        CompiledTemperatureProfile profile = compile(new PointDto(0, 175), new PointDto(1, 0));
+        assertNull(profile.getCrashStartPoint());
+        assertNull(profile.getCrashEndPoint());
+
+        profile = compile(new PointDto(0, 175), new PointDto(24, 175), new PointDto(48, 0));
+        assertEquals(new PointDto(24, 175), profile.getCrashStartPoint());
+        assertEquals(new PointDto(48, 0), profile.getCrashEndPoint());
+    }
+
+    @Test
+    public void shouldRejectProfileNotStartingAtT0() {
+        assertThrows(IllegalStateException.class, () -> compile(new PointDto(1, 175)));
+        assertThrows(IllegalStateException.class, () -> new CompiledTemperatureProfile(new TemperatureProfileDto()));
+    }
+
+    private static CompiledTemperatureProfile compile(PointDto... points) {
+        return new CompiledTemperatureProfile(new TemperatureProfileDto(List.of(points)));
+    }
+}
@@ -4,6 +4,7 @@ import static org.apache.commons.lang3.time.DateUtils.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -16,29 +17,21 @@ import org.springframework.mock.env.MockEnvironment;
 import org.springframework.util.Assert;
 import org.springframework.util.FileSystemUtils;
 
+/**
+ * Writes realistic readings logs for a gyle, as simulated by
+ * SimulatedChamberManager, collecting every minute in virtual time. Years of
+ * data take seconds.
+ *
+ * Besides the (normally disabled) test, can be run headless on a scratch copy
+ * of a data dir: `GyleDataGenerator <dataDir> <chamberId> <gyleId> <days>`.
+ * The gyle is started `days` ago; any logs it already has are replaced.
+ */
 public class GyleDataGenerator {
-    private MockChamberManager chamberManagerSim;
     private ChamberRepository chambers;
-    private Chamber chamber;
-    private Gyle gyle;
-    private Date startTime;
-    private Date timeNow;
-    private MockEnvironment env;
-
-    private static final int gen1ReadingsCount = 10;
-    private static final int genMultiplier = 4;
-    private static final int maxGenerations = 3;
-
-    private void collectReadings() throws IOException {
-        ChamberReadings latestReadings = chamberManagerSim.collectReadings(chamber.getId(), timeNow);
-        chamber.setLatestChamberReadings(latestReadings);
-        gyle.logLatestReadings(latestReadings, timeNow);
-    }
 
     @BeforeEach
     public void beforeEach() throws Exception {
-        env = new MockEnvironment();
-        PropertyUtils.setEnv(env);
+        PropertyUtils.setEnv(new MockEnvironment());
 
         Path dataDir = Paths.get(".", "src/test/resources/testData");
         Assert.state(Files.exists(dataDir), "data dir should exist.");
@@ -54,20 +47,45 @@ public class GyleDataGenerator {
     /** From 4 weeks ago up until now. */
     public void shouldGenerateRealisticDataFor4WeekGyle() throws Exception {
         Date endTime = new Date();
-        startTime = DateUtils.addWeeks(endTime, -4);
-
-        chamber = chambers.getChamberById(2);
-        gyle = chamber.getGyleById(1);
+        Gyle gyle = chambers.getChamberById(2).getGyleById(1);
         assertNotNull(gyle, "Chamber 2 gyle 1 should be found"); // Actually, getGyleById will already have checked not
                                                                  // null.
-        gyle.setDtStarted(startTime.getTime()); // So now it's the active gyle
-        chamberManagerSim = new MockChamberManager(startTime, gyle.getTemperatureProfileDomain(), env);
+        generate(chambers, gyle, DateUtils.addWeeks(endTime, -4), endTime);
+    }
 
-        timeNow = startTime;
-        while (timeNow.getTime() < endTime.getTime()) {
-            timeNow = addMinutes(timeNow, 1);
-            collectReadings();
-        }
+    /** Starts the gyle at `startTime` (so it's the active gyle) and logs its readings up until `endTime`. */
+    static void generate(ChamberRepository chambers, Gyle gyle, Date startTime, Date endTime) {
+        Chamber chamber = gyle.chamber;
+        gyle.setDtStarted(startTime.getTime());
+        SimulatedChamberManager chamberManager = SimulatedChamberManager.forChambers(chambers, 1);
+
+        // Collect every minute, in virtual time
+        VirtualClock clock = new VirtualClock(startTime.getTime());
+        VirtualTaskScheduler scheduler = new VirtualTaskScheduler(clock);
+        scheduler.scheduleAtFixedRate(() -> {
+            Date timeNow = new Date(clock.millis());
+            chamberManager.setParameters(chamber.getId(), gyle.getChamberParameters(timeNow));
+            ChamberReadings latestReadings = chamberManager.collectReadings(chamber.getId(), timeNow);
+            try {
+                gyle.logLatestReadings(latestReadings, timeNow);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, addMinutes(startTime, 1), 60_000);
+        scheduler.runUntil(endTime.getTime());
+        gyle.close();
     }
 
+    public static void main(String[] args) throws IOException {
+        Assert.isTrue(args.length == 4, "Usage: GyleDataGenerator <dataDir> <chamberId> <gyleId> <days>");
+        PropertyUtils.setEnv(new MockEnvironment());
+        ChamberRepository chambers = new ChamberRepository(Paths.get(args[0]));
+        Gyle gyle = chambers.getChamberById(Integer.parseInt(args[1])).getGyleById(Integer.parseInt(args[2]));
+        FileSystemUtils.deleteRecursively(gyle.gyleDir.resolve("logs"));
+
+        long startNanos = System.nanoTime();
+        Date endTime = new Date();
+        generate(chambers, gyle, DateUtils.addDays(endTime, -Integer.parseInt(args[3])), endTime);
+        System.out.printf("Generated %s days in %dms%n", args[3], (System.nanoTime() - startNanos) / 1_000_000);
+    }
 }
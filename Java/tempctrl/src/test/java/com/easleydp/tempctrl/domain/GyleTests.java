@@ -19,6 +19,8 @@ import java.util.Calendar;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
@@ -29,7 +31,10 @@ import org.springframework.util.Assert;
 import org.springframework.util.FileSystemUtils;
 
 import com.easleydp.tempctrl.domain.Gyle.LeftSwitchedOffDetectionAction;
+import com.easleydp.tempctrl.domain.Gyle.LogBuffer;
+import com.easleydp.tempctrl.domain.Gyle.LogBufferConfig;
 import com.easleydp.tempctrl.domain.Gyle.LogFileDescriptor;
+import com.easleydp.tempctrl.domain.optimise.Smoother;
 import com.easleydp.tempctrl.dto.GyleDto;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
@@ -56,7 +61,8 @@ public class GyleTests {
 
     private void collectReadings(ReadingsMassager massager) throws IOException {
         ChamberReadings latestReadings = chamberManagerSim.collectReadings(chamber.getId(), timeNow);
-        chamber.setLatestChamberReadings(massager != null ? massager.massage(latestReadings) : latestReadings);
+        if (massager != null)
+            massager.massage(latestReadings);
         gyle.logLatestReadings(latestReadings, timeNow);
     }
 
@@ -184,6 +190,135 @@ public class GyleTests {
         }
     }
 
+    /**
+     * A chamber sampled twice as often as the global period should have twice as
+     * many readings per gen1 log file, so each file still spans the same time.
+     */
+    @Test
+    public void shouldScaleLogBufferToChamberReadingsPeriod() throws Exception {
+        chamber.setReadingsPeriodMillis(30000);
+        assertEquals(30000, chamber.getEffectiveReadingsPeriodMillis());
+        gyle = new Gyle(chamber, gyle.gyleDir);
+
+        timeNow = startTime;
+        for (int i = 0; i < gen1ReadingsCount * 2; i++) {
+            timeNow = new Date(timeNow.getTime() + 30000);
+            collectReadings();
+        }
+        assertEquals(0, listLogFiles().size());
+        timeNow = new Date(timeNow.getTime() + 30000);
+        collectReadings();
+        assertEquals(1, listLogFiles().size());
+
+        // Not a multiple of the timestamp resolution, so ignored
+        chamber.setReadingsPeriodMillis(45000);
+        assertEquals(60000, chamber.getEffectiveReadingsPeriodMillis());
+    }
+
+    /**
+     * The latest gyle's log buffer is scaled to the period when it was created, so
+     * a change to the chamber's period shouldn't affect when its readings are
+     * collected until the next gyle.
+     */
+    @Test
+    public void shouldKeepGyleReadingsPeriodUntilNextGyle() throws Exception {
+        Gyle latestGyle = chamber.getLatestGyle();
+        assertEquals(60000, latestGyle.getReadingsPeriodMillis());
+
+        chamber.setReadingsPeriodMillis(30000);
+        assertEquals(30000, chamber.getEffectiveReadingsPeriodMillis());
+        assertEquals(60000, chamber.getBaseReadingsPeriodMillis());
+        assertEquals(60000, chamber.getCurrentReadingsPeriodMillis());
+
+        // Nor once a burst sampler is resolved: the period it decays back to is the gyle's
+        env.setProperty("readings.burst.enabled", "" + true);
+        env.setProperty("readings.burst.tBeerDeviation", "" + 1000);
+        chamber.adaptReadingsPeriod(chamberManagerSim.collectReadings(chamber.getId(), startTime), startTime);
+        assertEquals(60000, chamber.getCurrentReadingsPeriodMillis());
+
+        assertEquals(30000, new Gyle(chamber, latestGyle.gyleDir).getReadingsPeriodMillis());
+    }
+
+    /**
+     * A burst (see BurstSampler) mid-buffer puts readings taken twice as often in
+     * amongst the base period readings. The smoothing should judge a fluctuation's
+     * width by how long it lasted rather than by how many readings it spans.
+     */
+    @Test
+    public void shouldSmoothBurstReadingsByTheirDuration() throws Exception {
+        // Base period 1 min, with a burst of 30 sec readings from reading 5 to 23
+        int[] tBeers = { 100, 100, 100, 100, 100, //
+                100, 101, 101, 101, 100, 100, 100, 100, 100, 100, 100, 102, 102, 102, 102, 102, 102, 100, 100, //
+                100, 100, 100, 100, 100, 101, 100, 100, 100, 100 };
+        List<ChamberReadings> readings = new ArrayList<>();
+        long millis = startTime.getTime();
+        for (int i = 0; i < tBeers.length; i++) {
+            readings.add(new ChamberReadings(new Date(millis), 100, tBeers[i], 150, 100, 300, null, false, Mode.AUTO));
+            millis += i >= 5 && i < 24 ? 30_000 : 60_000;
+        }
+
+        LogBuffer logBuffer = new LogBuffer(startTime, new LogBufferConfig(readings.size(), 60000, true, false, false),
+                new Smoother(2, new int[] { 2, 1 }));
+        for (ChamberReadings cr : readings)
+            logBuffer.add(cr, startTime);
+        List<ChamberReadings> optimisedReadings = logBuffer.optimiseReadings();
+
+        // The 1.5 min blip (3 readings) is insignificant. Were each reading taken to be
+        // a base period apart, it would have been kept.
+        for (int i = 6; i < 9; i++)
+            assertEquals(100, optimisedReadings.get(i).gettBeer(), "reading " + i);
+        // The 3 min blip (6 readings) is significant
+        for (int i = 16; i < 22; i++)
+            assertEquals(102, optimisedReadings.get(i).gettBeer(), "reading " + i);
+        // The buffered readings are left as they were
+        assertEquals(101, readings.get(6).gettBeer());
+    }
+
+    /**
+     * Flushing optimises the readings, nulling-out and removing redundant ones,
+     * which mustn't show through the recent readings being read meanwhile.
+     */
+    @Test
+    public void shouldReadRecentReadingsWhileFlushing() throws Exception {
+        env.setProperty("readings.optimise.nullOutRedundantValues", "" + true);
+        env.setProperty("readings.optimise.removeRedundantIntermediate", "" + true);
+        gyle = new Gyle(chamber, gyle.gyleDir);
+
+        timeNow = startTime;
+        for (int i = 0; i < gen1ReadingsCount; i++) {
+            timeNow = addMinutes(timeNow, 1);
+            collectReadings();
+        }
+        List<ChamberReadings> snapshot = gyle.getRecentReadingsList();
+        assertEquals(gen1ReadingsCount, snapshot.size());
+
+        AtomicBoolean flushed = new AtomicBoolean();
+        AtomicReference<Throwable> readerFailure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                do {
+                    for (ChamberReadings cr : gyle.getRecentReadingsList())
+                        assertNotNull(cr.gettBeer());
+                } while (!flushed.get());
+            } catch (Throwable t) {
+                readerFailure.set(t);
+            }
+        });
+        reader.start();
+        timeNow = addMinutes(timeNow, 1);
+        collectReadings(); // Flushes the buffer
+        flushed.set(true);
+        reader.join();
+
+        assertNull(readerFailure.get());
+        assertEquals(1, listLogFiles().size());
+        assertEquals(gen1ReadingsCount, snapshot.size());
+        for (ChamberReadings cr : snapshot) {
+            assertNotNull(cr.gettBeer());
+            assertNotNull(cr.getFridgeOn());
+        }
+    }
+
     private List<LogFileDescriptor> listLogFiles() {
         // @formatter:off
         List<LogFileDescriptor> fileDescs = new ArrayList<>(
@@ -0,0 +1,42 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTests {
+
+    @Test
+    public void bucketsShouldBeContiguousAndWithinAnEighth() {
+        long lowerBound = 0;
+        for (int i = 0; LatencyHistogram.bucketUpperBound(i) < Long.MAX_VALUE / 2; i++) {
+            long upperBound = LatencyHistogram.bucketUpperBound(i);
+            assertEquals(i, LatencyHistogram.bucketIndex(lowerBound));
+            assertEquals(i, LatencyHistogram.bucketIndex(upperBound));
+            assertEquals(i + 1, LatencyHistogram.bucketIndex(upperBound + 1));
+            assertTrue(upperBound - lowerBound <= lowerBound / 8, "bucket " + i);
+            lowerBound = upperBound + 1;
+        }
+    }
+
+    @Test
+    public void shouldReportPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().count);
+
+        for (int micros = 1; micros <= 1000; micros++)
+            histogram.record(micros * 1000);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.count);
+        assertEquals(500_500, snapshot.meanMicros);
+        assertEquals(1_000_000, snapshot.maxMicros);
+        assertWithinAnEighth(500_000, snapshot.p50Micros);
+        assertWithinAnEighth(900_000, snapshot.p90Micros);
+        assertWithinAnEighth(990_000, snapshot.p99Micros);
+    }
+
+    private static void assertWithinAnEighth(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 8, "expected ~" + expected + ": " + actual);
+    }
+}
@@ -0,0 +1,67 @@
+package com.easleydp.tempctrl.domain;
+
+import java.io.IOException;
+
+import com.easleydp.tempctrl.domain.ArduinoChamberManager.ChRdsResponse;
+
+/**
+ * The original split-based parsing of `chRds` and `status` responses, kept as
+ * a reference for the ResponseCursor based parsing.
+ */
+public class LegacyResponseParser {
+
+    public static ChamberManagerStatus parseStatus(String response) throws IOException {
+        String[] values = response.split(",");
+        if (values.length != 7)
+            throw new IOException("Unexpected 'status' response: " + response);
+        int i = 0;
+        // @formatter:off
+        return new ChamberManagerStatus(
+            parseInt(values[i++]),
+            parseInt(values[i++]),
+            parseInt(values[i++]),
+            parseInt(values[i++]),
+            parseInt(values[i++]),
+            parseInt(values[i++]),
+            parseBool(values[i++]));
+        // @formatter:on
+    }
+
+    public static ChRdsResponse parseChRds(String response) throws IOException {
+        String[] values = response.split(",");
+        if (values.length != ArduinoChamberManager.CHRDS_VALUE_COUNT) {
+            throw new IOException("Unexpected 'chRds' response (" + values.length + " values): " + response);
+        }
+        ChRdsResponse r = new ChRdsResponse();
+        int i = 0;
+        r.gyleAgeHours = parseInt(values[i++]);
+        r.tTarget = parseInt(values[i++]);
+        r.tTargetNext = parseInt(values[i++]);
+        r.tMin = parseInt(values[i++]);
+        r.tMax = parseInt(values[i++]);
+        r.hasHeater = parseBool(values[i++]);
+        r.fridgeMinOnTimeMins = parseInt(values[i++]);
+        r.fridgeMinOffTimeMins = parseInt(values[i++]);
+        r.fridgeSwitchOnLagMins = parseInt(values[i++]);
+        r.Kp = Double.parseDouble(values[i++]);
+        r.Ki = Double.parseDouble(values[i++]);
+        r.Kd = Double.parseDouble(values[i++]);
+        r.mode = Mode.get(values[i++]);
+
+        r.tBeer = parseInt(values[i++]);
+        r.tChamber = parseInt(values[i++]);
+        r.tExternal = parseInt(values[i++]);
+        r.tPi = parseInt(values[i++]);
+        r.heaterOutput = parseInt(values[i++]);
+        r.fridgeOn = parseBool(values[i++]);
+        return r;
+    }
+
+    private static int parseInt(String str) {
+        return Integer.parseInt(str, 10);
+    }
+
+    private static boolean parseBool(String str) {
+        return "1".equals(str) || "T".equals(str);
+    }
+}
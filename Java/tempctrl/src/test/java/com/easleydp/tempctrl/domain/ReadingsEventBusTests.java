@@ -0,0 +1,123 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.easleydp.tempctrl.domain.ReadingsEventBus.Event;
+import com.easleydp.tempctrl.domain.ReadingsEventBus.LagPolicy;
+import com.easleydp.tempctrl.domain.ReadingsEventBus.SubscriptionStats;
+
+public class ReadingsEventBusTests {
+
+    /** Event types of the tests' own, numbered in publishing order. */
+    private static class Numbered extends Event {
+        final int n;
+
+        Numbered(int chamberId, int n) {
+            super(chamberId);
+            this.n = n;
+        }
+    }
+
+    private static class OtherNumbered extends Event {
+        final int n;
+
+        OtherNumbered(int chamberId, int n) {
+            super(chamberId);
+            this.n = n;
+        }
+    }
+
+    /** The stats are updated just after the handler returns. */
+    private static SubscriptionStats awaitCaughtUp(ReadingsEventBus bus, String name) throws InterruptedException {
+        for (int i = 0; i < 100 && bus.getStats().get(name).lag > 0; i++)
+            Thread.sleep(10);
+        return bus.getStats().get(name);
+    }
+
+    @Test
+    public void shouldDeliverEachEventOfTheSubscribedTypeOnceInOrder() throws Exception {
+        try (ReadingsEventBus bus = new ReadingsEventBus(16)) {
+            List<Integer> ns = Collections.synchronizedList(new ArrayList<>());
+            List<Integer> otherNs = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch done = new CountDownLatch(2);
+            bus.subscribe("others", OtherNumbered.class, e -> {
+                otherNs.add(e.n);
+                if (e.n == 100)
+                    done.countDown();
+            }, LagPolicy.SKIP_TO_OLDEST);
+            bus.subscribe("numbered", Numbered.class, e -> {
+                ns.add(e.n);
+                if (e.n == 100)
+                    done.countDown();
+            }, LagPolicy.SKIP_TO_OLDEST);
+
+            // Several times the ring size, but slowly enough for the subscribers to keep up
+            for (int i = 1; i <= 100; i++) {
+                bus.publish(new Numbered(1, i));
+                bus.publish(new OtherNumbered(1, i));
+                if (i % 8 == 0)
+                    Thread.sleep(20);
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i + 1, ns.get(i));
+                assertEquals(i + 1, otherNs.get(i));
+            }
+            assertEquals(100, ns.size());
+            assertEquals(100, otherNs.size());
+            SubscriptionStats stats = awaitCaughtUp(bus, "others");
+            assertEquals(100, stats.handled);
+            assertEquals(0, stats.dropped);
+            assertEquals(0, stats.lag);
+        }
+    }
+
+    @Test
+    public void shouldDropEventsForASubscriberThatFallsBehind() throws Exception {
+        try (ReadingsEventBus bus = new ReadingsEventBus(8)) {
+            CountDownLatch blocked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(1);
+            List<Integer> ns = Collections.synchronizedList(new ArrayList<>());
+            bus.subscribe("slow", Numbered.class, e -> {
+                ns.add(e.n);
+                if (e.n == 1) {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (e.n == 40)
+                    done.countDown();
+            }, LagPolicy.SKIP_TO_OLDEST);
+
+            bus.publish(new Numbered(1, 1));
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+            // Lap the subscriber while it's stuck handling the first event
+            for (int i = 2; i <= 40; i++)
+                bus.publish(new Numbered(1, i));
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            // Only the tail of the backlog survived; what's delivered is still in order
+            assertEquals(1, ns.get(0));
+            assertTrue(ns.size() < 40, ns.toString());
+            for (int i = 1; i < ns.size(); i++)
+                assertTrue(ns.get(i) > ns.get(i - 1), ns.toString());
+            SubscriptionStats stats = awaitCaughtUp(bus, "slow");
+            assertEquals(40, stats.handled + stats.dropped);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.easleydp.tempctrl.domain;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.easleydp.tempctrl.domain.ArduinoChamberManager.ChRdsResponse;
+
+public class ResponseCursorTests {
+    private static final String CHRDS = "12,171,172,-10,400,1,10,10,5,2.1,0.01,20.5,A,168,150,123,245,0,T";
+
+    private final ResponseCursor cursor = new ResponseCursor();
+
+    private static ByteBuffer frame(String payload) {
+        return ByteBuffer.wrap(payload.getBytes(US_ASCII));
+    }
+
+    @Test
+    public void shouldParseChRds() throws IOException {
+        ChRdsResponse r = ArduinoChamberManager.parseChRds(frame(CHRDS), cursor, new ChRdsResponse());
+        assertEquals(12, r.gyleAgeHours);
+        assertEquals(171, r.tTarget);
+        assertEquals(172, r.tTargetNext);
+        assertEquals(-10, r.tMin);
+        assertEquals(400, r.tMax);
+        assertTrue(r.hasHeater);
+        assertEquals(5, r.fridgeSwitchOnLagMins);
+        assertEquals(2.1, r.Kp);
+        assertEquals(0.01, r.Ki);
+        assertEquals(20.5, r.Kd);
+        assertSame(Mode.AUTO, r.mode);
+        assertEquals(168, r.tBeer);
+        assertEquals(245, r.tPi);
+        assertEquals(0, r.heaterOutput);
+        assertTrue(r.fridgeOn);
+    }
+
+    @Test
+    public void shouldParseFromFramePositionWithoutModifyingFrame() throws IOException {
+        ByteBuffer frame = frame("status:12345,123,245,1024,3,0,0");
+        frame.position("status:".length());
+        ChamberManagerStatus status = ArduinoChamberManager.parseStatus(frame, cursor);
+        assertEquals(1024, status.minFreeRam);
+        assertEquals(3, status.minFreeRamLocation);
+        assertFalse(status.logBufferCannibalised);
+        assertEquals("status:".length(), frame.position());
+    }
+
+    @Test
+    public void shouldReportPositionOfError() {
+        IOException e = assertThrows(IOException.class,
+                () -> ArduinoChamberManager.parseChRds(frame(CHRDS.replace(",-10,", ",-1x,")), cursor,
+                        new ChRdsResponse()));
+        assertTrue(e.getMessage().startsWith("Malformed 'chRds' response at position 13 (unexpected 'x' in integer)"),
+                e.getMessage());
+
+        e = assertThrows(IOException.class, () -> ArduinoChamberManager.parseChRds(frame(CHRDS.replace(",A,", ",Q,")),
+                cursor, new ChRdsResponse()));
+        assertTrue(e.getMessage().startsWith("Malformed 'chRds' response at position 43 (Illegal Mode code: Q)"),
+                e.getMessage());
+
+        e = assertThrows(IOException.class,
+                () -> ArduinoChamberManager.parseChRds(frame("1,2"), cursor, new ChRdsResponse()));
+        assertTrue(e.getMessage().startsWith("Malformed 'chRds' response at position 3 (expected more than 2 values)"),
+                e.getMessage());
+
+        e = assertThrows(IOException.class,
+                () -> ArduinoChamberManager.parseChRds(frame(CHRDS + ",1"), cursor, new ChRdsResponse()));
+        assertTrue(e.getMessage().startsWith("Malformed 'chRds' response at position " + (CHRDS.length() + 1)
+                + " (expected 19 values, found more)"), e.getMessage());
+    }
+
+    /** @return the first value of the frame, or null if it's malformed */
+    private Integer nextIntOrNull(String payload) {
+        cursor.reset("test", frame(payload));
+        try {
+            return cursor.nextInt();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Test
+    public void shouldParseIntsAsPerIntegerParseInt() throws IOException {
+        String[] values = { "0", "-0", "+7", "007", "2147483647", "-2147483648", "2147483648", "-2147483649",
+                "99999999999", "", "-", "+", "1-", " 1", "1.0" };
+        for (String value : values) {
+            Integer expected;
+            try {
+                expected = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                expected = null;
+            }
+            // A fresh frame for each value, since the cursor doesn't get past a malformed one
+            assertEquals(expected, nextIntOrNull(value), value);
+            // Likewise as the first of several values
+            assertEquals(expected, nextIntOrNull(value + ",5"), value + ",5");
+            if (expected != null)
+                assertEquals(5, cursor.nextInt(), value + ",5");
+        }
+    }
+
+    @Test
+    public void shouldParseDoublesExactlyAsPerDoubleParseDouble() throws IOException {
+        Random random = new Random(42);
+        for (int n = 0; n < 100_000; n++) {
+            long mantissa = random.nextLong() % (long) Math.pow(10, 1 + random.nextInt(17));
+            String digits = Long.toString(Math.abs(mantissa));
+            int pointAt = random.nextInt(digits.length() + 1);
+            String value = (mantissa < 0 ? "-" : random.nextInt(10) == 0 ? "+" : "") + digits.substring(0, pointAt)
+                    + "." + digits.substring(pointAt);
+            cursor.reset("test", frame(value));
+            assertEquals(Double.doubleToRawLongBits(Double.parseDouble(value)),
+                    Double.doubleToRawLongBits(cursor.nextDouble()), value);
+        }
+
+        String[] unusual = { "1e3", "1.5E-7", "NaN", "-Infinity", "0x1p3", "2.5f", "1d", ".5", "5.", "-0.0", " 2.1 " };
+        cursor.reset("test", frame(String.join(",", unusual)));
+        for (String value : unusual)
+            assertEquals(Double.parseDouble(value), cursor.nextDouble(), value);
+
+        for (String value : new String[] { "", ".", "-", "1..2", "1.2.3", "abc" }) {
+            cursor.reset("test", frame(value));
+            assertThrows(IOException.class, () -> cursor.nextDouble(), value);
+        }
+    }
+
+    private static final String FUZZ_CHARS = "0123456789,.-+ TAHM*~xeE";
+
+    /** Applies 0 to 3 random edits to the supplied string. */
+    private static String mutate(String s, Random random) {
+        StringBuilder sb = new StringBuilder(s);
+        int edits = random.nextInt(4);
+        for (int i = 0; i < edits; i++) {
+            char c = FUZZ_CHARS.charAt(random.nextInt(FUZZ_CHARS.length()));
+            int at = random.nextInt(sb.length() + 1);
+            switch (random.nextInt(3)) {
+            case 0:
+                sb.insert(at, c);
+                break;
+            case 1:
+                if (at < sb.length())
+                    sb.deleteCharAt(at);
+                break;
+            default:
+                if (at < sb.length())
+                    sb.setCharAt(at, c);
+                break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String randomChRds(Random random) {
+        String[] modes = { "A", "H", "*", "~", "M" };
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ArduinoChamberManager.CHRDS_VALUE_COUNT; i++) {
+            if (i > 0)
+                sb.append(',');
+            if (i == 5 || i == 18)
+                sb.append(random.nextBoolean() ? "1" : "0");
+            else if (i >= 9 && i <= 11)
+                sb.append(random.nextBoolean() ? String.format(Locale.ROOT, "%.3f", random.nextDouble() * 50)
+                        : Double.toString(random.nextGaussian() * Math.pow(10, random.nextInt(12) - 6)));
+            else if (i == 12)
+                sb.append(modes[random.nextInt(modes.length)]);
+            else
+                sb.append(random.nextInt(2000) - 500);
+        }
+        return sb.toString();
+    }
+
+    private static void assertSameParse(String response, ChRdsResponse expected, ChRdsResponse actual) {
+        assertEquals(expected.gyleAgeHours, actual.gyleAgeHours, response);
+        assertEquals(expected.tTarget, actual.tTarget, response);
+        assertEquals(expected.tTargetNext, actual.tTargetNext, response);
+        assertEquals(expected.tMin, actual.tMin, response);
+        assertEquals(expected.tMax, actual.tMax, response);
+        assertEquals(expected.hasHeater, actual.hasHeater, response);
+        assertEquals(expected.fridgeMinOnTimeMins, actual.fridgeMinOnTimeMins, response);
+        assertEquals(expected.fridgeMinOffTimeMins, actual.fridgeMinOffTimeMins, response);
+        assertEquals(expected.fridgeSwitchOnLagMins, actual.fridgeSwitchOnLagMins, response);
+        assertEquals(expected.Kp, actual.Kp, response);
+        assertEquals(expected.Ki, actual.Ki, response);
+        assertEquals(expected.Kd, actual.Kd, response);
+        assertEquals(expected.mode, actual.mode, response);
+        assertEquals(expected.tBeer, actual.tBeer, response);
+        assertEquals(expected.tChamber, actual.tChamber, response);
+        assertEquals(expected.tExternal, actual.tExternal, response);
+        assertEquals(expected.tPi, actual.tPi, response);
+        assertEquals(expected.heaterOutput, actual.heaterOutput, response);
+        assertEquals(expected.fridgeOn, actual.fridgeOn, response);
+    }
+
+    /**
+     * Fuzz test against the original parser. Both must accept the same responses
+     * with the same results.
+     */
+    @Test
+    public void chRdsParsingShouldMatchLegacyParser() {
+        Random random = new Random(1234);
+        ChRdsResponse reused = new ChRdsResponse();
+        int acceptedCount = 0;
+        for (int n = 0; n < 50_000; n++) {
+            String response = mutate(randomChRds(random), random);
+            ChRdsResponse expected;
+            try {
+                expected = LegacyResponseParser.parseChRds(response);
+            } catch (Exception e) {
+                expected = null;
+            }
+            ChRdsResponse actual;
+            try {
+                actual = ArduinoChamberManager.parseChRds(frame(response), cursor, reused);
+            } catch (IOException e) {
+                actual = null;
+            } catch (Exception e) {
+                fail("Should only throw IOException for [" + response + "]", e);
+                return;
+            }
+            if (actual == null) {
+                assertTrue(expected == null, "Should accept [" + response + "]");
+            } else {
+                assertTrue(expected != null, "Should reject [" + response + "]");
+                assertSameParse(response, expected, actual);
+                acceptedCount++;
+            }
+        }
+        assertTrue(acceptedCount > 10_000, "Fuzzing should also exercise valid responses: " + acceptedCount);
+    }
+
+    @Test
+    public void statusParsingShouldMatchLegacyParser() {
+        Random random = new Random(5678);
+        for (int n = 0; n < 20_000; n++) {
+            String response = mutate(String.join(",", "" + random.nextInt(100_000), "" + (random.nextInt(400) - 100),
+                    "" + random.nextInt(500), "" + random.nextInt(2048), "" + random.nextInt(10),
+                    "" + random.nextInt(3), random.nextBoolean() ? "1" : "0"), random);
+            ChamberManagerStatus expected;
+            try {
+                expected = LegacyResponseParser.parseStatus(response);
+            } catch (Exception e) {
+                expected = null;
+            }
+            ChamberManagerStatus actual;
+            try {
+                actual = ArduinoChamberManager.parseStatus(frame(response), cursor);
+            } catch (IOException e) {
+                actual = null;
+            }
+            if (actual == null) {
+                assertTrue(expected == null, "Should accept [" + response + "]");
+            } else {
+                assertTrue(expected != null, "Should reject [" + response + "]");
+                assertEquals(expected.getUptime(), actual.getUptime(), response);
+                assertEquals(expected.minFreeRam, actual.minFreeRam, response);
+                assertEquals(expected.minFreeRamLocation, actual.minFreeRamLocation, response);
+                assertEquals(expected.badSensorCount, actual.badSensorCount, response);
+                assertEquals(expected.logBufferCannibalised, actual.logBufferCannibalised, response);
+            }
+        }
+    }
+
+    @Test
+    public void shouldReadStringsAndDetectEnd() throws IOException {
+        cursor.reset("logMsg", frame("7,1,PID,~,2"));
+        assertEquals(7, cursor.nextInt());
+        assertEquals(1, cursor.nextInt());
+        assertEquals("PID", cursor.nextString());
+        assertEquals('~', cursor.nextChar());
+        assertTrue(cursor.hasMoreValues());
+        assertEquals(2, cursor.nextInt());
+        assertFalse(cursor.hasMoreValues());
+        assertEquals(5, cursor.getValueCount());
+        cursor.expectEnd();
+
+        cursor.reset("logMsg", frame(""));
+        assertEquals("", cursor.nextString());
+        assertFalse(cursor.hasMoreValues());
+    }
+}
@@ -0,0 +1,221 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.easleydp.tempctrl.dto.GlitchFilterDto;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SensorGlitchFilterTests {
+    private static final Path replayDir = Paths.get(".", "src/test/resources/replay");
+
+    @BeforeEach
+    public void beforeEach() {
+        PropertyUtils.setEnv(new MockEnvironment());
+    }
+
+    /**
+     * Replays a readings log (as written by the log buffer, i.e. with redundant
+     * values nulled-out) containing three known glitches. Exactly those three
+     * values should be replaced; everything else, including the fridge sawtooth on
+     * tChamber, should pass through untouched.
+     */
+    @Test
+    public void shouldRemoveOnlyTheGlitchesFromRecordedLog() throws Exception {
+        List<ChamberReadings> original = readLog(replayDir.resolve("chamber2-readings.ndjson"));
+        List<ChamberReadings> filtered = copy(original);
+        SensorGlitchFilter filter = new SensorGlitchFilter(5, 3, 50, 5);
+
+        int flagged = 0;
+        for (ChamberReadings cr : filtered)
+            flagged += filter.filter(cr);
+
+        assertEquals(3, flagged);
+        assertEquals(3, filter.getFlaggedCount());
+        Map<String, Long> counts = filter.getFlaggedCounts();
+        assertEquals(Long.valueOf(1), counts.get("tBeer"));
+        assertEquals(Long.valueOf(1), counts.get("tChamber"));
+        assertEquals(Long.valueOf(1), counts.get("tPi"));
+        assertNull(counts.get("tExternal"));
+
+        for (int i = 0; i < original.size(); i++) {
+            ChamberReadings o = original.get(i);
+            ChamberReadings f = filtered.get(i);
+            switch (o.getDt()) {
+            case 53000094: // tBeer: 85.0 power-on value averaged with previous reading by the MCU
+                assertEquals(515, o.gettBeer());
+                assertTrue(Math.abs(f.gettBeer() - original.get(i - 1).gettBeer()) <= 1);
+                break;
+            case 53000180: // tChamber: raw 85.0 sentinel
+                assertEquals(850, o.gettChamber());
+                assertTrue(Math.abs(f.gettChamber() - original.get(i - 1).gettChamber()) <= 4);
+                break;
+            case 53000260: // tPi: one-sample spike
+                assertEquals(330, o.gettPi());
+                assertTrue(Math.abs(f.gettPi() - original.get(i - 1).gettPi()) <= 1);
+                break;
+            default:
+                assertEquals(o.toString(), f.toString());
+            }
+        }
+    }
+
+    @Test
+    public void shouldAcceptGenuineStepChangeOnceEstablished() {
+        SensorGlitchFilter filter = new SensorGlitchFilter(5, 3, 50, 5);
+        int[] tBeers = { 100, 100, 100, 100, 100, 200, 200, 200, 200 };
+        int[] expected = { 100, 100, 100, 100, 100, 100, 100, 200, 200 };
+        int[] actual = new int[tBeers.length];
+        for (int i = 0; i < tBeers.length; i++) {
+            ChamberReadings cr = buildReadings(i, tBeers[i]);
+            filter.filter(cr);
+            actual[i] = cr.gettBeer();
+        }
+        assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+        assertEquals(2, filter.getFlaggedCount());
+    }
+
+    @Test
+    public void shouldAlwaysFlagSentinels() {
+        SensorGlitchFilter filter = new SensorGlitchFilter(5, 3, 50, 5);
+        ChamberReadings cr = buildReadings(0, 170);
+        filter.filter(cr);
+        // Only one value in the window, so ordinarily too early to judge...
+        cr = buildReadings(1, SensorGlitchFilter.SENTINEL_POWER_ON);
+        assertEquals(1, filter.filter(cr));
+        assertEquals(170, cr.gettBeer());
+        // ... and a sentinel doesn't pollute the window.
+        cr = buildReadings(2, -1270);
+        assertEquals(1, filter.filter(cr));
+        assertEquals(170, cr.gettBeer());
+        assertEquals(2, filter.getFlaggedCount());
+    }
+
+    @Test
+    public void shouldNullOutSentinelWithNoHistory() {
+        SensorGlitchFilter filter = new SensorGlitchFilter(5, 3, 50, 5);
+        ChamberReadings cr = buildReadings(0, SensorGlitchFilter.SENTINEL_POWER_ON);
+        assertEquals(1, filter.filter(cr));
+        assertNull(cr.gettBeer());
+        assertEquals(1, filter.getFlaggedCount());
+
+        cr = buildReadings(1, 170);
+        assertEquals(0, filter.filter(cr));
+        assertEquals(170, cr.gettBeer());
+    }
+
+    /** A dead sensor should show as such rather than be flat-lined at its last good value. */
+    @Test
+    public void shouldNullOutDeadSensor() {
+        SensorGlitchFilter filter = new SensorGlitchFilter(5, 3, 50, 3);
+        int minute = 0;
+        for (int i = 0; i < 5; i++)
+            filter.filter(buildReadings(minute++, 170));
+
+        int flagged = 0;
+        for (int i = 0; i < 3; i++) {
+            ChamberReadings cr = buildReadings(minute++, -1270);
+            flagged += filter.filter(cr);
+            assertEquals(170, cr.gettBeer());
+        }
+        for (int i = 0; i < 3; i++) {
+            ChamberReadings cr = buildReadings(minute++, -1270);
+            flagged += filter.filter(cr);
+            assertNull(cr.gettBeer());
+        }
+        assertEquals(6, flagged);
+        assertEquals(6, filter.getFlaggedCount());
+
+        // Once reconnected, the stale history is not held against it
+        ChamberReadings cr = buildReadings(minute++, 120);
+        assertEquals(0, filter.filter(cr));
+        assertEquals(120, cr.gettBeer());
+    }
+
+    @Test
+    public void shouldTakeConfigFromChamberWithPropertyDefaults() {
+        MockEnvironment env = new MockEnvironment();
+        env.setProperty("readings.glitchFilter.minDeviation", "10");
+        PropertyUtils.setEnv(env);
+        Chamber chamber = new ChamberRepository(Paths.get(".", "src/test/resources/testData")).getChamberById(1);
+
+        assertNotNull(SensorGlitchFilter.forChamber(chamber), "Should be enabled by default");
+
+        GlitchFilterDto config = new GlitchFilterDto();
+        config.setEnabled(false);
+        chamber.setGlitchFilter(config);
+        assertNull(SensorGlitchFilter.forChamber(chamber), "Should be disabled by chamber config");
+
+        // minDeviation of 10 (from properties) is low enough to flag a 2 degree spike
+        config.setEnabled(true);
+        SensorGlitchFilter filter = SensorGlitchFilter.forChamber(chamber);
+        for (int i = 0; i < 5; i++)
+            filter.filter(buildReadings(i, 100));
+        assertEquals(1, filter.filter(buildReadings(5, 120)));
+
+        // ... unless the chamber says otherwise
+        config.setMinDeviation(30);
+        filter = SensorGlitchFilter.forChamber(chamber);
+        for (int i = 0; i < 5; i++)
+            filter.filter(buildReadings(i, 100));
+        assertEquals(0, filter.filter(buildReadings(5, 120)));
+    }
+
+    private static ChamberReadings buildReadings(int minute, int tBeer) {
+        return new ChamberReadings(new Date(minute * 60_000L), 170, tBeer, 100, 160, 250, null, false, Mode.AUTO);
+    }
+
+    /** Reads an NDJSON readings log, restoring any nulled-out (redundant) values. */
+    private static List<ChamberReadings> readLog(Path logFile) throws IOException {
+        List<ChamberReadings> list = new ArrayList<>();
+        ChamberReadings prev = null;
+        try (MappingIterator<ChamberReadings> it = new ObjectMapper().readerFor(ChamberReadings.class)
+                .readValues(logFile.toFile())) {
+            while (it.hasNext()) {
+                ChamberReadings cr = it.next();
+                if (prev != null) {
+                    if (cr.gettTarget() == null)
+                        cr.settTarget(prev.gettTarget());
+                    if (cr.gettBeer() == null)
+                        cr.settBeer(prev.gettBeer());
+                    if (cr.gettExternal() == null)
+                        cr.settExternal(prev.gettExternal());
+                    if (cr.gettChamber() == null)
+                        cr.settChamber(prev.gettChamber());
+                    if (cr.gettPi() == null)
+                        cr.settPi(prev.gettPi());
+                    if (cr.getFridgeOn() == null)
+                        cr.setFridgeOn(prev.getFridgeOn());
+                    if (cr.getMode() == null)
+                        cr.setMode(prev.getMode());
+                }
+                list.add(cr);
+                prev = cr;
+            }
+        }
+        return list;
+    }
+
+    private static List<ChamberReadings> copy(List<ChamberReadings> list) {
+        List<ChamberReadings> copy = new ArrayList<>();
+        for (ChamberReadings cr : list)
+            copy.add(new ChamberReadings(cr));
+        return copy;
+    }
+}
@@ -0,0 +1,129 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.easleydp.tempctrl.domain.SerialConnection.State;
+import com.fazecast.jSerialComm.SerialPortTimeoutException;
+
+public class SerialConnectionTests {
+
+    /** Claims the messenger (as the I/O thread would) once the port has been opened. */
+    private static ArduinoMessenger awaitMessenger(SerialConnection connection) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            try {
+                return connection.getMessenger();
+            } catch (IOException e) {
+                assertTrue(System.currentTimeMillis() < deadline, "Timed out awaiting messenger");
+                Thread.yield();
+            }
+        }
+    }
+
+    @Test
+    public void shouldFailFastAndRetryWithBackoffWhileAbsent() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        try (SerialConnection connection = new SerialConnection(() -> {
+            if (attempts.incrementAndGet() < 4)
+                throw new IOException("No port");
+            return new ArduinoMessenger(new ArduinoSimulator(3, 1));
+        }, new SerialStats(), 50, 100)) {
+            // The first attempt is awaited
+            IOException e = assertThrows(IOException.class, connection::getMessenger);
+            assertEquals("Not connected to chamber manager (ABSENT)", e.getMessage());
+            assertEquals(1, attempts.get());
+
+            long start = System.currentTimeMillis();
+            assertThrows(IOException.class, connection::getMessenger);
+            assertTrue(System.currentTimeMillis() - start < 50, "Should have failed fast");
+
+            // Retries after 50, 100 then 100ms
+            awaitMessenger(connection);
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue(elapsed >= 150, "elapsed: " + elapsed);
+            assertEquals(4, attempts.get());
+            assertEquals(State.CONNECTED, connection.getState());
+        }
+    }
+
+    @Test
+    public void shouldTolerateTimeoutsUpToALimit() throws Exception {
+        SerialStats stats = new SerialStats();
+        try (SerialConnection connection = new SerialConnection(
+                () -> new ArduinoMessenger(new ArduinoSimulator(3, 1)), stats)) {
+            ArduinoMessenger messenger = connection.getMessenger();
+            assertEquals(State.CONNECTED, connection.getState());
+
+            for (int i = 1; i < SerialConnection.MAX_CONSECUTIVE_TIMEOUTS; i++) {
+                connection.failed(new SerialPortTimeoutException("test"));
+                assertEquals(State.DEGRADED, connection.getState());
+                assertSame(messenger, connection.getMessenger());
+            }
+            connection.succeeded();
+            assertEquals(State.CONNECTED, connection.getState());
+
+            for (int i = 1; i <= SerialConnection.MAX_CONSECUTIVE_TIMEOUTS; i++)
+                connection.failed(new SerialPortTimeoutException("test"));
+            assertTrue(messenger != awaitMessenger(connection));
+            assertEquals(State.CONNECTED, connection.getState());
+            assertEquals(1, stats.snapshot().reconnects);
+        }
+    }
+
+    @Test
+    public void shouldReconnectStraightAwayAfterOtherIOException() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        try (SerialConnection connection = new SerialConnection(() -> {
+            attempts.incrementAndGet();
+            return new ArduinoMessenger(new ArduinoSimulator(3, 1));
+        }, new SerialStats())) {
+            connection.getMessenger();
+            connection.failed(new IOException("Garbled response"));
+            awaitMessenger(connection);
+            assertEquals(2, attempts.get());
+        }
+    }
+
+    /** CONNECTED only once the I/O thread (here, the test thread) has claimed the opened messenger. */
+    @Test
+    public void shouldOnlyBeConnectedOnceMessengerClaimed() throws Exception {
+        CountDownLatch opened = new CountDownLatch(1);
+        try (SerialConnection connection = new SerialConnection(() -> {
+            ArduinoMessenger messenger = new ArduinoMessenger(new ArduinoSimulator(3, 1));
+            opened.countDown();
+            return messenger;
+        }, new SerialStats())) {
+            assertTrue(opened.await(5, TimeUnit.SECONDS));
+            Thread.sleep(50); // Time for the connector to hand over
+            assertEquals(State.RECONNECTING, connection.getState());
+            connection.getMessenger();
+            assertEquals(State.CONNECTED, connection.getState());
+        }
+    }
+
+    @Test
+    public void shouldLeaveMessengerAloneIfIoThreadStillRunning() throws Exception {
+        AtomicInteger closes = new AtomicInteger();
+        SerialConnection connection = new SerialConnection(() -> new ArduinoMessenger(new ArduinoSimulator(3, 1)) {
+            @Override
+            public void close() {
+                closes.incrementAndGet();
+                super.close();
+            }
+        }, new SerialStats());
+        ArduinoMessenger messenger = connection.getMessenger();
+        connection.close(false);
+        assertEquals(0, closes.get());
+        messenger.close();
+    }
+}
@@ -0,0 +1,127 @@
+package com.easleydp.tempctrl.domain;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import org.junit.jupiter.api.Test;
+
+import com.fazecast.jSerialComm.SerialPortTimeoutException;
+
+public class SerialFrameReaderTests {
+
+    /**
+     * Supplies the specified chunks, one per read (each chunk possibly split
+     * further if it exceeds the reader's buffer), then times out.
+     */
+    private static class ChunkedSource implements SerialFrameReader.ByteSource {
+        private final Deque<byte[]> chunks = new ArrayDeque<>();
+        int readCount = 0;
+
+        ChunkedSource(byte[]... chunks) {
+            this.chunks.addAll(Arrays.asList(chunks));
+        }
+
+        ChunkedSource(String... chunks) {
+            for (String chunk : chunks)
+                this.chunks.add(chunk.getBytes(US_ASCII));
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            readCount++;
+            byte[] chunk = chunks.poll();
+            if (chunk == null)
+                return 0;
+            int n = Math.min(length, chunk.length);
+            System.arraycopy(chunk, 0, buffer, offset, n);
+            if (n < chunk.length)
+                chunks.addFirst(Arrays.copyOfRange(chunk, n, chunk.length));
+            return n;
+        }
+    }
+
+    @Test
+    public void shouldReadFramesSplitAcrossAndSharingReads() throws IOException {
+        ChunkedSource source = new ChunkedSource("\r\n^chRds:1,2", ",3$\r\n^ack$^st", "atus:9$");
+        SerialFrameReader reader = new SerialFrameReader(source);
+
+        assertEquals("chRds:1,2,3", reader.readFrameAsString());
+        assertEquals("ack", reader.readFrameAsString());
+        assertEquals("status:9", reader.readFrameAsString());
+        assertEquals(3, source.readCount, "Should read in bulk rather than byte by byte");
+        assertThrows(SerialPortTimeoutException.class, () -> reader.readFrame());
+    }
+
+    @Test
+    public void shouldReturnFrameAsByteBufferView() throws IOException {
+        SerialFrameReader reader = new SerialFrameReader(new ChunkedSource("^abc$^$"));
+
+        ByteBuffer frame = reader.readFrame();
+        assertEquals(0, frame.position());
+        assertEquals(3, frame.remaining());
+        assertEquals('a', frame.get(0));
+        assertEquals('c', frame.get(2));
+        assertTrue(frame.isReadOnly());
+
+        assertEquals(0, reader.readFrame().remaining(), "Empty frame");
+    }
+
+    @Test
+    public void shouldDiscardJunkBeforeStartAndNonPrintablesWithin() throws IOException {
+        byte[] bytes = { 'x', 'y', 0, 0, '^', 'a', 7, 'b', (byte) 200, 'c', '$' };
+        SerialFrameReader reader = new SerialFrameReader(new ChunkedSource(bytes));
+
+        assertEquals("abc", reader.readFrameAsString());
+    }
+
+    @Test
+    public void shouldGrowFrameBufferForLongFrames() throws IOException {
+        char[] chars = new char[5000];
+        Arrays.fill(chars, 'z');
+        String content = new String(chars);
+        // Small read buffer so the frame also spans many reads
+        SerialFrameReader reader = new SerialFrameReader(new ChunkedSource("^" + content + "$"), 64);
+
+        assertEquals(content, reader.readFrameAsString());
+    }
+
+    @Test
+    public void shouldDetectZeroFlood() {
+        byte[] zeros = new byte[1500];
+        SerialFrameReader reader = new SerialFrameReader(new ChunkedSource(zeros), 100);
+        IOException e = assertThrows(IOException.class, () -> reader.readFrame());
+        assertEquals("USB port appears to be already in use.", e.getMessage());
+
+        SerialFrameReader purgingReader = new SerialFrameReader(new ChunkedSource(zeros));
+        assertThrows(IOException.class, () -> purgingReader.purge());
+    }
+
+    @Test
+    public void shouldNotCountZerosOnceInterrupted() throws IOException {
+        byte[] bytes = new byte[1502];
+        bytes[900] = 'x'; // Resets the count
+        bytes[1500] = '^';
+        bytes[1501] = '$';
+        SerialFrameReader reader = new SerialFrameReader(new ChunkedSource(bytes));
+
+        assertEquals("", reader.readFrameAsString());
+    }
+
+    @Test
+    public void purgeShouldDiscardBufferedAndPendingData() throws IOException {
+        SerialFrameReader reader = new SerialFrameReader(new ChunkedSource("^ack$stray\r\n", "^old$", "\r\n"));
+        assertEquals("ack", reader.readFrameAsString());
+
+        assertEquals("stray^old$", reader.purge());
+        assertNull(reader.purge(), "Nothing left to purge");
+    }
+}
@@ -0,0 +1,136 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.easleydp.tempctrl.domain.SerialIoThread.Priority;
+
+public class SerialIoThreadTests {
+    private static final long TIMEOUT = 5000;
+
+    private SerialIoThread ioThread;
+
+    @BeforeEach
+    public void beforeEach() {
+        ioThread = new SerialIoThread("test-io");
+    }
+
+    @AfterEach
+    public void afterEach() {
+        ioThread.close();
+    }
+
+    /** Occupies the I/O thread until the returned latch is released. */
+    private CountDownLatch blockIoThread() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ioThread.submit("block", Priority.CONTROL, TIMEOUT, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        return release;
+    }
+
+    @Test
+    public void shouldExecuteByPriorityThenInOrderOfSubmission() throws Exception {
+        CountDownLatch release = blockIoThread();
+
+        List<String> executed = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (String name : Arrays.asList("status", "readings1", "params1", "readings2", "logs", "params2")) {
+            Priority priority = name.startsWith("params") ? Priority.CONTROL
+                    : name.startsWith("readings") ? Priority.READINGS : Priority.HOUSEKEEPING;
+            futures.add(ioThread.submit(name, priority, TIMEOUT, () -> {
+                executed.add(name);
+                return name;
+            }));
+        }
+        release.countDown();
+
+        assertEquals("params2", SerialIoThread.await(futures.get(5)));
+        assertEquals("logs", SerialIoThread.await(futures.get(4)));
+        assertEquals(Arrays.asList("params1", "params2", "readings1", "readings2", "status", "logs"), executed);
+    }
+
+    @Test
+    public void shouldExecuteAllCommandsOnTheOneThread() throws IOException {
+        Thread caller = Thread.currentThread();
+        Thread t1 = SerialIoThread.await(ioThread.submit("a", Priority.READINGS, TIMEOUT, Thread::currentThread));
+        Thread t2 = SerialIoThread
+                .await(ioThread.submit("b", Priority.HOUSEKEEPING, TIMEOUT, Thread::currentThread));
+        assertSame(t1, t2);
+        assertNotEquals(caller, t1);
+        assertEquals("test-io", t1.getName());
+    }
+
+    @Test
+    public void shouldPropagateCommandExceptions() {
+        IOException e = assertThrows(IOException.class,
+                () -> SerialIoThread.await(ioThread.submit("fail", Priority.CONTROL, TIMEOUT, () -> {
+                    throw new IOException("No response");
+                })));
+        assertEquals("No response", e.getMessage());
+
+        assertThrows(IllegalStateException.class,
+                () -> SerialIoThread.await(ioThread.submit("fail", Priority.CONTROL, TIMEOUT, () -> {
+                    throw new IllegalStateException();
+                })));
+    }
+
+    @Test
+    public void shouldSkipCommandThatTimesOutWhileQueued() throws Exception {
+        CountDownLatch release = blockIoThread();
+
+        boolean[] executed = { false };
+        CompletableFuture<Void> future = ioThread.submit("late", Priority.HOUSEKEEPING, 50, () -> {
+            executed[0] = true;
+            return null;
+        });
+        IOException e = assertThrows(IOException.class, () -> SerialIoThread.await(future));
+        assertTrue(e.getCause() instanceof TimeoutException);
+
+        release.countDown();
+        // Anything queued after the timed out command runs once it has been skipped
+        SerialIoThread.await(ioThread.submit("next", Priority.HOUSEKEEPING, TIMEOUT, () -> null));
+        assertFalse(executed[0]);
+    }
+
+    @Test
+    public void shouldFailPendingAndSubsequentCommandsWhenClosed() throws Exception {
+        CountDownLatch release = blockIoThread();
+        CompletableFuture<Void> pending = ioThread.submit("pending", Priority.READINGS, TIMEOUT, () -> null);
+
+        release.countDown();
+        ioThread.close();
+
+        // The pending command may have squeezed in before the thread noticed it was
+        // closed; either way it must be done.
+        assertTrue(pending.isDone());
+        assertThrows(IOException.class,
+                () -> SerialIoThread.await(ioThread.submit("after", Priority.CONTROL, TIMEOUT, () -> null)));
+    }
+}
@@ -0,0 +1,131 @@
+package com.easleydp.tempctrl.domain;
+
+import static com.easleydp.tempctrl.domain.TestChamberParameters.params;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+public class SerialRecordReplayTests {
+    private ChamberRepository chamberRepository;
+    private Path captureFile;
+
+    private static final Date TIME_NOW = new Date(1_600_000_000_000L);
+    private static final Set<Integer> READINGS_CHAMBER_IDS = new HashSet<>(Arrays.asList(1, 2));
+    private static final int CYCLES = 3;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        PropertyUtils.setEnv(new MockEnvironment());
+        chamberRepository = new ChamberRepository(Paths.get(".", "src/test/resources/testData"));
+        captureFile = Files.createTempFile("serial", ".cap");
+    }
+
+    @AfterEach
+    public void afterEach() throws IOException {
+        Files.deleteIfExists(captureFile);
+        Files.deleteIfExists(captureFile.resolveSibling(captureFile.getFileName() + ".1"));
+    }
+
+    private List<Integer> runCycles(ArduinoChamberManager.MessengerFactory messengerFactory) throws IOException {
+        List<Integer> tBeers = new ArrayList<>();
+        try (ArduinoChamberManager chamberManager = new ArduinoChamberManager(chamberRepository, null,
+                messengerFactory)) {
+            for (int i = 0; i < CYCLES; i++) {
+                Map<Integer, ChamberReadings> readings = chamberManager.runCollectionCycle(params(),
+                        READINGS_CHAMBER_IDS, TIME_NOW);
+                tBeers.add(readings.get(1).gettBeer());
+                tBeers.add(readings.get(2).gettBeer());
+            }
+        }
+        return tBeers;
+    }
+
+    private List<Integer> record(VirtualArduino arduino) throws IOException {
+        try (SerialRecorder recorder = new SerialRecorder(captureFile)) {
+            return runCycles(() -> new ArduinoMessenger(arduino, recorder));
+        }
+    }
+
+    @Test
+    public void replayShouldReproduceRecordedCycles() throws IOException {
+        List<Integer> recorded = record(new VirtualArduino(3, 2, 7).setLogFloodMessagesPerRequest(5));
+
+        SerialReplayTransport replay = new SerialReplayTransport(captureFile, Double.POSITIVE_INFINITY);
+        assertEquals(recorded, runCycles(() -> new ArduinoMessenger(replay)));
+        assertEquals(0, replay.getMismatchCount());
+
+        assertTrue(replay.isFinished());
+        assertThrows(IOException.class, () -> replay.read(new byte[64], 0, 64));
+    }
+
+    @Test
+    public void replayShouldHonourSpeed() throws IOException {
+        record(new VirtualArduino(3, 2, 7).setLatency(50, 0));
+
+        long start = System.currentTimeMillis();
+        runCycles(() -> new ArduinoMessenger(new SerialReplayTransport(captureFile, Double.POSITIVE_INFINITY)));
+        long fastMillis = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        runCycles(() -> new ArduinoMessenger(new SerialReplayTransport(captureFile, 1)));
+        long originalSpeedMillis = System.currentTimeMillis() - start;
+
+        // version plus a cyc per cycle, each with its 100ms purge timeout and 50ms latency
+        assertTrue(originalSpeedMillis >= (CYCLES + 1) * 150, "originalSpeedMillis: " + originalSpeedMillis);
+        assertTrue(fastMillis < originalSpeedMillis / 2, "fastMillis: " + fastMillis);
+    }
+
+    @Test
+    public void recorderShouldRollOverAtMaxSize() throws IOException {
+        VirtualArduino arduino = new VirtualArduino(3, 2, 7).setLogFloodMessagesPerRequest(20);
+        Path rolledOverFile;
+        try (SerialRecorder recorder = new SerialRecorder(captureFile, 1024)) {
+            rolledOverFile = recorder.getRolledOverFile();
+            runCycles(() -> new ArduinoMessenger(arduino, recorder));
+        }
+        assertTrue(Files.exists(rolledOverFile));
+        // A file is only rolled over before a request, so can overshoot by a request's worth of traffic
+        assertTrue(Files.size(rolledOverFile) < 4 * 1024, "size: " + Files.size(rolledOverFile));
+        assertTrue(Files.size(captureFile) < 4 * 1024, "size: " + Files.size(captureFile));
+
+        // Each file is a capture in its own right, starting with a request
+        for (Path file : new Path[] { captureFile, rolledOverFile }) {
+            SerialReplayTransport replay = new SerialReplayTransport(file, Double.POSITIVE_INFINITY);
+            assertEquals(0, replay.read(new byte[64], 0, 64));
+        }
+    }
+
+    @Test
+    public void replayShouldCountRequestsDifferingFromCapture() throws IOException {
+        record(new VirtualArduino(3, 2, 7));
+
+        SerialReplayTransport replay = new SerialReplayTransport(captureFile, Double.POSITIVE_INFINITY);
+        try (ArduinoChamberManager chamberManager = new ArduinoChamberManager(chamberRepository, null,
+                () -> new ArduinoMessenger(replay))) {
+            Map<Integer, ChamberParameters> params = params();
+            params.remove(2);
+            Map<Integer, ChamberReadings> readings = chamberManager.runCollectionCycle(params,
+                    READINGS_CHAMBER_IDS, TIME_NOW);
+            // The readings are as captured, regardless
+            assertEquals(2, readings.size());
+        }
+        assertEquals(1, replay.getMismatchCount());
+    }
+}
@@ -0,0 +1,113 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+public class SimulatedChamberManagerTests {
+    private static final Date startTime = new Date(1_600_000_000_000L);
+
+    private ChamberRepository chamberRepository;
+    private Gyle gyle;
+
+    @BeforeEach
+    public void beforeEach() {
+        PropertyUtils.setEnv(new MockEnvironment());
+        chamberRepository = new ChamberRepository(Paths.get(".", "src/test/resources/testData"));
+        gyle = chamberRepository.getChamberById(2).getGyleById(1);
+        gyle.setDtStarted(startTime.getTime());
+    }
+
+    /** @return a reading a minute for chamber 2 running its gyle 1 profile */
+    private List<ChamberReadings> simulate(long seed, int minutes) {
+        SimulatedChamberManager chamberManager = SimulatedChamberManager.forChambers(chamberRepository, seed);
+        List<ChamberReadings> readings = new ArrayList<>(minutes);
+        for (int i = 0; i < minutes; i++) {
+            Date timeNow = new Date(startTime.getTime() + i * 60_000L);
+            chamberManager.setParameters(2, gyle.getChamberParameters(timeNow));
+            readings.add(chamberManager.collectReadings(2, timeNow));
+        }
+        return readings;
+    }
+
+    @Test
+    public void shouldRepeatRunWithSameSeed() {
+        List<ChamberReadings> run1 = simulate(1, 24 * 60);
+        List<ChamberReadings> run2 = simulate(1, 24 * 60);
+        List<ChamberReadings> run3 = simulate(2, 24 * 60);
+        for (int i = 0; i < run1.size(); i++)
+            assertEquals(run1.get(i).toString(), run2.get(i).toString());
+        assertNotEquals(run1.toString(), run3.toString());
+    }
+
+    @Test
+    public void shouldHoldBeerNearTarget() {
+        List<ChamberReadings> readings = simulate(1, 14 * 24 * 60);
+        // Ignore the hours after each change of target, while the beer catches up
+        long errorSum = 0;
+        int count = 0;
+        int steadyMins = 0;
+        for (int i = 1; i < readings.size(); i++) {
+            ChamberReadings cr = readings.get(i);
+            steadyMins = cr.gettTarget().equals(readings.get(i - 1).gettTarget()) ? steadyMins + 1 : 0;
+            if (steadyMins >= 12 * 60) {
+                errorSum += Math.abs(cr.gettBeer() - cr.gettTarget());
+                count++;
+            }
+        }
+        assertTrue(count > 24 * 60, "count: " + count);
+        double meanError = (double) errorSum / count;
+        assertTrue(meanError < 5, "mean error (degrees x 10): " + meanError);
+    }
+
+    @Test
+    public void shouldRespectFridgeMinOnAndOffTimes() {
+        Chamber chamber = chamberRepository.getChamberById(2);
+        List<ChamberReadings> readings = simulate(1, 14 * 24 * 60);
+        int switches = 0;
+        int runMins = 0;
+        for (int i = 1; i < readings.size(); i++) {
+            boolean fridgeOn = readings.get(i).getFridgeOn();
+            if (fridgeOn == readings.get(i - 1).getFridgeOn()) {
+                runMins++;
+                continue;
+            }
+            if (switches++ > 0) {
+                // The run ending now was started by an earlier switch, so is complete
+                int minMins = fridgeOn ? chamber.getFridgeMinOffTimeMins()
+                        : chamber.getFridgeMinOnTimeMins() + chamber.getFridgeSwitchOnLagMins();
+                assertTrue(runMins + 1 >= minMins, "Fridge " + (fridgeOn ? "off" : "on") + " for only "
+                        + (runMins + 1) + " mins, ending at reading " + i);
+            }
+            runMins = 0;
+        }
+        assertTrue(switches > 20, "switches: " + switches);
+    }
+
+    @Test
+    public void shouldReadToTenthsOfADegree() {
+        // Sensor noise is less than the resolution, so a steady temperature reads the same most minutes
+        List<ChamberReadings> readings = simulate(1, 24 * 60);
+        int unchanged = 0;
+        for (int i = 1; i < readings.size(); i++)
+            if (readings.get(i).gettBeer().equals(readings.get(i - 1).gettBeer()))
+                unchanged++;
+        assertTrue(unchanged > readings.size() / 2, "unchanged: " + unchanged);
+    }
+
+    @Test
+    public void shouldRequireParamsBeforeReadings() {
+        SimulatedChamberManager chamberManager = new SimulatedChamberManager(1);
+        assertThrows(IllegalStateException.class, () -> chamberManager.collectReadings(1, startTime));
+    }
+}
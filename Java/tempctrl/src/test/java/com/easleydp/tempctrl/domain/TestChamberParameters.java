@@ -0,0 +1,29 @@
+package com.easleydp.tempctrl.domain;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The chamber parameters the serial protocol tests (and SerialReplayBenchmark)
+ * drive a two chamber device with, so that their requests, and hence any
+ * recorded captures, match.
+ */
+public final class TestChamberParameters {
+    /** A chamber with a heater, in AUTO mode */
+    public static final ChamberParameters CHAMBER_1 = new ChamberParameters(12, 171, 172, -10, 400, true, 10, 10, 5,
+            2.1, 0.01, 20.5, Mode.AUTO);
+    /** A chamber without a heater, in HOLD mode */
+    public static final ChamberParameters CHAMBER_2 = new ChamberParameters(-1, 100, 100, -10, 150, false, 10, 10, 5,
+            1.9, 0.015, 19.5, Mode.HOLD);
+
+    private TestChamberParameters() {
+    }
+
+    /** @return a fresh (modifiable) map of chamber ID to CHAMBER_1's and CHAMBER_2's parameters */
+    public static Map<Integer, ChamberParameters> params() {
+        Map<Integer, ChamberParameters> params = new LinkedHashMap<>();
+        params.put(1, CHAMBER_1);
+        params.put(2, CHAMBER_2);
+        return params;
+    }
+}
@@ -0,0 +1,137 @@
+package com.easleydp.tempctrl.domain;
+
+import static com.easleydp.tempctrl.domain.TestChamberParameters.params;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+public class VirtualArduinoTests {
+    private ChamberRepository chamberRepository;
+
+    @BeforeEach
+    public void beforeEach() {
+        PropertyUtils.setEnv(new MockEnvironment());
+        chamberRepository = new ChamberRepository(Paths.get(".", "src/test/resources/testData"));
+    }
+
+    private static String readAll(VirtualArduino arduino) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        byte[] buffer = new byte[64];
+        int n;
+        while ((n = arduino.read(buffer, 0, buffer.length)) > 0)
+            sb.append(new String(buffer, 0, n, US_ASCII));
+        return sb.toString();
+    }
+
+    @Test
+    public void shouldDelayResponseByLatency() throws IOException {
+        VirtualArduino arduino = new VirtualArduino(3, 2, 0).setLatency(100, 50);
+        arduino.write("^version$".getBytes(US_ASCII));
+        assertEquals("", readAll(arduino)); // Read timeout defaults to 0
+
+        long start = System.currentTimeMillis();
+        arduino.setReadTimeout(1000);
+        byte[] buffer = new byte[64];
+        int n = arduino.read(buffer, 0, buffer.length);
+        long elapsed = System.currentTimeMillis() - start;
+        assertEquals("^version:3$\r\n", new String(buffer, 0, n, US_ASCII));
+        assertTrue(elapsed >= 50 && elapsed < 1000, "elapsed: " + elapsed);
+    }
+
+    @Test
+    public void shouldTimeOutIfNothingToRead() throws IOException {
+        VirtualArduino arduino = new VirtualArduino(3, 2, 0);
+        arduino.setReadTimeout(50);
+        long start = System.currentTimeMillis();
+        assertEquals(0, arduino.read(new byte[10], 0, 10));
+        assertTrue(System.currentTimeMillis() - start >= 50);
+    }
+
+    @Test
+    public void shouldDropFrames() throws IOException {
+        VirtualArduino arduino = new VirtualArduino(3, 2, 0).setDropFrameProbability(1);
+        arduino.write("^status$".getBytes(US_ASCII));
+        assertEquals("", readAll(arduino));
+    }
+
+    @Test
+    public void shouldCorruptBytes() throws IOException {
+        VirtualArduino arduino = new VirtualArduino(3, 2, 0);
+        arduino.write("^status$".getBytes(US_ASCII));
+        String good = readAll(arduino);
+        assertTrue(good.startsWith("^status:0,"), good);
+
+        arduino.setCorruptByteProbability(0.5);
+        arduino.write("^status$".getBytes(US_ASCII));
+        String bad = readAll(arduino);
+        assertEquals(good.length(), bad.length());
+        assertNotEquals(good, bad);
+    }
+
+    @Test
+    public void shouldCannibaliseLogBufferWhenFlooded() throws IOException {
+        VirtualArduino arduino = new VirtualArduino(3, 2, 0).setLogFloodMessagesPerRequest(100);
+        arduino.write("^status$".getBytes(US_ASCII));
+        assertTrue(readAll(arduino).endsWith(",1$\r\n"));
+        assertEquals(50, arduino.getPendingLogMessageCount());
+    }
+
+    @Test
+    public void shouldForgetEverythingInFlightWhenReopened() throws IOException {
+        VirtualArduino arduino = new VirtualArduino(3, 2, 0);
+        arduino.write("^status$".getBytes(US_ASCII));
+        arduino.close();
+        assertThrows(IOException.class, () -> arduino.read(new byte[10], 0, 10));
+
+        arduino.open();
+        assertEquals("", readAll(arduino));
+        arduino.write("^version$".getBytes(US_ASCII));
+        assertEquals("^version:3$\r\n", readAll(arduino));
+    }
+
+    @Test
+    public void shouldServeArduinoChamberManager() throws IOException {
+        Path tempFile = Files.createTempFile("arduinoLog", ".bin");
+        VirtualArduino arduino = new VirtualArduino(3, 2, 42).setLatency(5, 5).setLogFloodMessagesPerRequest(3);
+        Map<Integer, ChamberParameters> params = params();
+        VirtualClock clock = new VirtualClock(1_600_000_000_000L);
+
+        try (ArduinoLogStore logStore = new ArduinoLogStore(tempFile, 100);
+                ArduinoChamberManager chamberManager = new ArduinoChamberManager(chamberRepository, logStore,
+                        () -> new ArduinoMessenger(arduino.open()), null, clock)) {
+            for (int i = 0; i < 5; i++) {
+                Map<Integer, ChamberReadings> readings = chamberManager.runCollectionCycle(params,
+                        new HashSet<>(Arrays.asList(1, 2)), new Date());
+                assertEquals(2, readings.size());
+                assertEquals(171, readings.get(1).gettTarget());
+                assertTrue(Math.abs(readings.get(1).gettBeer() - 171) <= 10);
+                assertEquals(Mode.HOLD, readings.get(2).getMode());
+            }
+            assertFalse(chamberManager.getChamberManagerStatus().logBufferCannibalised);
+            // version, then 5 cycles, each generating 3 log messages; the last 3 are
+            // generated by the status request.
+            assertEquals(6 * 3, logStore.size());
+            assertEquals(3, arduino.getPendingLogMessageCount());
+            // Stored as of the app's clock
+            assertEquals(6 * 3, logStore.query(clock.millis(), clock.millis(), null, null, null, 100).size());
+        } finally {
+            Files.delete(tempFile);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+import org.junit.jupiter.api.Test;
+
+import com.easleydp.tempctrl.domain.CollectionClock.SlotCounts;
+import com.easleydp.tempctrl.domain.CollectionClock.SlotStatus;
+
+public class VirtualTaskSchedulerTests {
+    private static final long START = 1_599_999_960_000L; // A multiple of 60s
+
+    @Test
+    public void shouldRunTasksInDueOrderMovingTheClock() throws Exception {
+        VirtualClock clock = new VirtualClock(START);
+        VirtualTaskScheduler scheduler = new VirtualTaskScheduler(clock);
+        List<String> runs = new ArrayList<>();
+
+        ScheduledFuture<?> rate = scheduler.scheduleAtFixedRate(() -> runs.add("rate@" + (clock.millis() - START)),
+                1000);
+        scheduler.scheduleWithFixedDelay(() -> {
+            runs.add("delay@" + (clock.millis() - START));
+            clock.advance(200); // Time taken by the task
+        }, new Date(START + 500), 1500);
+        ScheduledFuture<?> once = scheduler.schedule(() -> runs.add("once@" + (clock.millis() - START)),
+                new Date(START + 2500));
+        int[] triggered = { 0 };
+        scheduler.schedule(() -> runs.add("trigger@" + (clock.millis() - START)),
+                ctx -> ctx.lastCompletionTime() == null ? new Date(START + 700)
+                        : ++triggered[0] < 2 ? new Date(ctx.lastCompletionTime().getTime() + 2000) : null);
+
+        assertEquals(9, scheduler.runUntil(START + 3000));
+        assertEquals(Arrays.asList("rate@0", "delay@500", "trigger@700", "rate@1000", "rate@2000", "delay@2200",
+                "once@2500", "trigger@2700", "rate@3000"), runs);
+        assertEquals(START + 3000, clock.millis());
+        assertTrue(once.isDone());
+        assertEquals(null, once.get());
+
+        rate.cancel(false);
+        runs.clear();
+        scheduler.runUntil(START + 6000);
+        assertEquals(Arrays.asList("delay@3900", "delay@5600"), runs);
+    }
+
+    @Test
+    public void virtualClockShouldKeepItsTimeInAnyZone() {
+        VirtualClock clock = new VirtualClock(START);
+        Clock london = clock.withZone(ZoneId.of("Europe/London"));
+        assertEquals(ZoneId.of("Europe/London"), london.getZone());
+        assertSame(clock, london.withZone(ZoneOffset.UTC));
+
+        clock.advance(1000);
+        assertEquals(START + 1000, london.millis());
+        assertEquals(clock.instant(), london.instant());
+    }
+
+    /**
+     * A month of collection clock ticks, once a second, in a fraction of that
+     * time. With no time passing while a task runs, every slot is collected on
+     * time.
+     */
+    @Test
+    public void shouldSimulateAMonthOfCollectionSlots() {
+        VirtualClock clock = new VirtualClock(START);
+        VirtualTaskScheduler scheduler = new VirtualTaskScheduler(clock);
+        CollectionClock collectionClock = new CollectionClock(30000, 10000, 30000);
+        Map<Integer, Integer> periods = new LinkedHashMap<>();
+        periods.put(1, 60000);
+        periods.put(2, 30000);
+        scheduler.scheduleWithFixedDelay(() -> {
+            Date slot = collectionClock.dueSlot(clock.millis(), periods);
+            if (slot != null)
+                periods.forEach((chamberId, periodMillis) -> {
+                    if (CollectionClock.isDue(slot, periodMillis))
+                        collectionClock.record(chamberId, slot, clock.millis(), true);
+                });
+        }, 1000);
+
+        long days = 30;
+        long executions = scheduler.runUntil(START + days * 24 * 60 * 60 * 1000);
+
+        assertEquals(days * 24 * 60 * 60 + 1, executions);
+        Map<Integer, SlotCounts> counts = collectionClock.getSlotCounts();
+        assertEquals(days * 24 * 60 + 1, counts.get(1).ok);
+        assertEquals(days * 24 * 60 * 2 + 1, counts.get(2).ok);
+        assertEquals(0, counts.get(2).late + counts.get(2).missed);
+        assertEquals(SlotStatus.OK, counts.get(2).last);
+    }
+}
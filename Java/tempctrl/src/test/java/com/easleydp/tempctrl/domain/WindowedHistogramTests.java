@@ -0,0 +1,72 @@
+package com.easleydp.tempctrl.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class WindowedHistogramTests {
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+
+    @Test
+    public void shouldGivePercentilesWithinBucketPrecision() {
+        WindowedHistogram histogram = new WindowedHistogram(HOUR, 12);
+        long t = 1_000_000 * HOUR;
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(t + i, i);
+
+        WindowedHistogram.Snapshot snapshot = histogram.snapshot(t + 1000);
+        assertEquals(1000, snapshot.count);
+        assertEquals(1000, snapshot.max);
+        assertWithin(500, snapshot.p50);
+        assertWithin(950, snapshot.p95);
+        assertWithin(990, snapshot.p99);
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.125, expected + " vs " + actual);
+    }
+
+    @Test
+    public void shouldForgetASpikeOnceItLeavesTheWindow() {
+        WindowedHistogram histogram = new WindowedHistogram(HOUR, 12);
+        long t = 1_000_000 * HOUR;
+        histogram.record(t, 5000);
+        for (long dt = MINUTE; dt <= 30 * MINUTE; dt += MINUTE)
+            histogram.record(t + dt, 100);
+        WindowedHistogram.Snapshot halfHourOn = histogram.snapshot(t + 30 * MINUTE);
+        assertEquals(5000, halfHourOn.max);
+
+        for (long dt = 31 * MINUTE; dt < 2 * HOUR; dt += MINUTE)
+            histogram.record(t + dt, 100);
+
+        WindowedHistogram.Snapshot twoHoursOn = histogram.snapshot(t + 2 * HOUR);
+        assertEquals(100, twoHoursOn.max);
+        assertEquals(100, twoHoursOn.p99);
+        assertTrue(twoHoursOn.count >= 55 && twoHoursOn.count <= 60, "" + twoHoursOn.count);
+
+        // Nothing recorded for a day
+        assertEquals(0, histogram.snapshot(t + 26 * HOUR).count);
+    }
+
+    @Test
+    public void shouldFlagACycleSlowComparedWithTheLastHour() {
+        CollectionTimings timings = new CollectionTimings(10, 30, 100);
+        long t = 1_000_000 * HOUR;
+        for (int i = 0; i < 60; i++)
+            assertFalse(timings.record(t + i * MINUTE, cycle(t + i * MINUTE, 200 + i % 10)));
+        t += 60 * MINUTE;
+        assertFalse(timings.record(t, cycle(t, 400)));
+        assertTrue(timings.record(t, cycle(t, 600)));
+
+        assertEquals(10, timings.getRecent().size());
+        assertEquals(600, timings.getRecent().get(9).totalMillis);
+        assertEquals(62, timings.getLastDay(t).count);
+    }
+
+    private static CollectionTimings.Cycle cycle(long dt, int totalMillis) {
+        return new CollectionTimings.Cycle(dt, totalMillis, 1, 1, totalMillis - 3, 1);
+    }
+}
@@ -100,6 +100,31 @@ public class RedundantValuesTests
         assertEquals(new Dto(null, null, null), dtos.get(1));
     }
 
+    /** A genuine null (e.g. no reading) ends a run; what follows can't be taken as unchanged. */
+    @Test
+    public void shouldStartAfreshAfterNull()
+    {
+        ArrayList<Dto> dtos = new ArrayList<>(Arrays.asList(
+                new Dto(1, true, AUTO),
+                new Dto(1, true, AUTO),
+                new Dto(null, true, AUTO),
+                new Dto(2, true, AUTO),
+                new Dto(2, true, AUTO),
+                new Dto(null, true, AUTO),
+                new Dto(2, true, AUTO)
+        ));
+
+        RedundantValues.nullOutRedundantValues(dtos, "integer");
+
+        assertEquals(1, dtos.get(0).getInteger());
+        assertNull(dtos.get(1).getInteger());
+        assertNull(dtos.get(2).getInteger());
+        assertEquals(2, dtos.get(3).getInteger());
+        assertNull(dtos.get(4).getInteger());
+        assertNull(dtos.get(5).getInteger());
+        assertEquals(2, dtos.get(6).getInteger());
+    }
+
     enum Mode { AUTO, HOLD }
     static class Dto
     {
@@ -488,6 +488,40 @@ public class SmootherTests
 
         assertEquals(expectedSmoothedRecords, records);
     }
+
+    /** A record with no value breaks the series; the runs either side are smoothed on their own. */
+    @Test
+    public void smoothRecordsEitherSideOfGap()
+    {
+        List<Integer[]> records = Arrays.asList(new Integer[] { 1 }, new Integer[] { 2 }, new Integer[] { 1 },
+                new Integer[] { 3 }, new Integer[] { null }, new Integer[] { 1 }, new Integer[] { 2 },
+                new Integer[] { 1 }, new Integer[] { 3 });
+
+        new Smoother(1).smoothOutSmallFluctuations((List) records, new IntPropertyAccessor()
+        {
+            @Override
+            public int getValue(Object record)
+            {
+                return ((Integer[]) record)[0];
+            }
+            @Override
+            public void setValue(Object record, int value)
+            {
+                ((Integer[]) record)[0] = value;
+            }
+            @Override
+            public boolean hasValue(Object record)
+            {
+                return ((Integer[]) record)[0] != null;
+            }
+        }, null, 1);
+
+        Integer[] values = new Integer[records.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = records.get(i)[0];
+        assertArrayEquals(new Integer[] { 1, 1, 1, 3, null, 1, 1, 1, 3 }, values);
+    }
+
     private static class MyDto
     {
         private int foo;
@@ -0,0 +1,123 @@
+package com.easleydp.tempctrl.spring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.easleydp.tempctrl.domain.ChamberReadings;
+import com.easleydp.tempctrl.domain.ChamberRepository;
+import com.easleydp.tempctrl.domain.Gyle;
+import com.easleydp.tempctrl.domain.Mode;
+import com.easleydp.tempctrl.domain.ReadingsEventBus.ReadingsCollected;
+
+@SpringBootTest
+@TestPropertySource(properties = { "spring.profiles.active: test" })
+@DirtiesContext // Hack to allow multiple Spring integration test suites, otherwise the first
+                // suite seems to leave the application context instantiated.
+class ChamberControllerTests {
+    private static final int chamberId = 2;
+    private static final long dtStarted = 1659830400000L; // 2022/08/07 00:00 UTC
+    private static final long minuteMs = 60_000L;
+
+    @Autowired
+    private ChamberRepository chamberRepository;
+
+    @Autowired
+    private ChamberController chamberController;
+
+    @BeforeEach
+    void beforeEach() {
+        getLatestGyle().setDtStarted(dtStarted);
+    }
+
+    @AfterEach
+    void afterEach() {
+        getLatestGyle().setDtStarted(null);
+    }
+
+    private Gyle getLatestGyle() {
+        return chamberRepository.getChamberById(chamberId).getLatestGyle();
+    }
+
+    @Test
+    void targetSeriesShouldStartAtFromMs() {
+        ChamberController.TargetSeries series = chamberController.getLatestGyleTargetSeries(chamberId, dtStarted,
+                dtStarted + 60 * minuteMs, minuteMs);
+        assertEquals(61, series.tTargets.length);
+        assertEquals(getLatestGyle().getCompiledTemperatureProfile().getTargetTempAt(0), series.tTargets[0]);
+    }
+
+    @Test
+    void targetSeriesShouldRejectUnstartedGyle() {
+        getLatestGyle().setDtStarted(null);
+        assertBadRequest(dtStarted, dtStarted + minuteMs, minuteMs);
+    }
+
+    @Test
+    void targetSeriesShouldRejectNonPositiveStep() {
+        assertBadRequest(dtStarted, dtStarted + minuteMs, 0);
+        assertBadRequest(dtStarted, dtStarted + minuteMs, -minuteMs);
+    }
+
+    @Test
+    void targetSeriesShouldRejectBackwardsRange() {
+        assertBadRequest(dtStarted, dtStarted - 1, minuteMs);
+    }
+
+    @Test
+    void targetSeriesShouldRejectRangesThatOverflow() {
+        assertBadRequest(Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE); // toMs - fromMs
+        assertBadRequest(Long.MIN_VALUE, Long.MIN_VALUE + minuteMs, minuteMs); // fromMs - dtStarted
+    }
+
+    @Test
+    void targetSeriesShouldBeCappedAt20000Values() {
+        ChamberController.TargetSeries series = chamberController.getLatestGyleTargetSeries(chamberId, dtStarted,
+                dtStarted + 19_999 * minuteMs, minuteMs);
+        assertEquals(20_000, series.tTargets.length);
+        // Short of the next step, so still 20,000
+        series = chamberController.getLatestGyleTargetSeries(chamberId, dtStarted,
+                dtStarted + 20_000 * minuteMs - 1, minuteMs);
+        assertEquals(20_000, series.tTargets.length);
+
+        assertBadRequest(dtStarted, dtStarted + 20_000 * minuteMs, minuteMs);
+    }
+
+    /**
+     * The latest readings are those of the latest ReadingsCollected event, whether
+     * or not they were logged. tBeer is out of the dummy chamber manager's range, so
+     * can only have come from here.
+     */
+    @Test
+    void beerTempShouldFollowReadingsCollectedEvents() {
+        Date timeNow = new Date();
+        ChamberReadings readings = new ChamberReadings(timeNow, 175, 987, 200, 150, 300, 0, false, Mode.AUTO);
+        chamberRepository.getEventBus().publish(new ReadingsCollected(chamberId, readings, timeNow, false));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        ChamberController.BeerTemp beerTemp;
+        while ((beerTemp = chamberController.getSummaryStatus(chamberId)).tBeer == null || beerTemp.tBeer != 987) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out awaiting latestReadings subscriber");
+            Thread.yield();
+        }
+        assertEquals(175, beerTemp.tTarget); // The gyle is active
+    }
+
+    private void assertBadRequest(long fromMs, long toMs, long stepMs) {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> chamberController.getLatestGyleTargetSeries(chamberId, fromMs, toMs, stepMs));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+    }
+}
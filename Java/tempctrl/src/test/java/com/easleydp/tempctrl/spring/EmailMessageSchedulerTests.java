@@ -1,7 +1,9 @@
 package com.easleydp.tempctrl.spring;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
@@ -16,12 +18,19 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 
+import com.easleydp.tempctrl.domain.Chamber;
+import com.easleydp.tempctrl.domain.ChamberReadings;
 import com.easleydp.tempctrl.domain.ChamberRepository;
 import com.easleydp.tempctrl.domain.Gyle;
+import com.easleydp.tempctrl.domain.Mode;
+import com.easleydp.tempctrl.domain.PropertyUtils;
+import com.easleydp.tempctrl.domain.ReadingsEventBus;
+import com.easleydp.tempctrl.domain.ReadingsEventBus.ReadingsCollected;
 
 @SpringBootTest
 @TestPropertySource(properties = { "spring.profiles.active: test", "coldCrashCheck.periodMinutes: 20",
-        "coldCrashCheck.priorNoticeHours: 6", "coldCrashCheck.postCrashDwellHours: 24" })
+        "coldCrashCheck.priorNoticeHours: 6", "coldCrashCheck.postCrashDwellHours: 24",
+        "switchedOffCheck.fridgeOnTimeMins: 5" })
 @DirtiesContext // Hack to allow multiple Spring integration test suites, otherwise the first
                 // suite seems to leave the application context instantiated.
 class EmailMessageSchedulerTests {
@@ -294,8 +303,60 @@ class EmailMessageSchedulerTests {
         assertMessageTextEquals(null);
     }
 
+    /**
+     * EmailMessageScheduler - switched-off check, driven by the ReadingsCollected
+     * events published on the chamber repository's event bus.
+     *
+     * The gyle is given a history of readings with the fridge ON and tChamber
+     * steady, so the next logged readings should trigger a "fridge left switched
+     * off" email. Readings that weren't logged leave the gyle's trend buffer as it
+     * was, so should be skipped.
+     */
+    @Test
+    void readingsCollectedShouldDriveSwitchedOffCheck() throws IOException {
+        Chamber chamber = chamberRepository.getChamberById(2);
+        Gyle gyle = chamber.getLatestGyle();
+        // Real time, since the dummy chamber manager may log readings of its own
+        long t0 = System.currentTimeMillis();
+        int minutes = PropertyUtils.getInt("switchedOffCheck.fridgeOnTimeMins") + chamber.getFridgeSwitchOnLagMins()
+                + 1;
+        Date timeNow = null;
+        ChamberReadings readings = null;
+        for (int i = 0; i <= minutes; i++) {
+            timeNow = new Date(t0 + hoursAndMinutesInMillis(0, i));
+            readings = new ChamberReadings(timeNow, 100, 150, 200, 150, 300, 0, true, Mode.AUTO);
+            gyle.logLatestReadings(readings, timeNow);
+        }
+
+        publishAndAwait(new ReadingsCollected(2, readings, timeNow, false));
+        assertMessageSubjectEquals(null);
+
+        publishAndAwait(new ReadingsCollected(2, readings, timeNow, true));
+        assertMessageSubjectEquals("Fridge left switched off? 😟");
+        assertMessageTextEquals(
+                "Fermentation chamber:\nIt looks like the fridge may have been left switched off!");
+
+        // Switch it back off, so the gyle's state is as it was for the other tests
+        timeNow = new Date(timeNow.getTime() + hoursAndMinutesInMillis(0, 1));
+        readings = new ChamberReadings(timeNow, 100, 150, 200, 150, 300, 0, false, Mode.AUTO);
+        gyle.logLatestReadings(readings, timeNow);
+        publishAndAwait(new ReadingsCollected(2, readings, timeNow, true));
+        assertMessageSubjectEquals("Fridge switched back on 😌");
+    }
+
     /* Helpers */
 
+    /** Publishes the event then waits for the switched-off check's subscriber to have handled it. */
+    private void publishAndAwait(ReadingsCollected event) {
+        ReadingsEventBus eventBus = chamberRepository.getEventBus();
+        eventBus.publish(event);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (eventBus.getStats().get("switchedOffCheck").lag > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out awaiting switchedOffCheck subscriber");
+            Thread.yield();
+        }
+    }
+
     private static long hoursAndMinutesInMillis(int hours, int mins) {
         return hours * 1000L * 60 * 60 + mins * 1000L * 60;
     }